@@ -225,6 +225,7 @@ CREATE TABLE IF NOT EXISTS ts_kv_cloud_event (
     entity_id uuid,
     cloud_event_action varchar(255),
     entity_body varchar(10000000),
+    entity_body_proto bytea,
     tenant_id uuid,
     ts bigint NOT NULL
     ) PARTITION BY RANGE(created_time);
@@ -236,4 +237,20 @@ CREATE INDEX IF NOT EXISTS idx_ts_kv_cloud_event_tenant_id_and_created_time ON t
 CREATE INDEX IF NOT EXISTS idx_cloud_event_tenant_id_entity_id_event_type_event_action_crt ON cloud_event
     (tenant_id, entity_id, cloud_event_type, cloud_event_action, created_time DESC);
 
+CREATE TABLE IF NOT EXISTS cloud_event_offset (
+    tenant_id uuid NOT NULL,
+    table_name varchar(255) NOT NULL,
+    created_time bigint NOT NULL,
+    seq_id bigint NOT NULL,
+    CONSTRAINT cloud_event_offset_pkey PRIMARY KEY (tenant_id, table_name)
+    );
+
+CREATE INDEX IF NOT EXISTS idx_cloud_event_tenant_id_and_seq_id ON cloud_event(tenant_id, seq_id);
+
+CREATE INDEX IF NOT EXISTS idx_ts_kv_cloud_event_tenant_id_and_seq_id ON ts_kv_cloud_event(tenant_id, seq_id);
+
+ALTER TABLE cloud_event ADD COLUMN IF NOT EXISTS entity_body_proto bytea;
+
+ALTER TABLE ts_kv_cloud_event ADD COLUMN IF NOT EXISTS entity_body_proto bytea;
+
 -- EDGE RELATED END
@@ -115,6 +115,7 @@ import org.thingsboard.server.service.profile.TbDeviceProfileCache;
 import org.thingsboard.server.service.rpc.TbCoreDeviceRpcService;
 import org.thingsboard.server.service.rpc.TbRpcService;
 import org.thingsboard.server.service.rpc.TbRuleEngineDeviceRpcService;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfilerService;
 import org.thingsboard.server.service.session.DeviceSessionCacheService;
 import org.thingsboard.server.service.sms.SmsExecutorService;
 import org.thingsboard.server.service.state.DeviceStateService;
@@ -248,6 +249,10 @@ public class ActorSystemContext {
     @Getter
     private RuleChainService ruleChainService;
 
+    @Autowired
+    @Getter
+    private RuleNodeProfilerService ruleNodeProfilerService;
+
     @Autowired
     @Getter
     private RuleNodeStateService ruleNodeStateService;
@@ -112,6 +112,7 @@ import org.thingsboard.server.dao.widget.WidgetsBundleService;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.common.SimpleTbQueueCallback;
 import org.thingsboard.server.service.executors.PubSubRuleNodeExecutorProvider;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfiler;
 import org.thingsboard.server.service.script.RuleNodeJsScriptEngine;
 import org.thingsboard.server.service.script.RuleNodeTbelScriptEngine;
 
@@ -119,6 +120,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -132,9 +134,15 @@ import static org.thingsboard.server.common.data.msg.TbMsgType.ENTITY_CREATED;
 @Slf4j
 class DefaultTbContext implements TbContext {
 
+    private static final AtomicLongFieldUpdater<DefaultTbContext> PROFILER_START_NANOS =
+            AtomicLongFieldUpdater.newUpdater(DefaultTbContext.class, "profilerStartNanos");
+    private static final long PROFILER_NOT_SAMPLED = Long.MIN_VALUE;
+
     private final ActorSystemContext mainCtx;
     private final String ruleChainName;
     private final RuleNodeCtx nodeCtx;
+    private long profilerEnqueuedNanos;
+    private volatile long profilerStartNanos;
 
     public DefaultTbContext(ActorSystemContext mainCtx, String ruleChainName, RuleNodeCtx nodeCtx) {
         this.mainCtx = mainCtx;
@@ -162,6 +170,7 @@ class DefaultTbContext implements TbContext {
             relationTypes.forEach(relationType -> mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), msg, relationType, th));
         }
         msg.getCallback().onProcessingEnd(nodeCtx.getSelf().getId());
+        onProcessingEnd(th != null);
         nodeCtx.getChainActor().tell(new RuleNodeToRuleChainTellNextMsg(nodeCtx.getSelf().getRuleChainId(), nodeCtx.getSelf().getId(), relationTypes, msg, th != null ? th.getMessage() : null));
     }
 
@@ -315,6 +324,7 @@ class DefaultTbContext implements TbContext {
             relationTypes.forEach(relationType ->
                     mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), tbMsg, relationType, null, failureMessage));
         }
+        onProcessingEnd(failureMessage != null);
         mainCtx.getClusterService().pushMsgToRuleEngine(tpi, tbMsg.getId(), msg.build(), new SimpleTbQueueCallback(
                 metadata -> {
                     if (onSuccess != null) {
@@ -336,6 +346,7 @@ class DefaultTbContext implements TbContext {
             mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), tbMsg, "ACK", null);
         }
         tbMsg.getCallback().onProcessingEnd(nodeCtx.getSelf().getId());
+        onProcessingEnd(false);
         tbMsg.getCallback().onSuccess();
     }
 
@@ -354,11 +365,44 @@ class DefaultTbContext implements TbContext {
             mainCtx.persistDebugOutput(nodeCtx.getTenantId(), nodeCtx.getSelf().getId(), msg, TbNodeConnectionType.FAILURE, th);
         }
         String failureMessage = getFailureMessage(th);
+        onProcessingEnd(true);
         nodeCtx.getChainActor().tell(new RuleNodeToRuleChainTellNextMsg(nodeCtx.getSelf().getRuleChainId(),
                 nodeCtx.getSelf().getId(), Collections.singleton(TbNodeConnectionType.FAILURE),
                 msg, failureMessage));
     }
 
+    void onEnqueue() {
+        RuleNodeProfiler profiler = nodeCtx.getProfiler();
+        if (profiler != null) {
+            profilerEnqueuedNanos = profiler.onEnqueue();
+        }
+    }
+
+    void onProcessingStart() {
+        RuleNodeProfiler profiler = nodeCtx.getProfiler();
+        if (profiler != null) {
+            long startNanos = profiler.onStart(profilerEnqueuedNanos);
+            profilerStartNanos = startNanos != 0 ? startNanos : PROFILER_NOT_SAMPLED;
+        }
+    }
+
+    private void onProcessingEnd(boolean failure) {
+        RuleNodeProfiler profiler = nodeCtx.getProfiler();
+        if (profiler != null) {
+            // only the first outcome of the message is counted and measured
+            long startNanos = PROFILER_START_NANOS.getAndSet(this, 0L);
+            if (startNanos == 0) {
+                return;
+            }
+            if (failure) {
+                profiler.onFailure();
+            }
+            if (startNanos != PROFILER_NOT_SAMPLED) {
+                profiler.onEnd(startNanos);
+            }
+        }
+    }
+
     public void updateSelf(RuleNode self) {
         nodeCtx.setSelf(self);
     }
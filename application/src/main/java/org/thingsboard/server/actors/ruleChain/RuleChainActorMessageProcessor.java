@@ -51,6 +51,7 @@ import org.thingsboard.server.queue.common.MultipleTbQueueTbMsgCallbackWrapper;
 import org.thingsboard.server.queue.common.TbQueueTbMsgCallbackWrapper;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -69,7 +70,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     private final TbActorRef parent;
     private final TbActorRef self;
     private final Map<RuleNodeId, RuleNodeCtx> nodeActors;
-    private final Map<RuleNodeId, List<RuleNodeRelation>> nodeRoutes;
+    private final Map<RuleNodeId, RuleNodeRoutes> nodeRoutes;
     private final RuleChainService service;
     private final TbClusterService clusterService;
     private final TbApiUsageReportClient apiUsageClient;
@@ -107,7 +108,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 for (RuleNode ruleNode : ruleNodeList) {
                     log.trace("[{}][{}] Creating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
                     TbActorRef ruleNodeActor = createRuleNodeActor(context, ruleNode);
-                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode));
+                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode, systemContext.getRuleNodeProfilerService().getProfiler(ruleNode)));
                 }
                 initRoutes(ruleChain, ruleNodeList);
                 started = true;
@@ -129,7 +130,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                 if (existing == null) {
                     log.trace("[{}][{}] Creating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
                     TbActorRef ruleNodeActor = createRuleNodeActor(context, ruleNode);
-                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode));
+                    nodeActors.put(ruleNode.getId(), new RuleNodeCtx(tenantId, self, ruleNodeActor, ruleNode, systemContext.getRuleNodeProfilerService().getProfiler(ruleNode)));
                 } else {
                     log.trace("[{}][{}] Updating rule node [{}]: {}", entityId, ruleNode.getId(), ruleNode.getName(), ruleNode);
                     existing.setSelf(ruleNode);
@@ -142,6 +143,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             removedRules.forEach(ruleNodeId -> {
                 log.trace("[{}][{}] Removing rule node [{}]", tenantId, entityId, ruleNodeId);
                 RuleNodeCtx removed = nodeActors.remove(ruleNodeId);
+                systemContext.getRuleNodeProfilerService().removeProfiler(removed.getSelf());
                 removed.getSelfActor().tellWithHighPriority(new ComponentLifecycleMsg(tenantId, removed.getSelf().getId(), ComponentLifecycleEvent.DELETED));
             });
 
@@ -152,6 +154,7 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
     @Override
     public void stop(TbActorCtx ctx) {
         log.trace("[{}][{}] Stopping rule chain with {} nodes", tenantId, entityId, nodeActors.size());
+        nodeActors.values().forEach(nodeCtx -> systemContext.getRuleNodeProfilerService().removeProfiler(nodeCtx.getSelf()));
         nodeActors.values().stream().map(RuleNodeCtx::getSelfActor).map(TbActorRef::getActorId).forEach(ctx::stop);
         nodeActors.clear();
         nodeRoutes.clear();
@@ -178,8 +181,9 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             List<EntityRelation> relations = service.getRuleNodeRelations(TenantId.SYS_TENANT_ID, ruleNode.getId());
             log.trace("[{}][{}][{}] Processing rule node relations [{}]", tenantId, entityId, ruleNode.getId(), relations.size());
             if (relations.size() == 0) {
-                nodeRoutes.put(ruleNode.getId(), Collections.emptyList());
+                nodeRoutes.put(ruleNode.getId(), RuleNodeRoutes.EMPTY);
             } else {
+                List<RuleNodeRelation> ruleNodeRelations = new ArrayList<>(relations.size());
                 for (EntityRelation relation : relations) {
                     log.trace("[{}][{}][{}] Processing rule node relation [{}]", tenantId, entityId, ruleNode.getId(), relation.getTo());
                     if (relation.getTo().getEntityType() == EntityType.RULE_NODE) {
@@ -188,9 +192,9 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                             throw new IllegalArgumentException("Rule Node [" + relation.getFrom() + "] has invalid relation to Rule node [" + relation.getTo() + "]");
                         }
                     }
-                    nodeRoutes.computeIfAbsent(ruleNode.getId(), k -> new ArrayList<>())
-                            .add(new RuleNodeRelation(ruleNode.getId(), relation.getTo(), relation.getType()));
+                    ruleNodeRelations.add(new RuleNodeRelation(ruleNode.getId(), relation.getTo(), relation.getType()));
                 }
+                nodeRoutes.put(ruleNode.getId(), RuleNodeRoutes.of(ruleNodeRelations));
             }
         }
 
@@ -296,16 +300,14 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
             EntityId entityId = msg.getOriginator();
             TopicPartitionInfo tpi = systemContext.resolve(tenantId, entityId, msg);
 
-            List<RuleNodeRelation> ruleNodeRelations = nodeRoutes.get(originatorNodeId);
-            if (ruleNodeRelations == null) { // When unchecked, this will cause NullPointerException when rule node doesn't exist anymore
+            RuleNodeRoutes ruleNodeRoutes = nodeRoutes.get(originatorNodeId);
+            if (ruleNodeRoutes == null) { // When unchecked, this will cause NullPointerException when rule node doesn't exist anymore
                 log.warn("[{}][{}][{}] No outbound relations (null). Probably rule node does not exist. Probably old message.", tenantId, entityId, msg.getId());
-                ruleNodeRelations = Collections.emptyList();
+                ruleNodeRoutes = RuleNodeRoutes.EMPTY;
             }
 
-            List<RuleNodeRelation> relationsByTypes = ruleNodeRelations.stream()
-                    .filter(r -> contains(relationTypes, r.getType()))
-                    .collect(Collectors.toList());
-            int relationsCount = relationsByTypes.size();
+            RuleNodeRelation[] relationsByTypes = ruleNodeRoutes.get(relationTypes);
+            int relationsCount = relationsByTypes.length;
             if (relationsCount == 0) {
                 log.trace("[{}][{}][{}] No outbound relations to process", tenantId, entityId, msg.getId());
                 if (relationTypes.contains(TbNodeConnectionType.FAILURE)) {
@@ -320,13 +322,14 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
                     msg.getCallback().onSuccess();
                 }
             } else if (relationsCount == 1) {
-                for (RuleNodeRelation relation : relationsByTypes) {
-                    log.trace("[{}][{}][{}] Pushing message to single target: [{}]", tenantId, entityId, msg.getId(), relation.getOut());
-                    pushToTarget(tpi, msg, relation.getOut(), relation.getType());
-                }
+                RuleNodeRelation relation = relationsByTypes[0];
+                log.trace("[{}][{}][{}] Pushing message to single target: [{}]", tenantId, entityId, msg.getId(), relation.getOut());
+                pushToTarget(tpi, msg, relation.getOut(), relation.getType());
             } else {
                 MultipleTbQueueTbMsgCallbackWrapper callbackWrapper = new MultipleTbQueueTbMsgCallbackWrapper(relationsCount, msg.getCallback());
-                log.trace("[{}][{}][{}] Pushing message to multiple targets: [{}]", tenantId, entityId, msg.getId(), relationsByTypes);
+                if (log.isTraceEnabled()) {
+                    log.trace("[{}][{}][{}] Pushing message to multiple targets: [{}]", tenantId, entityId, msg.getId(), Arrays.toString(relationsByTypes));
+                }
                 for (RuleNodeRelation relation : relationsByTypes) {
                     EntityId target = relation.getOut();
                     putToQueue(tpi, msg, callbackWrapper, target);
@@ -375,21 +378,11 @@ public class RuleChainActorMessageProcessor extends ComponentMsgProcessor<RuleCh
         clusterService.pushMsgToRuleEngine(tpi, newMsg.getId(), toQueueMsg, callbackWrapper);
     }
 
-    private boolean contains(Set<String> relationTypes, String type) {
-        if (relationTypes == null) {
-            return true;
-        }
-        for (String relationType : relationTypes) {
-            if (relationType.equalsIgnoreCase(type)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private void pushMsgToNode(RuleNodeCtx nodeCtx, TbMsg msg, String fromRelationType) {
         if (nodeCtx != null) {
-            nodeCtx.getSelfActor().tell(new RuleChainToRuleNodeMsg(new DefaultTbContext(systemContext, ruleChainName, nodeCtx), msg, fromRelationType));
+            DefaultTbContext ctx = new DefaultTbContext(systemContext, ruleChainName, nodeCtx);
+            ctx.onEnqueue();
+            nodeCtx.getSelfActor().tell(new RuleChainToRuleNodeMsg(ctx, msg, fromRelationType));
         } else {
             log.error("[{}][{}] RuleNodeCtx is empty", entityId, ruleChainName);
             msg.getCallback().onFailure(new RuleEngineException("Rule Node CTX is empty"));
@@ -57,7 +57,7 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
         this.apiUsageClient = systemContext.getApiUsageClient();
         this.ruleChainName = ruleChainName;
         this.ruleNode = systemContext.getRuleChainService().findRuleNodeById(tenantId, entityId);
-        this.defaultCtx = new DefaultTbContext(systemContext, ruleChainName, new RuleNodeCtx(tenantId, parent, self, ruleNode));
+        this.defaultCtx = new DefaultTbContext(systemContext, ruleChainName, new RuleNodeCtx(tenantId, parent, self, ruleNode, systemContext.getRuleNodeProfilerService().getProfiler(ruleNode)));
         this.info = new RuleNodeInfo(ruleNodeId, ruleChainName, getName(ruleNode));
     }
 
@@ -155,6 +155,9 @@ public class RuleNodeActorMessageProcessor extends ComponentMsgProcessor<RuleNod
                 if (ruleNode.isDebugMode()) {
                     systemContext.persistDebugInput(tenantId, entityId, msg.getMsg(), msg.getFromRelationType());
                 }
+                if (msg.getCtx() instanceof DefaultTbContext ctx) {
+                    ctx.onProcessingStart();
+                }
                 try {
                     tbNode.onMsg(msg.getCtx(), msg.getMsg());
                 } catch (Exception e) {
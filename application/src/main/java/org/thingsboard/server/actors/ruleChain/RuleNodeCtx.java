@@ -20,6 +20,7 @@ import lombok.Data;
 import org.thingsboard.server.actors.TbActorRef;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfiler;
 
 /**
  * Created by ashvayka on 19.03.18.
@@ -31,4 +32,5 @@ final class RuleNodeCtx {
     private final TbActorRef chainActor;
     private final TbActorRef selfActor;
     private RuleNode self;
+    private final RuleNodeProfiler profiler;
 }
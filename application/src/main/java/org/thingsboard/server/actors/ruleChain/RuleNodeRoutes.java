@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Outbound relations of a single rule node, grouped by relation type at rule chain init time
+ * so that routing by a single relation type is a map lookup without allocations.
+ */
+final class RuleNodeRoutes {
+
+    static final RuleNodeRoutes EMPTY = new RuleNodeRoutes(new HashMap<>(), new RuleNodeRelation[0]);
+
+    private static final RuleNodeRelation[] NO_RELATIONS = new RuleNodeRelation[0];
+
+    private final Map<String, RuleNodeRelation[]> relationsByType;
+    private final RuleNodeRelation[] all;
+
+    private RuleNodeRoutes(Map<String, RuleNodeRelation[]> relationsByType, RuleNodeRelation[] all) {
+        this.relationsByType = relationsByType;
+        this.all = all;
+    }
+
+    static RuleNodeRoutes of(Collection<RuleNodeRelation> relations) {
+        if (relations.isEmpty()) {
+            return EMPTY;
+        }
+        // relation types are matched case-insensitively, so the relations are grouped by the lower-cased type
+        Map<String, List<RuleNodeRelation>> grouped = new LinkedHashMap<>();
+        for (RuleNodeRelation relation : relations) {
+            grouped.computeIfAbsent(toKey(relation.getType()), type -> new ArrayList<>()).add(relation);
+        }
+        Map<String, RuleNodeRelation[]> relationsByType = new HashMap<>(grouped.size() * 4);
+        grouped.forEach((type, list) -> relationsByType.put(type, list.toArray(NO_RELATIONS)));
+        // the types as they are spelled in the relations are matched without lower-casing the requested type
+        for (RuleNodeRelation relation : relations) {
+            relationsByType.putIfAbsent(relation.getType(), relationsByType.get(toKey(relation.getType())));
+        }
+        return new RuleNodeRoutes(relationsByType, relations.toArray(NO_RELATIONS));
+    }
+
+    /**
+     * Returns the relations matching any of the given types (case-insensitive), or all relations if types is null.
+     * The returned array is shared and must not be modified.
+     */
+    RuleNodeRelation[] get(Set<String> relationTypes) {
+        if (relationTypes == null) {
+            return all;
+        }
+        int size = relationTypes.size();
+        if (size == 0 || all.length == 0) {
+            return NO_RELATIONS;
+        }
+        if (size == 1) {
+            return get(relationTypes.iterator().next());
+        }
+        List<RuleNodeRelation> result = new ArrayList<>(all.length);
+        for (RuleNodeRelation relation : all) {
+            for (String relationType : relationTypes) {
+                if (relationType.equalsIgnoreCase(relation.getType())) {
+                    result.add(relation);
+                    break;
+                }
+            }
+        }
+        return result.toArray(NO_RELATIONS);
+    }
+
+    RuleNodeRelation[] get(String relationType) {
+        RuleNodeRelation[] relations = relationsByType.get(relationType);
+        if (relations == null) {
+            relations = relationsByType.get(toKey(relationType));
+        }
+        return relations != null ? relations : NO_RELATIONS;
+    }
+
+    private static String toKey(String relationType) {
+        return relationType.toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -56,10 +56,19 @@ class RuleNodeToRuleChainTellNextMsg extends TbRuleEngineActorMsg implements Ser
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? String.format("Rule chain [%s] stopped", ruleChainId.getId()) : String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        String message = switch (reason) {
+            case STOPPED -> String.format("Rule chain [%s] stopped", ruleChainId.getId());
+            case OVERLOADED -> String.format("Rule chain [%s] is overloaded", ruleChainId.getId());
+            default -> String.format("Failed to initialize rule chain [%s]!", ruleChainId.getId());
+        };
         msg.getCallback().onFailure(new RuleEngineException(message));
     }
 
+    @Override
+    public boolean isSheddable() {
+        return true;
+    }
+
     @Override
     public MsgType getMsgType() {
         return MsgType.RULE_TO_RULE_CHAIN_TELL_NEXT_MSG;
@@ -37,4 +37,10 @@ final class RuleNodeToSelfMsg extends TbToRuleNodeActorMsg {
         return MsgType.RULE_TO_SELF_MSG;
     }
 
+    @Override
+    public boolean isSheddable() {
+        // the node schedules the msg to itself, e.g. a periodic tick, and does not expect it to be lost
+        return false;
+    }
+
 }
@@ -36,7 +36,16 @@ public abstract class TbToRuleNodeActorMsg extends TbRuleEngineActorMsg {
 
     @Override
     public void onTbActorStopped(TbActorStopReason reason) {
-        String message = reason == TbActorStopReason.STOPPED ? "Rule node stopped" : "Failed to initialize rule node!";
+        String message = switch (reason) {
+            case STOPPED -> "Rule node stopped";
+            case OVERLOADED -> "Rule node is overloaded";
+            default -> "Failed to initialize rule node!";
+        };
         msg.getCallback().onFailure(new RuleNodeException(message, ctx.getRuleChainName(), ctx.getSelf()));
     }
+
+    @Override
+    public boolean isSheddable() {
+        return true;
+    }
 }
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.TbActorId;
+import org.thingsboard.server.actors.TbActorMailbox;
+import org.thingsboard.server.actors.TbActorMailboxStats;
+import org.thingsboard.server.actors.TbActorSystem;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically samples every actor mailbox. Backlog depths and mean processing times per actor are recorded into
+ * per-dispatcher histograms, and the hottest actors of the interval are logged.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "actors.system.mailbox_stats", value = "enabled", havingValue = "true")
+public class ActorMailboxStatsReporter {
+
+    private static final String STATS_KEY = "actors.mailbox.";
+    private static final String DISPATCHER_TAG = "dispatcher";
+
+    @Autowired
+    private ActorSystemContext actorContext;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${actors.system.mailbox_stats.top_n:10}")
+    private int topN;
+
+    private final Map<String, DistributionSummary> depthSummaries = new ConcurrentHashMap<>();
+    private final Map<String, Timer> processingTimers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> rejectedGauges = new ConcurrentHashMap<>();
+    private Map<TbActorId, long[]> previous = new HashMap<>();
+    private long previousTs = System.currentTimeMillis();
+
+    @Scheduled(fixedDelayString = "${actors.system.mailbox_stats.report_interval_ms:60000}")
+    public void report() {
+        TbActorSystem system = actorContext.getActorSystem();
+        if (system == null) {
+            return;
+        }
+        long ts = System.currentTimeMillis();
+        long intervalMs = Math.max(1, ts - previousTs);
+        Map<TbActorId, long[]> current = new HashMap<>(Math.max(16, previous.size()));
+        Map<String, Long> rejectedByDispatcher = new HashMap<>();
+        PriorityQueue<HotActor> hottest = new PriorityQueue<>(Comparator.comparingLong(HotActor::processed));
+        for (TbActorMailbox mailbox : system.getMailboxes()) {
+            TbActorMailboxStats stats = mailbox.getStats();
+            String dispatcherId = mailbox.getDispatcherId();
+            long[] counters = {stats.getProcessed(), stats.getSampled(), stats.getSampledNanos(), stats.getRejected()};
+            current.put(mailbox.getSelfId(), counters);
+            long[] prev = previous.getOrDefault(mailbox.getSelfId(), new long[counters.length]);
+            long processed = counters[0] - prev[0];
+            long sampled = counters[1] - prev[1];
+            long rejected = counters[3] - prev[3];
+            long avgNanos = sampled > 0 ? (counters[2] - prev[2]) / sampled : 0;
+            int depth = stats.getDepth();
+
+            if (depth > 0) {
+                depthSummaries.computeIfAbsent(dispatcherId, id -> statsFactory.createDistributionSummary(STATS_KEY + "depth", DISPATCHER_TAG, id)).record(depth);
+            }
+            if (sampled > 0) {
+                processingTimers.computeIfAbsent(dispatcherId, id -> statsFactory.createTimer(STATS_KEY + "processingTime", DISPATCHER_TAG, id)).record(avgNanos, TimeUnit.NANOSECONDS);
+            }
+            rejectedByDispatcher.merge(dispatcherId, rejected, Long::sum);
+
+            if (topN > 0 && (processed > 0 || depth > 0)) {
+                hottest.add(new HotActor(mailbox.getSelfId(), dispatcherId, processed, depth, avgNanos, stats.getMaxSampledNanos(), rejected));
+                if (hottest.size() > topN) {
+                    hottest.poll();
+                }
+            }
+        }
+        rejectedByDispatcher.forEach((dispatcherId, rejected) ->
+                rejectedGauges.computeIfAbsent(dispatcherId, id -> statsFactory.createGauge(STATS_KEY + "rejected", new AtomicLong(), DISPATCHER_TAG, id)).set(rejected));
+        previous = current;
+        previousTs = ts;
+
+        if (!hottest.isEmpty()) {
+            List<HotActor> report = new ArrayList<>(hottest);
+            report.sort(Comparator.comparingLong(HotActor::processed).reversed());
+            StringBuilder sb = new StringBuilder();
+            for (HotActor actor : report) {
+                sb.append("\n\t[").append(actor.actorId()).append("][").append(actor.dispatcherId()).append("]")
+                        .append(" processed: ").append(actor.processed()).append(" (").append(actor.processed() * 1000 / intervalMs).append("/s)")
+                        .append(", depth: ").append(actor.depth())
+                        .append(", avg: ").append(TimeUnit.NANOSECONDS.toMicros(actor.avgNanos())).append("us")
+                        .append(", max: ").append(TimeUnit.NANOSECONDS.toMicros(actor.maxNanos())).append("us")
+                        .append(", rejected: ").append(actor.rejected());
+            }
+            log.info("Top {} hottest actors for the last {} ms:{}", report.size(), intervalMs, sb);
+        }
+    }
+
+    private record HotActor(TbActorId actorId, String dispatcherId, long processed, int depth, long avgNanos, long maxNanos, long rejected) {
+    }
+
+}
@@ -78,17 +78,52 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     @Value("${actors.system.rule_dispatcher_pool_size:8}")
     private int ruleDispatcherSize;
 
+    @Value("${actors.system.mailbox_batch_size:0}")
+    private int mailboxBatchSize;
+
+    @Value("${actors.system.dispatcher_affinity_enabled:false}")
+    private boolean dispatcherAffinityEnabled;
+
+    @Value("${actors.system.virtual_threads_enabled:false}")
+    private boolean virtualThreadsEnabled;
+
+    @Value("${actors.system.device_dispatcher_mailbox_capacity:0}")
+    private int deviceMailboxCapacity;
+
+    @Value("${actors.system.rule_dispatcher_mailbox_capacity:0}")
+    private int ruleMailboxCapacity;
+
+    @Value("${actors.system.mailbox_stats.enabled:false}")
+    private boolean mailboxStatsEnabled;
+
+    @Value("${actors.system.mailbox_stats.sample_rate:100}")
+    private int mailboxStatsSampleRate;
+
     @PostConstruct
     public void initActorSystem() {
         log.info("Initializing actor system.");
         actorContext.setActorService(this);
-        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts);
+        TbActorSystemSettings settings = new TbActorSystemSettings(actorThroughput, schedulerPoolSize, maxActorInitAttempts, mailboxBatchSize);
+        if (mailboxStatsEnabled) {
+            settings.setMailboxStatsSampleRate(mailboxStatsSampleRate);
+        }
         system = new DefaultTbActorSystem(settings);
 
         system.createDispatcher(APP_DISPATCHER_NAME, initDispatcherExecutor(APP_DISPATCHER_NAME, appDispatcherSize));
         system.createDispatcher(TENANT_DISPATCHER_NAME, initDispatcherExecutor(TENANT_DISPATCHER_NAME, tenantDispatcherSize));
-        system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
-        system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        if (virtualThreadsEnabled && !ThingsBoardExecutors.isVirtualThreadSupported()) {
+            log.warn("Virtual threads are not supported by Java {}, actor dispatchers will use thread pools", Runtime.version());
+            virtualThreadsEnabled = false;
+        }
+        if (dispatcherAffinityEnabled && !virtualThreadsEnabled) {
+            system.createPinnedDispatcher(DEVICE_DISPATCHER_NAME, getDispatcherPoolSize(deviceDispatcherSize));
+            system.createPinnedDispatcher(RULE_DISPATCHER_NAME, getDispatcherPoolSize(ruleDispatcherSize));
+        } else {
+            system.createDispatcher(DEVICE_DISPATCHER_NAME, initDispatcherExecutor(DEVICE_DISPATCHER_NAME, deviceDispatcherSize));
+            system.createDispatcher(RULE_DISPATCHER_NAME, initDispatcherExecutor(RULE_DISPATCHER_NAME, ruleDispatcherSize));
+        }
+        system.setMailboxCapacity(DEVICE_DISPATCHER_NAME, deviceMailboxCapacity);
+        system.setMailboxCapacity(RULE_DISPATCHER_NAME, ruleMailboxCapacity);
 
         actorContext.setActorSystem(system);
 
@@ -102,10 +137,10 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
     }
 
     private ExecutorService initDispatcherExecutor(String dispatcherName, int poolSize) {
-        if (poolSize == 0) {
-            int cores = Runtime.getRuntime().availableProcessors();
-            poolSize = Math.max(1, cores / 2);
+        if (virtualThreadsEnabled) {
+            return ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(dispatcherName);
         }
+        poolSize = getDispatcherPoolSize(poolSize);
         if (poolSize == 1) {
             return Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherName));
         } else {
@@ -113,6 +148,14 @@ public class DefaultActorService extends TbApplicationEventListener<PartitionCha
         }
     }
 
+    private int getDispatcherPoolSize(int poolSize) {
+        if (poolSize == 0) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            poolSize = Math.max(1, cores / 2);
+        }
+        return poolSize;
+    }
+
     @AfterStartUp(order = AfterStartUp.ACTOR_SYSTEM)
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
         log.info("Received application ready event. Sending application init message to actor system");
@@ -67,6 +67,8 @@ import org.thingsboard.server.config.annotations.ApiOperation;
 import org.thingsboard.server.dao.event.EventService;
 import org.thingsboard.server.queue.util.TbCoreComponent;
 import org.thingsboard.server.service.rule.TbRuleChainService;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfileInfo;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfilerService;
 import org.thingsboard.server.service.script.RuleNodeJsScriptEngine;
 import org.thingsboard.server.service.script.RuleNodeTbelScriptEngine;
 import org.thingsboard.server.service.security.permission.Operation;
@@ -147,6 +149,9 @@ public class RuleChainController extends BaseController {
     @Autowired(required = false)
     private ActorSystemContext actorContext;
 
+    @Autowired
+    private RuleNodeProfilerService ruleNodeProfilerService;
+
     @Value("${actors.rule.chain.debug_mode_rate_limits_per_tenant.enabled}")
     private boolean debugPerTenantEnabled;
 
@@ -196,6 +201,23 @@ public class RuleChainController extends BaseController {
         return tbRuleChainService.getOutputLabelUsage(getCurrentUser().getTenantId(), ruleChainId);
     }
 
+    @ApiOperation(value = "Get Rule Chain profile (getRuleChainProfile)",
+            notes = "Fetch the processing metrics of each Rule Node of the Rule Chain based on the provided Rule Chain Id: " +
+                    "number of invocations, failure rate, and median and 99th percentile of queue wait and processing time. " +
+                    "Latency values are calculated from the sampled messages of the last few minutes. " +
+                    "Returns only Rule Node names and types if the profiler is disabled ('actors.rule.profiler.enabled')." + TENANT_AUTHORITY_PARAGRAPH)
+    @PreAuthorize("hasAnyAuthority('TENANT_ADMIN')")
+    @RequestMapping(value = "/ruleChain/{ruleChainId}/profile", method = RequestMethod.GET)
+    @ResponseBody
+    public List<RuleNodeProfileInfo> getRuleChainProfile(
+            @Parameter(description = RULE_CHAIN_ID_PARAM_DESCRIPTION)
+            @PathVariable(RULE_CHAIN_ID) String strRuleChainId) throws ThingsboardException {
+        checkParameter(RULE_CHAIN_ID, strRuleChainId);
+        RuleChainId ruleChainId = new RuleChainId(toUUID(strRuleChainId));
+        checkRuleChain(ruleChainId, Operation.READ);
+        return ruleNodeProfilerService.getProfile(ruleChainId, ruleChainService.getRuleChainNodes(getTenantId(), ruleChainId));
+    }
+
     @ApiOperation(value = "Get Rule Chain (getRuleChainById)",
             notes = "Fetch the Rule Chain Metadata object based on the provided Rule Chain Id. " + RULE_CHAIN_METADATA_DESCRIPTION + TENANT_AUTHORITY_PARAGRAPH)
     @PreAuthorize("hasAnyAuthority('TENANT_ADMIN')")
@@ -24,12 +24,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.thingsboard.edge.rpc.EdgeRpcClient;
 import org.thingsboard.server.common.data.AttributeScope;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
-import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
-import org.thingsboard.server.common.data.kv.LongDataEntry;
-import org.thingsboard.server.common.data.page.PageData;
-import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.cloud.CloudEventService;
 import org.thingsboard.server.gen.edge.v1.EdgeVersion;
@@ -49,30 +46,19 @@ import org.thingsboard.server.service.cloud.rpc.processor.TelemetryCloudProcesso
 import org.thingsboard.server.service.cloud.rpc.processor.WidgetBundleCloudProcessor;
 import org.thingsboard.server.service.executors.DbCallbackExecutorService;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 public abstract class BaseUplinkMessageService {
 
-    protected static final String QUEUE_SEQ_ID_OFFSET_ATTR_KEY = "queueSeqIdOffset";
-    private static final String RATE_LIMIT_REACHED = "Rate limit reached";
-    private static final int MAX_UPLINK_ATTEMPTS = 10; // max number of attemps to send downlink message if edge connected
+    private static final int MAX_UPLINK_ATTEMPTS = 10; // max number of attemps to send uplink message if edge connected
 
-    private static final ReentrantLock uplinkMsgsPackLock = new ReentrantLock();
-    private final ConcurrentMap<Integer, UplinkMsg> pendingMsgsMap = new ConcurrentHashMap<>();
-    private CountDownLatch latch;
-
-    private volatile boolean isRateLimitViolated = false;
-    private volatile boolean sendingInProgress = false;
+    private volatile UplinkMsgWindow currentWindow;
+    private volatile CloudEventOffset queueOffset;
 
     @Value("${cloud.uplink_pack_timeout_sec:60}")
     private long uplinkPackTimeoutSec;
@@ -122,229 +108,143 @@ public abstract class BaseUplinkMessageService {
     @Autowired
     private EdgeRpcClient edgeRpcClient;
 
+    @Autowired
+    private UplinkMsgScheduler uplinkMsgScheduler;
+
+    @Autowired
+    private UplinkMsgCoalescer uplinkMsgCoalescer;
+
+    @Autowired
+    private UplinkFlowController uplinkFlowController;
+
     @Autowired
     private DbCallbackExecutorService dbCallbackExecutorService;
 
-    public void processCloudEvents(TenantId tenantId, Long queueSeqIdStart, TimePageLink pageLink) throws Exception {
-        PageData<CloudEvent> cloudEvents;
-        boolean success;
-        do {
-            cloudEvents = findCloudEvents(tenantId, queueSeqIdStart, null, pageLink);
-            if (cloudEvents.getData().isEmpty()) {
-                log.info("seqId column of {} table started new cycle", getTableName());
-                cloudEvents = findCloudEventsFromBeginning(tenantId, pageLink);
-            }
-            log.trace("[{}] event(s) are going to be converted.", cloudEvents.getData().size());
-            List<UplinkMsg> uplinkMsgsPack = convertToUplinkMsgsPack(tenantId, cloudEvents.getData());
-            if (!uplinkMsgsPack.isEmpty()) {
-                success = sendUplinkMsgsPack(uplinkMsgsPack);
-            } else {
-                success = true;
-            }
-            if (success && cloudEvents.getTotalElements() > 0) {
-                CloudEvent latestCloudEvent = cloudEvents.getData().get(cloudEvents.getData().size() - 1);
-                try {
-                    Long newStartTs = Uuids.unixTimestamp(latestCloudEvent.getUuidId());
-                    updateQueueStartTsSeqIdOffset(tenantId, newStartTs, latestCloudEvent.getSeqId());
-                    log.debug("Queue offset was updated [{}][{}][{}]", latestCloudEvent.getUuidId(), newStartTs, latestCloudEvent.getSeqId());
-                } catch (Exception e) {
-                    log.error("Failed to update queue offset [{}]", latestCloudEvent);
-                }
-            }
-            if (success) {
-                pageLink = pageLink.nextPageLink();
-            }
-            if (newMessagesAvailableInGeneralQueue(tenantId)) {
-                return;
-            }
-        } while (!success || cloudEvents.hasNext());
+    @PostConstruct
+    public void initFlowControl() {
+        uplinkFlowController.registerLane(getLane(), getMaxInFlightMsgs(), cloudEventStorageSettings.getMaxReadRecordsCount());
     }
 
-    protected abstract String getTableName();
-    protected abstract boolean newMessagesAvailableInGeneralQueue(TenantId tenantId);
-    protected abstract void updateQueueStartTsSeqIdOffset(TenantId tenantId, Long newStartTs, Long newSeqId);
-
     public void processHandleMessages(TenantId tenantId) throws Exception {
-        Long cloudEventsQueueSeqIdStart = getQueueSeqIdStart(tenantId).get();
-        TimePageLink cloudEventsPageLink = newCloudEventsAvailable(tenantId, cloudEventsQueueSeqIdStart);
-        if (cloudEventsPageLink != null) {
-            processCloudEvents(tenantId, cloudEventsQueueSeqIdStart, cloudEventsPageLink);
+        CloudEventOffset readOffset = getQueueOffset(tenantId);
+        UplinkLane lane = getLane();
+        UplinkMsgWindow window = new UplinkMsgWindow(edgeRpcClient, uplinkMsg -> uplinkMsgScheduler.send(lane, uplinkMsg), uplinkFlowController, lane,
+                TimeUnit.SECONDS.toMillis(uplinkPackTimeoutSec), cloudEventStorageSettings.getSleepIntervalBetweenBatches(),
+                MAX_UPLINK_ATTEMPTS, cloudEvent -> updateQueueOffset(tenantId, cloudEvent));
+        currentWindow = window;
+        try {
+            List<CloudEvent> cloudEvents;
+            int limit;
+            do {
+                limit = uplinkFlowController.getBatchSize(lane);
+                cloudEvents = findCloudEventsAfter(tenantId, readOffset, limit);
+                log.trace("[{}] event(s) are going to be converted.", cloudEvents.size());
+                List<UplinkMsg> uplinkMsgs = new ArrayList<>(cloudEvents.size());
+                for (CloudEvent cloudEvent : cloudEvents) {
+                    uplinkMsgs.add(convertToUplinkMsg(tenantId, cloudEvent));
+                }
+                if (uplinkMsgCoalescer.isEnabled()) {
+                    uplinkMsgs = uplinkMsgCoalescer.coalesce(cloudEvents, uplinkMsgs);
+                }
+                for (int i = 0; i < cloudEvents.size(); i++) {
+                    window.send(cloudEvents.get(i), uplinkMsgs.get(i));
+                }
+                if (!cloudEvents.isEmpty()) {
+                    readOffset = toOffset(cloudEvents.get(cloudEvents.size() - 1));
+                }
+            } while (cloudEvents.size() >= limit);
+            window.flush();
+        } finally {
+            currentWindow = null;
         }
     }
 
-    protected abstract ListenableFuture<Long> getQueueStartTs(TenantId tenantId);
-    protected abstract ListenableFuture<Long> getQueueSeqIdStart(TenantId tenantId);
+    public void resetQueueOffset(TenantId tenantId, long startTs) {
+        CloudEventOffset offset = new CloudEventOffset(startTs, 0L);
+        saveQueueOffset(tenantId, offset);
+        queueOffset = offset;
+    }
 
-    protected ListenableFuture<Long> getLongAttrByKey(TenantId tenantId, String attrKey) {
-        ListenableFuture<Optional<AttributeKvEntry>> future =
-                attributesService.find(tenantId, tenantId, AttributeScope.SERVER_SCOPE, attrKey);
-        return Futures.transform(future, attributeKvEntryOpt -> {
-            if (attributeKvEntryOpt != null && attributeKvEntryOpt.isPresent()) {
-                AttributeKvEntry attributeKvEntry = attributeKvEntryOpt.get();
-                return attributeKvEntry.getLongValue().isPresent() ? attributeKvEntry.getLongValue().get() : 0L;
-            } else {
-                return 0L;
+    protected CloudEventOffset getQueueOffset(TenantId tenantId) throws Exception {
+        CloudEventOffset offset = queueOffset;
+        if (offset == null) {
+            offset = findQueueOffset(tenantId);
+            if (offset == null) {
+                // offset of the edge installed before 3.8 is stored as tenant attributes
+                offset = new CloudEventOffset(getLongAttrByKey(tenantId, getQueueStartTsAttrKey()).get(),
+                        getLongAttrByKey(tenantId, getQueueSeqIdOffsetAttrKey()).get());
             }
-        }, dbCallbackExecutorService);
+            queueOffset = offset;
+        }
+        return offset;
     }
 
-    public TimePageLink newCloudEventsAvailable(TenantId tenantId, Long queueSeqIdStart) {
+    private void updateQueueOffset(TenantId tenantId, CloudEvent latestCloudEvent) {
+        CloudEventOffset offset = toOffset(latestCloudEvent);
+        queueOffset = offset;
         try {
-            long queueStartTs = getQueueStartTs(tenantId).get();
-            long queueEndTs = queueStartTs > 0 ? queueStartTs + TimeUnit.DAYS.toMillis(1) : System.currentTimeMillis();
-            TimePageLink pageLink = new TimePageLink(cloudEventStorageSettings.getMaxReadRecordsCount(),
-                    0, null, null, queueStartTs, queueEndTs);
-            PageData<CloudEvent> cloudEvents = findCloudEvents(tenantId, queueSeqIdStart, null, pageLink);
-            if (cloudEvents.getData().isEmpty()) {
-                // check if new cycle started (seq_id starts from '1')
-                cloudEvents = findCloudEventsFromBeginning(tenantId, pageLink);
-                if (cloudEvents.getData().stream().anyMatch(ce -> ce.getSeqId() == 1)) {
-                    log.info("newCloudEventsAvailable: new cycle started (seq_id starts from '1')!");
-                    return pageLink;
-                } else {
-                    while (queueEndTs < System.currentTimeMillis()) {
-                        log.trace("newCloudEventsAvailable: queueEndTs < System.currentTimeMillis() [{}] [{}]", queueEndTs, System.currentTimeMillis());
-                        queueStartTs = queueEndTs;
-                        queueEndTs = queueEndTs + TimeUnit.DAYS.toMillis(1);
-                        pageLink = new TimePageLink(cloudEventStorageSettings.getMaxReadRecordsCount(),
-                                0, null, null, queueStartTs, queueEndTs);
-                        cloudEvents = findCloudEvents(tenantId, queueSeqIdStart, null, pageLink);
-                        if (!cloudEvents.getData().isEmpty()) {
-                            return pageLink;
-                        }
-                    }
-                    return null;
-                }
-            } else {
-                return pageLink;
-            }
+            saveQueueOffset(tenantId, offset);
+            log.debug("Queue offset was updated [{}][{}]", latestCloudEvent.getUuidId(), offset);
         } catch (Exception e) {
-            log.warn("Failed to check newCloudEventsAvailable!", e);
-            return null;
+            log.error("Failed to update queue offset [{}]", latestCloudEvent, e);
         }
     }
 
-    protected PageData<CloudEvent> findCloudEventsFromBeginning(TenantId tenantId, TimePageLink pageLink) {
-        long seqIdEnd = Integer.toUnsignedLong(cloudEventStorageSettings.getMaxReadRecordsCount());
-        seqIdEnd = Math.max(seqIdEnd, 50L);
-        return findCloudEvents(tenantId, 0L, seqIdEnd, pageLink);
+    private static CloudEventOffset toOffset(CloudEvent cloudEvent) {
+        return new CloudEventOffset(Uuids.unixTimestamp(cloudEvent.getUuidId()), cloudEvent.getSeqId());
     }
 
-    protected abstract PageData<CloudEvent> findCloudEvents(TenantId tenantId, Long seqIdStart, Long seqIdEnd, TimePageLink pageLink);
+    protected abstract UplinkLane getLane();
+    protected abstract int getMaxInFlightMsgs();
+    protected abstract String getQueueStartTsAttrKey();
+    protected abstract String getQueueSeqIdOffsetAttrKey();
+    protected abstract List<CloudEvent> findCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit);
+    protected abstract CloudEventOffset findQueueOffset(TenantId tenantId);
+    protected abstract void saveQueueOffset(TenantId tenantId, CloudEventOffset offset);
 
-    protected void updateQueueStartTsSeqIdOffset(TenantId tenantId, String attrStartTsKey, String attrSeqIdKey, Long startTs, Long seqIdOffset) {
-        log.trace("updateQueueStartTsSeqIdOffset [{}][{}][{}][{}]", attrStartTsKey, attrSeqIdKey, startTs, seqIdOffset);
-        List<AttributeKvEntry> attributes = Arrays.asList(
-                new BaseAttributeKvEntry(new LongDataEntry(attrStartTsKey, startTs), System.currentTimeMillis()),
-                new BaseAttributeKvEntry(new LongDataEntry(attrSeqIdKey, seqIdOffset), System.currentTimeMillis()));
-        attributesService.save(tenantId, tenantId, AttributeScope.SERVER_SCOPE, attributes);
+    private ListenableFuture<Long> getLongAttrByKey(TenantId tenantId, String attrKey) {
+        ListenableFuture<Optional<AttributeKvEntry>> future =
+                attributesService.find(tenantId, tenantId, AttributeScope.SERVER_SCOPE, attrKey);
+        return Futures.transform(future, attributeKvEntryOpt -> {
+            if (attributeKvEntryOpt != null && attributeKvEntryOpt.isPresent()) {
+                AttributeKvEntry attributeKvEntry = attributeKvEntryOpt.get();
+                return attributeKvEntry.getLongValue().isPresent() ? attributeKvEntry.getLongValue().get() : 0L;
+            } else {
+                return 0L;
+            }
+        }, dbCallbackExecutorService);
     }
 
     public void onUplinkResponse(UplinkResponseMsg msg) {
         try {
-            if (sendingInProgress) {
-                if (msg.getSuccess()) {
-                    pendingMsgsMap.remove(msg.getUplinkMsgId());
-                    log.debug("Msg has been processed successfully! {}", msg);
-                } else if (msg.getErrorMsg().contains(RATE_LIMIT_REACHED)) {
-                    log.warn("Msg processing failed! {}", RATE_LIMIT_REACHED);
-                    isRateLimitViolated = true;
-                } else {
-                    log.error("Msg processing failed! Error msg: {}", msg.getErrorMsg());
-                }
-                latch.countDown();
+            UplinkMsgWindow window = currentWindow;
+            if (window != null) {
+                window.onUplinkResponse(msg);
             }
         } catch (Exception e) {
             log.error("Can't process uplink response message [{}]", msg, e);
         }
     }
 
-    protected boolean sendUplinkMsgsPack(List<UplinkMsg> uplinkMsgsPack) throws InterruptedException {
-        uplinkMsgsPackLock.lock();
+    private UplinkMsg convertToUplinkMsg(TenantId tenantId, CloudEvent cloudEvent) {
+        log.trace("Converting cloud event [{}]", cloudEvent);
         try {
-            int attempt = 1;
-            boolean success;
-            LinkedBlockingQueue<UplinkMsg> orderedPendingMsgsQueue = new LinkedBlockingQueue<>();
-            pendingMsgsMap.clear();
-            uplinkMsgsPack.forEach(msg -> {
-                pendingMsgsMap.put(msg.getUplinkMsgId(), msg);
-                orderedPendingMsgsQueue.add(msg);
-            });
-            do {
-                log.trace("[{}] uplink msg(s) are going to be send.", pendingMsgsMap.values().size());
-                sendingInProgress = true;
-                latch = new CountDownLatch(pendingMsgsMap.values().size());
-                for (UplinkMsg uplinkMsg : orderedPendingMsgsQueue) {
-                    if (edgeRpcClient.getServerMaxInboundMessageSize() != 0 && uplinkMsg.getSerializedSize() > edgeRpcClient.getServerMaxInboundMessageSize()) {
-                        log.error("Uplink msg size [{}] exceeds server max inbound message size [{}]. Skipping this message. " +
-                                        "Please increase value of EDGES_RPC_MAX_INBOUND_MESSAGE_SIZE env variable on the server and restart it." +
-                                        "Message {}",
-                                uplinkMsg.getSerializedSize(), edgeRpcClient.getServerMaxInboundMessageSize(), uplinkMsg);
-                        pendingMsgsMap.remove(uplinkMsg.getUplinkMsgId());
-                        latch.countDown();
-                    } else {
-                        edgeRpcClient.sendUplinkMsg(uplinkMsg);
-                    }
-                }
-                success = latch.await(uplinkPackTimeoutSec, TimeUnit.SECONDS);
-                sendingInProgress = false;
-                success = success && pendingMsgsMap.isEmpty();
-                if (!success) {
-                    log.warn("Failed to deliver the batch: {}, attempt: {}", pendingMsgsMap.values(), attempt);
-                }
-                if (!success) {
-                    try {
-                        Thread.sleep(cloudEventStorageSettings.getSleepIntervalBetweenBatches());
-                    } catch (InterruptedException e) {
-                        log.error("Error during sleep between batches", e);
-                    }
-                }
-                if (!success && isRateLimitViolated) {
-                    isRateLimitViolated = false;
-                    try {
-                        TimeUnit.SECONDS.sleep(60);
-                    } catch (InterruptedException e) {
-                        log.error("Error during sleep on rate limit violation", e);
-                    }
-                }
-                attempt++;
-                if (attempt > MAX_UPLINK_ATTEMPTS) {
-                    log.warn("Failed to deliver the batch after {} attempts. Next messages are going to be discarded {}",
-                            MAX_UPLINK_ATTEMPTS, pendingMsgsMap.values());
-                    return true;
-                }
-            } while (!success);
-            return true;
-        } finally {
-            uplinkMsgsPackLock.unlock();
-        }
-    }
-
-    private List<UplinkMsg> convertToUplinkMsgsPack(TenantId tenantId, List<CloudEvent> cloudEvents) {
-        List<UplinkMsg> result = new ArrayList<>();
-        for (CloudEvent cloudEvent : cloudEvents) {
-            log.trace("Converting cloud event [{}]", cloudEvent);
-            UplinkMsg uplinkMsg = null;
-            try {
-                switch (cloudEvent.getAction()) {
-                    case UPDATED, ADDED, DELETED, ALARM_ACK, ALARM_CLEAR, ALARM_DELETE, CREDENTIALS_UPDATED, RELATION_ADD_OR_UPDATE, RELATION_DELETED, ASSIGNED_TO_CUSTOMER, UNASSIGNED_FROM_CUSTOMER, ADDED_COMMENT, UPDATED_COMMENT, DELETED_COMMENT ->
-                            uplinkMsg = convertEntityEventToUplink(tenantId, cloudEvent);
-                    case ATTRIBUTES_UPDATED, POST_ATTRIBUTES, ATTRIBUTES_DELETED, TIMESERIES_UPDATED ->
-                            uplinkMsg = telemetryProcessor.convertTelemetryEventToUplink(tenantId, cloudEvent);
-                    case ATTRIBUTES_REQUEST -> uplinkMsg = telemetryProcessor.convertAttributesRequestEventToUplink(cloudEvent);
-                    case RELATION_REQUEST -> uplinkMsg = relationProcessor.convertRelationRequestEventToUplink(cloudEvent);
-                    case RPC_CALL -> uplinkMsg = deviceProcessor.convertRpcCallEventToUplink(cloudEvent);
-                    case WIDGET_BUNDLE_TYPES_REQUEST -> uplinkMsg = widgetBundleProcessor.convertWidgetBundleTypesRequestEventToUplink(cloudEvent);
-                    case ENTITY_VIEW_REQUEST -> uplinkMsg = entityViewProcessor.convertEntityViewRequestEventToUplink(cloudEvent);
-                }
-            } catch (Exception e) {
-                log.error("Exception during converting events from queue, skipping event [{}]", cloudEvent, e);
-            }
-            if (uplinkMsg != null) {
-                result.add(uplinkMsg);
-            }
+            return switch (cloudEvent.getAction()) {
+                case UPDATED, ADDED, DELETED, ALARM_ACK, ALARM_CLEAR, ALARM_DELETE, CREDENTIALS_UPDATED, RELATION_ADD_OR_UPDATE, RELATION_DELETED, ASSIGNED_TO_CUSTOMER, UNASSIGNED_FROM_CUSTOMER, ADDED_COMMENT, UPDATED_COMMENT, DELETED_COMMENT ->
+                        convertEntityEventToUplink(tenantId, cloudEvent);
+                case ATTRIBUTES_UPDATED, POST_ATTRIBUTES, ATTRIBUTES_DELETED, TIMESERIES_UPDATED ->
+                        telemetryProcessor.convertTelemetryEventToUplink(tenantId, cloudEvent);
+                case ATTRIBUTES_REQUEST -> telemetryProcessor.convertAttributesRequestEventToUplink(cloudEvent);
+                case RELATION_REQUEST -> relationProcessor.convertRelationRequestEventToUplink(cloudEvent);
+                case RPC_CALL -> deviceProcessor.convertRpcCallEventToUplink(cloudEvent);
+                case WIDGET_BUNDLE_TYPES_REQUEST -> widgetBundleProcessor.convertWidgetBundleTypesRequestEventToUplink(cloudEvent);
+                case ENTITY_VIEW_REQUEST -> entityViewProcessor.convertEntityViewRequestEventToUplink(cloudEvent);
+                default -> null;
+            };
+        } catch (Exception e) {
+            log.error("Exception during converting events from queue, skipping event [{}]", cloudEvent, e);
+            return null;
         }
-        return result;
     }
 
     private UplinkMsg convertEntityEventToUplink(TenantId tenantId, CloudEvent cloudEvent) {
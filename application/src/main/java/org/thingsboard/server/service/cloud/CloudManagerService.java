@@ -41,10 +41,6 @@ import org.thingsboard.server.common.data.edge.EdgeSettings;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.EdgeId;
 import org.thingsboard.server.common.data.id.TenantId;
-import org.thingsboard.server.common.data.kv.AttributeKvEntry;
-import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
-import org.thingsboard.server.common.data.kv.LongDataEntry;
-import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.cloud.CloudEventService;
 import org.thingsboard.server.dao.edge.EdgeService;
 import org.thingsboard.server.gen.edge.v1.DownlinkMsg;
@@ -59,7 +55,6 @@ import org.thingsboard.server.service.state.DefaultDeviceStateService;
 import org.thingsboard.server.service.telemetry.TelemetrySubscriptionService;
 
 import javax.annotation.PreDestroy;
-import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
@@ -73,12 +68,6 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class CloudManagerService {
 
-    private static final String QUEUE_START_TS_ATTR_KEY = "queueStartTs";
-    private static final String QUEUE_SEQ_ID_OFFSET_ATTR_KEY = "queueSeqIdOffset";
-    private static final String QUEUE_TS_KV_START_TS_ATTR_KEY = "queueTsKvStartTs";
-    private static final String QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY = "queueTsKvSeqIdOffset";
-
-
     @Value("${cloud.routingKey}")
     private String routingKey;
 
@@ -91,9 +80,6 @@ public class CloudManagerService {
     @Autowired
     private EdgeService edgeService;
 
-    @Autowired
-    private AttributesService attributesService;
-
     @Autowired
     protected TelemetrySubscriptionService tsSubService;
 
@@ -110,7 +96,10 @@ public class CloudManagerService {
     private TsUplinkMessageService tsUplinkMessageService;
 
     @Autowired
-    private DownlinkMessageService downlinkMessageService;
+    private DownlinkMsgDispatcher downlinkMsgDispatcher;
+
+    @Autowired
+    private CloudSyncBulkWriter cloudSyncBulkWriter;
 
     @Autowired
     private EdgeRpcClient edgeRpcClient;
@@ -140,7 +129,8 @@ public class CloudManagerService {
     private Long queueStartTs;
 
 
-    private ExecutorService executor;
+    private ExecutorService generalUplinkExecutor;
+    private ExecutorService tsUplinkExecutor;
     private ScheduledExecutorService reconnectScheduler;
     private ScheduledFuture<?> scheduledFuture;
     private ScheduledExecutorService shutdownExecutor;
@@ -161,9 +151,11 @@ public class CloudManagerService {
                     this::onEdgeUpdate,
                     this::onDownlink,
                     this::scheduleReconnect);
-            executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-manager"));
+            generalUplinkExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-manager-general"));
+            tsUplinkExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-manager-ts"));
             reconnectScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("cloud-manager-reconnect"));
-            processHandleMessages();
+            processHandleMessages(generalUplinkExecutor, generalUplinkMessageService);
+            processHandleMessages(tsUplinkExecutor, tsUplinkMessageService);
         }
     }
 
@@ -195,8 +187,11 @@ public class CloudManagerService {
         } catch (Exception e) {
             log.error("Exception during disconnect", e);
         }
-        if (executor != null) {
-            executor.shutdownNow();
+        if (generalUplinkExecutor != null) {
+            generalUplinkExecutor.shutdownNow();
+        }
+        if (tsUplinkExecutor != null) {
+            tsUplinkExecutor.shutdownNow();
         }
         if (reconnectScheduler != null) {
             reconnectScheduler.shutdownNow();
@@ -204,13 +199,12 @@ public class CloudManagerService {
         log.info("[{}] Destroy was successful", edgeId);
     }
 
-    private void processHandleMessages() {
+    private void processHandleMessages(ExecutorService executor, UplinkMessageService uplinkMessageService) {
         executor.submit(() -> {
             while (!Thread.interrupted()) {
                 try {
                     if (initialized) {
-                        generalUplinkMessageService.processHandleMessages(tenantId);
-                        tsUplinkMessageService.processHandleMessages(tenantId);
+                        uplinkMessageService.processHandleMessages(tenantId);
                         try {
                             Thread.sleep(cloudEventStorageSettings.getNoRecordsSleepInterval());
                         } catch (InterruptedException e) {
@@ -227,14 +221,6 @@ public class CloudManagerService {
     }
 
 
-    private void updateQueueStartTsSeqIdOffset(String attrStartTsKey, String attrSeqIdKey, Long startTs, Long seqIdOffset) {
-        log.trace("updateQueueStartTsSeqIdOffset [{}][{}]", startTs, seqIdOffset);
-        List<AttributeKvEntry> attributes = Arrays.asList(
-                new BaseAttributeKvEntry(new LongDataEntry(attrStartTsKey, startTs), System.currentTimeMillis()),
-                new BaseAttributeKvEntry(new LongDataEntry(attrSeqIdKey, seqIdOffset), System.currentTimeMillis()));
-        attributesService.save(tenantId, tenantId, AttributeScope.SERVER_SCOPE, attributes);
-    }
-
     private void onUplinkResponse(UplinkResponseMsg msg) {
         generalUplinkMessageService.onUplinkResponse(msg);
         tsUplinkMessageService.onUplinkResponse(msg);
@@ -274,13 +260,13 @@ public class CloudManagerService {
         if (this.currentEdgeSettings == null || !this.currentEdgeSettings.getEdgeId().equals(newEdgeSettings.getEdgeId())) {
             tenantProcessor.cleanUp();
             this.currentEdgeSettings = newEdgeSettings;
-            updateQueueStartTsSeqIdOffset(QUEUE_START_TS_ATTR_KEY, QUEUE_SEQ_ID_OFFSET_ATTR_KEY, System.currentTimeMillis(), 0L);
-            updateQueueStartTsSeqIdOffset(QUEUE_TS_KV_START_TS_ATTR_KEY, QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY, System.currentTimeMillis(), 0L);
+            generalUplinkMessageService.resetQueueOffset(tenantId, System.currentTimeMillis());
+            tsUplinkMessageService.resetQueueOffset(tenantId, System.currentTimeMillis());
         } else {
             log.trace("Using edge settings from DB {}", this.currentEdgeSettings);
         }
 
-        queueStartTs = generalUplinkMessageService.getQueueStartTs(tenantId).get();
+        queueStartTs = generalUplinkMessageService.getQueueStartTs(tenantId);
         tenantProcessor.createTenantIfNotExists(this.tenantId, queueStartTs);
         boolean edgeCustomerIdUpdated = setOrUpdateCustomerId(edgeConfiguration);
         if (edgeCustomerIdUpdated) {
@@ -290,6 +276,7 @@ public class CloudManagerService {
         log.trace("Sending sync request, fullSyncRequired {}", this.currentEdgeSettings.isFullSyncRequired());
         edgeRpcClient.sendSyncRequestMsg(this.currentEdgeSettings.isFullSyncRequired());
         this.syncInProgress = true;
+        cloudSyncBulkWriter.setSyncInProgress(true);
 
         cloudEventService.saveEdgeSettings(tenantId, this.currentEdgeSettings);
 
@@ -347,9 +334,10 @@ public class CloudManagerService {
         if (this.syncInProgress && downlinkMsg.hasSyncCompletedMsg()) {
             log.trace("[{}] downlinkMsg hasSyncCompletedMsg = true", downlinkMsg);
             this.syncInProgress = false;
+            cloudSyncBulkWriter.setSyncInProgress(false);
         }
         ListenableFuture<List<Void>> future =
-                downlinkMessageService.processDownlinkMsg(tenantId, customerId, downlinkMsg, this.currentEdgeSettings, queueStartTs);
+                downlinkMsgDispatcher.dispatch(tenantId, customerId, downlinkMsg, this.currentEdgeSettings, queueStartTs);
         Futures.addCallback(future, new FutureCallback<>() {
             @Override
             public void onSuccess(@Nullable List<Void> result) {
@@ -363,6 +351,7 @@ public class CloudManagerService {
                         log.info("Edge customer id has been updated. Sending sync request...");
                         edgeRpcClient.sendSyncRequestMsg(false);
                         syncInProgress = true;
+                        cloudSyncBulkWriter.setSyncInProgress(true);
                     }
                 }
             }
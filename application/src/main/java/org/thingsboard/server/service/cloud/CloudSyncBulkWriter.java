@@ -0,0 +1,388 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.cache.TbTransactionalCache;
+import org.thingsboard.server.cache.device.DeviceCacheKey;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.BaseData;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.HasName;
+import org.thingsboard.server.common.data.HasTenantId;
+import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.asset.Asset;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.id.UUIDBased;
+import org.thingsboard.server.common.data.plugin.ComponentLifecycleEvent;
+import org.thingsboard.server.dao.asset.AssetCacheKey;
+import org.thingsboard.server.dao.entity.EntityCountService;
+import org.thingsboard.server.dao.service.DataValidator;
+import org.thingsboard.server.dao.service.validator.AssetDataValidator;
+import org.thingsboard.server.dao.service.validator.DeviceDataValidator;
+import org.thingsboard.server.dao.sql.cloud.CloudSyncBulkRepository;
+import org.thingsboard.server.service.edge.rpc.processor.BaseEdgeProcessor;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Applies the devices and assets received from the cloud during the full sync in batches.
+ * New entities are validated, collected per type and written with a single batched upsert under the entity creation lock,
+ * caches are evicted and entity counts are invalidated once per batch. Entities that already exist on the edge, entities that
+ * fail the validation, or a batch that fails as a whole, are applied one by one through the regular save path, so they keep
+ * the validation and notifications of the service layer.
+ * A batch is written when it is full, when it is idle for the linger time, when it would contain the same entity twice
+ * or when the sync is completed. All batches are written by a single thread in the order they are closed, the regular save path
+ * runs on separate threads sharded by entity id, so the updates of the same entity are still applied in order.
+ */
+@Slf4j
+@Service
+public class CloudSyncBulkWriter {
+
+    @Value("${cloud.sync_bulk.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cloud.sync_bulk.batch_size:500}")
+    private int batchSize;
+
+    @Value("${cloud.sync_bulk.linger_ms:50}")
+    private long lingerMs;
+
+    @Value("${cloud.sync_bulk.fallback_threads:4}")
+    private int fallbackThreads;
+
+    @Autowired
+    private CloudSyncBulkRepository bulkRepository;
+
+    @Autowired
+    private TbTransactionalCache<DeviceCacheKey, Device> deviceCache;
+
+    @Autowired
+    private TbTransactionalCache<AssetCacheKey, Asset> assetCache;
+
+    @Autowired
+    private EntityCountService countService;
+
+    @Autowired
+    private TbClusterService tbClusterService;
+
+    @Autowired
+    private DeviceDataValidator deviceValidator;
+
+    @Autowired
+    private AssetDataValidator assetValidator;
+
+    private volatile boolean syncInProgress;
+
+    private ScheduledExecutorService executor;
+    private ListeningExecutorService[] fallbackShards;
+    private final ConcurrentMap<UUID, Integer> fallbackInProgress = new ConcurrentHashMap<>();
+    private EntityBatch<DeviceId, Device> devices;
+    private EntityBatch<AssetId, Asset> assets;
+
+    @PostConstruct
+    public void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("cloud-sync-bulk-writer"));
+        fallbackShards = new ListeningExecutorService[Math.max(1, fallbackThreads)];
+        for (int i = 0; i < fallbackShards.length; i++) {
+            fallbackShards[i] = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-sync-bulk-fallback-" + i)));
+        }
+        devices = new EntityBatch<>(EntityType.DEVICE, "device", Device::setName, deviceValidator, BaseEdgeProcessor.deviceCreationLock,
+                bulkRepository::upsertDevices, this::onDevicesCreated);
+        assets = new EntityBatch<>(EntityType.ASSET, "asset", Asset::setName, assetValidator, BaseEdgeProcessor.assetCreationLock,
+                bulkRepository::upsertAssets, this::onAssetsCreated);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (fallbackShards != null) {
+            for (ListeningExecutorService shard : fallbackShards) {
+                shard.shutdownNow();
+            }
+        }
+    }
+
+    public void setSyncInProgress(boolean syncInProgress) {
+        this.syncInProgress = syncInProgress;
+        if (!syncInProgress && executor != null) {
+            devices.flush();
+            assets.flush();
+        }
+    }
+
+    /**
+     * @return {@code true} if the update of the device has to be applied through this writer
+     */
+    public boolean isBulkDevice(UUID deviceId) {
+        return enabled && (syncInProgress || devices.isPending(deviceId));
+    }
+
+    /**
+     * @return {@code true} if the update of the asset has to be applied through this writer
+     */
+    public boolean isBulkAsset(UUID assetId) {
+        return enabled && (syncInProgress || assets.isPending(assetId));
+    }
+
+    /**
+     * @param fallback  applies the device through the regular save path if it already exists or the batch fails
+     * @param onCreated invoked after the device is created in bulk, with {@code true} if the device is renamed because of a name conflict
+     */
+    public ListenableFuture<Void> addDevice(Device device, Runnable fallback, Consumer<Boolean> onCreated) {
+        return devices.add(device, fallback, onCreated);
+    }
+
+    /**
+     * @param fallback  applies the asset through the regular save path if it already exists or the batch fails
+     * @param onCreated invoked after the asset is created in bulk, with {@code true} if the asset is renamed because of a name conflict
+     */
+    public ListenableFuture<Void> addAsset(Asset asset, Runnable fallback, Consumer<Boolean> onCreated) {
+        return assets.add(asset, fallback, onCreated);
+    }
+
+    private void onDevicesCreated(List<Device> saved) {
+        List<DeviceCacheKey> keys = new ArrayList<>(saved.size() * 3);
+        for (Device device : saved) {
+            keys.add(new DeviceCacheKey(device.getTenantId(), device.getName()));
+            keys.add(new DeviceCacheKey(device.getId()));
+            keys.add(new DeviceCacheKey(device.getTenantId(), device.getId()));
+        }
+        deviceCache.evict(keys);
+        for (Device device : saved) {
+            tbClusterService.onDeviceUpdated(device, null);
+        }
+    }
+
+    private void onAssetsCreated(List<Asset> saved) {
+        // unlike devices, assets are cached only by tenant and name, the same keys the regular save path evicts
+        List<AssetCacheKey> keys = new ArrayList<>(saved.size());
+        for (Asset asset : saved) {
+            keys.add(new AssetCacheKey(asset.getTenantId(), asset.getName()));
+        }
+        assetCache.evict(keys);
+        for (Asset asset : saved) {
+            tbClusterService.broadcastEntityStateChangeEvent(asset.getTenantId(), asset.getId(), ComponentLifecycleEvent.CREATED);
+        }
+    }
+
+    private class EntityBatch<I extends UUIDBased & EntityId, T extends BaseData<I> & HasTenantId & HasName> {
+
+        private final EntityType entityType;
+        private final String table;
+        private final BiConsumer<T, String> nameSetter;
+        private final DataValidator<T> validator;
+        private final Lock creationLock;
+        private final Consumer<List<T>> upserter;
+        private final Consumer<List<T>> postProcessor;
+
+        private Map<UUID, PendingEntity<T>> pending = new LinkedHashMap<>();
+        private boolean lingerScheduled;
+
+        private EntityBatch(EntityType entityType, String table, BiConsumer<T, String> nameSetter, DataValidator<T> validator,
+                            Lock creationLock, Consumer<List<T>> upserter, Consumer<List<T>> postProcessor) {
+            this.entityType = entityType;
+            this.table = table;
+            this.nameSetter = nameSetter;
+            this.validator = validator;
+            this.creationLock = creationLock;
+            this.upserter = upserter;
+            this.postProcessor = postProcessor;
+        }
+
+        synchronized boolean isPending(UUID id) {
+            return pending.containsKey(id);
+        }
+
+        synchronized ListenableFuture<Void> add(T entity, Runnable fallback, Consumer<Boolean> onCreated) {
+            if (pending.containsKey(entity.getUuidId())) {
+                flush();
+            }
+            PendingEntity<T> pendingEntity = new PendingEntity<>(entity, fallback, onCreated);
+            pending.put(entity.getUuidId(), pendingEntity);
+            if (pending.size() >= batchSize) {
+                flush();
+            } else if (!lingerScheduled) {
+                lingerScheduled = true;
+                executor.schedule(this::flush, lingerMs, TimeUnit.MILLISECONDS);
+            }
+            return pendingEntity.future;
+        }
+
+        synchronized void flush() {
+            lingerScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            Collection<PendingEntity<T>> batch = pending.values();
+            pending = new LinkedHashMap<>();
+            executor.execute(() -> write(batch));
+        }
+
+        private void write(Collection<PendingEntity<T>> batch) {
+            List<PendingEntity<T>> created = new ArrayList<>(batch.size());
+            List<PendingEntity<T>> fallback = new ArrayList<>();
+            try {
+                Set<UUID> existingIds = bulkRepository.findExistingIds(table, batch.stream().map(e -> e.entity.getUuidId()).toList());
+                for (PendingEntity<T> pendingEntity : batch) {
+                    UUID id = pendingEntity.entity.getUuidId();
+                    // an entity with a previous update still in the regular save path follows it there to keep the order
+                    boolean isNew = !existingIds.contains(id) && !fallbackInProgress.containsKey(id) && isValid(pendingEntity.entity);
+                    (isNew ? created : fallback).add(pendingEntity);
+                }
+                if (!created.isEmpty()) {
+                    creationLock.lock();
+                    try {
+                        resolveNameConflicts(created);
+                        upserter.accept(created.stream().map(e -> e.entity).toList());
+                    } finally {
+                        creationLock.unlock();
+                    }
+                    log.debug("Created {} {} entities in bulk", created.size(), entityType);
+                }
+            } catch (Exception e) {
+                log.warn("Failed to create {} {} entities in bulk, applying them one by one", created.size(), entityType, e);
+                fallback.addAll(created);
+                created.clear();
+            }
+            if (!created.isEmpty()) {
+                afterCreate(created);
+            }
+            fallback.forEach(this::applyFallback);
+        }
+
+        private boolean isValid(T entity) {
+            I id = entity.getId();
+            try {
+                entity.setId(null);
+                validator.validate(entity, HasTenantId::getTenantId);
+                return true;
+            } catch (Exception e) {
+                log.debug("[{}] {} is invalid, applying it one by one", id, entityType, e);
+                return false;
+            } finally {
+                entity.setId(id);
+            }
+        }
+
+        private void afterCreate(List<PendingEntity<T>> created) {
+            // the entities are already stored, failures below must not send them to the regular save path again
+            try {
+                postProcessor.accept(created.stream().map(e -> e.entity).toList());
+            } catch (Exception e) {
+                log.warn("Failed to evict caches and notify about {} created {} entities", created.size(), entityType, e);
+            }
+            try {
+                created.stream().map(e -> e.entity.getTenantId()).distinct()
+                        .forEach(tenantId -> countService.publishCountEntityEvictEvent(tenantId, entityType));
+            } catch (Exception e) {
+                log.warn("Failed to evict {} counts", entityType, e);
+            }
+            for (PendingEntity<T> pendingEntity : created) {
+                try {
+                    pendingEntity.onCreated.accept(pendingEntity.nameUpdated);
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to process created {}", pendingEntity.entity.getId(), entityType, e);
+                }
+                pendingEntity.future.set(null);
+            }
+        }
+
+        private void applyFallback(PendingEntity<T> pendingEntity) {
+            UUID id = pendingEntity.entity.getUuidId();
+            fallbackInProgress.merge(id, 1, Integer::sum);
+            fallbackShards[Math.floorMod(id.hashCode(), fallbackShards.length)].execute(() -> {
+                try {
+                    pendingEntity.fallback.run();
+                    pendingEntity.future.set(null);
+                } catch (Throwable e) {
+                    pendingEntity.future.setException(e);
+                } finally {
+                    fallbackInProgress.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+                }
+            });
+        }
+
+        private void resolveNameConflicts(List<PendingEntity<T>> created) {
+            Map<TenantId, List<PendingEntity<T>>> byTenant = new HashMap<>();
+            for (PendingEntity<T> pendingEntity : created) {
+                byTenant.computeIfAbsent(pendingEntity.entity.getTenantId(), id -> new ArrayList<>()).add(pendingEntity);
+            }
+            byTenant.forEach((tenantId, entities) -> {
+                Set<String> usedNames = new HashSet<>(bulkRepository.findExistingNames(table, tenantId,
+                        entities.stream().map(e -> e.entity.getName()).distinct().toList()));
+                for (PendingEntity<T> pendingEntity : entities) {
+                    String name = pendingEntity.entity.getName();
+                    if (!usedNames.add(name)) {
+                        String newName = name + "_" + StringUtils.randomAlphanumeric(15);
+                        log.warn("[{}] {} with name {} already exists. Renaming {} name to {}", tenantId, entityType, name, entityType, newName);
+                        nameSetter.accept(pendingEntity.entity, newName);
+                        pendingEntity.nameUpdated = true;
+                        usedNames.add(newName);
+                    }
+                }
+            });
+        }
+    }
+
+    private static class PendingEntity<T> {
+
+        private final T entity;
+        private final Runnable fallback;
+        private final Consumer<Boolean> onCreated;
+        private final SettableFuture<Void> future = SettableFuture.create();
+        private boolean nameUpdated;
+
+        private PendingEntity(T entity, Runnable fallback, Consumer<Boolean> onCreated) {
+            this.entity = entity;
+            this.fallback = fallback;
+            this.onCreated = onCreated;
+        }
+    }
+
+}
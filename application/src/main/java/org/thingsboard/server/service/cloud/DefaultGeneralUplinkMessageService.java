@@ -15,48 +15,63 @@
  */
 package org.thingsboard.server.service.cloud;
 
-import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.id.TenantId;
-import org.thingsboard.server.common.data.page.PageData;
-import org.thingsboard.server.common.data.page.TimePageLink;
+
+import java.util.List;
 
 @Slf4j
 @Service
 public class DefaultGeneralUplinkMessageService extends BaseUplinkMessageService implements GeneralUplinkMessageService {
 
     private static final String QUEUE_START_TS_ATTR_KEY = "queueStartTs";
+    private static final String QUEUE_SEQ_ID_OFFSET_ATTR_KEY = "queueSeqIdOffset";
+
+    @Value("${cloud.uplink_max_in_flight_msgs:100}")
+    private int maxInFlightMsgs;
+
+    @Override
+    protected List<CloudEvent> findCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit) {
+        return cloudEventService.findCloudEventsAfter(tenantId, offset, limit);
+    }
+
+    @Override
+    protected CloudEventOffset findQueueOffset(TenantId tenantId) {
+        return cloudEventService.findCloudEventOffset(tenantId);
+    }
 
     @Override
-    protected PageData<CloudEvent> findCloudEvents(TenantId tenantId, Long seqIdStart, Long seqIdEnd, TimePageLink pageLink) {
-        return cloudEventService.findCloudEvents(tenantId, seqIdStart, seqIdEnd, pageLink);
+    protected void saveQueueOffset(TenantId tenantId, CloudEventOffset offset) {
+        cloudEventService.saveCloudEventOffset(tenantId, offset);
     }
 
     @Override
-    protected String getTableName() {
-        return "cloud_event";
+    protected UplinkLane getLane() {
+        return UplinkLane.GENERAL;
     }
 
     @Override
-    protected boolean newMessagesAvailableInGeneralQueue(TenantId tenantId) {
-        return false;
+    protected int getMaxInFlightMsgs() {
+        return maxInFlightMsgs;
     }
 
     @Override
-    protected void updateQueueStartTsSeqIdOffset(TenantId tenantId, Long newStartTs, Long newSeqId) {
-        updateQueueStartTsSeqIdOffset(tenantId, QUEUE_START_TS_ATTR_KEY, QUEUE_SEQ_ID_OFFSET_ATTR_KEY, newStartTs, newSeqId);
+    protected String getQueueStartTsAttrKey() {
+        return QUEUE_START_TS_ATTR_KEY;
     }
 
     @Override
-    public ListenableFuture<Long> getQueueStartTs(TenantId tenantId) {
-        return getLongAttrByKey(tenantId, QUEUE_START_TS_ATTR_KEY);
+    protected String getQueueSeqIdOffsetAttrKey() {
+        return QUEUE_SEQ_ID_OFFSET_ATTR_KEY;
     }
 
     @Override
-    protected ListenableFuture<Long> getQueueSeqIdStart(TenantId tenantId) {
-        return getLongAttrByKey(tenantId, QUEUE_SEQ_ID_OFFSET_ATTR_KEY);
+    public long getQueueStartTs(TenantId tenantId) throws Exception {
+        return getQueueOffset(tenantId).getCreatedTime();
     }
 
 }
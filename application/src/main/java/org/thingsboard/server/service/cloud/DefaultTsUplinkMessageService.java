@@ -15,14 +15,14 @@
  */
 package org.thingsboard.server.service.cloud;
 
-import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.id.TenantId;
-import org.thingsboard.server.common.data.page.PageData;
-import org.thingsboard.server.common.data.page.TimePageLink;
+
+import java.util.List;
 
 @Slf4j
 @Service
@@ -31,43 +31,42 @@ public class DefaultTsUplinkMessageService extends BaseUplinkMessageService impl
     private static final String QUEUE_TS_KV_START_TS_ATTR_KEY = "queueTsKvStartTs";
     private static final String QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY = "queueTsKvSeqIdOffset";
 
-    @Autowired
-    private GeneralUplinkMessageService generalUplinkMessageService;
+    @Value("${cloud.uplink_ts_max_in_flight_msgs:100}")
+    private int maxInFlightMsgs;
+
+    @Override
+    protected List<CloudEvent> findCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit) {
+        return cloudEventService.findTsKvCloudEventsAfter(tenantId, offset, limit);
+    }
 
     @Override
-    protected PageData<CloudEvent> findCloudEvents(TenantId tenantId, Long seqIdStart, Long seqIdEnd, TimePageLink pageLink) {
-        return cloudEventService.findTsKvCloudEvents(tenantId, seqIdStart, seqIdEnd, pageLink);
+    protected CloudEventOffset findQueueOffset(TenantId tenantId) {
+        return cloudEventService.findTsKvCloudEventOffset(tenantId);
     }
 
     @Override
-    protected String getTableName() {
-        return "ts_kv_cloud_event";
+    protected void saveQueueOffset(TenantId tenantId, CloudEventOffset offset) {
+        cloudEventService.saveTsKvCloudEventOffset(tenantId, offset);
     }
 
     @Override
-    protected boolean newMessagesAvailableInGeneralQueue(TenantId tenantId) {
-        try {
-            Long cloudEventsQueueSeqIdStart = getLongAttrByKey(tenantId, QUEUE_SEQ_ID_OFFSET_ATTR_KEY).get();
-            TimePageLink cloudEventsPageLink = generalUplinkMessageService.newCloudEventsAvailable(tenantId, cloudEventsQueueSeqIdStart);
-            return cloudEventsPageLink != null;
-        } catch (Exception e) {
-            return false;
-        }
+    protected UplinkLane getLane() {
+        return UplinkLane.TS;
     }
 
     @Override
-    protected void updateQueueStartTsSeqIdOffset(TenantId tenantId, Long newStartTs, Long newSeqId) {
-        updateQueueStartTsSeqIdOffset(tenantId, QUEUE_TS_KV_START_TS_ATTR_KEY, QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY, newStartTs, newSeqId);
+    protected int getMaxInFlightMsgs() {
+        return maxInFlightMsgs;
     }
 
     @Override
-    protected ListenableFuture<Long> getQueueStartTs(TenantId tenantId) {
-        return getLongAttrByKey(tenantId, QUEUE_TS_KV_START_TS_ATTR_KEY);
+    protected String getQueueStartTsAttrKey() {
+        return QUEUE_TS_KV_START_TS_ATTR_KEY;
     }
 
     @Override
-    protected ListenableFuture<Long> getQueueSeqIdStart(TenantId tenantId) {
-        return getLongAttrByKey(tenantId, QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY);
+    protected String getQueueSeqIdOffsetAttrKey() {
+        return QUEUE_TS_KV_SEQ_ID_OFFSET_ATTR_KEY;
     }
 
 }
@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.edge.EdgeSettings;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.edge.v1.AlarmCommentUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.AlarmUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.AssetUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DashboardUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DeviceCredentialsRequestMsg;
+import org.thingsboard.server.gen.edge.v1.DeviceCredentialsUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DeviceRpcCallMsg;
+import org.thingsboard.server.gen.edge.v1.DeviceUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DownlinkMsg;
+import org.thingsboard.server.gen.edge.v1.EntityDataProto;
+import org.thingsboard.server.gen.edge.v1.EntityViewUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.RelationUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.WidgetTypeUpdateMsg;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+
+/**
+ * Processes downlink messages of the cloud in parallel while preserving the order the cloud relies on.
+ * A downlink message carrying a single entity of a shardable type is processed on the shard of its entity id, so updates of the
+ * same entity are applied in order and independent entities are applied concurrently. A run of consecutive messages of the same
+ * type forms a group, the next group starts only when the previous one is completed, so dependent types (profiles before devices,
+ * devices before credentials, rule chains before metadata) are applied in the order they arrive. All other messages are processed
+ * exclusively, after the previous group and before the next one.
+ * Messages are dispatched by the single gRPC thread of the downlink stream.
+ */
+@Slf4j
+@Service
+public class DownlinkMsgDispatcher {
+
+    private static final int NO_GROUP = -1;
+    private static final int GROUP_PRUNE_THRESHOLD = 1000;
+
+    private static final Set<Integer> SHARDED_FIELDS = Set.of(
+            DownlinkMsg.ENTITYDATA_FIELD_NUMBER,
+            DownlinkMsg.DEVICECREDENTIALSREQUESTMSG_FIELD_NUMBER,
+            DownlinkMsg.DEVICEUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.DEVICECREDENTIALSUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.DASHBOARDUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.ASSETUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.ENTITYVIEWUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.ALARMUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.RELATIONUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.WIDGETTYPEUPDATEMSG_FIELD_NUMBER,
+            DownlinkMsg.DEVICERPCCALLMSG_FIELD_NUMBER,
+            DownlinkMsg.ALARMCOMMENTUPDATEMSG_FIELD_NUMBER);
+
+    @Value("${cloud.downlink_parallel.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cloud.downlink_parallel.shards:0}")
+    private int shardsCount;
+
+    @Autowired
+    private DownlinkMessageService downlinkMessageService;
+
+    private ListeningExecutorService[] shards;
+
+    private final List<ListenableFuture<?>> currentGroupFutures = new ArrayList<>();
+    private ListenableFuture<?> barrier = Futures.immediateVoidFuture();
+    private int currentGroup = NO_GROUP;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        int count = shardsCount > 0 ? shardsCount : Runtime.getRuntime().availableProcessors();
+        shards = new ListeningExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-downlink-" + i)));
+        }
+        log.info("Parallel downlink processing enabled with {} shards", count);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (shards != null) {
+            for (ListeningExecutorService shard : shards) {
+                shard.shutdownNow();
+            }
+        }
+    }
+
+    public synchronized ListenableFuture<List<Void>> dispatch(TenantId tenantId, CustomerId edgeCustomerId, DownlinkMsg downlinkMsg,
+                                                              EdgeSettings currentEdgeSettings, Long queueStartTs) {
+        if (!enabled) {
+            return downlinkMessageService.processDownlinkMsg(tenantId, edgeCustomerId, downlinkMsg, currentEdgeSettings, queueStartTs);
+        }
+        int group = NO_GROUP;
+        UUID entityId = null;
+        FieldDescriptor shardedField = getShardedField(downlinkMsg);
+        if (shardedField != null) {
+            entityId = getEntityId((Message) downlinkMsg.getRepeatedField(shardedField, 0));
+            if (entityId != null) {
+                group = shardedField.getNumber();
+            }
+        }
+        if (group == NO_GROUP || group != currentGroup) {
+            closeCurrentGroup();
+        }
+        ListeningExecutorService shard = entityId != null ? shards[Math.floorMod(entityId.hashCode(), shards.length)] : shards[0];
+        ListenableFuture<List<Void>> future = Futures.transformAsync(barrier,
+                ignored -> downlinkMessageService.processDownlinkMsg(tenantId, edgeCustomerId, downlinkMsg, currentEdgeSettings, queueStartTs),
+                shard);
+        currentGroupFutures.add(future);
+        if (group == NO_GROUP) {
+            closeCurrentGroup();
+        } else {
+            currentGroup = group;
+            if (currentGroupFutures.size() > GROUP_PRUNE_THRESHOLD) {
+                currentGroupFutures.removeIf(ListenableFuture::isDone);
+            }
+        }
+        return future;
+    }
+
+    private void closeCurrentGroup() {
+        if (!currentGroupFutures.isEmpty()) {
+            // the next group waits for the whole current one, a failed message must not block it
+            barrier = Futures.successfulAsList(new ArrayList<>(currentGroupFutures));
+            currentGroupFutures.clear();
+        }
+        currentGroup = NO_GROUP;
+    }
+
+    /**
+     * @return the only field of the message if it is a shardable list holding exactly one entity, {@code null} otherwise
+     */
+    private FieldDescriptor getShardedField(DownlinkMsg downlinkMsg) {
+        FieldDescriptor result = null;
+        for (Map.Entry<FieldDescriptor, Object> entry : downlinkMsg.getAllFields().entrySet()) {
+            FieldDescriptor field = entry.getKey();
+            if (field.getNumber() == DownlinkMsg.DOWNLINKMSGID_FIELD_NUMBER) {
+                continue;
+            }
+            if (result != null || !SHARDED_FIELDS.contains(field.getNumber())) {
+                return null;
+            }
+            result = field;
+        }
+        return result != null && downlinkMsg.getRepeatedFieldCount(result) == 1 ? result : null;
+    }
+
+    private UUID getEntityId(Message msg) {
+        UUID entityId;
+        if (msg instanceof EntityDataProto entityData) {
+            entityId = new UUID(entityData.getEntityIdMSB(), entityData.getEntityIdLSB());
+        } else if (msg instanceof DeviceCredentialsRequestMsg credentialsRequestMsg) {
+            entityId = new UUID(credentialsRequestMsg.getDeviceIdMSB(), credentialsRequestMsg.getDeviceIdLSB());
+        } else if (msg instanceof DeviceRpcCallMsg rpcCallMsg) {
+            entityId = new UUID(rpcCallMsg.getDeviceIdMSB(), rpcCallMsg.getDeviceIdLSB());
+        } else if (msg instanceof DeviceUpdateMsg deviceUpdateMsg) {
+            entityId = new UUID(deviceUpdateMsg.getIdMSB(), deviceUpdateMsg.getIdLSB());
+        } else if (msg instanceof AssetUpdateMsg assetUpdateMsg) {
+            entityId = new UUID(assetUpdateMsg.getIdMSB(), assetUpdateMsg.getIdLSB());
+        } else if (msg instanceof EntityViewUpdateMsg entityViewUpdateMsg) {
+            entityId = new UUID(entityViewUpdateMsg.getIdMSB(), entityViewUpdateMsg.getIdLSB());
+        } else if (msg instanceof DashboardUpdateMsg dashboardUpdateMsg) {
+            entityId = new UUID(dashboardUpdateMsg.getIdMSB(), dashboardUpdateMsg.getIdLSB());
+        } else if (msg instanceof AlarmUpdateMsg alarmUpdateMsg) {
+            entityId = new UUID(alarmUpdateMsg.getIdMSB(), alarmUpdateMsg.getIdLSB());
+        } else if (msg instanceof WidgetTypeUpdateMsg widgetTypeUpdateMsg) {
+            entityId = new UUID(widgetTypeUpdateMsg.getIdMSB(), widgetTypeUpdateMsg.getIdLSB());
+        } else if (msg instanceof DeviceCredentialsUpdateMsg credentialsUpdateMsg) {
+            entityId = getEntityIdFromJson(credentialsUpdateMsg.getEntity(), "deviceId");
+        } else if (msg instanceof RelationUpdateMsg relationUpdateMsg) {
+            entityId = getEntityIdFromJson(relationUpdateMsg.getEntity(), "from");
+        } else if (msg instanceof AlarmCommentUpdateMsg alarmCommentUpdateMsg) {
+            entityId = getEntityIdFromJson(alarmCommentUpdateMsg.getEntity(), "alarmId");
+        } else {
+            entityId = null;
+        }
+        return entityId == null || EntityId.NULL_UUID.equals(entityId) ? null : entityId;
+    }
+
+    private UUID getEntityIdFromJson(String entity, String idField) {
+        try {
+            JsonNode id = JacksonUtil.toJsonNode(entity).get(idField);
+            return id != null && id.hasNonNull("id") ? UUID.fromString(id.get("id").asText()) : null;
+        } catch (Exception e) {
+            log.trace("Failed to resolve entity id of the downlink msg {}", entity, e);
+            return null;
+        }
+    }
+
+}
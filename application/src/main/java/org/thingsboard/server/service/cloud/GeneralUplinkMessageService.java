@@ -15,14 +15,10 @@
  */
 package org.thingsboard.server.service.cloud;
 
-import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.id.TenantId;
-import org.thingsboard.server.common.data.page.TimePageLink;
 
 public interface GeneralUplinkMessageService extends UplinkMessageService {
 
-    TimePageLink newCloudEventsAvailable(TenantId tenantId, Long queueSeqIdStart);
-
-    ListenableFuture<Long> getQueueStartTs(TenantId tenantId);
+    long getQueueStartTs(TenantId tenantId) throws Exception;
 
 }
@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adapts the uplink to the measured quality of the link to the cloud.
+ * <p>
+ * Every lane has its own limit of in-flight messages: it grows by one message per round trip while the round-trip time
+ * stays close to the lowest one observed, shrinks by 10% when the round-trip time grows beyond {@code rtt_congestion_factor}
+ * and by half when a message is lost or rejected. The batch size of the cloud event reader follows the limit.
+ * <p>
+ * The delivery rate of the link is sampled while the uplink is limited by the window, and messages are compressed
+ * only when the link is slower than {@code fast_link_bytes_per_sec} or its rate is not known yet.
+ */
+@Slf4j
+@Component
+public class UplinkFlowController {
+
+    private static final String STATS_KEY = StatsType.EDGE.getName() + ".uplink.";
+    private static final long MIN_RTT_WINDOW_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long RATE_SAMPLE_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final double EWMA_WEIGHT = 0.125;
+    private static final double CONGESTION_DECREASE_FACTOR = 0.9;
+    private static final double LOSS_DECREASE_FACTOR = 0.5;
+
+    private static final String COMPRESSION_GZIP = "gzip";
+    private static final String COMPRESSION_NONE = "none";
+
+    @Value("${cloud.uplink_adaptive.enabled:true}")
+    private boolean adaptiveEnabled;
+
+    @Value("${cloud.uplink_adaptive.min_in_flight_msgs:1}")
+    private int minInFlightMsgs;
+
+    @Value("${cloud.uplink_adaptive.min_batch_size:10}")
+    private int minBatchSize;
+
+    @Value("${cloud.uplink_adaptive.rtt_congestion_factor:2.0}")
+    private double rttCongestionFactor;
+
+    @Value("${cloud.rpc.compression.mode:adaptive}")
+    private String compressionMode;
+
+    @Value("${cloud.rpc.compression.min_msg_size:1024}")
+    private int compressionMinMsgSize;
+
+    @Value("${cloud.rpc.compression.fast_link_bytes_per_sec:1048576}")
+    private long fastLinkBytesPerSec;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    private final ConcurrentMap<UplinkLane, LaneState> lanes = new ConcurrentHashMap<>();
+
+    private AtomicLong smoothedRttGauge;
+    private AtomicLong deliveryRateGauge;
+    private AtomicInteger compressionGauge;
+
+    private long minRttMs;
+    private long minRttTs;
+    private long smoothedRttMs;
+    private long rateSampleStartTs;
+    private long rateSampleBytes;
+    private volatile boolean windowLimited;
+    private volatile long deliveryRate;
+
+    @PostConstruct
+    public void init() {
+        smoothedRttGauge = statsFactory.createGauge(STATS_KEY + "rttMs", new AtomicLong());
+        deliveryRateGauge = statsFactory.createGauge(STATS_KEY + "deliveryRate", new AtomicLong());
+        compressionGauge = statsFactory.createGauge(STATS_KEY + "compression", new AtomicInteger(COMPRESSION_NONE.equalsIgnoreCase(compressionMode) ? 0 : 1));
+    }
+
+    public void registerLane(UplinkLane lane, int maxInFlightMsgs, int maxBatchSize) {
+        lanes.computeIfAbsent(lane, l -> new LaneState(l, maxInFlightMsgs, maxBatchSize));
+    }
+
+    public int getMaxInFlightMsgs(UplinkLane lane) {
+        LaneState state = lanes.get(lane);
+        return adaptiveEnabled ? state.inFlightLimitGauge.get() : state.maxInFlightMsgs;
+    }
+
+    public int getBatchSize(UplinkLane lane) {
+        LaneState state = lanes.get(lane);
+        return adaptiveEnabled ? state.batchSizeGauge.get() : state.maxBatchSize;
+    }
+
+    public void onWindowFull() {
+        windowLimited = true;
+    }
+
+    /**
+     * @param rttMs round-trip time of the message, negative if the message was re-sent and its round-trip time is ambiguous
+     */
+    public synchronized void onAck(UplinkLane lane, long rttMs, int msgSize) {
+        long now = System.currentTimeMillis();
+        updateDeliveryRate(now, msgSize);
+        if (rttMs < 0) {
+            return;
+        }
+        if (minRttMs == 0 || rttMs <= minRttMs || now - minRttTs > MIN_RTT_WINDOW_MS) {
+            minRttMs = Math.max(1, rttMs);
+            minRttTs = now;
+        }
+        smoothedRttMs = smoothedRttMs == 0 ? rttMs : Math.round(smoothedRttMs + (rttMs - smoothedRttMs) * EWMA_WEIGHT);
+        smoothedRttGauge.set(smoothedRttMs);
+
+        LaneState state = lanes.get(lane);
+        if (rttMs > minRttMs * rttCongestionFactor) {
+            state.decrease(now, CONGESTION_DECREASE_FACTOR);
+        } else {
+            state.increase();
+        }
+    }
+
+    public synchronized void onLoss(UplinkLane lane) {
+        lanes.get(lane).decrease(System.currentTimeMillis(), LOSS_DECREASE_FACTOR);
+    }
+
+    public boolean isCompressionRequired(int msgSize) {
+        if (COMPRESSION_GZIP.equalsIgnoreCase(compressionMode)) {
+            return true;
+        } else if (COMPRESSION_NONE.equalsIgnoreCase(compressionMode)) {
+            return false;
+        }
+        return msgSize >= compressionMinMsgSize && isSlowLink();
+    }
+
+    private boolean isSlowLink() {
+        long rate = deliveryRate;
+        return rate == 0 || rate < fastLinkBytesPerSec;
+    }
+
+    private void updateDeliveryRate(long now, int msgSize) {
+        if (rateSampleStartTs == 0) {
+            rateSampleStartTs = now;
+        }
+        rateSampleBytes += msgSize;
+        long elapsed = now - rateSampleStartTs;
+        if (elapsed >= RATE_SAMPLE_INTERVAL_MS) {
+            // a sample of the uplink that is not limited by the window measures the edge load instead of the link
+            if (windowLimited) {
+                long rate = rateSampleBytes * 1000 / elapsed;
+                deliveryRate = deliveryRate == 0 ? rate : Math.round(deliveryRate + (rate - deliveryRate) * EWMA_WEIGHT);
+                deliveryRateGauge.set(deliveryRate);
+                compressionGauge.set(isSlowLink() ? 1 : 0);
+                log.trace("Uplink delivery rate [{}] bytes/sec, smoothed rtt [{}] ms", deliveryRate, smoothedRttMs);
+            }
+            rateSampleStartTs = now;
+            rateSampleBytes = 0;
+            windowLimited = false;
+        }
+    }
+
+    private class LaneState {
+
+        private final UplinkLane lane;
+        private final int maxInFlightMsgs;
+        private final int maxBatchSize;
+        private final AtomicInteger inFlightLimitGauge;
+        private final AtomicInteger batchSizeGauge;
+        private double inFlightLimit;
+        private long lastDecreaseTs;
+
+        private LaneState(UplinkLane lane, int maxInFlightMsgs, int maxBatchSize) {
+            this.lane = lane;
+            this.maxInFlightMsgs = Math.max(1, maxInFlightMsgs);
+            this.maxBatchSize = Math.max(1, maxBatchSize);
+            this.inFlightLimitGauge = statsFactory.createGauge(STATS_KEY + "inFlightLimit", new AtomicInteger(), "lane", lane.name());
+            this.batchSizeGauge = statsFactory.createGauge(STATS_KEY + "batchSize", new AtomicInteger(), "lane", lane.name());
+            this.inFlightLimit = this.maxInFlightMsgs;
+            publish();
+        }
+
+        private void increase() {
+            inFlightLimit = Math.min(maxInFlightMsgs, inFlightLimit + 1 / inFlightLimit);
+            publish();
+        }
+
+        private void decrease(long now, double factor) {
+            // the limit is decreased at most once per round trip, all the messages of the round trip reflect the same congestion
+            if (now - lastDecreaseTs < Math.max(smoothedRttMs, 1)) {
+                return;
+            }
+            lastDecreaseTs = now;
+            inFlightLimit = Math.max(Math.min(minInFlightMsgs, maxInFlightMsgs), inFlightLimit * factor);
+            publish();
+            log.debug("[{}] Uplink in-flight limit decreased to [{}], batch size [{}]", lane, inFlightLimitGauge.get(), batchSizeGauge.get());
+        }
+
+        private void publish() {
+            int limit = (int) Math.ceil(inFlightLimit);
+            inFlightLimitGauge.set(limit);
+            batchSizeGauge.set(Math.min(maxBatchSize, Math.max(Math.min(minBatchSize, maxBatchSize), limit * 2)));
+        }
+    }
+
+}
@@ -22,6 +22,8 @@ public interface UplinkMessageService {
 
     void processHandleMessages(TenantId tenantId) throws Exception;
 
+    void resetQueueOffset(TenantId tenantId, long startTs);
+
     void onUplinkResponse(UplinkResponseMsg msg);
 
 }
@@ -0,0 +1,247 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.gen.edge.v1.EntityDataProto;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueProto;
+import org.thingsboard.server.gen.transport.TransportProtos.PostAttributeMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvProto;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges consecutive telemetry and attribute uplink messages of the same entity before they are sent to the cloud.
+ * Time-series points of one entity are packed into a single multi-ts message, filtered by the per-key policy,
+ * attribute updates of the same entity and scope are reduced to the latest value of every key.
+ * <p>
+ * The merged message takes the place of the first event of the group and the rest of the group is replaced with {@code null},
+ * so the queue offset never moves past an event before the message carrying its data is acknowledged.
+ */
+@Slf4j
+@Component
+public class UplinkMsgCoalescer {
+
+    private static final long KEEP_ALL = 0L;
+    private static final long LATEST_ONLY = Long.MAX_VALUE;
+    private static final int MAX_MERGED_MSG_SIZE = 1024 * 1024;
+
+    @Getter
+    @Value("${cloud.uplink_coalescing.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cloud.uplink_coalescing.max_events_per_msg:100}")
+    private int maxEventsPerMsg;
+
+    @Value("${cloud.uplink_coalescing.ts_default_policy:ALL}")
+    private String tsDefaultPolicy;
+
+    @Value("${cloud.uplink_coalescing.ts_key_policies:}")
+    private String tsKeyPolicies;
+
+    private long defaultDownsampleIntervalMs;
+    private final Map<String, Long> keyDownsampleIntervalsMs = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        defaultDownsampleIntervalMs = parsePolicy(tsDefaultPolicy);
+        if (StringUtils.isNotBlank(tsKeyPolicies)) {
+            for (String keyPolicy : tsKeyPolicies.split(",")) {
+                String[] parts = keyPolicy.trim().split(":");
+                if (parts.length != 2 || StringUtils.isBlank(parts[0])) {
+                    throw new IllegalArgumentException("Invalid time-series key coalescing policy: " + keyPolicy);
+                }
+                keyDownsampleIntervalsMs.put(parts[0].trim(), parsePolicy(parts[1]));
+            }
+        }
+    }
+
+    /**
+     * @param cloudEvents cloud events in the order they are read from the queue
+     * @param uplinkMsgs  uplink messages converted from the cloud events, {@code null} if an event has nothing to send
+     * @return uplink messages of the same size and order, with the merged groups collapsed into their first position
+     */
+    public List<UplinkMsg> coalesce(List<CloudEvent> cloudEvents, List<UplinkMsg> uplinkMsgs) {
+        List<UplinkMsg> result = new ArrayList<>(uplinkMsgs);
+        Map<UUID, Group> openGroups = new HashMap<>();
+        List<Group> groups = new ArrayList<>();
+        for (int i = 0; i < uplinkMsgs.size(); i++) {
+            UUID entityId = cloudEvents.get(i).getEntityId();
+            UplinkMsg uplinkMsg = uplinkMsgs.get(i);
+            String kind = getKind(uplinkMsg);
+            if (kind == null) {
+                // any other event of the entity keeps the telemetry around it in order
+                if (entityId != null) {
+                    openGroups.remove(entityId);
+                }
+                continue;
+            }
+            EntityDataProto entityData = uplinkMsg.getEntityData(0);
+            Group group = openGroups.get(entityId);
+            if (group != null && group.canMerge(kind, entityData)) {
+                group.add(entityData);
+                result.set(i, null);
+            } else {
+                group = new Group(i, uplinkMsg, kind);
+                group.add(entityData);
+                groups.add(group);
+                if (entityId != null) {
+                    openGroups.put(entityId, group);
+                }
+            }
+        }
+        for (Group group : groups) {
+            if (group.size > 1) {
+                result.set(group.headIdx, group.build());
+            }
+        }
+        return result;
+    }
+
+    private static String getKind(UplinkMsg uplinkMsg) {
+        if (uplinkMsg == null || uplinkMsg.getEntityDataCount() != 1) {
+            return null;
+        }
+        EntityDataProto entityData = uplinkMsg.getEntityData(0);
+        if (entityData.hasPostTelemetryMsg()) {
+            return "TS";
+        } else if (entityData.hasAttributeDeleteMsg()) {
+            return null;
+        } else if (entityData.hasAttributesUpdatedMsg()) {
+            return "ATTRIBUTES_UPDATED:" + entityData.getPostAttributeScope() + ":" + entityData.getAttributesUpdatedMsg().getShared();
+        } else if (entityData.hasPostAttributesMsg()) {
+            return "POST_ATTRIBUTES:" + entityData.getPostAttributeScope() + ":" + entityData.getPostAttributesMsg().getShared();
+        }
+        return null;
+    }
+
+    private PostTelemetryMsg mergeTelemetry(List<EntityDataProto> entityDataList) {
+        TreeMap<Long, TsKvListProto.Builder> tsKvLists = new TreeMap<>();
+        Map<String, Map<Long, TsKvProto>> sampledPoints = new LinkedHashMap<>();
+        for (EntityDataProto entityData : entityDataList) {
+            for (TsKvListProto tsKvList : entityData.getPostTelemetryMsg().getTsKvListList()) {
+                long ts = tsKvList.getTs();
+                for (KeyValueProto kv : tsKvList.getKvList()) {
+                    long intervalMs = keyDownsampleIntervalsMs.getOrDefault(kv.getKey(), defaultDownsampleIntervalMs);
+                    if (intervalMs == KEEP_ALL) {
+                        tsKvLists.computeIfAbsent(ts, t -> TsKvListProto.newBuilder().setTs(t)).addKv(kv);
+                    } else {
+                        long bucket = intervalMs == LATEST_ONLY ? 0L : Math.floorDiv(ts, intervalMs);
+                        Map<Long, TsKvProto> buckets = sampledPoints.computeIfAbsent(kv.getKey(), k -> new HashMap<>());
+                        TsKvProto current = buckets.get(bucket);
+                        if (current == null || current.getTs() <= ts) {
+                            buckets.put(bucket, TsKvProto.newBuilder().setTs(ts).setKv(kv).build());
+                        }
+                    }
+                }
+            }
+        }
+        for (Map<Long, TsKvProto> buckets : sampledPoints.values()) {
+            for (TsKvProto point : buckets.values()) {
+                tsKvLists.computeIfAbsent(point.getTs(), t -> TsKvListProto.newBuilder().setTs(t)).addKv(point.getKv());
+            }
+        }
+        PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+        tsKvLists.values().forEach(builder::addTsKvList);
+        return builder.build();
+    }
+
+    private static PostAttributeMsg mergeAttributes(PostAttributeMsg first, List<PostAttributeMsg> attributeMsgs) {
+        Map<String, KeyValueProto> latest = new LinkedHashMap<>();
+        for (PostAttributeMsg attributeMsg : attributeMsgs) {
+            for (KeyValueProto kv : attributeMsg.getKvList()) {
+                latest.put(kv.getKey(), kv);
+            }
+        }
+        return first.toBuilder().clearKv().addAllKv(latest.values()).build();
+    }
+
+    private static long parsePolicy(String policy) {
+        String value = policy.trim();
+        if ("ALL".equalsIgnoreCase(value)) {
+            return KEEP_ALL;
+        } else if ("LATEST".equalsIgnoreCase(value)) {
+            return LATEST_ONLY;
+        }
+        try {
+            long seconds = Long.parseLong(value);
+            return seconds > 0 ? TimeUnit.SECONDS.toMillis(seconds) : KEEP_ALL;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time-series coalescing policy: " + policy + ". Expected ALL, LATEST or downsampling interval in seconds");
+        }
+    }
+
+    private class Group {
+
+        private final int headIdx;
+        private final UplinkMsg head;
+        private final String kind;
+        private final List<EntityDataProto> entityDataList = new ArrayList<>();
+        private int size;
+        private int serializedSize;
+
+        private Group(int headIdx, UplinkMsg head, String kind) {
+            this.headIdx = headIdx;
+            this.head = head;
+            this.kind = kind;
+        }
+
+        private boolean canMerge(String kind, EntityDataProto entityData) {
+            return Objects.equals(this.kind, kind) && size < maxEventsPerMsg
+                    && serializedSize + entityData.getSerializedSize() <= MAX_MERGED_MSG_SIZE;
+        }
+
+        private void add(EntityDataProto entityData) {
+            entityDataList.add(entityData);
+            serializedSize += entityData.getSerializedSize();
+            size++;
+        }
+
+        private UplinkMsg build() {
+            EntityDataProto first = entityDataList.get(0);
+            EntityDataProto.Builder merged = first.toBuilder();
+            if (first.hasPostTelemetryMsg()) {
+                merged.setPostTelemetryMsg(mergeTelemetry(entityDataList));
+            } else if (first.hasAttributesUpdatedMsg()) {
+                merged.setAttributesUpdatedMsg(mergeAttributes(first.getAttributesUpdatedMsg(),
+                        entityDataList.stream().map(EntityDataProto::getAttributesUpdatedMsg).toList()));
+            } else {
+                merged.setPostAttributesMsg(mergeAttributes(first.getPostAttributesMsg(),
+                        entityDataList.stream().map(EntityDataProto::getPostAttributesMsg).toList()));
+            }
+            log.trace("[{}] {} uplink msg(s) of the same entity were merged into one", kind, size);
+            return head.toBuilder().setEntityData(0, merged).build();
+        }
+    }
+
+}
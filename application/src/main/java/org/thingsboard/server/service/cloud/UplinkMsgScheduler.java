@@ -0,0 +1,141 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.edge.rpc.EdgeRpcClient;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the single uplink gRPC stream between the uplink lanes.
+ * Every lane enqueues its messages without blocking, a dedicated thread writes them to the stream in weighted round-robin
+ * order, so a large time-series backlog never delays entity and alarm updates by more than the lane weights allow.
+ * A message is taken from the lanes only when the stream is ready, so the backlog waits in the lanes where the weights apply
+ * instead of the transport buffer of the stream.
+ */
+@Slf4j
+@Service
+public class UplinkMsgScheduler {
+
+    private static final long READY_CHECK_INTERVAL_MS = 100;
+
+    @Value("${cloud.uplink_general_weight:4}")
+    private int generalWeight;
+
+    @Value("${cloud.uplink_ts_weight:1}")
+    private int tsWeight;
+
+    @Autowired
+    private EdgeRpcClient edgeRpcClient;
+
+    @Autowired
+    private UplinkFlowController uplinkFlowController;
+
+    private final Queue<UplinkMsg>[] laneQueues = createLaneQueues();
+    private final Semaphore queuedMsgs = new Semaphore(0);
+    private final Semaphore readySignal = new Semaphore(0);
+    private int[] weights;
+    private int currentLane;
+    private int currentLaneCredits;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        weights = new int[UplinkLane.values().length];
+        weights[UplinkLane.GENERAL.ordinal()] = Math.max(1, generalWeight);
+        weights[UplinkLane.TS.ordinal()] = Math.max(1, tsWeight);
+        currentLaneCredits = weights[currentLane];
+        edgeRpcClient.setUplinkReadyHandler(readySignal::release);
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("cloud-uplink-scheduler"));
+        executor.submit(this::processQueuedMsgs);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public void send(UplinkLane lane, UplinkMsg uplinkMsg) {
+        laneQueues[lane.ordinal()].add(uplinkMsg);
+        queuedMsgs.release();
+    }
+
+    private void processQueuedMsgs() {
+        while (!Thread.interrupted()) {
+            try {
+                queuedMsgs.acquire();
+                awaitUplinkReady();
+                UplinkMsg uplinkMsg = pollNext();
+                if (uplinkMsg != null) {
+                    edgeRpcClient.sendUplinkMsg(uplinkMsg, uplinkFlowController.isCompressionRequired(uplinkMsg.getSerializedSize()));
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                log.warn("Failed to send uplink msg", e);
+            }
+        }
+    }
+
+    private void awaitUplinkReady() throws InterruptedException {
+        readySignal.drainPermits();
+        while (!edgeRpcClient.isUplinkReady()) {
+            // the interval covers the stream replaced on reconnect, the new stream may become ready before the check
+            readySignal.tryAcquire(READY_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private UplinkMsg pollNext() {
+        for (int i = 0; i <= laneQueues.length; i++) {
+            if (currentLaneCredits > 0) {
+                UplinkMsg uplinkMsg = laneQueues[currentLane].poll();
+                if (uplinkMsg != null) {
+                    currentLaneCredits--;
+                    return uplinkMsg;
+                }
+            }
+            currentLane = (currentLane + 1) % laneQueues.length;
+            currentLaneCredits = weights[currentLane];
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Queue<UplinkMsg>[] createLaneQueues() {
+        Queue<UplinkMsg>[] queues = new Queue[UplinkLane.values().length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ConcurrentLinkedQueue<>();
+        }
+        return queues;
+    }
+
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.edge.rpc.EdgeRpcClient;
+import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+import org.thingsboard.server.gen.edge.v1.UplinkResponseMsg;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Sliding window of uplink messages sent to the cloud.
+ * Up to the in-flight limit of the {@link UplinkFlowController} messages are awaiting acknowledgement at any time, every message is tracked by its
+ * uplinkMsgId and only the unacknowledged ones are retransmitted. The queue offset is advanced to the latest cloud event
+ * of the acknowledged prefix, so a restart never skips an event that was not delivered.
+ * Messages are added by a single sender thread, responses may arrive from any thread.
+ */
+@Slf4j
+class UplinkMsgWindow {
+
+    private static final String RATE_LIMIT_REACHED = "Rate limit reached";
+    private static final long RATE_LIMIT_SLEEP_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final long OFFSET_COMMIT_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+
+    private final EdgeRpcClient edgeRpcClient;
+    private final Consumer<UplinkMsg> uplinkMsgSender;
+    private final UplinkFlowController flowController;
+    private final UplinkLane lane;
+    private final long ackTimeoutMs;
+    private final long retryIntervalMs;
+    private final int maxAttempts;
+    private final Consumer<CloudEvent> offsetCommitter;
+
+    private final ConcurrentMap<Integer, PendingUplinkMsg> inFlightMsgs = new ConcurrentHashMap<>();
+    private final Deque<PendingUplinkMsg> uncommittedMsgs = new ArrayDeque<>();
+    private final Semaphore responseSignal = new Semaphore(0);
+
+    private volatile boolean rateLimitViolated;
+    private CloudEvent pendingOffset;
+    private long lastOffsetCommitTs;
+
+    UplinkMsgWindow(EdgeRpcClient edgeRpcClient, Consumer<UplinkMsg> uplinkMsgSender, UplinkFlowController flowController, UplinkLane lane,
+                    long ackTimeoutMs, long retryIntervalMs, int maxAttempts, Consumer<CloudEvent> offsetCommitter) {
+        this.edgeRpcClient = edgeRpcClient;
+        this.uplinkMsgSender = uplinkMsgSender;
+        this.flowController = flowController;
+        this.lane = lane;
+        this.ackTimeoutMs = ackTimeoutMs;
+        this.retryIntervalMs = retryIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.offsetCommitter = offsetCommitter;
+    }
+
+    /**
+     * Sends the uplink message produced from the cloud event, blocking while the window is full.
+     * A {@code null} uplink message marks an event that has nothing to send and is committed in order with the rest.
+     */
+    void send(CloudEvent cloudEvent, UplinkMsg uplinkMsg) throws InterruptedException {
+        PendingUplinkMsg pendingMsg = new PendingUplinkMsg(cloudEvent, uplinkMsg);
+        uncommittedMsgs.add(pendingMsg);
+        if (uplinkMsg == null) {
+            pendingMsg.acked = true;
+        } else if (exceedsServerMaxInboundMessageSize(uplinkMsg)) {
+            log.error("Uplink msg size [{}] exceeds server max inbound message size [{}]. Skipping this message. " +
+                            "Please increase value of EDGES_RPC_MAX_INBOUND_MESSAGE_SIZE env variable on the server and restart it." +
+                            "Message {}",
+                    uplinkMsg.getSerializedSize(), edgeRpcClient.getServerMaxInboundMessageSize(), uplinkMsg);
+            pendingMsg.acked = true;
+        } else {
+            while (inFlightMsgs.size() >= flowController.getMaxInFlightMsgs(lane)) {
+                flowController.onWindowFull();
+                awaitResponses();
+            }
+            transmit(pendingMsg);
+        }
+        commitAckedOffset(false);
+    }
+
+    /**
+     * Waits until every message in the window is either acknowledged or discarded and commits the final offset.
+     */
+    void flush() throws InterruptedException {
+        while (!inFlightMsgs.isEmpty()) {
+            awaitResponses();
+        }
+        commitAckedOffset(true);
+    }
+
+    /**
+     * @return {@code true} if the response belongs to a message of this window
+     */
+    boolean onUplinkResponse(UplinkResponseMsg msg) {
+        PendingUplinkMsg pendingMsg = inFlightMsgs.get(msg.getUplinkMsgId());
+        if (pendingMsg == null) {
+            return false;
+        }
+        if (msg.getSuccess()) {
+            inFlightMsgs.remove(msg.getUplinkMsgId());
+            pendingMsg.acked = true;
+            // the round-trip time of a re-sent message is ambiguous, it is not known which attempt is acknowledged
+            long rttMs = pendingMsg.attempts == 1 ? System.currentTimeMillis() - pendingMsg.sentTs : -1;
+            flowController.onAck(lane, rttMs, pendingMsg.uplinkMsg.getSerializedSize());
+            log.debug("Msg has been processed successfully! {}", msg);
+        } else {
+            if (msg.getErrorMsg().contains(RATE_LIMIT_REACHED)) {
+                log.warn("Msg processing failed! {}", RATE_LIMIT_REACHED);
+                rateLimitViolated = true;
+            } else {
+                log.error("Msg processing failed! Error msg: {}", msg.getErrorMsg());
+            }
+            pendingMsg.retryTs = System.currentTimeMillis() + retryIntervalMs;
+            pendingMsg.rejected = true;
+            flowController.onLoss(lane);
+        }
+        responseSignal.release();
+        return true;
+    }
+
+    private void awaitResponses() throws InterruptedException {
+        if (rateLimitViolated) {
+            rateLimitViolated = false;
+            Thread.sleep(RATE_LIMIT_SLEEP_MS);
+        }
+        if (responseSignal.tryAcquire(getWaitTimeMs(), TimeUnit.MILLISECONDS)) {
+            responseSignal.drainPermits();
+        }
+        retransmitExpired();
+        commitAckedOffset(false);
+    }
+
+    private long getWaitTimeMs() {
+        long now = System.currentTimeMillis();
+        long nextRetryTs = now + ackTimeoutMs;
+        for (PendingUplinkMsg pendingMsg : inFlightMsgs.values()) {
+            nextRetryTs = Math.min(nextRetryTs, pendingMsg.retryTs);
+        }
+        return Math.max(1, nextRetryTs - now);
+    }
+
+    private void retransmitExpired() {
+        long now = System.currentTimeMillis();
+        for (PendingUplinkMsg pendingMsg : inFlightMsgs.values()) {
+            if (pendingMsg.acked || pendingMsg.retryTs > now) {
+                continue;
+            }
+            if (pendingMsg.attempts >= maxAttempts) {
+                log.warn("Failed to deliver the msg after {} attempts. Msg is going to be discarded {}", maxAttempts, pendingMsg.uplinkMsg);
+                inFlightMsgs.remove(pendingMsg.uplinkMsg.getUplinkMsgId());
+                pendingMsg.acked = true;
+            } else {
+                log.warn("Failed to deliver the msg: {}, attempt: {}", pendingMsg.uplinkMsg, pendingMsg.attempts);
+                if (!pendingMsg.rejected) {
+                    flowController.onLoss(lane);
+                }
+                transmit(pendingMsg);
+            }
+        }
+    }
+
+    private void transmit(PendingUplinkMsg pendingMsg) {
+        pendingMsg.attempts++;
+        pendingMsg.rejected = false;
+        pendingMsg.sentTs = System.currentTimeMillis();
+        pendingMsg.retryTs = pendingMsg.sentTs + ackTimeoutMs;
+        inFlightMsgs.put(pendingMsg.uplinkMsg.getUplinkMsgId(), pendingMsg);
+        uplinkMsgSender.accept(pendingMsg.uplinkMsg);
+    }
+
+    private void commitAckedOffset(boolean force) {
+        while (!uncommittedMsgs.isEmpty() && uncommittedMsgs.peekFirst().acked) {
+            pendingOffset = uncommittedMsgs.pollFirst().cloudEvent;
+        }
+        long now = System.currentTimeMillis();
+        if (pendingOffset != null && (force || now - lastOffsetCommitTs >= OFFSET_COMMIT_INTERVAL_MS)) {
+            offsetCommitter.accept(pendingOffset);
+            pendingOffset = null;
+            lastOffsetCommitTs = now;
+        }
+    }
+
+    private boolean exceedsServerMaxInboundMessageSize(UplinkMsg uplinkMsg) {
+        int serverMaxInboundMessageSize = edgeRpcClient.getServerMaxInboundMessageSize();
+        return serverMaxInboundMessageSize != 0 && uplinkMsg.getSerializedSize() > serverMaxInboundMessageSize;
+    }
+
+    private static class PendingUplinkMsg {
+
+        private final CloudEvent cloudEvent;
+        private final UplinkMsg uplinkMsg;
+        private volatile boolean acked;
+        private volatile boolean rejected;
+        private volatile long retryTs;
+        private volatile long sentTs;
+        private volatile int attempts;
+
+        private PendingUplinkMsg(CloudEvent cloudEvent, UplinkMsg uplinkMsg) {
+            this.cloudEvent = cloudEvent;
+            this.uplinkMsg = uplinkMsg;
+        }
+    }
+
+}
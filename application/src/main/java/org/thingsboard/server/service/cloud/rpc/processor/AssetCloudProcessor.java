@@ -18,11 +18,13 @@ package org.thingsboard.server.service.cloud.rpc.processor;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Component;
 import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.Customer;
 import org.thingsboard.server.common.data.EdgeUtils;
+import org.thingsboard.server.common.data.StringUtils;
 import org.thingsboard.server.common.data.asset.Asset;
 import org.thingsboard.server.common.data.asset.AssetProfile;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
@@ -38,6 +40,7 @@ import org.thingsboard.server.gen.edge.v1.AssetUpdateMsg;
 import org.thingsboard.server.gen.edge.v1.EdgeVersion;
 import org.thingsboard.server.gen.edge.v1.UpdateMsgType;
 import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+import org.thingsboard.server.service.cloud.CloudSyncBulkWriter;
 import org.thingsboard.server.service.edge.rpc.constructor.asset.AssetMsgConstructor;
 import org.thingsboard.server.service.edge.rpc.processor.asset.BaseAssetProcessor;
 
@@ -47,6 +50,9 @@ import java.util.UUID;
 @Slf4j
 public class AssetCloudProcessor extends BaseAssetProcessor {
 
+    @Autowired
+    private CloudSyncBulkWriter cloudSyncBulkWriter;
+
     public ListenableFuture<Void> processAssetMsgFromCloud(TenantId tenantId,
                                                            AssetUpdateMsg assetUpdateMsg,
                                                            Long queueStartTs) {
@@ -57,6 +63,9 @@ public class AssetCloudProcessor extends BaseAssetProcessor {
             switch (assetUpdateMsg.getMsgType()) {
                 case ENTITY_CREATED_RPC_MESSAGE:
                 case ENTITY_UPDATED_RPC_MESSAGE:
+                    if (cloudSyncBulkWriter.isBulkAsset(assetId.getId())) {
+                        return saveOrUpdateAssetInBulk(tenantId, assetId, assetUpdateMsg, queueStartTs);
+                    }
                     saveOrUpdateAsset(tenantId, assetId, assetUpdateMsg, queueStartTs);
                     return requestForAdditionalData(tenantId, assetId, queueStartTs);
                 case ENTITY_DELETED_RPC_MESSAGE:
@@ -87,6 +96,33 @@ public class AssetCloudProcessor extends BaseAssetProcessor {
         }
     }
 
+    private ListenableFuture<Void> saveOrUpdateAssetInBulk(TenantId tenantId, AssetId assetId, AssetUpdateMsg assetUpdateMsg, Long queueStartTs) {
+        Asset asset = constructAssetFromUpdateMsg(tenantId, assetId, assetUpdateMsg);
+        if (asset == null || asset.getAssetProfileId() == null || StringUtils.isEmpty(asset.getName())) {
+            saveOrUpdateAsset(tenantId, assetId, assetUpdateMsg, queueStartTs);
+            return requestForAdditionalData(tenantId, assetId, queueStartTs);
+        }
+        asset.setId(assetId);
+        asset.setTenantId(tenantId);
+        setCustomerId(tenantId, null, asset, assetUpdateMsg);
+        ListenableFuture<Void> future = cloudSyncBulkWriter.addAsset(asset,
+                () -> {
+                    try {
+                        cloudSynchronizationManager.getSync().set(true);
+                        saveOrUpdateAsset(tenantId, assetId, assetUpdateMsg, queueStartTs);
+                    } finally {
+                        cloudSynchronizationManager.getSync().remove();
+                    }
+                },
+                assetNameUpdated -> {
+                    pushAssetEventToRuleEngine(tenantId, asset, TbMsgType.ENTITY_CREATED);
+                    if (assetNameUpdated) {
+                        cloudEventService.saveCloudEventAsync(tenantId, CloudEventType.ASSET, EdgeEventActionType.UPDATED, assetId, null, queueStartTs);
+                    }
+                });
+        return Futures.transformAsync(future, v -> requestForAdditionalData(tenantId, assetId, queueStartTs), dbCallbackExecutorService);
+    }
+
     private void pushAssetCreatedEventToRuleEngine(TenantId tenantId, AssetId assetId) {
         Asset asset = assetService.findAssetById(tenantId, assetId);
         pushAssetEventToRuleEngine(tenantId, asset, TbMsgType.ENTITY_CREATED);
@@ -19,6 +19,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.util.Pair;
 import org.springframework.stereotype.Component;
 import org.thingsboard.common.util.JacksonUtil;
@@ -47,6 +48,7 @@ import org.thingsboard.server.gen.edge.v1.EdgeVersion;
 import org.thingsboard.server.gen.edge.v1.UpdateMsgType;
 import org.thingsboard.server.gen.edge.v1.UplinkMsg;
 import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.service.cloud.CloudSyncBulkWriter;
 import org.thingsboard.server.service.edge.rpc.constructor.device.DeviceMsgConstructor;
 import org.thingsboard.server.service.edge.rpc.processor.device.BaseDeviceProcessor;
 import org.thingsboard.server.service.security.model.SecurityUser;
@@ -58,6 +60,9 @@ import java.util.UUID;
 @Slf4j
 public class DeviceCloudProcessor extends BaseDeviceProcessor {
 
+    @Autowired
+    private CloudSyncBulkWriter cloudSyncBulkWriter;
+
     public ListenableFuture<Void> processDeviceMsgFromCloud(TenantId tenantId,
                                                             DeviceUpdateMsg deviceUpdateMsg,
                                                             Long queueStartTs) {
@@ -67,6 +72,9 @@ public class DeviceCloudProcessor extends BaseDeviceProcessor {
             switch (deviceUpdateMsg.getMsgType()) {
                 case ENTITY_CREATED_RPC_MESSAGE:
                 case ENTITY_UPDATED_RPC_MESSAGE:
+                    if (cloudSyncBulkWriter.isBulkDevice(deviceId.getId())) {
+                        return saveOrUpdateDeviceInBulk(tenantId, deviceId, deviceUpdateMsg, queueStartTs);
+                    }
                     saveOrUpdateDevice(tenantId, deviceId, deviceUpdateMsg, queueStartTs);
                     return requestForAdditionalData(tenantId, deviceId, queueStartTs);
                 case ENTITY_DELETED_RPC_MESSAGE:
@@ -97,6 +105,33 @@ public class DeviceCloudProcessor extends BaseDeviceProcessor {
         }
     }
 
+    private ListenableFuture<Void> saveOrUpdateDeviceInBulk(TenantId tenantId, DeviceId deviceId, DeviceUpdateMsg deviceUpdateMsg, Long queueStartTs) {
+        Device device = constructDeviceFromUpdateMsg(tenantId, deviceId, deviceUpdateMsg);
+        if (device == null || device.getDeviceProfileId() == null || device.getDeviceData() == null || StringUtils.isEmpty(device.getName())) {
+            saveOrUpdateDevice(tenantId, deviceId, deviceUpdateMsg, queueStartTs);
+            return requestForAdditionalData(tenantId, deviceId, queueStartTs);
+        }
+        device.setId(deviceId);
+        device.setTenantId(tenantId);
+        setCustomerId(tenantId, null, device, deviceUpdateMsg);
+        ListenableFuture<Void> future = cloudSyncBulkWriter.addDevice(device,
+                () -> {
+                    try {
+                        cloudSynchronizationManager.getSync().set(true);
+                        saveOrUpdateDevice(tenantId, deviceId, deviceUpdateMsg, queueStartTs);
+                    } finally {
+                        cloudSynchronizationManager.getSync().remove();
+                    }
+                },
+                deviceNameUpdated -> {
+                    pushDeviceEventToRuleEngine(tenantId, device, TbMsgType.ENTITY_CREATED);
+                    if (deviceNameUpdated) {
+                        cloudEventService.saveCloudEventAsync(tenantId, CloudEventType.DEVICE, EdgeEventActionType.UPDATED, deviceId, null, queueStartTs);
+                    }
+                });
+        return Futures.transformAsync(future, v -> requestForAdditionalData(tenantId, deviceId, queueStartTs), dbCallbackExecutorService);
+    }
+
     private void pushDeviceCreatedEventToRuleEngine(TenantId tenantId, DeviceId deviceId) {
         Device device = deviceService.findDeviceById(tenantId, deviceId);
         pushDeviceEventToRuleEngine(tenantId, device, TbMsgType.ENTITY_CREATED);
@@ -46,7 +46,7 @@ public class TelemetryCloudProcessor extends BaseTelemetryProcessor {
         EntityType entityType = EntityType.valueOf(cloudEvent.getType().name());
         EntityDataProto entityDataProto = convertTelemetryEventToEntityDataProto(
                 tenantId, entityType, cloudEvent.getEntityId(),
-                cloudEvent.getAction(), cloudEvent.getEntityBody());
+                cloudEvent.getAction(), cloudEvent.getEntityBody(), cloudEvent.getEntityBodyProto());
         return UplinkMsg.newBuilder()
                 .setUplinkMsgId(EdgeUtils.nextPositiveInt())
                 .addEntityData(entityDataProto)
@@ -15,12 +15,14 @@
  */
 package org.thingsboard.server.service.edge.rpc.constructor.telemetry;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.reflect.TypeToken;
+import com.google.protobuf.InvalidProtocolBufferException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import org.thingsboard.server.common.adaptor.JsonConverter;
@@ -42,10 +44,7 @@ import java.util.List;
 public class EntityDataMsgConstructor {
 
     public EntityDataProto constructEntityDataMsg(TenantId tenantId, EntityId entityId, EdgeEventActionType actionType, JsonElement entityData) {
-        EntityDataProto.Builder builder = EntityDataProto.newBuilder()
-                .setEntityIdMSB(entityId.getId().getMostSignificantBits())
-                .setEntityIdLSB(entityId.getId().getLeastSignificantBits())
-                .setEntityType(entityId.getEntityType().name());
+        EntityDataProto.Builder builder = newEntityDataProtoBuilder(entityId);
         switch (actionType) {
             case TIMESERIES_UPDATED:
                 try {
@@ -102,6 +101,42 @@ public class EntityDataMsgConstructor {
         return builder.build();
     }
 
+    /**
+     * Constructs the entity data msg from the telemetry payload that is already serialized to protobuf,
+     * {@code entityData} holds the remaining attributes event details: scope and post attributes flag.
+     */
+    public EntityDataProto constructEntityDataMsg(TenantId tenantId, EntityId entityId, EdgeEventActionType actionType, JsonNode entityData, byte[] entityDataProto) {
+        EntityDataProto.Builder builder = newEntityDataProtoBuilder(entityId);
+        try {
+            switch (actionType) {
+                case TIMESERIES_UPDATED -> builder.setPostTelemetryMsg(TransportProtos.PostTelemetryMsg.parseFrom(entityDataProto));
+                case ATTRIBUTES_UPDATED, POST_ATTRIBUTES -> {
+                    TransportProtos.PostAttributeMsg attributesMsg = TransportProtos.PostAttributeMsg.parseFrom(entityDataProto);
+                    boolean isPostAttributes = EdgeEventActionType.POST_ATTRIBUTES.equals(actionType)
+                            || (entityData != null && entityData.has("isPostAttributes") && entityData.get("isPostAttributes").asBoolean());
+                    if (isPostAttributes) {
+                        builder.setPostAttributesMsg(attributesMsg);
+                    } else {
+                        builder.setAttributesUpdatedMsg(attributesMsg);
+                    }
+                    String scope = entityData != null && entityData.hasNonNull("scope") ? entityData.get("scope").asText() : null;
+                    builder.setPostAttributeScope(StringUtils.isNotBlank(scope) ? scope : DataConstants.SERVER_SCOPE);
+                }
+                default -> log.warn("[{}][{}] Unsupported action type [{}] of protobuf entity data", tenantId, entityId, actionType);
+            }
+        } catch (InvalidProtocolBufferException e) {
+            log.warn("[{}][{}] Can't parse [{}] protobuf entity data", tenantId, entityId, actionType, e);
+        }
+        return builder.build();
+    }
+
+    private EntityDataProto.Builder newEntityDataProtoBuilder(EntityId entityId) {
+        return EntityDataProto.newBuilder()
+                .setEntityIdMSB(entityId.getId().getMostSignificantBits())
+                .setEntityIdLSB(entityId.getId().getLeastSignificantBits())
+                .setEntityType(entityId.getEntityType().name());
+    }
+
     private String getScopeOfDefault(JsonObject data) {
         JsonPrimitive scope = data.getAsJsonPrimitive("scope");
         String result = DataConstants.SERVER_SCOPE;
@@ -149,8 +149,8 @@ import static org.thingsboard.server.dao.edge.BaseRelatedEdgesService.RELATED_ED
 @Slf4j
 public abstract class BaseEdgeProcessor {
 
-    protected static final Lock deviceCreationLock = new ReentrantLock();
-    protected static final Lock assetCreationLock = new ReentrantLock();
+    public static final Lock deviceCreationLock = new ReentrantLock();
+    public static final Lock assetCreationLock = new ReentrantLock();
     protected static final Lock widgetCreationLock = new ReentrantLock();
     protected static final Lock customerCreationLock = new ReentrantLock();
 
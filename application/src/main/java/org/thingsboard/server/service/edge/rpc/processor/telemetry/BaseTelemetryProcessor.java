@@ -313,6 +313,15 @@ public abstract class BaseTelemetryProcessor extends BaseEdgeProcessor {
                                                                   UUID entityUUID,
                                                                   EdgeEventActionType actionType,
                                                                   JsonNode body) {
+        return convertTelemetryEventToEntityDataProto(tenantId, entityType, entityUUID, actionType, body, null);
+    }
+
+    public EntityDataProto convertTelemetryEventToEntityDataProto(TenantId tenantId,
+                                                                  EntityType entityType,
+                                                                  UUID entityUUID,
+                                                                  EdgeEventActionType actionType,
+                                                                  JsonNode body,
+                                                                  byte[] bodyProto) {
         EntityId entityId;
         switch (entityType) {
             case DEVICE -> entityId = new DeviceId(entityUUID);
@@ -328,6 +337,9 @@ public abstract class BaseTelemetryProcessor extends BaseEdgeProcessor {
                 return null;
             }
         }
+        if (bodyProto != null) {
+            return entityDataMsgConstructor.constructEntityDataMsg(tenantId, entityId, actionType, body, bodyProto);
+        }
         String bodyJackson = JacksonUtil.toString(body);
         return bodyJackson == null ? null :
                 entityDataMsgConstructor.constructEntityDataMsg(tenantId, entityId, actionType, JsonParser.parseString(bodyJackson));
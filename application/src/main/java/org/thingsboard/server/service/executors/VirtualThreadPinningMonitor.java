@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.executors;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier thread, e.g. inside a synchronized block or a
+ * native call. Pinned virtual threads hold a carrier the same way a blocked platform thread does, which cancels
+ * the benefit of the virtual thread executors. Uses the JFR {@code jdk.VirtualThreadPinned} event, so it only
+ * becomes active on Java 21+ and when at least one of the executors runs on virtual threads.
+ */
+@Slf4j
+@Service
+public class VirtualThreadPinningMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int STACK_DEPTH = 8;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${actors.system.virtual_threads_pinned_threshold_ms:20}")
+    private long thresholdMs;
+
+    @Value("${actors.system.virtual_threads_pinned_log_interval_ms:60000}")
+    private long logIntervalMs;
+
+    @Value("${actors.system.virtual_threads_enabled:false}")
+    private boolean actorsVirtualThreadsEnabled;
+
+    @Value("${actors.rule.db_callback_virtual_threads_enabled:false}")
+    private boolean dbCallbackVirtualThreadsEnabled;
+
+    @Value("${actors.rule.external_call_virtual_threads_enabled:false}")
+    private boolean externalCallVirtualThreadsEnabled;
+
+    @Value("${sql.executor_virtual_threads_enabled:false}")
+    private boolean sqlExecutorVirtualThreadsEnabled;
+
+    private RecordingStream recordingStream;
+    private AtomicLong pinnedCount;
+    private volatile long lastLogTs;
+
+    @PostConstruct
+    public void init() {
+        if (thresholdMs <= 0 || !isVirtualThreadsEnabled() || !ThingsBoardExecutors.isVirtualThreadSupported()) {
+            return;
+        }
+        pinnedCount = statsFactory.createGauge("virtualThreads.pinned", new AtomicLong());
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+            recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+            recordingStream.startAsync();
+            log.info("Started virtual thread pinning monitor with threshold {} ms", thresholdMs);
+        } catch (Exception e) {
+            log.warn("Failed to start virtual thread pinning monitor", e);
+            recordingStream = null;
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    boolean isStarted() {
+        return recordingStream != null;
+    }
+
+    private boolean isVirtualThreadsEnabled() {
+        return actorsVirtualThreadsEnabled || dbCallbackVirtualThreadsEnabled || externalCallVirtualThreadsEnabled || sqlExecutorVirtualThreadsEnabled;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        long count = pinnedCount.incrementAndGet();
+        long ts = System.currentTimeMillis();
+        if (ts - lastLogTs >= logIntervalMs) {
+            lastLogTs = ts;
+            String stack = event.getStackTrace() == null ? "n/a" : event.getStackTrace().getFrames().stream()
+                    .limit(STACK_DEPTH)
+                    .map(VirtualThreadPinningMonitor::toString)
+                    .collect(Collectors.joining("\n\tat ", "\n\tat ", ""));
+            log.warn("Virtual thread was pinned for {} ms ({} pinned events in total):{}", event.getDuration().toMillis(), count, stack);
+        }
+    }
+
+    private static String toString(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+
+}
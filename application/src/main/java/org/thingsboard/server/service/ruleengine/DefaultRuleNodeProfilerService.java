@@ -0,0 +1,126 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ruleengine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.stats.StatsFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DefaultRuleNodeProfilerService implements RuleNodeProfilerService {
+
+    private static final String STATS_KEY = "ruleEngine.node.";
+    private static final String RULE_CHAIN_ID_TAG = "ruleChainId";
+    private static final String RULE_NODE_ID_TAG = "ruleNodeId";
+    private static final double[] PERCENTILES = {0.5, 0.99};
+
+    private final StatsFactory statsFactory;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<RuleNodeId, RuleNodeProfiler> profilers = new ConcurrentHashMap<>();
+
+    @Value("${actors.rule.profiler.enabled:false}")
+    private boolean enabled;
+
+    @Value("${actors.rule.profiler.sample_rate:100}")
+    private int sampleRate;
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public RuleNodeProfiler getProfiler(RuleNode ruleNode) {
+        if (!enabled || ruleNode == null) {
+            return null;
+        }
+        return profilers.computeIfAbsent(ruleNode.getId(), id -> createProfiler(ruleNode.getRuleChainId(), id));
+    }
+
+    @Override
+    public void removeProfiler(RuleNode ruleNode) {
+        RuleNodeProfiler profiler = profilers.remove(ruleNode.getId());
+        if (profiler != null) {
+            profiler.getMeters().forEach(meterRegistry::remove);
+        }
+    }
+
+    @Override
+    public List<RuleNodeProfileInfo> getProfile(RuleChainId ruleChainId, List<RuleNode> ruleNodes) {
+        List<RuleNodeProfileInfo> result = new ArrayList<>(ruleNodes.size());
+        for (RuleNode ruleNode : ruleNodes) {
+            RuleNodeProfiler profiler = profilers.get(ruleNode.getId());
+            RuleNodeProfileInfo.RuleNodeProfileInfoBuilder info = RuleNodeProfileInfo.builder()
+                    .ruleNodeId(ruleNode.getId())
+                    .name(ruleNode.getName())
+                    .type(ruleNode.getType());
+            if (profiler != null) {
+                long invocations = profiler.getInvocations();
+                long failures = profiler.getFailures();
+                HistogramSnapshot queueWait = profiler.getQueueWaitTimer().takeSnapshot();
+                HistogramSnapshot processingTime = profiler.getProcessingTimer().takeSnapshot();
+                info.invocations(invocations)
+                        .failures(failures)
+                        .failureRate(invocations > 0 ? (double) failures / invocations : 0.0)
+                        .sampledMsgs(processingTime.count())
+                        .queueWaitP50Ms(getPercentile(queueWait, 0.5))
+                        .queueWaitP99Ms(getPercentile(queueWait, 0.99))
+                        .processingTimeP50Ms(getPercentile(processingTime, 0.5))
+                        .processingTimeP99Ms(getPercentile(processingTime, 0.99))
+                        .processingTimeMaxMs(processingTime.max(TimeUnit.MILLISECONDS));
+            }
+            result.add(info.build());
+        }
+        return result;
+    }
+
+    private RuleNodeProfiler createProfiler(RuleChainId ruleChainId, RuleNodeId ruleNodeId) {
+        log.debug("[{}][{}] Creating rule node profiler", ruleChainId, ruleNodeId);
+        String[] tags = {RULE_CHAIN_ID_TAG, ruleChainId.toString(), RULE_NODE_ID_TAG, ruleNodeId.toString()};
+        return new RuleNodeProfiler(ruleChainId, ruleNodeId, sampleRate,
+                meterRegistry.counter(STATS_KEY + "invocations", tags),
+                meterRegistry.counter(STATS_KEY + "failures", tags),
+                statsFactory.createTimer(STATS_KEY + "queueWaitTime", PERCENTILES, tags),
+                statsFactory.createTimer(STATS_KEY + "processingTime", PERCENTILES, tags));
+    }
+
+    private static double getPercentile(HistogramSnapshot snapshot, double percentile) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return value.value(TimeUnit.MILLISECONDS);
+            }
+        }
+        return 0.0;
+    }
+
+}
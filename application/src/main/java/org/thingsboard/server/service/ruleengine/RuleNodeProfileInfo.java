@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ruleengine;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+
+@Schema
+@Data
+@Builder
+public class RuleNodeProfileInfo {
+
+    @Schema(description = "JSON object with the Rule Node Id")
+    private final RuleNodeId ruleNodeId;
+    @Schema(description = "Rule Node name", example = "Save Timeseries")
+    private final String name;
+    @Schema(description = "Rule Node type", example = "org.thingsboard.rule.engine.telemetry.TbMsgTimeseriesNode")
+    private final String type;
+    @Schema(description = "Number of processed messages", example = "1000")
+    private final long invocations;
+    @Schema(description = "Number of messages routed to the 'Failure' relation", example = "5")
+    private final long failures;
+    @Schema(description = "Ratio of failures to invocations", example = "0.005")
+    private final double failureRate;
+    @Schema(description = "Number of sampled messages the latency values are calculated from", example = "10")
+    private final long sampledMsgs;
+    @Schema(description = "Median time from enqueue to the start of processing, in milliseconds", example = "0.2")
+    private final double queueWaitP50Ms;
+    @Schema(description = "99th percentile of time from enqueue to the start of processing, in milliseconds", example = "3.5")
+    private final double queueWaitP99Ms;
+    @Schema(description = "Median processing time, in milliseconds", example = "1.1")
+    private final double processingTimeP50Ms;
+    @Schema(description = "99th percentile of processing time, in milliseconds", example = "12.7")
+    private final double processingTimeP99Ms;
+    @Schema(description = "Maximum processing time of the recent sampled messages, in milliseconds", example = "25.0")
+    private final double processingTimeMaxMs;
+
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ruleengine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Continuous metrics of a single rule node. Invocations and failures are counted for every message,
+ * while queue wait and processing time are measured for a random sample of messages only.
+ */
+public class RuleNodeProfiler {
+
+    @Getter
+    private final RuleChainId ruleChainId;
+    @Getter
+    private final RuleNodeId ruleNodeId;
+    private final int sampleRate;
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Counter invocationsCounter;
+    private final Counter failuresCounter;
+    @Getter
+    private final Timer queueWaitTimer;
+    @Getter
+    private final Timer processingTimer;
+
+    public RuleNodeProfiler(RuleChainId ruleChainId, RuleNodeId ruleNodeId, int sampleRate,
+                            Counter invocationsCounter, Counter failuresCounter, Timer queueWaitTimer, Timer processingTimer) {
+        this.ruleChainId = ruleChainId;
+        this.ruleNodeId = ruleNodeId;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.invocationsCounter = invocationsCounter;
+        this.failuresCounter = failuresCounter;
+        this.queueWaitTimer = queueWaitTimer;
+        this.processingTimer = processingTimer;
+    }
+
+    /**
+     * Called when a message is put to the rule node mailbox.
+     * @return the current nano time if the message is sampled, 0 otherwise
+     */
+    public long onEnqueue() {
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            return System.nanoTime();
+        }
+        return 0L;
+    }
+
+    /**
+     * Called right before the rule node starts processing of the message.
+     * @return the current nano time if the message is sampled, 0 otherwise
+     */
+    public long onStart(long enqueuedNanos) {
+        invocations.increment();
+        invocationsCounter.increment();
+        if (enqueuedNanos > 0) {
+            long startNanos = System.nanoTime();
+            queueWaitTimer.record(startNanos - enqueuedNanos, TimeUnit.NANOSECONDS);
+            return startNanos;
+        }
+        return 0L;
+    }
+
+    public void onEnd(long startNanos) {
+        if (startNanos > 0) {
+            processingTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void onFailure() {
+        failures.increment();
+        failuresCounter.increment();
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    List<Meter> getMeters() {
+        return List.of(invocationsCounter, failuresCounter, queueWaitTimer, processingTimer);
+    }
+
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ruleengine;
+
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+
+import java.util.List;
+
+public interface RuleNodeProfilerService {
+
+    boolean isEnabled();
+
+    /**
+     * @return profiler of the rule node or null if profiling is disabled
+     */
+    RuleNodeProfiler getProfiler(RuleNode ruleNode);
+
+    void removeProfiler(RuleNode ruleNode);
+
+    List<RuleNodeProfileInfo> getProfile(RuleChainId ruleChainId, List<RuleNode> ruleNodes);
+
+}
@@ -20,6 +20,7 @@ import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 import org.thingsboard.server.common.msg.aware.DeviceAwareMsg;
 import org.thingsboard.server.common.msg.aware.TenantAwareMsg;
 import org.thingsboard.server.common.msg.queue.TbCallback;
@@ -52,4 +53,22 @@ public class TransportToDeviceActorMsgWrapper implements TbActorMsg, DeviceAware
     public MsgType getMsgType() {
         return MsgType.TRANSPORT_TO_DEVICE_ACTOR_MSG;
     }
+
+    @Override
+    public void onTbActorStopped(TbActorStopReason reason) {
+        if (reason == TbActorStopReason.OVERLOADED) {
+            callback.onFailure(new RuntimeException("Device actor [" + deviceId.getId() + "] is overloaded"));
+        }
+    }
+
+    /**
+     * Session lifecycle, subscription and RPC state messages are never shed: losing them would leave stale sessions
+     * and subscriptions in the device actor or a device without RPC and attribute updates.
+     */
+    @Override
+    public boolean isSheddable() {
+        return !msg.hasSessionEvent() && !msg.hasSubscribeToAttributes() && !msg.hasSubscribeToRPC()
+                && !msg.hasSubscriptionInfo() && !msg.hasToDeviceRPCCallResponse() && !msg.hasRpcResponseStatusMsg()
+                && !msg.hasSendPendingRPC();
+    }
 }
@@ -0,0 +1,253 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ttl.cloud;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.stats.StatsType;
+import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.sql.cloud.CloudEventQuotaRepository;
+import org.thingsboard.server.dao.sql.cloud.CloudEventQuotaRepository.PartitionSize;
+import org.thingsboard.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the cloud events within the storage quota while the edge is not able to deliver them to the cloud.
+ * <p>
+ * Sizes are tracked per partition, only partitions that may still receive events are recalculated.
+ * The size of a partition is split between the event actions by their share in a sample of the partition rows.
+ * When the quota is exceeded, events are evicted in the order of their priority: events already delivered to the cloud,
+ * time-series events whose keys are all overwritten by a newer event of the entity within the downsampling interval,
+ * the oldest time-series partitions, attribute updates downsampled the same way.
+ * Alarms, RPC calls and entity changes are never evicted by the quota.
+ */
+@TbCoreComponent
+@Slf4j
+@Service
+@ConditionalOnExpression("${sql.cloud_events.quota.enabled:false}")
+public class CloudEventsStorageQuotaService {
+
+    private static final String STATS_KEY = StatsType.EDGE.getName() + ".cloudEvents.";
+    private static final List<String> TABLES = List.of(ModelConstants.TS_KV_CLOUD_EVENT_COLUMN_FAMILY_NAME, ModelConstants.CLOUD_EVENT_COLUMN_FAMILY_NAME);
+    private static final List<EdgeEventActionType> TIMESERIES_ACTIONS = List.of(EdgeEventActionType.TIMESERIES_UPDATED);
+    private static final List<EdgeEventActionType> ATTRIBUTES_ACTIONS = List.of(EdgeEventActionType.ATTRIBUTES_UPDATED, EdgeEventActionType.POST_ATTRIBUTES);
+
+    @Value("${sql.cloud_events.quota.max_size_mb:1024}")
+    private long maxSizeMb;
+
+    @Value("${sql.cloud_events.quota.downsample_interval_sec:60}")
+    private long downsampleIntervalSec;
+
+    @Value("${sql.cloud_events.partition_size:24}")
+    private int partitionSizeInHours;
+
+    private final SqlPartitioningRepository partitioningRepository;
+    private final CloudEventQuotaRepository quotaRepository;
+    private final StatsFactory statsFactory;
+
+    private final Map<String, Map<Long, PartitionStats>> tablesPartitionStats = new HashMap<>();
+    private final Map<String, AtomicLong> sizeByTableGauges = new HashMap<>();
+    private final Map<EdgeEventActionType, AtomicLong> sizeByActionGauges = new EnumMap<>(EdgeEventActionType.class);
+    private AtomicLong totalSizeGauge;
+    private AtomicLong backlogAgeGauge;
+    private long partitionDurationMs;
+    private long lastCheckTs;
+
+    public CloudEventsStorageQuotaService(SqlPartitioningRepository partitioningRepository, CloudEventQuotaRepository quotaRepository, StatsFactory statsFactory) {
+        this.partitioningRepository = partitioningRepository;
+        this.quotaRepository = quotaRepository;
+        this.statsFactory = statsFactory;
+    }
+
+    @PostConstruct
+    public void init() {
+        partitionDurationMs = TimeUnit.HOURS.toMillis(partitionSizeInHours);
+        TABLES.forEach(table -> sizeByTableGauges.put(table, statsFactory.createGauge(STATS_KEY + "bytes", new AtomicLong(), "table", table)));
+        totalSizeGauge = statsFactory.createGauge(STATS_KEY + "totalBytes", new AtomicLong());
+        backlogAgeGauge = statsFactory.createGauge(STATS_KEY + "backlogAgeMs", new AtomicLong());
+    }
+
+    @Scheduled(initialDelayString = "${sql.cloud_events.quota.check_interval_ms:60000}", fixedDelayString = "${sql.cloud_events.quota.check_interval_ms:60000}")
+    public void checkQuota() {
+        try {
+            long maxSize = maxSizeMb * 1024 * 1024;
+            long size = refreshStats();
+            if (size > maxSize) {
+                log.info("Cloud events size [{}] bytes exceeds the quota [{}] bytes, going to evict events", size, maxSize);
+                size = evict(size, maxSize);
+                if (size > maxSize) {
+                    log.warn("Cloud events size [{}] bytes still exceeds the quota [{}] bytes. Remaining events are alarms, RPC calls and entity changes that are not evicted", size, maxSize);
+                }
+            }
+            publishStats(size);
+        } catch (Exception e) {
+            log.warn("Failed to check cloud events storage quota", e);
+        }
+    }
+
+    private long refreshStats() {
+        long now = System.currentTimeMillis();
+        long size = 0;
+        for (String table : TABLES) {
+            Map<Long, PartitionStats> partitionStats = tablesPartitionStats.computeIfAbsent(table, t -> new HashMap<>());
+            List<Long> partitions = partitioningRepository.fetchPartitions(table);
+            partitionStats.keySet().retainAll(partitions);
+            for (Long partitionStartTs : partitions) {
+                PartitionStats stats = partitionStats.get(partitionStartTs);
+                // partitions that ended before the previous check do not receive new events
+                if (stats == null || partitionStartTs + partitionDurationMs >= lastCheckTs) {
+                    stats = createStats(table, partitionStartTs, quotaRepository.getPartitionSize(table, partitionStartTs), false);
+                    partitionStats.put(partitionStartTs, stats);
+                }
+                size += stats.getTotalSize();
+            }
+        }
+        lastCheckTs = now;
+        return size;
+    }
+
+    private long evict(long size, long maxSize) {
+        for (String table : TABLES) {
+            Long deliveredBefore = quotaRepository.findDeliveredBefore(table);
+            if (deliveredBefore != null) {
+                size = dropOldestPartitions(table, deliveredBefore, size, maxSize);
+            }
+        }
+        size = downsample(ModelConstants.TS_KV_CLOUD_EVENT_COLUMN_FAMILY_NAME, TIMESERIES_ACTIONS, size, maxSize);
+        // the partition of the current time is never dropped, it receives the new events
+        size = dropOldestPartitions(ModelConstants.TS_KV_CLOUD_EVENT_COLUMN_FAMILY_NAME, System.currentTimeMillis() - partitionDurationMs, size, maxSize);
+        size = downsample(ModelConstants.CLOUD_EVENT_COLUMN_FAMILY_NAME, ATTRIBUTES_ACTIONS, size, maxSize);
+        return size;
+    }
+
+    private long dropOldestPartitions(String table, long endTsLimit, long size, long maxSize) {
+        Map<Long, PartitionStats> partitionStats = tablesPartitionStats.getOrDefault(table, Collections.emptyMap());
+        for (Long partitionStartTs : partitionStats.keySet().stream().sorted().toList()) {
+            long partitionEndTs = partitionStartTs + partitionDurationMs;
+            if (size <= maxSize || partitionEndTs >= endTsLimit) {
+                break;
+            }
+            if (partitioningRepository.dropPartitionsBefore(table, partitionEndTs + 1, partitionDurationMs) > 0) {
+                PartitionStats stats = partitionStats.remove(partitionStartTs);
+                size -= stats.getTotalSize();
+                log.info("[{}] Dropped partition [{}] of [{}] bytes to fit the storage quota", table, partitionStartTs, stats.getTotalSize());
+            }
+        }
+        return size;
+    }
+
+    private long downsample(String table, List<EdgeEventActionType> actions, long size, long maxSize) {
+        Map<Long, PartitionStats> partitionStats = tablesPartitionStats.getOrDefault(table, Collections.emptyMap());
+        for (Long partitionStartTs : partitionStats.keySet().stream().sorted().toList()) {
+            if (size <= maxSize) {
+                break;
+            }
+            PartitionStats stats = partitionStats.get(partitionStartTs);
+            if (stats.isDownsampled()) {
+                continue;
+            }
+            int deleted = quotaRepository.downsamplePartition(table, partitionStartTs, actions, TimeUnit.SECONDS.toMillis(downsampleIntervalSec));
+            // deleted rows are reclaimed by vacuum, so the new size is estimated from the number of deleted rows
+            PartitionStats newStats = createStats(table, partitionStartTs, stats.getSize().afterDelete(deleted), true);
+            partitionStats.put(partitionStartTs, newStats);
+            size -= stats.getTotalSize() - newStats.getTotalSize();
+            log.info("[{}] Downsampled {} events of partition [{}], deleted [{}] events", table, actions, partitionStartTs, deleted);
+        }
+        return size;
+    }
+
+    private PartitionStats createStats(String table, long partitionStartTs, PartitionSize size, boolean downsampled) {
+        Map<EdgeEventActionType, Long> sampledSizeByAction = size.liveRows() > 0 ?
+                quotaRepository.getSampledSizeByAction(table, partitionStartTs, size.liveRows()) : Collections.emptyMap();
+        return new PartitionStats(size, sampledSizeByAction, downsampled);
+    }
+
+    private void publishStats(long size) {
+        Map<String, Long> sizeByTable = new HashMap<>();
+        tablesPartitionStats.forEach((table, partitionStats) ->
+                sizeByTable.put(table, partitionStats.values().stream().mapToLong(PartitionStats::getTotalSize).sum()));
+        sizeByTableGauges.forEach((table, gauge) -> gauge.set(sizeByTable.getOrDefault(table, 0L)));
+        totalSizeGauge.set(size);
+
+        Map<EdgeEventActionType, Long> sizeByAction = new EnumMap<>(EdgeEventActionType.class);
+        tablesPartitionStats.values().forEach(partitionStats -> partitionStats.values().forEach(stats ->
+                stats.getSizeByAction().forEach((action, actionSize) -> sizeByAction.merge(action, actionSize, Long::sum))));
+        sizeByAction.keySet().forEach(action -> sizeByActionGauges.computeIfAbsent(action, a ->
+                statsFactory.createGauge(STATS_KEY + "actionBytes", new AtomicLong(), "action", a.name())));
+        sizeByActionGauges.forEach((action, gauge) -> gauge.set(sizeByAction.getOrDefault(action, 0L)));
+
+        long oldestUndeliveredTs = Long.MAX_VALUE;
+        for (String table : TABLES) {
+            Long createdTime = quotaRepository.findOldestUndeliveredCreatedTime(table);
+            if (createdTime != null) {
+                oldestUndeliveredTs = Math.min(oldestUndeliveredTs, createdTime);
+            }
+        }
+        backlogAgeGauge.set(oldestUndeliveredTs == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldestUndeliveredTs);
+        log.debug("Cloud events size [{}] bytes, by table {}, by action {}, backlog age [{}] ms", size, sizeByTable, sizeByAction, backlogAgeGauge.get());
+    }
+
+    private static class PartitionStats {
+
+        private final PartitionSize size;
+        private final Map<EdgeEventActionType, Long> sampledSizeByAction;
+        private final boolean downsampled;
+
+        private PartitionStats(PartitionSize size, Map<EdgeEventActionType, Long> sampledSizeByAction, boolean downsampled) {
+            this.size = size;
+            this.sampledSizeByAction = sampledSizeByAction;
+            this.downsampled = downsampled;
+        }
+
+        private PartitionSize getSize() {
+            return size;
+        }
+
+        private long getTotalSize() {
+            return size.getLiveBytes();
+        }
+
+        private Map<EdgeEventActionType, Long> getSizeByAction() {
+            long sampledSize = sampledSizeByAction.values().stream().mapToLong(Long::longValue).sum();
+            if (sampledSize == 0) {
+                return Collections.emptyMap();
+            }
+            long totalSize = getTotalSize();
+            Map<EdgeEventActionType, Long> sizeByAction = new EnumMap<>(EdgeEventActionType.class);
+            sampledSizeByAction.forEach((action, actionSize) -> sizeByAction.put(action, (long) ((double) totalSize * actionSize / sampledSize)));
+            return sizeByAction;
+        }
+
+        private boolean isDownsampled() {
+            return downsampled;
+        }
+    }
+
+}
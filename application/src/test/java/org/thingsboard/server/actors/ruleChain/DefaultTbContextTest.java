@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.actors.ActorSystemContext;
+import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.service.ruleengine.RuleNodeProfiler;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class DefaultTbContextTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private RuleNode ruleNode;
+
+    @BeforeEach
+    void setUp() {
+        ruleNode = new RuleNode(new RuleNodeId(UUID.randomUUID()));
+        ruleNode.setRuleChainId(new RuleChainId(UUID.randomUUID()));
+    }
+
+    @Test
+    void givenSeveralFailureOutcomes_whenProcessed_thenFailureCountedOncePerInvocation() {
+        RuleNodeProfiler profiler = createProfiler(1);
+        DefaultTbContext ctx = createContext(profiler);
+
+        ctx.onEnqueue();
+        ctx.onProcessingStart();
+        ctx.tellFailure(mock(TbMsg.class), new RuntimeException("first"));
+        ctx.tellFailure(mock(TbMsg.class), new RuntimeException("second"));
+
+        assertThat(profiler.getInvocations()).isEqualTo(1);
+        assertThat(profiler.getFailures()).isEqualTo(1);
+        assertThat(profiler.getProcessingTimer().count()).isEqualTo(1);
+
+        ctx.onEnqueue();
+        ctx.onProcessingStart();
+        ctx.tellFailure(mock(TbMsg.class), new RuntimeException("third"));
+
+        assertThat(profiler.getInvocations()).isEqualTo(2);
+        assertThat(profiler.getFailures()).isEqualTo(2);
+    }
+
+    @Test
+    void givenUnsampledMessage_whenFailed_thenFailureCountedOnce() {
+        RuleNodeProfiler profiler = createProfiler(Integer.MAX_VALUE);
+        DefaultTbContext ctx = createContext(profiler);
+
+        ctx.onProcessingStart();
+        ctx.tellFailure(mock(TbMsg.class), new RuntimeException("first"));
+        ctx.tellFailure(mock(TbMsg.class), new RuntimeException("second"));
+
+        assertThat(profiler.getFailures()).isEqualTo(1);
+        assertThat(profiler.getProcessingTimer().count()).isZero();
+    }
+
+    private RuleNodeProfiler createProfiler(int sampleRate) {
+        return new RuleNodeProfiler(ruleNode.getRuleChainId(), ruleNode.getId(), sampleRate,
+                meterRegistry.counter("invocations"), meterRegistry.counter("failures"),
+                meterRegistry.timer("queueWaitTime"), meterRegistry.timer("processingTime"));
+    }
+
+    private DefaultTbContext createContext(RuleNodeProfiler profiler) {
+        RuleNodeCtx nodeCtx = new RuleNodeCtx(TenantId.fromUUID(UUID.randomUUID()), mock(TbActorRef.class), mock(TbActorRef.class), ruleNode, profiler);
+        return new DefaultTbContext(mock(ActorSystemContext.class), "Root Rule Chain", nodeCtx);
+    }
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors.ruleChain;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class RuleNodeRoutesTest {
+
+    private final RuleNodeId from = new RuleNodeId(UUID.randomUUID());
+
+    @Test
+    void givenRelations_whenGetBySingleType_thenMatchedIgnoringCase() {
+        RuleNodeRelation success1 = relation("Success");
+        RuleNodeRelation success2 = relation("success");
+        RuleNodeRelation failure = relation("Failure");
+        RuleNodeRoutes routes = RuleNodeRoutes.of(List.of(success1, failure, success2));
+
+        assertThat(routes.get(Collections.singleton("Success"))).containsExactly(success1, success2);
+        assertThat(routes.get(Collections.singleton("SUCCESS"))).containsExactly(success1, success2);
+        assertThat(routes.get(Collections.singleton("Failure"))).containsExactly(failure);
+        assertThat(routes.get(Collections.singleton("True"))).isEmpty();
+    }
+
+    @Test
+    void givenRelations_whenGetByTypeDifferentOnlyInCase_thenSameRelationsReturned() {
+        RuleNodeRelation success = relation("Success");
+        RuleNodeRelation other = relation("Other Type");
+        RuleNodeRoutes routes = RuleNodeRoutes.of(List.of(success, other));
+
+        RuleNodeRelation[] expected = routes.get("Success");
+        assertThat(expected).containsExactly(success);
+        assertThat(routes.get("sUcCeSs")).isSameAs(expected);
+        assertThat(routes.get("success")).isSameAs(expected);
+        assertThat(routes.get("OTHER TYPE")).containsExactly(other);
+    }
+
+    @Test
+    void givenRelations_whenGetByMultipleTypesOrNull_thenOriginalOrderPreserved() {
+        RuleNodeRelation a = relation("A");
+        RuleNodeRelation b = relation("B");
+        RuleNodeRelation c = relation("C");
+        RuleNodeRoutes routes = RuleNodeRoutes.of(List.of(a, b, c));
+
+        assertThat(routes.get(new LinkedHashSet<>(List.of("c", "A")))).containsExactly(a, c);
+        assertThat(routes.get((Set<String>) null)).containsExactly(a, b, c);
+        assertThat(routes.get(Collections.emptySet())).isEmpty();
+        assertThat(RuleNodeRoutes.of(Collections.emptyList()).get(Collections.singleton("A"))).isEmpty();
+    }
+
+    @Test
+    void testRoutingThroughput() {
+        List<RuleNodeRelation> relations = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            relations.add(relation("Type" + i));
+        }
+        RuleNodeRoutes routes = RuleNodeRoutes.of(relations);
+        Set<String> relationTypes = Collections.singleton("Type11");
+        int iterations = 1_000_000;
+        long found = 0;
+        for (int i = 0; i < iterations; i++) { // warm up
+            found += routes.get(relationTypes).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            found += routes.get(relationTypes).length;
+        }
+        long duration = System.nanoTime() - start;
+        log.info("Routed {} msgs in {} ms, {} ns/msg", iterations, TimeUnit.NANOSECONDS.toMillis(duration), duration / iterations);
+        assertThat(found).isEqualTo(2L * iterations);
+    }
+
+    private RuleNodeRelation relation(String type) {
+        return new RuleNodeRelation(from, new RuleNodeId(UUID.randomUUID()), type);
+    }
+
+}
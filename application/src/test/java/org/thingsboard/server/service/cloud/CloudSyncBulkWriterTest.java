@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.cache.TbTransactionalCache;
+import org.thingsboard.server.cache.device.DeviceCacheKey;
+import org.thingsboard.server.cluster.TbClusterService;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.asset.Asset;
+import org.thingsboard.server.common.data.id.AssetId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.asset.AssetCacheKey;
+import org.thingsboard.server.dao.entity.EntityCountService;
+import org.thingsboard.server.dao.exception.DataValidationException;
+import org.thingsboard.server.dao.service.validator.AssetDataValidator;
+import org.thingsboard.server.dao.service.validator.DeviceDataValidator;
+import org.thingsboard.server.dao.sql.cloud.CloudSyncBulkRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CloudSyncBulkWriterTest {
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+
+    private CloudSyncBulkRepository bulkRepository;
+    private TbTransactionalCache<DeviceCacheKey, Device> deviceCache;
+    private TbTransactionalCache<AssetCacheKey, Asset> assetCache;
+    private EntityCountService countService;
+    private TbClusterService tbClusterService;
+    private DeviceDataValidator deviceValidator;
+    private CloudSyncBulkWriter writer;
+
+    private final List<List<Device>> upsertedDevices = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        bulkRepository = mock(CloudSyncBulkRepository.class);
+        deviceCache = mock(TbTransactionalCache.class);
+        assetCache = mock(TbTransactionalCache.class);
+        countService = mock(EntityCountService.class);
+        tbClusterService = mock(TbClusterService.class);
+        deviceValidator = mock(DeviceDataValidator.class);
+        when(bulkRepository.findExistingIds(anyString(), anyCollection())).thenReturn(Set.of());
+        when(bulkRepository.findExistingNames(anyString(), any(), anyCollection())).thenReturn(Set.of());
+        doAnswer(invocation -> upsertedDevices.add(new ArrayList<>(invocation.<List<Device>>getArgument(0))))
+                .when(bulkRepository).upsertDevices(anyList());
+
+        writer = new CloudSyncBulkWriter();
+        ReflectionTestUtils.setField(writer, "enabled", true);
+        ReflectionTestUtils.setField(writer, "batchSize", 3);
+        ReflectionTestUtils.setField(writer, "lingerMs", 10000L);
+        ReflectionTestUtils.setField(writer, "fallbackThreads", 2);
+        ReflectionTestUtils.setField(writer, "bulkRepository", bulkRepository);
+        ReflectionTestUtils.setField(writer, "deviceCache", deviceCache);
+        ReflectionTestUtils.setField(writer, "assetCache", assetCache);
+        ReflectionTestUtils.setField(writer, "countService", countService);
+        ReflectionTestUtils.setField(writer, "tbClusterService", tbClusterService);
+        ReflectionTestUtils.setField(writer, "deviceValidator", deviceValidator);
+        ReflectionTestUtils.setField(writer, "assetValidator", mock(AssetDataValidator.class));
+        writer.init();
+        writer.setSyncInProgress(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+    }
+
+    @Test
+    void givenFullBatch_whenAddDevices_thenCreatedWithSingleUpsert() throws Exception {
+        List<Boolean> created = new CopyOnWriteArrayList<>();
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        List<Device> devices = List.of(createDevice("d1"), createDevice("d2"), createDevice("d3"));
+        for (Device device : devices) {
+            futures.add(writer.addDevice(device, () -> {
+                throw new IllegalStateException("fallback is not expected");
+            }, created::add));
+        }
+
+        await(futures);
+
+        assertThat(upsertedDevices).hasSize(1);
+        assertThat(upsertedDevices.get(0)).containsExactlyElementsOf(devices);
+        assertThat(created).containsExactly(false, false, false);
+        verify(deviceCache).evict(argThat((Collection<DeviceCacheKey> keys) -> keys.size() == 9
+                && keys.contains(new DeviceCacheKey(devices.get(0).getId()))));
+        verify(countService).publishCountEntityEvictEvent(tenantId, EntityType.DEVICE);
+        devices.forEach(device -> verify(tbClusterService).onDeviceUpdated(device, null));
+    }
+
+    @Test
+    void givenIncompleteBatch_whenSyncCompleted_thenBatchFlushed() throws Exception {
+        ListenableFuture<Void> future = writer.addDevice(createDevice("d1"), () -> {}, nameUpdated -> {});
+        assertThat(future.isDone()).isFalse();
+        assertThat(writer.isBulkDevice(UUID.randomUUID())).isTrue();
+
+        writer.setSyncInProgress(false);
+
+        await(List.of(future));
+        assertThat(upsertedDevices).hasSize(1);
+        assertThat(writer.isBulkDevice(UUID.randomUUID())).isFalse();
+    }
+
+    @Test
+    void givenExistingAndInvalidDevices_whenWrite_thenAppliedThroughFallback() throws Exception {
+        Device existing = createDevice("existing");
+        Device invalid = createDevice("invalid");
+        Device valid = createDevice("valid");
+        when(bulkRepository.findExistingIds(eq("device"), anyCollection())).thenReturn(Set.of(existing.getUuidId()));
+        doThrow(new DataValidationException("invalid")).when(deviceValidator).validate(eq(invalid), any());
+        List<String> fallbacks = new CopyOnWriteArrayList<>();
+        List<String> created = new CopyOnWriteArrayList<>();
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (Device device : List.of(existing, invalid, valid)) {
+            futures.add(writer.addDevice(device, () -> fallbacks.add(device.getName()), nameUpdated -> created.add(device.getName())));
+        }
+        await(futures);
+
+        assertThat(fallbacks).containsExactlyInAnyOrder("existing", "invalid");
+        assertThat(created).containsExactly("valid");
+        assertThat(upsertedDevices).hasSize(1);
+        assertThat(upsertedDevices.get(0)).containsExactly(valid);
+        assertThat(valid.getId()).isNotNull();
+        assertThat(invalid.getId()).isNotNull();
+    }
+
+    @Test
+    void givenNameConflicts_whenWrite_thenDevicesRenamed() throws Exception {
+        when(bulkRepository.findExistingNames(eq("device"), eq(tenantId), anyCollection())).thenReturn(Set.of("taken"));
+        List<Boolean> nameUpdates = new CopyOnWriteArrayList<>();
+        Device taken = createDevice("taken");
+        Device first = createDevice("same");
+        Device second = createDevice("same");
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (Device device : List.of(taken, first, second)) {
+            futures.add(writer.addDevice(device, () -> {}, nameUpdates::add));
+        }
+        await(futures);
+
+        assertThat(nameUpdates).containsExactly(true, false, true);
+        assertThat(taken.getName()).startsWith("taken_").hasSize("taken_".length() + 15);
+        assertThat(first.getName()).isEqualTo("same");
+        assertThat(second.getName()).startsWith("same_");
+    }
+
+    @Test
+    void givenUpsertFailure_whenWrite_thenAllDevicesAppliedThroughFallback() throws Exception {
+        doThrow(new RuntimeException("upsert failed")).when(bulkRepository).upsertDevices(anyList());
+        List<String> fallbacks = new CopyOnWriteArrayList<>();
+        AtomicBoolean created = new AtomicBoolean();
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (Device device : List.of(createDevice("d1"), createDevice("d2"), createDevice("d3"))) {
+            futures.add(writer.addDevice(device, () -> fallbacks.add(device.getName()), nameUpdated -> created.set(true)));
+        }
+        await(futures);
+
+        assertThat(fallbacks).containsExactlyInAnyOrder("d1", "d2", "d3");
+        assertThat(created).isFalse();
+        verify(tbClusterService, never()).onDeviceUpdated(any(), any());
+    }
+
+    @Test
+    void givenPostProcessingFailure_whenWrite_thenDevicesStillReportedAsCreated() throws Exception {
+        doThrow(new RuntimeException("cache failed")).when(deviceCache).evict(anyCollection());
+        doThrow(new RuntimeException("count failed")).when(countService).publishCountEntityEvictEvent(any(), any());
+        List<String> created = new CopyOnWriteArrayList<>();
+        AtomicBoolean fallback = new AtomicBoolean();
+
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        for (Device device : List.of(createDevice("d1"), createDevice("d2"), createDevice("d3"))) {
+            futures.add(writer.addDevice(device, () -> fallback.set(true), nameUpdated -> created.add(device.getName())));
+        }
+        await(futures);
+
+        assertThat(created).containsExactly("d1", "d2", "d3");
+        assertThat(fallback).isFalse();
+    }
+
+    @Test
+    void givenSlowFallback_whenNextBatchWritten_thenNotStalledAndSameEntityKeepsOrder() throws Exception {
+        Device existing = createDevice("existing");
+        when(bulkRepository.findExistingIds(eq("device"), anyCollection()))
+                .thenReturn(Set.of(existing.getUuidId()))
+                .thenReturn(Set.of());
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> applied = new CopyOnWriteArrayList<>();
+
+        ListenableFuture<Void> blocked = writer.addDevice(existing, () -> {
+            awaitLatch(release);
+            applied.add("first update");
+        }, nameUpdated -> {});
+        writer.setSyncInProgress(false);
+        writer.setSyncInProgress(true);
+
+        Device other = createDevice("other");
+        ListenableFuture<Void> next = writer.addDevice(other, () -> {}, nameUpdated -> applied.add("other created"));
+        ListenableFuture<Void> secondUpdate = writer.addDevice(existing, () -> applied.add("second update"),
+                nameUpdated -> applied.add("existing created in bulk"));
+        writer.setSyncInProgress(false);
+
+        next.get(10, TimeUnit.SECONDS);
+        assertThat(blocked.isDone()).isFalse();
+        assertThat(secondUpdate.isDone()).isFalse();
+
+        release.countDown();
+        await(List.of(blocked, secondUpdate));
+        assertThat(applied).containsExactly("other created", "first update", "second update");
+    }
+
+    @Test
+    void givenCreatedAssets_whenWrite_thenNameKeysEvictedAndStateChangeBroadcast() throws Exception {
+        List<ListenableFuture<Void>> futures = new ArrayList<>();
+        List<Asset> assets = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Asset asset = new Asset(new AssetId(UUID.randomUUID()));
+            asset.setTenantId(tenantId);
+            asset.setName("a" + i);
+            assets.add(asset);
+            futures.add(writer.addAsset(asset, () -> {}, nameUpdated -> {}));
+        }
+        await(futures);
+
+        verify(bulkRepository).upsertAssets(assets);
+        verify(assetCache).evict(argThat((Collection<AssetCacheKey> keys) -> keys.size() == 3
+                && keys.contains(new AssetCacheKey(tenantId, "a0"))));
+        verify(countService).publishCountEntityEvictEvent(tenantId, EntityType.ASSET);
+    }
+
+    private Device createDevice(String name) {
+        Device device = new Device(new DeviceId(UUID.randomUUID()));
+        device.setTenantId(tenantId);
+        device.setName(name);
+        return device;
+    }
+
+    private static void await(List<ListenableFuture<Void>> futures) throws Exception {
+        for (ListenableFuture<Void> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
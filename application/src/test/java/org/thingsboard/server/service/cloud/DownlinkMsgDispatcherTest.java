@@ -0,0 +1,222 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.edge.v1.AssetUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DeviceUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.DownlinkMsg;
+import org.thingsboard.server.gen.edge.v1.SyncCompletedMsg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DownlinkMsgDispatcherTest {
+
+    private static final int SHARDS = 2;
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final List<Integer> startedMsgIds = new CopyOnWriteArrayList<>();
+    private final List<Integer> completedMsgIds = new CopyOnWriteArrayList<>();
+    private final Map<Integer, CountDownLatch> heldMsgs = new ConcurrentHashMap<>();
+    private final Map<Integer, RuntimeException> failedMsgs = new ConcurrentHashMap<>();
+
+    private DownlinkMessageService downlinkMessageService;
+    private DownlinkMsgDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        downlinkMessageService = mock(DownlinkMessageService.class);
+        when(downlinkMessageService.processDownlinkMsg(any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            DownlinkMsg downlinkMsg = invocation.getArgument(2);
+            int msgId = downlinkMsg.getDownlinkMsgId();
+            startedMsgIds.add(msgId);
+            CountDownLatch hold = heldMsgs.get(msgId);
+            if (hold != null) {
+                hold.await(5, TimeUnit.SECONDS);
+            } else {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+            }
+            completedMsgIds.add(msgId);
+            RuntimeException failure = failedMsgs.get(msgId);
+            return failure != null ? Futures.immediateFailedFuture(failure) : Futures.immediateFuture(List.of());
+        });
+        dispatcher = createDispatcher(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        heldMsgs.values().forEach(CountDownLatch::countDown);
+        dispatcher.destroy();
+    }
+
+    @Test
+    public void testUpdatesOfSameEntityAreAppliedInOrder() throws Exception {
+        UUID deviceId = UUID.randomUUID();
+        List<ListenableFuture<List<Void>>> futures = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(dispatch(deviceUpdate(i, deviceId)));
+            expected.add(i);
+        }
+        Futures.allAsList(futures).get(10, TimeUnit.SECONDS);
+
+        assertThat(completedMsgIds).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testUpdatesOfIndependentEntitiesAreAppliedConcurrently() throws Exception {
+        UUID firstDeviceId = UUID.randomUUID();
+        UUID secondDeviceId = entityIdOfOtherShard(firstDeviceId);
+        CountDownLatch hold = new CountDownLatch(1);
+        heldMsgs.put(1, hold);
+
+        ListenableFuture<List<Void>> first = dispatch(deviceUpdate(1, firstDeviceId));
+        ListenableFuture<List<Void>> second = dispatch(deviceUpdate(2, secondDeviceId));
+
+        // the second update is not queued behind the held one
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(first.isDone()).isFalse();
+        hold.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertThat(completedMsgIds).containsExactly(2, 1);
+    }
+
+    @Test
+    public void testNextGroupStartsAfterPreviousGroupIsCompleted() throws Exception {
+        UUID firstDeviceId = UUID.randomUUID();
+        UUID assetId = entityIdOfOtherShard(firstDeviceId);
+        CountDownLatch hold = new CountDownLatch(1);
+        heldMsgs.put(1, hold);
+
+        dispatch(deviceUpdate(1, firstDeviceId));
+        dispatch(deviceUpdate(2, entityIdOfOtherShard(firstDeviceId)));
+        ListenableFuture<List<Void>> assetFuture = dispatch(assetUpdate(3, assetId));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> completedMsgIds.contains(2));
+        Thread.sleep(100);
+        // the asset update is on an idle shard, but waits for the device group
+        assertThat(startedMsgIds).doesNotContain(3);
+
+        hold.countDown();
+        assetFuture.get(5, TimeUnit.SECONDS);
+        assertThat(completedMsgIds).containsExactly(2, 1, 3);
+    }
+
+    @Test
+    public void testMsgWithoutEntityIsProcessedExclusively() throws Exception {
+        UUID firstDeviceId = UUID.randomUUID();
+        UUID secondDeviceId = entityIdOfOtherShard(firstDeviceId);
+        CountDownLatch hold = new CountDownLatch(1);
+        heldMsgs.put(2, hold);
+
+        dispatch(deviceUpdate(1, firstDeviceId));
+        dispatch(DownlinkMsg.newBuilder().setDownlinkMsgId(2).setSyncCompletedMsg(SyncCompletedMsg.newBuilder()).build());
+        ListenableFuture<List<Void>> last = dispatch(deviceUpdate(3, secondDeviceId));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> startedMsgIds.contains(2));
+        Thread.sleep(100);
+        assertThat(completedMsgIds).containsExactly(1);
+        assertThat(startedMsgIds).doesNotContain(3);
+
+        hold.countDown();
+        last.get(5, TimeUnit.SECONDS);
+        assertThat(completedMsgIds).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void testFailedMsgDoesNotBlockNextGroup() throws Exception {
+        failedMsgs.put(1, new RuntimeException("failed to save the device"));
+
+        ListenableFuture<List<Void>> failed = dispatch(deviceUpdate(1, UUID.randomUUID()));
+        ListenableFuture<List<Void>> next = dispatch(assetUpdate(2, UUID.randomUUID()));
+
+        next.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> failed.get(5, TimeUnit.SECONDS)).hasRootCauseMessage("failed to save the device");
+    }
+
+    @Test
+    public void testMsgIsProcessedDirectlyWhenDisabled() {
+        dispatcher.destroy();
+        dispatcher = createDispatcher(false);
+        DownlinkMsg downlinkMsg = deviceUpdate(1, UUID.randomUUID());
+
+        dispatch(downlinkMsg);
+
+        assertThat(completedMsgIds).containsExactly(1);
+        verify(downlinkMessageService).processDownlinkMsg(eq(tenantId), any(), eq(downlinkMsg), any(), any());
+    }
+
+    private ListenableFuture<List<Void>> dispatch(DownlinkMsg downlinkMsg) {
+        return dispatcher.dispatch(tenantId, null, downlinkMsg, null, 0L);
+    }
+
+    private DownlinkMsgDispatcher createDispatcher(boolean enabled) {
+        DownlinkMsgDispatcher dispatcher = new DownlinkMsgDispatcher();
+        ReflectionTestUtils.setField(dispatcher, "enabled", enabled);
+        ReflectionTestUtils.setField(dispatcher, "shardsCount", SHARDS);
+        ReflectionTestUtils.setField(dispatcher, "downlinkMessageService", downlinkMessageService);
+        dispatcher.init();
+        return dispatcher;
+    }
+
+    private static UUID entityIdOfOtherShard(UUID entityId) {
+        UUID result;
+        do {
+            result = UUID.randomUUID();
+        } while (Math.floorMod(result.hashCode(), SHARDS) == Math.floorMod(entityId.hashCode(), SHARDS));
+        return result;
+    }
+
+    private static DownlinkMsg deviceUpdate(int msgId, UUID deviceId) {
+        return DownlinkMsg.newBuilder().setDownlinkMsgId(msgId)
+                .addDeviceUpdateMsg(DeviceUpdateMsg.newBuilder()
+                        .setIdMSB(deviceId.getMostSignificantBits())
+                        .setIdLSB(deviceId.getLeastSignificantBits()))
+                .build();
+    }
+
+    private static DownlinkMsg assetUpdate(int msgId, UUID assetId) {
+        return DownlinkMsg.newBuilder().setDownlinkMsgId(msgId)
+                .addAssetUpdateMsg(AssetUpdateMsg.newBuilder()
+                        .setIdMSB(assetId.getMostSignificantBits())
+                        .setIdLSB(assetId.getLeastSignificantBits()))
+                .build();
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class UplinkFlowControllerTest {
+
+    private UplinkFlowController flowController;
+
+    @BeforeEach
+    void setUp() {
+        flowController = createFlowController("adaptive", true);
+        flowController.registerLane(UplinkLane.GENERAL, 10, 100);
+        flowController.registerLane(UplinkLane.TS, 4, 100);
+    }
+
+    @Test
+    public void testLimitsStartAtMaximum() {
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(10);
+        assertThat(flowController.getBatchSize(UplinkLane.GENERAL)).isEqualTo(20);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.TS)).isEqualTo(4);
+        assertThat(flowController.getBatchSize(UplinkLane.TS)).isEqualTo(10);
+    }
+
+    @Test
+    public void testLossHalvesLimitOfLaneAndAckGrowsItBack() {
+        flowController.onLoss(UplinkLane.GENERAL);
+
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(5);
+        assertThat(flowController.getBatchSize(UplinkLane.GENERAL)).isEqualTo(10);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.TS)).isEqualTo(4);
+
+        flowController.onAck(UplinkLane.GENERAL, 10, 100);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(6);
+        for (int i = 0; i < 100; i++) {
+            flowController.onAck(UplinkLane.GENERAL, 10, 100);
+        }
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(10);
+    }
+
+    @Test
+    public void testGrowingRttDecreasesLimitOncePerRoundTrip() {
+        flowController.onAck(UplinkLane.GENERAL, 10, 100);
+        flowController.onAck(UplinkLane.GENERAL, 1000, 100);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(9);
+
+        // acks of the same round trip reflect the same congestion
+        flowController.onAck(UplinkLane.GENERAL, 1000, 100);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(9);
+    }
+
+    @Test
+    public void testResentMsgDoesNotChangeLimit() {
+        flowController.onLoss(UplinkLane.GENERAL);
+        flowController.onAck(UplinkLane.GENERAL, -1, 100);
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(5);
+    }
+
+    @Test
+    public void testLimitsAreFixedWhenAdaptiveDisabled() {
+        flowController = createFlowController("adaptive", false);
+        flowController.registerLane(UplinkLane.GENERAL, 10, 100);
+        flowController.onLoss(UplinkLane.GENERAL);
+
+        assertThat(flowController.getMaxInFlightMsgs(UplinkLane.GENERAL)).isEqualTo(10);
+        assertThat(flowController.getBatchSize(UplinkLane.GENERAL)).isEqualTo(100);
+    }
+
+    @Test
+    public void testAdaptiveCompressionDependsOnMsgSizeAndLinkRate() {
+        assertThat(flowController.isCompressionRequired(100)).isFalse();
+        // the rate of the link is not known yet
+        assertThat(flowController.isCompressionRequired(2048)).isTrue();
+
+        ReflectionTestUtils.setField(flowController, "deliveryRate", 10L * 1024 * 1024);
+        assertThat(flowController.isCompressionRequired(2048)).isFalse();
+
+        ReflectionTestUtils.setField(flowController, "deliveryRate", 10L * 1024);
+        assertThat(flowController.isCompressionRequired(2048)).isTrue();
+    }
+
+    @Test
+    public void testFixedCompressionModes() {
+        assertThat(createFlowController("gzip", true).isCompressionRequired(1)).isTrue();
+        assertThat(createFlowController("none", true).isCompressionRequired(1024 * 1024)).isFalse();
+    }
+
+    private static UplinkFlowController createFlowController(String compressionMode, boolean adaptiveEnabled) {
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", true);
+        UplinkFlowController flowController = new UplinkFlowController();
+        ReflectionTestUtils.setField(flowController, "statsFactory", statsFactory);
+        ReflectionTestUtils.setField(flowController, "adaptiveEnabled", adaptiveEnabled);
+        ReflectionTestUtils.setField(flowController, "minInFlightMsgs", 1);
+        ReflectionTestUtils.setField(flowController, "minBatchSize", 10);
+        ReflectionTestUtils.setField(flowController, "rttCongestionFactor", 2.0);
+        ReflectionTestUtils.setField(flowController, "compressionMode", compressionMode);
+        ReflectionTestUtils.setField(flowController, "compressionMinMsgSize", 1024);
+        ReflectionTestUtils.setField(flowController, "fastLinkBytesPerSec", 1024L * 1024);
+        flowController.init();
+        return flowController;
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.gen.edge.v1.DeviceUpdateMsg;
+import org.thingsboard.server.gen.edge.v1.EntityDataProto;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueProto;
+import org.thingsboard.server.gen.transport.TransportProtos.KeyValueType;
+import org.thingsboard.server.gen.transport.TransportProtos.PostAttributeMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.PostTelemetryMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TsKvListProto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class UplinkMsgCoalescerTest {
+
+    private final UUID entityId = UUID.randomUUID();
+    private final UUID otherEntityId = UUID.randomUUID();
+
+    private UplinkMsgCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = createCoalescer("ALL", "", 100);
+    }
+
+    @Test
+    public void testTelemetryOfSameEntityIsMergedIntoFirstPosition() {
+        List<CloudEvent> events = List.of(event(entityId), event(entityId), event(entityId));
+        List<UplinkMsg> msgs = List.of(telemetry(1, 200L, "temperature", 2), telemetry(2, 100L, "temperature", 1), telemetry(3, 300L, "humidity", 3));
+
+        List<UplinkMsg> result = coalescer.coalesce(events, msgs);
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(1)).isNull();
+        assertThat(result.get(2)).isNull();
+        UplinkMsg merged = result.get(0);
+        assertThat(merged.getUplinkMsgId()).isEqualTo(1);
+        assertThat(merged.getEntityDataCount()).isEqualTo(1);
+        assertThat(merged.getEntityData(0).getPostTelemetryMsg().getTsKvListList())
+                .extracting(TsKvListProto::getTs).containsExactly(100L, 200L, 300L);
+    }
+
+    @Test
+    public void testLatestPolicyKeepsOnlyNewestPointOfKey() {
+        coalescer = createCoalescer("ALL", "temperature:LATEST", 100);
+        List<CloudEvent> events = List.of(event(entityId), event(entityId), event(entityId));
+        List<UplinkMsg> msgs = List.of(telemetry(1, 300L, "temperature", 3), telemetry(2, 100L, "temperature", 1), telemetry(3, 200L, "humidity", 2));
+
+        PostTelemetryMsg merged = coalescer.coalesce(events, msgs).get(0).getEntityData(0).getPostTelemetryMsg();
+
+        assertThat(merged.getTsKvListList()).extracting(TsKvListProto::getTs).containsExactly(200L, 300L);
+        assertThat(merged.getTsKvList(1).getKv(0).getKey()).isEqualTo("temperature");
+        assertThat(merged.getTsKvList(1).getKv(0).getLongV()).isEqualTo(3L);
+    }
+
+    @Test
+    public void testAttributesAreReducedToLatestValueOfEveryKey() {
+        List<CloudEvent> events = List.of(event(entityId), event(entityId), event(entityId));
+        List<UplinkMsg> msgs = List.of(attributes(1, "SERVER_SCOPE", kv("a", 1), kv("b", 1)),
+                attributes(2, "SERVER_SCOPE", kv("a", 2)),
+                attributes(3, "SHARED_SCOPE", kv("a", 3)));
+
+        List<UplinkMsg> result = coalescer.coalesce(events, msgs);
+
+        assertThat(result.get(1)).isNull();
+        assertThat(result.get(2)).isEqualTo(msgs.get(2));
+        assertThat(result.get(0).getEntityData(0).getPostAttributesMsg().getKvList())
+                .extracting(KeyValueProto::getKey, KeyValueProto::getLongV)
+                .containsExactly(tuple("a", 2L), tuple("b", 1L));
+    }
+
+    @Test
+    public void testOtherEventOfEntityKeepsTelemetryAroundItInOrder() {
+        List<CloudEvent> events = List.of(event(entityId), event(otherEntityId), event(entityId), event(entityId), event(entityId));
+        List<UplinkMsg> msgs = List.of(telemetry(1, 100L, "temperature", 1),
+                telemetry(2, 100L, "temperature", 1),
+                telemetry(3, 200L, "temperature", 2),
+                deviceUpdate(4),
+                telemetry(5, 300L, "temperature", 3));
+
+        List<UplinkMsg> result = coalescer.coalesce(events, msgs);
+
+        // telemetry of another entity does not split the group, the device update does
+        assertThat(result.get(0).getEntityData(0).getPostTelemetryMsg().getTsKvListCount()).isEqualTo(2);
+        assertThat(result.get(1)).isEqualTo(msgs.get(1));
+        assertThat(result.get(2)).isNull();
+        assertThat(result.get(3)).isEqualTo(msgs.get(3));
+        assertThat(result.get(4)).isEqualTo(msgs.get(4));
+    }
+
+    @Test
+    public void testMessagesThatCannotBeMergedArePassedThrough() {
+        coalescer = createCoalescer("ALL", "", 2);
+        List<CloudEvent> events = List.of(event(entityId), event(entityId), event(entityId), event(entityId), event(entityId));
+        List<UplinkMsg> msgs = Arrays.asList(null, deviceUpdate(2), telemetry(3, 100L, "temperature", 1),
+                telemetry(4, 200L, "temperature", 2), telemetry(5, 300L, "temperature", 3));
+
+        List<UplinkMsg> result = coalescer.coalesce(events, msgs);
+
+        assertThat(result.get(0)).isNull();
+        assertThat(result.get(1)).isEqualTo(msgs.get(1));
+        assertThat(result.get(2).getEntityData(0).getPostTelemetryMsg().getTsKvListCount()).isEqualTo(2);
+        assertThat(result.get(3)).isNull();
+        // the group is full, so the last message starts a new one and is sent as is
+        assertThat(result.get(4)).isEqualTo(msgs.get(4));
+    }
+
+    private static UplinkMsgCoalescer createCoalescer(String defaultPolicy, String keyPolicies, int maxEventsPerMsg) {
+        UplinkMsgCoalescer coalescer = new UplinkMsgCoalescer();
+        ReflectionTestUtils.setField(coalescer, "enabled", true);
+        ReflectionTestUtils.setField(coalescer, "maxEventsPerMsg", maxEventsPerMsg);
+        ReflectionTestUtils.setField(coalescer, "tsDefaultPolicy", defaultPolicy);
+        ReflectionTestUtils.setField(coalescer, "tsKeyPolicies", keyPolicies);
+        coalescer.init();
+        return coalescer;
+    }
+
+    private static CloudEvent event(UUID entityId) {
+        CloudEvent cloudEvent = new CloudEvent();
+        cloudEvent.setEntityId(entityId);
+        return cloudEvent;
+    }
+
+    private static UplinkMsg telemetry(int msgId, long ts, String key, long value) {
+        PostTelemetryMsg telemetryMsg = PostTelemetryMsg.newBuilder()
+                .addTsKvList(TsKvListProto.newBuilder().setTs(ts).addKv(kv(key, value)))
+                .build();
+        return UplinkMsg.newBuilder().setUplinkMsgId(msgId)
+                .addEntityData(EntityDataProto.newBuilder().setEntityType("DEVICE").setPostTelemetryMsg(telemetryMsg))
+                .build();
+    }
+
+    private static UplinkMsg attributes(int msgId, String scope, KeyValueProto... kvs) {
+        List<KeyValueProto> kvList = new ArrayList<>(Arrays.asList(kvs));
+        return UplinkMsg.newBuilder().setUplinkMsgId(msgId)
+                .addEntityData(EntityDataProto.newBuilder().setEntityType("DEVICE").setPostAttributeScope(scope)
+                        .setPostAttributesMsg(PostAttributeMsg.newBuilder().addAllKv(kvList)))
+                .build();
+    }
+
+    private static UplinkMsg deviceUpdate(int msgId) {
+        return UplinkMsg.newBuilder().setUplinkMsgId(msgId)
+                .addDeviceUpdateMsg(DeviceUpdateMsg.newBuilder().setIdMSB(1L).setIdLSB(2L))
+                .build();
+    }
+
+    private static KeyValueProto kv(String key, long value) {
+        return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.LONG_V).setLongV(value).build();
+    }
+
+}
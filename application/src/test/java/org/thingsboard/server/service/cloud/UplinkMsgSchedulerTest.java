@@ -0,0 +1,179 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.edge.rpc.EdgeRpcClient;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UplinkMsgSchedulerTest {
+
+    private static final int TS_MSG_ID_OFFSET = 1000;
+
+    private final List<Integer> sentMsgIds = new CopyOnWriteArrayList<>();
+    private final CountDownLatch senderBlocked = new CountDownLatch(1);
+    private final CountDownLatch senderReleased = new CountDownLatch(1);
+    private final AtomicBoolean uplinkReady = new AtomicBoolean(true);
+    private final AtomicReference<Runnable> uplinkReadyHandler = new AtomicReference<>();
+
+    private EdgeRpcClient edgeRpcClient;
+    private UplinkFlowController flowController;
+    private UplinkMsgScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        edgeRpcClient = mock(EdgeRpcClient.class);
+        flowController = mock(UplinkFlowController.class);
+        when(edgeRpcClient.isUplinkReady()).thenAnswer(invocation -> uplinkReady.get());
+        doAnswer(invocation -> {
+            uplinkReadyHandler.set(invocation.getArgument(0));
+            return null;
+        }).when(edgeRpcClient).setUplinkReadyHandler(any());
+        doAnswer(invocation -> {
+            UplinkMsg uplinkMsg = invocation.getArgument(0);
+            sentMsgIds.add(uplinkMsg.getUplinkMsgId());
+            senderBlocked.countDown();
+            senderReleased.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(edgeRpcClient).sendUplinkMsg(any(), anyBoolean());
+    }
+
+    @AfterEach
+    void tearDown() {
+        senderReleased.countDown();
+        if (scheduler != null) {
+            scheduler.destroy();
+        }
+    }
+
+    @Test
+    public void testLanesAreServedInWeightedRoundRobinOrder() throws Exception {
+        scheduler = createScheduler(4, 1);
+        // the first msg holds the sender, so the rest is queued up before the scheduling starts
+        scheduler.send(UplinkLane.GENERAL, generalMsg(0));
+        assertThat(senderBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 5; i++) {
+            scheduler.send(UplinkLane.TS, tsMsg(i));
+        }
+        for (int i = 1; i <= 8; i++) {
+            scheduler.send(UplinkLane.GENERAL, generalMsg(i));
+        }
+        senderReleased.countDown();
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sentMsgIds.size() == 14);
+        assertThat(sentMsgIds).containsExactly(
+                0, 1, 2, 3, tsId(1),
+                4, 5, 6, 7, tsId(2),
+                // the idle lane gives its turns away
+                8, tsId(3), tsId(4), tsId(5));
+    }
+
+    @Test
+    public void testGeneralMsgsOvertakeTsBacklogWhileStreamIsNotReady() throws Exception {
+        senderReleased.countDown();
+        uplinkReady.set(false);
+        scheduler = createScheduler(4, 1);
+        for (int i = 1; i <= 5; i++) {
+            scheduler.send(UplinkLane.TS, tsMsg(i));
+        }
+        Thread.sleep(200);
+        // the backlog is kept in the lane instead of the transport buffer of the stream
+        assertThat(sentMsgIds).isEmpty();
+
+        scheduler.send(UplinkLane.GENERAL, generalMsg(1));
+        scheduler.send(UplinkLane.GENERAL, generalMsg(2));
+        uplinkReady.set(true);
+        uplinkReadyHandler.get().run();
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sentMsgIds.size() == 7);
+        assertThat(sentMsgIds).containsExactly(1, 2, tsId(1), tsId(2), tsId(3), tsId(4), tsId(5));
+    }
+
+    @Test
+    public void testWeightsAreAtLeastOne() throws Exception {
+        scheduler = createScheduler(0, 0);
+        scheduler.send(UplinkLane.GENERAL, generalMsg(0));
+        assertThat(senderBlocked.await(5, TimeUnit.SECONDS)).isTrue();
+        scheduler.send(UplinkLane.TS, tsMsg(1));
+        scheduler.send(UplinkLane.TS, tsMsg(2));
+        scheduler.send(UplinkLane.GENERAL, generalMsg(1));
+        scheduler.send(UplinkLane.GENERAL, generalMsg(2));
+        senderReleased.countDown();
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sentMsgIds.size() == 5);
+        assertThat(sentMsgIds).containsExactly(0, tsId(1), 1, tsId(2), 2);
+    }
+
+    @Test
+    public void testCompressionIsDecidedPerMsgAndFailedSendDoesNotStopScheduler() {
+        senderReleased.countDown();
+        when(flowController.isCompressionRequired(anyInt())).thenReturn(true);
+        UplinkMsg failedMsg = generalMsg(0);
+        doThrow(new RuntimeException("stream closed")).when(edgeRpcClient).sendUplinkMsg(eq(failedMsg), anyBoolean());
+        scheduler = createScheduler(4, 1);
+
+        scheduler.send(UplinkLane.GENERAL, failedMsg);
+        scheduler.send(UplinkLane.TS, tsMsg(1));
+
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sentMsgIds.contains(tsId(1)));
+        verify(edgeRpcClient).sendUplinkMsg(tsMsg(1), true);
+    }
+
+    private UplinkMsgScheduler createScheduler(int generalWeight, int tsWeight) {
+        UplinkMsgScheduler scheduler = new UplinkMsgScheduler();
+        ReflectionTestUtils.setField(scheduler, "generalWeight", generalWeight);
+        ReflectionTestUtils.setField(scheduler, "tsWeight", tsWeight);
+        ReflectionTestUtils.setField(scheduler, "edgeRpcClient", edgeRpcClient);
+        ReflectionTestUtils.setField(scheduler, "uplinkFlowController", flowController);
+        scheduler.init();
+        return scheduler;
+    }
+
+    private static UplinkMsg generalMsg(int msgId) {
+        return UplinkMsg.newBuilder().setUplinkMsgId(msgId).build();
+    }
+
+    private static UplinkMsg tsMsg(int msgId) {
+        return UplinkMsg.newBuilder().setUplinkMsgId(tsId(msgId)).build();
+    }
+
+    private static int tsId(int msgId) {
+        return TS_MSG_ID_OFFSET + msgId;
+    }
+
+}
@@ -0,0 +1,182 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.cloud;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.edge.rpc.EdgeRpcClient;
+import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.gen.edge.v1.UplinkMsg;
+import org.thingsboard.server.gen.edge.v1.UplinkResponseMsg;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UplinkMsgWindowTest {
+
+    private static final UplinkLane LANE = UplinkLane.GENERAL;
+
+    private final List<UplinkMsg> sentMsgs = new CopyOnWriteArrayList<>();
+    private final List<CloudEvent> committedOffsets = new CopyOnWriteArrayList<>();
+
+    private UplinkFlowController flowController;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        flowController = mock(UplinkFlowController.class);
+        when(flowController.getMaxInFlightMsgs(LANE)).thenReturn(10);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOffsetIsCommittedOnlyForAcknowledgedPrefix() throws Exception {
+        UplinkMsgWindow window = createWindow(60_000, 3);
+        CloudEvent first = cloudEvent(1);
+        CloudEvent third = cloudEvent(3);
+        window.send(first, uplinkMsg(1));
+        window.send(cloudEvent(2), uplinkMsg(2));
+        window.send(third, uplinkMsg(3));
+
+        assertThat(window.onUplinkResponse(success(2))).isTrue();
+        assertThat(window.onUplinkResponse(success(3))).isTrue();
+        window.send(cloudEvent(4), null);
+        assertThat(committedOffsets).isEmpty();
+
+        assertThat(window.onUplinkResponse(success(1))).isTrue();
+        CloudEvent last = cloudEvent(5);
+        window.send(last, null);
+        window.flush();
+
+        assertThat(committedOffsets).isNotEmpty().last().isSameAs(last);
+        assertThat(sentMsgs).extracting(UplinkMsg::getUplinkMsgId).containsExactly(1, 2, 3);
+        verify(flowController, times(3)).onAck(eq(LANE), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testResponseOfUnknownMsgIsIgnored() throws Exception {
+        UplinkMsgWindow window = createWindow(60_000, 3);
+        window.send(cloudEvent(1), uplinkMsg(1));
+
+        assertThat(window.onUplinkResponse(success(2))).isFalse();
+        assertThat(window.onUplinkResponse(success(1))).isTrue();
+        assertThat(window.onUplinkResponse(success(1))).isFalse();
+    }
+
+    @Test
+    public void testSendBlocksWhileWindowIsFull() throws Exception {
+        when(flowController.getMaxInFlightMsgs(LANE)).thenReturn(2);
+        UplinkMsgWindow window = createWindow(60_000, 3);
+        window.send(cloudEvent(1), uplinkMsg(1));
+        window.send(cloudEvent(2), uplinkMsg(2));
+
+        Future<?> blockedSend = executor.submit(() -> {
+            window.send(cloudEvent(3), uplinkMsg(3));
+            return null;
+        });
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).untilAsserted(() -> verify(flowController, atLeastOnce()).onWindowFull());
+        assertThat(blockedSend.isDone()).isFalse();
+        assertThat(sentMsgs).hasSize(2);
+
+        window.onUplinkResponse(success(1));
+        blockedSend.get(5, TimeUnit.SECONDS);
+        assertThat(sentMsgs).extracting(UplinkMsg::getUplinkMsgId).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    public void testUnacknowledgedMsgIsRetransmittedOnTimeoutAndDiscardedAfterMaxAttempts() throws Exception {
+        UplinkMsgWindow window = createWindow(100, 3);
+        CloudEvent cloudEvent = cloudEvent(1);
+        window.send(cloudEvent, uplinkMsg(1));
+
+        executor.submit(() -> {
+            window.flush();
+            return null;
+        }).get(10, TimeUnit.SECONDS);
+
+        assertThat(sentMsgs).extracting(UplinkMsg::getUplinkMsgId).containsExactly(1, 1, 1);
+        verify(flowController, times(2)).onLoss(LANE);
+        verify(flowController, never()).onAck(eq(LANE), anyLong(), anyInt());
+        // the discarded msg does not block the offset
+        assertThat(committedOffsets).containsExactly(cloudEvent);
+    }
+
+    @Test
+    public void testRejectedMsgIsRetransmittedAfterRetryInterval() throws Exception {
+        UplinkMsgWindow window = createWindow(60_000, 3);
+        CloudEvent cloudEvent = cloudEvent(1);
+        window.send(cloudEvent, uplinkMsg(1));
+        window.onUplinkResponse(UplinkResponseMsg.newBuilder().setUplinkMsgId(1).setSuccess(false).setErrorMsg("failure").build());
+        verify(flowController).onLoss(LANE);
+
+        Future<?> flush = executor.submit(() -> {
+            window.flush();
+            return null;
+        });
+        Awaitility.await().atMost(5, TimeUnit.SECONDS).until(() -> sentMsgs.size() == 2);
+        assertThat(flush.isDone()).isFalse();
+
+        window.onUplinkResponse(success(1));
+        flush.get(5, TimeUnit.SECONDS);
+        // the retransmission of the rejected msg is not counted as a loss again, its round-trip time is ambiguous
+        verify(flowController).onLoss(LANE);
+        verify(flowController).onAck(eq(LANE), eq(-1L), anyInt());
+        assertThat(committedOffsets).containsExactly(cloudEvent);
+    }
+
+    private UplinkMsgWindow createWindow(long ackTimeoutMs, int maxAttempts) {
+        EdgeRpcClient edgeRpcClient = mock(EdgeRpcClient.class);
+        return new UplinkMsgWindow(edgeRpcClient, sentMsgs::add, flowController, LANE,
+                ackTimeoutMs, 100, maxAttempts, committedOffsets::add);
+    }
+
+    private static CloudEvent cloudEvent(long seqId) {
+        CloudEvent cloudEvent = new CloudEvent();
+        cloudEvent.setSeqId(seqId);
+        return cloudEvent;
+    }
+
+    private static UplinkMsg uplinkMsg(int msgId) {
+        return UplinkMsg.newBuilder().setUplinkMsgId(msgId).build();
+    }
+
+    private static UplinkResponseMsg success(int msgId) {
+        return UplinkResponseMsg.newBuilder().setUplinkMsgId(msgId).setSuccess(true).build();
+    }
+
+}
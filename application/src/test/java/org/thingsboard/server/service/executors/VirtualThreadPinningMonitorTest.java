@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.executors;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.common.util.ThingsBoardExecutors;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VirtualThreadPinningMonitorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", meterRegistry);
+        monitor = new VirtualThreadPinningMonitor();
+        ReflectionTestUtils.setField(monitor, "statsFactory", statsFactory);
+        ReflectionTestUtils.setField(monitor, "thresholdMs", 20L);
+        ReflectionTestUtils.setField(monitor, "logIntervalMs", 60000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.destroy();
+    }
+
+    @Test
+    void givenVirtualThreadsDisabled_whenInit_thenMonitorNotStarted() {
+        monitor.init();
+
+        assertThat(monitor.isStarted()).isFalse();
+        assertThat(meterRegistry.find("virtualThreads.pinned").gauge()).isNull();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void givenVirtualThreadsEnabled_whenThreadPinned_thenPinnedEventCounted() throws Exception {
+        ReflectionTestUtils.setField(monitor, "dbCallbackVirtualThreadsEnabled", true);
+        monitor.init();
+        assertThat(monitor.isStarted()).isTrue();
+
+        ExecutorService executor = ThingsBoardExecutors.newVirtualThreadPerTaskExecutor("pinning-test");
+        try {
+            Object lock = new Object();
+            executor.submit(() -> {
+                synchronized (lock) {
+                    Thread.sleep(100);
+                }
+                return null;
+            }).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Awaitility.await().atMost(10, TimeUnit.SECONDS)
+                .until(() -> meterRegistry.get("virtualThreads.pinned").gauge().value() >= 1);
+    }
+
+}
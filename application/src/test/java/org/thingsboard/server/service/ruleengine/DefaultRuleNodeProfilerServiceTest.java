@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ruleengine;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.rule.RuleNode;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DefaultRuleNodeProfilerServiceTest {
+
+    private final RuleChainId ruleChainId = new RuleChainId(UUID.randomUUID());
+
+    private SimpleMeterRegistry meterRegistry;
+    private DefaultRuleNodeProfilerService profilerService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", true);
+        profilerService = new DefaultRuleNodeProfilerService(statsFactory, meterRegistry);
+        ReflectionTestUtils.setField(profilerService, "enabled", true);
+        ReflectionTestUtils.setField(profilerService, "sampleRate", 1);
+    }
+
+    @Test
+    void givenProfilerDisabled_whenGetProfiler_thenNull() {
+        ReflectionTestUtils.setField(profilerService, "enabled", false);
+        assertThat(profilerService.getProfiler(createRuleNode("Save"))).isNull();
+    }
+
+    @Test
+    void givenProcessedMessages_whenGetProfile_thenMetricsReturned() throws InterruptedException {
+        RuleNode ruleNode = createRuleNode("Save");
+        RuleNodeProfiler profiler = profilerService.getProfiler(ruleNode);
+        assertThat(profilerService.getProfiler(ruleNode)).isSameAs(profiler);
+
+        for (int i = 0; i < 4; i++) {
+            long startNanos = profiler.onStart(profiler.onEnqueue());
+            Thread.sleep(1);
+            if (i == 0) {
+                profiler.onFailure();
+            }
+            profiler.onEnd(startNanos);
+        }
+
+        List<RuleNodeProfileInfo> profile = profilerService.getProfile(ruleChainId, List.of(ruleNode, createRuleNode("Not started")));
+        assertThat(profile).hasSize(2);
+        RuleNodeProfileInfo info = profile.get(0);
+        assertThat(info.getName()).isEqualTo("Save");
+        assertThat(info.getInvocations()).isEqualTo(4);
+        assertThat(info.getFailures()).isEqualTo(1);
+        assertThat(info.getFailureRate()).isEqualTo(0.25);
+        assertThat(info.getSampledMsgs()).isEqualTo(4);
+        assertThat(info.getProcessingTimeP50Ms()).isGreaterThanOrEqualTo(1.0);
+        assertThat(info.getProcessingTimeMaxMs()).isGreaterThanOrEqualTo(info.getProcessingTimeP50Ms());
+        assertThat(profile.get(1).getInvocations()).isZero();
+    }
+
+    @Test
+    void givenUnsampledMessage_whenProcessed_thenOnlyCounted() {
+        ReflectionTestUtils.setField(profilerService, "sampleRate", Integer.MAX_VALUE);
+        RuleNode ruleNode = createRuleNode("Filter");
+        RuleNodeProfiler profiler = profilerService.getProfiler(ruleNode);
+
+        profiler.onEnd(profiler.onStart(0L));
+
+        RuleNodeProfileInfo info = profilerService.getProfile(ruleChainId, List.of(ruleNode)).get(0);
+        assertThat(info.getInvocations()).isEqualTo(1);
+        assertThat(info.getSampledMsgs()).isZero();
+
+        profilerService.removeProfiler(ruleNode);
+        assertThat(profilerService.getProfile(ruleChainId, List.of(ruleNode)).get(0).getInvocations()).isZero();
+    }
+
+    @Test
+    void givenRemovedProfiler_whenGetProfiler_thenMetersRemovedAndCountersRestarted() {
+        RuleNode ruleNode = createRuleNode("Save");
+        RuleNodeProfiler profiler = profilerService.getProfiler(ruleNode);
+        profiler.onStart(0L);
+        profiler.onFailure();
+        assertThat(meterRegistry.get("ruleEngine.node.invocations").tag("ruleNodeId", ruleNode.getId().toString()).counter().count()).isEqualTo(1.0);
+
+        profilerService.removeProfiler(ruleNode);
+
+        assertThat(meterRegistry.find("ruleEngine.node.invocations").meters()).isEmpty();
+        assertThat(meterRegistry.find("ruleEngine.node.failures").meters()).isEmpty();
+        assertThat(meterRegistry.find("ruleEngine.node.queueWaitTime").meters()).isEmpty();
+        assertThat(meterRegistry.find("ruleEngine.node.processingTime").meters()).isEmpty();
+
+        RuleNodeProfiler restarted = profilerService.getProfiler(ruleNode);
+        assertThat(restarted).isNotSameAs(profiler);
+        restarted.onStart(0L);
+        assertThat(meterRegistry.get("ruleEngine.node.invocations").counter().count()).isEqualTo(1.0);
+        assertThat(restarted.getFailures()).isZero();
+    }
+
+    private RuleNode createRuleNode(String name) {
+        RuleNode ruleNode = new RuleNode(new RuleNodeId(UUID.randomUUID()));
+        ruleNode.setRuleChainId(ruleChainId);
+        ruleNode.setName(name);
+        ruleNode.setType("org.thingsboard.rule.engine.telemetry.TbMsgTimeseriesNode");
+        return ruleNode;
+    }
+
+}
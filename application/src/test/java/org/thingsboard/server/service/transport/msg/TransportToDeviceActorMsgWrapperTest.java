@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.transport.msg;
+
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionEvent;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionEventMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionType;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToRPCMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.TransportToDeviceActorMsg;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransportToDeviceActorMsgWrapperTest {
+
+    private final UUID tenantId = UUID.randomUUID();
+    private final UUID deviceId = UUID.randomUUID();
+
+    @Test
+    public void testSessionAndSubscriptionMsgsAreNotSheddable() {
+        SessionEventMsg closedEvent = SessionEventMsg.newBuilder().setSessionType(SessionType.ASYNC).setEvent(SessionEvent.CLOSED).build();
+        assertThat(wrap(newMsg().setSessionEvent(closedEvent)).isSheddable()).isFalse();
+        assertThat(wrap(newMsg().setSubscribeToRPC(SubscribeToRPCMsg.newBuilder().setUnsubscribe(true))).isSheddable()).isFalse();
+    }
+
+    @Test
+    public void testRequestMsgIsSheddable() {
+        assertThat(wrap(newMsg().setGetAttributes(GetAttributeRequestMsg.newBuilder().setRequestId(1))).isSheddable()).isTrue();
+    }
+
+    private TransportToDeviceActorMsg.Builder newMsg() {
+        return TransportToDeviceActorMsg.newBuilder().setSessionInfo(SessionInfoProto.newBuilder()
+                .setTenantIdMSB(tenantId.getMostSignificantBits()).setTenantIdLSB(tenantId.getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getMostSignificantBits()).setDeviceIdLSB(deviceId.getLeastSignificantBits()));
+    }
+
+    private static TransportToDeviceActorMsgWrapper wrap(TransportToDeviceActorMsg.Builder msg) {
+        return new TransportToDeviceActorMsgWrapper(msg.build(), TbCallback.EMPTY);
+    }
+
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.ttl.cloud;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+import org.thingsboard.server.common.stats.DefaultStatsFactory;
+import org.thingsboard.server.dao.sql.cloud.CloudEventQuotaRepository;
+import org.thingsboard.server.dao.sql.cloud.CloudEventQuotaRepository.PartitionSize;
+import org.thingsboard.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CloudEventsStorageQuotaServiceTest {
+
+    private static final String TS_TABLE = "ts_kv_cloud_event";
+    private static final String TABLE = "cloud_event";
+    private static final long PARTITION_DURATION_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long DOWNSAMPLE_INTERVAL_MS = TimeUnit.SECONDS.toMillis(60);
+    private static final List<EdgeEventActionType> ATTRIBUTES_ACTIONS = List.of(EdgeEventActionType.ATTRIBUTES_UPDATED, EdgeEventActionType.POST_ATTRIBUTES);
+
+    private final long currentPartition = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+    private final long oldPartition = currentPartition - 3 * PARTITION_DURATION_MS;
+
+    private SqlPartitioningRepository partitioningRepository;
+    private CloudEventQuotaRepository quotaRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CloudEventsStorageQuotaService quotaService;
+
+    @BeforeEach
+    void setUp() {
+        partitioningRepository = mock(SqlPartitioningRepository.class);
+        quotaRepository = mock(CloudEventQuotaRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        DefaultStatsFactory statsFactory = new DefaultStatsFactory();
+        ReflectionTestUtils.setField(statsFactory, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(statsFactory, "metricsEnabled", true);
+        quotaService = new CloudEventsStorageQuotaService(partitioningRepository, quotaRepository, statsFactory);
+        ReflectionTestUtils.setField(quotaService, "maxSizeMb", 1L);
+        ReflectionTestUtils.setField(quotaService, "downsampleIntervalSec", 60L);
+        ReflectionTestUtils.setField(quotaService, "partitionSizeInHours", 24);
+        quotaService.init();
+    }
+
+    @Test
+    void givenSizeWithinQuota_whenCheckQuota_thenNothingEvictedAndStatsPublished() {
+        mockPartition(TS_TABLE, currentPartition, new PartitionSize(400_000, 800, 200));
+        mockPartition(TABLE, currentPartition, new PartitionSize(100_000, 100, 0));
+        when(quotaRepository.findOldestUndeliveredCreatedTime(TS_TABLE)).thenReturn(currentPartition);
+
+        quotaService.checkQuota();
+
+        verify(quotaRepository, never()).downsamplePartition(anyString(), anyLong(), anyList(), anyLong());
+        verify(partitioningRepository, never()).dropPartitionsBefore(anyString(), anyLong(), anyLong());
+        assertThat(gauge("edge.cloudEvents.bytes", TS_TABLE)).isEqualTo(320_000);
+        assertThat(gauge("edge.cloudEvents.bytes", TABLE)).isEqualTo(100_000);
+        assertThat(gauge("edge.cloudEvents.totalBytes", null)).isEqualTo(420_000);
+        assertThat(gauge("edge.cloudEvents.backlogAgeMs", null)).isGreaterThanOrEqualTo(TimeUnit.HOURS.toMillis(1));
+    }
+
+    @Test
+    void givenSampledActions_whenCheckQuota_thenSizeByActionPublished() {
+        mockPartition(TS_TABLE, currentPartition, new PartitionSize(400_000, 1000, 0));
+        mockPartition(TABLE, currentPartition, new PartitionSize(100_000, 100, 0));
+        when(quotaRepository.getSampledSizeByAction(TS_TABLE, currentPartition, 1000)).thenReturn(Map.of(EdgeEventActionType.TIMESERIES_UPDATED, 5_000L));
+        when(quotaRepository.getSampledSizeByAction(TABLE, currentPartition, 100)).thenReturn(Map.of(
+                EdgeEventActionType.ATTRIBUTES_UPDATED, 3_000L, EdgeEventActionType.ADDED, 1_000L, EdgeEventActionType.RPC_CALL, 1_000L));
+
+        quotaService.checkQuota();
+
+        assertThat(actionGauge(EdgeEventActionType.TIMESERIES_UPDATED)).isEqualTo(400_000);
+        assertThat(actionGauge(EdgeEventActionType.ATTRIBUTES_UPDATED)).isEqualTo(60_000);
+        assertThat(actionGauge(EdgeEventActionType.ADDED)).isEqualTo(20_000);
+        assertThat(actionGauge(EdgeEventActionType.RPC_CALL)).isEqualTo(20_000);
+
+        // actions missing from the new sample are reset
+        when(quotaRepository.getSampledSizeByAction(TABLE, currentPartition, 100)).thenReturn(Map.of(EdgeEventActionType.ATTRIBUTES_UPDATED, 3_000L));
+
+        quotaService.checkQuota();
+
+        assertThat(actionGauge(EdgeEventActionType.ATTRIBUTES_UPDATED)).isEqualTo(100_000);
+        assertThat(actionGauge(EdgeEventActionType.RPC_CALL)).isZero();
+    }
+
+    @Test
+    void givenDeliveredPartitions_whenQuotaExceeded_thenDeliveredPartitionsDroppedFirst() {
+        mockPartitions(TS_TABLE, new PartitionSize(800_000, 1000, 0), new PartitionSize(400_000, 1000, 0));
+        mockPartition(TABLE, currentPartition, new PartitionSize(100_000, 100, 0));
+        when(quotaRepository.findDeliveredBefore(TS_TABLE)).thenReturn(currentPartition);
+        when(partitioningRepository.dropPartitionsBefore(TS_TABLE, oldPartition + PARTITION_DURATION_MS + 1, PARTITION_DURATION_MS)).thenReturn(1L);
+
+        quotaService.checkQuota();
+
+        verify(partitioningRepository).dropPartitionsBefore(TS_TABLE, oldPartition + PARTITION_DURATION_MS + 1, PARTITION_DURATION_MS);
+        verify(quotaRepository, never()).downsamplePartition(anyString(), anyLong(), anyList(), anyLong());
+        assertThat(gauge("edge.cloudEvents.totalBytes", null)).isEqualTo(500_000);
+    }
+
+    @Test
+    void givenUndeliveredEvents_whenQuotaExceeded_thenOldestTimeseriesDownsampledFirst() {
+        mockPartitions(TS_TABLE, new PartitionSize(800_000, 1000, 0), new PartitionSize(400_000, 1000, 0));
+        mockPartition(TABLE, currentPartition, new PartitionSize(200_000, 100, 0));
+        when(quotaRepository.downsamplePartition(TS_TABLE, oldPartition, List.of(EdgeEventActionType.TIMESERIES_UPDATED), DOWNSAMPLE_INTERVAL_MS)).thenReturn(500);
+
+        quotaService.checkQuota();
+
+        verify(quotaRepository, times(1)).downsamplePartition(anyString(), anyLong(), anyList(), anyLong());
+        verify(partitioningRepository, never()).dropPartitionsBefore(anyString(), anyLong(), anyLong());
+        // the downsampled partition is sampled again with the remaining rows
+        verify(quotaRepository).getSampledSizeByAction(TS_TABLE, oldPartition, 500);
+        assertThat(gauge("edge.cloudEvents.bytes", TS_TABLE)).isEqualTo(800_000);
+        assertThat(gauge("edge.cloudEvents.totalBytes", null)).isEqualTo(1_000_000);
+
+        // the downsampled partition does not receive new events, so it is neither rescanned nor downsampled again
+        quotaService.checkQuota();
+
+        verify(quotaRepository, times(1)).getPartitionSize(TS_TABLE, oldPartition);
+        verify(quotaRepository, times(1)).downsamplePartition(anyString(), anyLong(), anyList(), anyLong());
+    }
+
+    @Test
+    void givenDownsamplingNotEnough_whenQuotaExceeded_thenOldestTimeseriesPartitionDroppedButNotCurrent() {
+        mockPartitions(TS_TABLE, new PartitionSize(800_000, 1000, 0), new PartitionSize(900_000, 1000, 0));
+        mockPartition(TABLE, currentPartition, new PartitionSize(200_000, 100, 0));
+        when(partitioningRepository.dropPartitionsBefore(anyString(), anyLong(), anyLong())).thenReturn(1L);
+        when(quotaRepository.downsamplePartition(eq(TABLE), anyLong(), anyList(), anyLong())).thenReturn(50);
+
+        quotaService.checkQuota();
+
+        verify(quotaRepository).downsamplePartition(TS_TABLE, oldPartition, List.of(EdgeEventActionType.TIMESERIES_UPDATED), DOWNSAMPLE_INTERVAL_MS);
+        verify(quotaRepository).downsamplePartition(TS_TABLE, currentPartition, List.of(EdgeEventActionType.TIMESERIES_UPDATED), DOWNSAMPLE_INTERVAL_MS);
+        verify(partitioningRepository).dropPartitionsBefore(TS_TABLE, oldPartition + PARTITION_DURATION_MS + 1, PARTITION_DURATION_MS);
+        verify(partitioningRepository, times(1)).dropPartitionsBefore(anyString(), anyLong(), anyLong());
+        verify(quotaRepository).downsamplePartition(TABLE, currentPartition, ATTRIBUTES_ACTIONS, DOWNSAMPLE_INTERVAL_MS);
+        assertThat(gauge("edge.cloudEvents.totalBytes", null)).isEqualTo(1_000_000);
+    }
+
+    private void mockPartitions(String table, PartitionSize oldSize, PartitionSize currentSize) {
+        when(partitioningRepository.fetchPartitions(table)).thenReturn(List.of(oldPartition, currentPartition));
+        when(quotaRepository.getPartitionSize(table, oldPartition)).thenReturn(oldSize);
+        when(quotaRepository.getPartitionSize(table, currentPartition)).thenReturn(currentSize);
+    }
+
+    private void mockPartition(String table, long partitionStartTs, PartitionSize size) {
+        when(partitioningRepository.fetchPartitions(table)).thenReturn(List.of(partitionStartTs));
+        when(quotaRepository.getPartitionSize(table, partitionStartTs)).thenReturn(size);
+    }
+
+    private long actionGauge(EdgeEventActionType action) {
+        return (long) meterRegistry.get("edge.cloudEvents.actionBytes").tag("action", action.name()).gauge().value();
+    }
+
+    private long gauge(String name, String table) {
+        Gauge gauge = table != null ? meterRegistry.get(name).tag("table", table).gauge() : meterRegistry.get(name).gauge();
+        return (long) gauge.value();
+    }
+
+}
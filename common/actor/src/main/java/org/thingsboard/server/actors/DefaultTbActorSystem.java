@@ -21,6 +21,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -62,16 +64,43 @@ public class DefaultTbActorSystem implements TbActorSystem {
         }
     }
 
+    @Override
+    public void createPinnedDispatcher(String dispatcherId, int poolSize) {
+        List<ExecutorService> workers = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            workers.add(Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName(dispatcherId + "-" + i)));
+        }
+        Dispatcher current = dispatchers.putIfAbsent(dispatcherId, new Dispatcher(dispatcherId, null, workers));
+        if (current != null) {
+            workers.forEach(ExecutorService::shutdownNow);
+            throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is already registered!");
+        }
+    }
+
     @Override
     public void destroyDispatcher(String dispatcherId) {
         Dispatcher dispatcher = dispatchers.remove(dispatcherId);
         if (dispatcher != null) {
-            dispatcher.getExecutor().shutdownNow();
+            dispatcher.shutdownNow();
         } else {
             throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is not registered!");
         }
     }
 
+    @Override
+    public void setMailboxCapacity(String dispatcherId, int capacity) {
+        Dispatcher dispatcher = dispatchers.get(dispatcherId);
+        if (dispatcher == null) {
+            throw new RuntimeException("Dispatcher with id [" + dispatcherId + "] is not registered!");
+        }
+        dispatcher.setMailboxCapacity(capacity);
+    }
+
+    @Override
+    public Collection<TbActorMailbox> getMailboxes() {
+        return Collections.unmodifiableCollection(actors.values());
+    }
+
     @Override
     public TbActorRef getActor(TbActorId actorId) {
         return actors.get(actorId);
@@ -216,9 +245,9 @@ public class DefaultTbActorSystem implements TbActorSystem {
     @Override
     public void stop() {
         dispatchers.values().forEach(dispatcher -> {
-            dispatcher.getExecutor().shutdown();
+            dispatcher.shutdown();
             try {
-                dispatcher.getExecutor().awaitTermination(3, TimeUnit.SECONDS);
+                dispatcher.awaitTermination(3, TimeUnit.SECONDS);
             } catch (InterruptedException e) {
                 log.warn("[{}] Failed to stop dispatcher", dispatcher.getDispatcherId(), e);
             }
@@ -17,12 +17,68 @@ package org.thingsboard.server.actors;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Data
 class Dispatcher {
 
     private final String dispatcherId;
     private final ExecutorService executor;
+    /**
+     * Single-threaded workers of a pinned dispatcher. Every actor always runs on the worker chosen by its id hash.
+     */
+    private final List<ExecutorService> workers;
+    /**
+     * Maximum number of normal priority messages queued per mailbox; 0 means unbounded.
+     */
+    private volatile int mailboxCapacity;
+
+    Dispatcher(String dispatcherId, ExecutorService executor) {
+        this(dispatcherId, executor, null);
+    }
+
+    Dispatcher(String dispatcherId, ExecutorService executor, List<ExecutorService> workers) {
+        this.dispatcherId = dispatcherId;
+        this.executor = executor;
+        this.workers = workers;
+    }
+
+    ExecutorService getExecutor(TbActorId actorId) {
+        if (workers == null) {
+            return executor;
+        }
+        int hash = actorId.hashCode();
+        return workers.get(Math.floorMod(hash ^ (hash >>> 16), workers.size()));
+    }
+
+    void shutdown() {
+        forEachExecutor(ExecutorService::shutdown);
+    }
+
+    void shutdownNow() {
+        forEachExecutor(ExecutorService::shutdownNow);
+    }
+
+    void awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (workers == null) {
+            executor.awaitTermination(timeout, unit);
+        } else {
+            for (ExecutorService worker : workers) {
+                worker.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void forEachExecutor(Consumer<ExecutorService> action) {
+        if (workers == null) {
+            action.accept(executor);
+        } else {
+            workers.forEach(action);
+        }
+    }
 
 }
@@ -16,7 +16,6 @@
 package org.thingsboard.server.actors;
 
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.msg.MsgType;
@@ -26,6 +25,7 @@ import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -33,7 +33,6 @@ import java.util.function.Supplier;
 
 @Slf4j
 @Getter
-@RequiredArgsConstructor
 public final class TbActorMailbox implements TbActorCtx {
     private static final boolean HIGH_PRIORITY = true;
     private static final boolean NORMAL_PRIORITY = false;
@@ -50,15 +49,27 @@ public final class TbActorMailbox implements TbActorCtx {
     private final TbActorRef parentRef;
     private final TbActor actor;
     private final Dispatcher dispatcher;
+    private final ExecutorService executor;
     private final ConcurrentLinkedQueue<TbActorMsg> highPriorityMsgs = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<TbActorMsg> normalPriorityMsgs = new ConcurrentLinkedQueue<>();
     private final AtomicBoolean busy = new AtomicBoolean(FREE);
     private final AtomicBoolean ready = new AtomicBoolean(NOT_READY);
     private final AtomicBoolean destroyInProgress = new AtomicBoolean();
+    private final TbActorMailboxStats stats = new TbActorMailboxStats();
     private volatile TbActorStopReason stopReason;
 
+    public TbActorMailbox(TbActorSystem system, TbActorSystemSettings settings, TbActorId selfId, TbActorRef parentRef, TbActor actor, Dispatcher dispatcher) {
+        this.system = system;
+        this.settings = settings;
+        this.selfId = selfId;
+        this.parentRef = parentRef;
+        this.actor = actor;
+        this.dispatcher = dispatcher;
+        this.executor = dispatcher.getExecutor(selfId);
+    }
+
     public void initActor() {
-        dispatcher.getExecutor().execute(() -> tryInit(1));
+        executor.execute(() -> tryInit(1));
     }
 
     private void tryInit(int attempt) {
@@ -87,11 +98,11 @@ public final class TbActorMailbox implements TbActorCtx {
             } else if (strategy.getRetryDelay() > 0) {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry in attempts in {}ms", selfId, attempt, strategy.getRetryDelay());
                 log.debug("[{}] Error", selfId, t);
-                system.getScheduler().schedule(() -> dispatcher.getExecutor().execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
+                system.getScheduler().schedule(() -> executor.execute(() -> tryInit(attemptIdx)), strategy.getRetryDelay(), TimeUnit.MILLISECONDS);
             } else {
                 log.info("[{}] Failed to init actor, attempt {}, going to retry immediately", selfId, attempt);
                 log.debug("[{}] Error", selfId, t);
-                dispatcher.getExecutor().execute(() -> tryInit(attemptIdx));
+                executor.execute(() -> tryInit(attemptIdx));
             }
         }
     }
@@ -108,8 +119,16 @@ public final class TbActorMailbox implements TbActorCtx {
             if (highPriority) {
                 highPriorityMsgs.add(msg);
             } else {
+                int capacity = dispatcher.getMailboxCapacity();
+                if (capacity > 0 && stats.getDepth() >= capacity && msg.isSheddable()) {
+                    log.debug("[{}] Mailbox is full, rejecting msg: {}", selfId, msg);
+                    stats.onRejected();
+                    msg.onTbActorStopped(TbActorStopReason.OVERLOADED);
+                    return;
+                }
                 normalPriorityMsgs.add(msg);
             }
+            stats.incrementDepth();
             tryProcessQueue(true);
         } else {
             if (highPriority && msg.getMsgType().equals(MsgType.RULE_NODE_UPDATED_MSG)) {
@@ -132,7 +151,7 @@ public final class TbActorMailbox implements TbActorCtx {
         if (ready.get() == READY) {
             if (newMsg || !highPriorityMsgs.isEmpty() || !normalPriorityMsgs.isEmpty()) {
                 if (busy.compareAndSet(FREE, BUSY)) {
-                    dispatcher.getExecutor().execute(this::processMailbox);
+                    executor.execute(settings.getMailboxBatchSize() > 0 ? this::processMailboxInBatch : this::processMailbox);
                 } else {
                     log.trace("[{}] MessageBox is busy, new msg: {}", selfId, newMsg);
                 }
@@ -147,24 +166,9 @@ public final class TbActorMailbox implements TbActorCtx {
     private void processMailbox() {
         boolean noMoreElements = false;
         for (int i = 0; i < settings.getActorThroughput(); i++) {
-            TbActorMsg msg = highPriorityMsgs.poll();
-            if (msg == null) {
-                msg = normalPriorityMsgs.poll();
-            }
+            TbActorMsg msg = pollMsg();
             if (msg != null) {
-                try {
-                    log.debug("[{}] Going to process message: {}", selfId, msg);
-                    actor.process(msg);
-                } catch (TbRuleNodeUpdateException updateException) {
-                    stopReason = TbActorStopReason.INIT_FAILED;
-                    destroy(updateException.getCause());
-                } catch (Throwable t) {
-                    log.debug("[{}] Failed to process message: {}", selfId, msg, t);
-                    ProcessFailureStrategy strategy = actor.onProcessFailure(msg, t);
-                    if (strategy.isStop()) {
-                        system.stop(selfId);
-                    }
-                }
+                processMsg(msg);
             } else {
                 noMoreElements = true;
                 break;
@@ -172,12 +176,79 @@ public final class TbActorMailbox implements TbActorCtx {
         }
         if (noMoreElements) {
             busy.set(FREE);
-            dispatcher.getExecutor().execute(() -> tryProcessQueue(false));
+            executor.execute(() -> tryProcessQueue(false));
+        } else {
+            executor.execute(this::processMailbox);
+        }
+    }
+
+    /*
+     * Drains up to mailboxBatchSize messages per task. When the mailbox looks empty it is released and checked once
+     * more in place: a producer that enqueued before the release has failed its CAS and relies on this check, while
+     * a producer that enqueues after the release wins the CAS and schedules the mailbox itself. So no extra
+     * tryProcessQueue task is needed.
+     */
+    private void processMailboxInBatch() {
+        int batchSize = settings.getMailboxBatchSize();
+        int processed = 0;
+        while (true) {
+            TbActorMsg msg = pollMsg();
+            if (msg != null) {
+                processMsg(msg);
+                if (++processed >= batchSize) {
+                    executor.execute(this::processMailboxInBatch);
+                    return;
+                }
+            } else {
+                busy.set(FREE);
+                if ((highPriorityMsgs.isEmpty() && normalPriorityMsgs.isEmpty()) || !busy.compareAndSet(FREE, BUSY)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private TbActorMsg pollMsg() {
+        TbActorMsg msg = highPriorityMsgs.poll();
+        if (msg == null) {
+            msg = normalPriorityMsgs.poll();
+        }
+        if (msg != null) {
+            stats.decrementDepth();
+        }
+        return msg;
+    }
+
+    private void processMsg(TbActorMsg msg) {
+        if (stats.onProcessed(settings.getMailboxStatsSampleRate())) {
+            long startTs = System.nanoTime();
+            doProcessMsg(msg);
+            stats.onSampled(System.nanoTime() - startTs);
         } else {
-            dispatcher.getExecutor().execute(this::processMailbox);
+            doProcessMsg(msg);
         }
     }
 
+    private void doProcessMsg(TbActorMsg msg) {
+        try {
+            log.debug("[{}] Going to process message: {}", selfId, msg);
+            actor.process(msg);
+        } catch (TbRuleNodeUpdateException updateException) {
+            stopReason = TbActorStopReason.INIT_FAILED;
+            destroy(updateException.getCause());
+        } catch (Throwable t) {
+            log.debug("[{}] Failed to process message: {}", selfId, msg, t);
+            ProcessFailureStrategy strategy = actor.onProcessFailure(msg, t);
+            if (strategy.isStop()) {
+                system.stop(selfId);
+            }
+        }
+    }
+
+    public String getDispatcherId() {
+        return dispatcher.getDispatcherId();
+    }
+
     @Override
     public TbActorId getSelf() {
         return selfId;
@@ -233,7 +304,7 @@ public final class TbActorMailbox implements TbActorCtx {
             stopReason = TbActorStopReason.STOPPED;
         }
         destroyInProgress.set(true);
-        dispatcher.getExecutor().execute(() -> {
+        executor.execute(() -> {
             try {
                 ready.set(NOT_READY);
                 actor.destroy(stopReason, cause);
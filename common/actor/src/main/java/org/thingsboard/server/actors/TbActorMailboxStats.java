@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.actors;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backlog and processing counters of a single mailbox. Depth and rejections are updated by producers, the rest
+ * only by the thread that currently processes the mailbox, so readers get cheap, slightly stale values.
+ */
+public class TbActorMailboxStats {
+
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long processed;
+    private volatile long sampled;
+    private volatile long sampledNanos;
+    private volatile long maxSampledNanos;
+
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getSampled() {
+        return sampled;
+    }
+
+    public long getSampledNanos() {
+        return sampledNanos;
+    }
+
+    public long getMaxSampledNanos() {
+        return maxSampledNanos;
+    }
+
+    int incrementDepth() {
+        return depth.incrementAndGet();
+    }
+
+    void decrementDepth() {
+        depth.decrementAndGet();
+    }
+
+    void onRejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Returns true if the processing time of the next message should be sampled.
+     */
+    boolean onProcessed(int sampleRate) {
+        return sampleRate > 0 && processed++ % sampleRate == 0;
+    }
+
+    void onSampled(long nanos) {
+        sampled++;
+        sampledNanos += nanos;
+        if (nanos > maxSampledNanos) {
+            maxSampledNanos = nanos;
+        }
+    }
+
+}
@@ -17,6 +17,7 @@ package org.thingsboard.server.actors;
 
 import org.thingsboard.server.common.msg.TbActorMsg;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -28,8 +29,14 @@ public interface TbActorSystem {
 
     void createDispatcher(String dispatcherId, ExecutorService executor);
 
+    void createPinnedDispatcher(String dispatcherId, int poolSize);
+
     void destroyDispatcher(String dispatcherId);
 
+    void setMailboxCapacity(String dispatcherId, int capacity);
+
+    Collection<TbActorMailbox> getMailboxes();
+
     TbActorRef getActor(TbActorId actorId);
 
     TbActorRef createRootActor(String dispatcherId, TbActorCreator creator);
@@ -23,5 +23,24 @@ public class TbActorSystemSettings {
     private final int actorThroughput;
     private final int schedulerPoolSize;
     private final int maxActorInitAttempts;
+    /**
+     * Number of messages a mailbox drains per dispatcher task in the batching mode; 0 disables the batching mode.
+     */
+    private final int mailboxBatchSize;
+    /**
+     * Processing time of every N-th message of a mailbox is measured; 0 disables the sampling.
+     */
+    private int mailboxStatsSampleRate;
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts) {
+        this(actorThroughput, schedulerPoolSize, maxActorInitAttempts, 0);
+    }
+
+    public TbActorSystemSettings(int actorThroughput, int schedulerPoolSize, int maxActorInitAttempts, int mailboxBatchSize) {
+        this.actorThroughput = actorThroughput;
+        this.schedulerPoolSize = schedulerPoolSize;
+        this.maxActorInitAttempts = maxActorInitAttempts;
+        this.mailboxBatchSize = mailboxBatchSize;
+    }
 
 }
@@ -24,11 +24,13 @@ import org.junit.jupiter.api.Test;
 import org.thingsboard.common.util.ThingsBoardExecutors;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.TbActorStopReason;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -111,6 +113,43 @@ public class ActorSystemTest {
         testActorsAndMessages(1000, 1000, 10);
     }
 
+    @Test
+    public void test1actorsAnd100KMessagesWithBatchingMailbox() throws InterruptedException {
+        initBatchingActorSystem();
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(1, _100K, 1);
+    }
+
+    @Test
+    public void test10actorsAnd100KMessagesWithBatchingMailbox() throws InterruptedException {
+        initBatchingActorSystem();
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(10, _100K, 1);
+    }
+
+    @Test
+    public void test1KActorsAnd1KMessagesWithBatchingMailbox() throws InterruptedException {
+        initBatchingActorSystem();
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        testActorsAndMessages(1000, 1000, 10);
+    }
+
+    @Test
+    public void test1KActorsAnd1KMessagesWithPinnedDispatcher() throws InterruptedException {
+        initBatchingActorSystem();
+        actorSystem.createPinnedDispatcher(ROOT_DISPATCHER, parallelism);
+        testActorsAndMessages(1000, 1000, 10);
+    }
+
+    @Test
+    public void test100KActorsAnd10MessagesWithPinnedDispatcher() throws InterruptedException {
+        actorSystem.createPinnedDispatcher(ROOT_DISPATCHER, parallelism);
+        testActorsAndMessages(_100K, 10, 1);
+    }
+
     @Test
     public void testNoMessagesAfterDestroy() throws InterruptedException {
         executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
@@ -131,6 +170,70 @@ public class ActorSystemTest {
         Assertions.assertFalse(testCtx1.getLatch().await(1, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testOverloadedMailboxRejectsMessages() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        actorSystem.setMailboxCapacity(ROOT_DISPATCHER, 2);
+        ActorTestCtx testCtx = getActorTestCtx(1);
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+        List<TbActorStopReason> stopReasons = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            actorRef.tell(new IntTbActorMsg(42) {
+                @Override
+                public void onTbActorStopped(TbActorStopReason reason) {
+                    stopReasons.add(reason);
+                }
+
+                @Override
+                public boolean isSheddable() {
+                    return true;
+                }
+            });
+        }
+
+        TbActorMailboxStats stats = actorSystem.getMailboxes().iterator().next().getStats();
+        assertThat(stopReasons).hasSize(3).containsOnly(TbActorStopReason.OVERLOADED);
+        assertThat(stats.getRejected()).isEqualTo(3);
+        Assertions.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        Awaitility.await().atMost(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS).until(() -> stats.getDepth() == 0);
+    }
+
+    @Test
+    public void testOverloadedMailboxAcceptsSessionClosedEvent() throws InterruptedException {
+        executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
+        actorSystem.createDispatcher(ROOT_DISPATCHER, executor);
+        actorSystem.setMailboxCapacity(ROOT_DISPATCHER, 2);
+        ActorTestCtx testCtx = getActorTestCtx(3);
+
+        TbActorRef actorRef = actorSystem.createRootActor(ROOT_DISPATCHER, new SlowInitActor.SlowInitActorCreator(
+                new TbEntityActorId(new DeviceId(UUID.randomUUID())), testCtx));
+        List<TbActorStopReason> stopReasons = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            actorRef.tell(new IntTbActorMsg(42) {
+                @Override
+                public boolean isSheddable() {
+                    return true;
+                }
+            });
+        }
+        // like a session CLOSED event of the transport, the msg does not opt in to shedding
+        actorRef.tell(new IntTbActorMsg(1) {
+            @Override
+            public void onTbActorStopped(TbActorStopReason reason) {
+                stopReasons.add(reason);
+            }
+        });
+
+        TbActorMailboxStats stats = actorSystem.getMailboxes().iterator().next().getStats();
+        assertThat(stopReasons).isEmpty();
+        assertThat(stats.getRejected()).isZero();
+        Assertions.assertTrue(testCtx.getLatch().await(TIMEOUT_AWAIT_MAX_SEC, TimeUnit.SECONDS));
+        assertThat(testCtx.getActual().get()).isEqualTo(85L);
+    }
+
     @Test
     public void testOneActorCreated() throws InterruptedException {
         executor = ThingsBoardExecutors.newWorkStealingPool(parallelism, getClass());
@@ -261,10 +364,16 @@ public class ActorSystemTest {
                 }
             });
             long duration = System.nanoTime() - start;
-            log.info("Time spend: {}ns ({} ms)", duration, TimeUnit.NANOSECONDS.toMillis(duration));
+            log.info("Time spend: {}ns ({} ms), {} msgs/sec", duration, TimeUnit.NANOSECONDS.toMillis(duration),
+                    (long) actorsCount * msgNumber * TimeUnit.SECONDS.toNanos(1) / Math.max(1, duration));
         }
     }
 
+    private void initBatchingActorSystem() {
+        actorSystem.stop();
+        actorSystem = new DefaultTbActorSystem(new TbActorSystemSettings(5, parallelism, 42, 256));
+    }
+
     private ActorTestCtx getActorTestCtx(int i) {
         CountDownLatch countDownLatch = new CountDownLatch(1);
         AtomicLong actual = new AtomicLong();
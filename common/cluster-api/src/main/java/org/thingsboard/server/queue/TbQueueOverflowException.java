@@ -0,0 +1,28 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue;
+
+/**
+ * Passed to {@link TbQueueCallback#onFailure(Throwable)} when a queue refuses a message because the topic is full.
+ * Producers may treat it as a backpressure signal and retry later instead of failing the request.
+ */
+public class TbQueueOverflowException extends RuntimeException {
+
+    public TbQueueOverflowException(String topic) {
+        super("Queue topic [" + topic + "] is full");
+    }
+
+}
@@ -18,6 +18,7 @@ package org.thingsboard.server.dao.cloud;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.cloud.CloudEventType;
 import org.thingsboard.server.common.data.edge.EdgeEventActionType;
 import org.thingsboard.server.common.data.edge.EdgeSettings;
@@ -53,6 +54,18 @@ public interface CloudEventService {
 
     PageData<CloudEvent> findTsKvCloudEvents(TenantId tenantId, Long seqIdStart, Long seqIdEnd, TimePageLink pageLink);
 
+    List<CloudEvent> findCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit);
+
+    List<CloudEvent> findTsKvCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit);
+
+    CloudEventOffset findCloudEventOffset(TenantId tenantId);
+
+    CloudEventOffset findTsKvCloudEventOffset(TenantId tenantId);
+
+    void saveCloudEventOffset(TenantId tenantId, CloudEventOffset offset);
+
+    void saveTsKvCloudEventOffset(TenantId tenantId, CloudEventOffset offset);
+
     EdgeSettings findEdgeSettings(TenantId tenantId);
 
     ListenableFuture<List<Long>> saveEdgeSettings(TenantId tenantId, EdgeSettings edgeSettings);
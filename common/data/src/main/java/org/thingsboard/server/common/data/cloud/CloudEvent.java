@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.common.data.cloud;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
@@ -37,6 +38,11 @@ public class CloudEvent extends BaseData<CloudEventId> {
     private UUID entityId;
     private CloudEventType type;
     private transient JsonNode entityBody;
+    /**
+     * Pre-serialized protobuf payload of the telemetry events, used instead of the {@code entityBody} payload when present.
+     */
+    @JsonIgnore
+    private transient byte[] entityBodyProto;
 
     public CloudEvent() {
         super();
@@ -20,6 +20,8 @@ import io.grpc.ManagedChannel;
 import io.grpc.netty.shaded.io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.shaded.io.netty.handler.ssl.SslContextBuilder;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
@@ -79,15 +81,22 @@ public class EdgeGrpcClient implements EdgeRpcClient {
     private String proxyUsername;
     @Value("${cloud.rpc.proxy.password:}")
     private String proxyPassword;
+    @Value("${cloud.rpc.compression.mode:adaptive}")
+    private String compressionMode;
     @Getter
     private int serverMaxInboundMessageSize;
 
     private ManagedChannel channel;
 
-    private StreamObserver<RequestMsg> inputStream;
+    private volatile StreamObserver<RequestMsg> inputStream;
+
+    private volatile Runnable uplinkReadyHandler = () -> {};
 
     private static final ReentrantLock uplinkMsgLock = new ReentrantLock();
 
+    private static final String COMPRESSION_GZIP = "gzip";
+    private static final String COMPRESSION_NONE = "none";
+
     @Override
     public void connect(String edgeKey,
                         String edgeSecret,
@@ -130,7 +139,11 @@ public class EdgeGrpcClient implements EdgeRpcClient {
         channel = builder.build();
         EdgeRpcServiceGrpc.EdgeRpcServiceStub stub = EdgeRpcServiceGrpc.newStub(channel);
         log.info("[{}] Sending a connect request to the TB!", edgeKey);
-        this.inputStream = stub.withCompression("gzip").handleMsgs(initOutputStream(edgeKey, onUplinkResponse, onEdgeUpdate, onDownlink, onError));
+        if (!COMPRESSION_NONE.equalsIgnoreCase(compressionMode)) {
+            stub = stub.withCompression(COMPRESSION_GZIP);
+        }
+        this.inputStream = stub.handleMsgs(initOutputStream(edgeKey, onUplinkResponse, onEdgeUpdate, onDownlink, onError));
+        setMessageCompression(true);
         this.inputStream.onNext(RequestMsg.newBuilder()
                 .setMsgType(RequestMsgType.CONNECT_RPC_MESSAGE)
                 .setConnectRequestMsg(ConnectRequestMsg.newBuilder()
@@ -147,7 +160,12 @@ public class EdgeGrpcClient implements EdgeRpcClient {
                                                          Consumer<EdgeConfiguration> onEdgeUpdate,
                                                          Consumer<DownlinkMsg> onDownlink,
                                                          Consumer<Exception> onError) {
-        return new StreamObserver<>() {
+        return new ClientResponseObserver<RequestMsg, ResponseMsg>() {
+            @Override
+            public void beforeStart(ClientCallStreamObserver<RequestMsg> requestStream) {
+                requestStream.setOnReadyHandler(() -> uplinkReadyHandler.run());
+            }
+
             @Override
             public void onNext(ResponseMsg responseMsg) {
                 if (responseMsg.hasConnectResponseMsg()) {
@@ -234,8 +252,14 @@ public class EdgeGrpcClient implements EdgeRpcClient {
 
     @Override
     public void sendUplinkMsg(UplinkMsg msg) {
+        sendUplinkMsg(msg, true);
+    }
+
+    @Override
+    public void sendUplinkMsg(UplinkMsg msg, boolean compress) {
         uplinkMsgLock.lock();
         try {
+            setMessageCompression(compress);
             this.inputStream.onNext(RequestMsg.newBuilder()
                     .setMsgType(RequestMsgType.UPLINK_RPC_MESSAGE)
                     .setUplinkMsg(msg)
@@ -252,6 +276,7 @@ public class EdgeGrpcClient implements EdgeRpcClient {
             SyncRequestMsg syncRequestMsg = SyncRequestMsg.newBuilder()
                     .setFullSync(fullSyncRequired)
                     .build();
+            setMessageCompression(true);
             this.inputStream.onNext(RequestMsg.newBuilder()
                     .setMsgType(RequestMsgType.SYNC_REQUEST_RPC_MESSAGE)
                     .setSyncRequestMsg(syncRequestMsg)
@@ -265,6 +290,7 @@ public class EdgeGrpcClient implements EdgeRpcClient {
     public void sendDownlinkResponseMsg(DownlinkResponseMsg downlinkResponseMsg) {
         uplinkMsgLock.lock();
         try {
+            setMessageCompression(true);
             this.inputStream.onNext(RequestMsg.newBuilder()
                     .setMsgType(RequestMsgType.UPLINK_RPC_MESSAGE)
                     .setDownlinkResponseMsg(downlinkResponseMsg)
@@ -274,4 +300,26 @@ public class EdgeGrpcClient implements EdgeRpcClient {
         }
     }
 
+    @Override
+    public boolean isUplinkReady() {
+        StreamObserver<RequestMsg> stream = this.inputStream;
+        if (stream instanceof ClientCallStreamObserver<RequestMsg> callStreamObserver) {
+            return callStreamObserver.isReady();
+        }
+        return stream != null;
+    }
+
+    @Override
+    public void setUplinkReadyHandler(Runnable uplinkReadyHandler) {
+        this.uplinkReadyHandler = uplinkReadyHandler;
+    }
+
+    private void setMessageCompression(boolean compress) {
+        // the flag is sticky and applies to every following message of the stream, so each writer sets it explicitly.
+        // It takes effect only if the compression is enabled for the call
+        if (this.inputStream instanceof ClientCallStreamObserver<RequestMsg> callStreamObserver) {
+            callStreamObserver.setMessageCompression(compress);
+        }
+    }
+
 }
@@ -38,7 +38,19 @@ public interface EdgeRpcClient {
 
     void sendUplinkMsg(UplinkMsg uplinkMsg);
 
+    void sendUplinkMsg(UplinkMsg uplinkMsg, boolean compress);
+
     void sendDownlinkResponseMsg(DownlinkResponseMsg downlinkResponseMsg);
 
+    /**
+     * @return {@code false} while the uplink stream can't accept more messages without buffering them in the transport
+     */
+    boolean isUplinkReady();
+
+    /**
+     * Sets the handler that is called when the uplink stream becomes ready to accept more messages.
+     */
+    void setUplinkReadyHandler(Runnable uplinkReadyHandler);
+
     int getServerMaxInboundMessageSize();
 }
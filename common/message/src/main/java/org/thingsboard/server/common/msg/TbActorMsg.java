@@ -30,4 +30,12 @@ public interface TbActorMsg {
     default void onTbActorStopped(TbActorStopReason reason) {
     }
 
+    /**
+     * Whether the message may be rejected with {@link TbActorStopReason#OVERLOADED} when the mailbox of the target actor is full.
+     * Only messages that are safe to drop, e.g. the ones whose callback makes the sender retry, should opt in.
+     */
+    default boolean isSheddable() {
+        return false;
+    }
+
 }
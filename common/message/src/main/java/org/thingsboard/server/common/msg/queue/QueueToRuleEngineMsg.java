@@ -56,15 +56,26 @@ public final class QueueToRuleEngineMsg extends TbRuleEngineActorMsg {
     public void onTbActorStopped(TbActorStopReason reason) {
         String message;
         if (msg.getRuleChainId() != null) {
-            message = reason == TbActorStopReason.STOPPED ?
-                    String.format("Rule chain [%s] stopped", msg.getRuleChainId().getId()) :
-                    String.format("Failed to initialize rule chain [%s]!", msg.getRuleChainId().getId());
+            message = switch (reason) {
+                case STOPPED -> String.format("Rule chain [%s] stopped", msg.getRuleChainId().getId());
+                case OVERLOADED -> String.format("Rule chain [%s] is overloaded", msg.getRuleChainId().getId());
+                default -> String.format("Failed to initialize rule chain [%s]!", msg.getRuleChainId().getId());
+            };
         } else {
-            message = reason == TbActorStopReason.STOPPED ? "Rule chain stopped" : "Failed to initialize rule chain!";
+            message = switch (reason) {
+                case STOPPED -> "Rule chain stopped";
+                case OVERLOADED -> "Rule chain is overloaded";
+                default -> "Failed to initialize rule chain!";
+            };
         }
         msg.getCallback().onFailure(new RuleEngineException(message));
     }
 
+    @Override
+    public boolean isSheddable() {
+        return true;
+    }
+
     public boolean isTellNext() {
         return relationTypes != null && !relationTypes.isEmpty();
     }
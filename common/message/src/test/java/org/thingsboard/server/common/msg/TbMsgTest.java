@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleChainId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TbMsgTest {
+
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testDataAsJsonIsParsedOnceAndSharedByCopies() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{\"temperature\":42}");
+
+        JsonNode json = msg.getDataAsJson();
+        assertThat(json.get("temperature").asInt()).isEqualTo(42);
+        assertThat(msg.getDataAsJson()).isSameAs(json);
+        assertThat(msg.copyWithRuleChainId(new RuleChainId(UUID.randomUUID())).getDataAsJson()).isSameAs(json);
+        assertThat(TbMsg.transformMsgMetadata(msg, new TbMsgMetaData()).getDataAsJson()).isSameAs(json);
+        assertThat(TbMsg.transformMsgOriginator(msg, new DeviceId(UUID.randomUUID())).getDataAsJson()).isSameAs(json);
+    }
+
+    @Test
+    public void testDataAsJsonIsInvalidatedOnDataChange() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{\"temperature\":42}");
+        msg.getDataAsJson();
+
+        TbMsg transformed = TbMsg.transformMsgData(msg, "{\"temperature\":43}");
+        assertThat(transformed.getDataAsJson().get("temperature").asInt()).isEqualTo(43);
+
+        TbMsg built = msg.toBuilder().data("{\"humidity\":50}").build();
+        assertThat(built.getDataAsJson().has("humidity")).isTrue();
+    }
+
+    @Test
+    public void testTransformMsgDataWithJsonNode() {
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{}");
+        ObjectNode data = JsonNodeFactory.instance.objectNode().put("temperature", 42);
+
+        TbMsg transformed = TbMsg.transformMsgData(msg, data);
+
+        assertThat(transformed.getData()).isEqualTo("{\"temperature\":42}");
+        assertThat(transformed.getDataAsJson()).isSameAs(data);
+        TbMsg deserialized = TbMsg.fromBytes(null, TbMsg.toByteArray(transformed), null);
+        assertThat(deserialized.getDataAsJson()).isEqualTo(data);
+    }
+
+    @Test
+    public void testDataAsJsonForEmptyAndInvalidData() {
+        assertThat(TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "").getDataAsJson()).isNull();
+        TbMsg invalid = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY, "{invalid");
+        assertThatThrownBy(invalid::getDataAsJson).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
@@ -18,10 +18,15 @@ package org.thingsboard.server.common.adaptor;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import org.apache.commons.lang3.math.NumberUtils;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.StringUtils;
@@ -53,16 +58,21 @@ import org.thingsboard.server.gen.transport.TransportProtos.ValidateBasicMqttCre
 import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceX509CertRequestMsg;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 public class JsonConverter {
@@ -85,6 +95,53 @@ public class JsonConverter {
         return convertToTelemetryProto(jsonElement, System.currentTimeMillis());
     }
 
+    /**
+     * Streaming counterpart of {@link #convertToTelemetryProto(JsonElement, long)} that reads the payload token by token
+     * instead of parsing it to a JSON tree first. Produces the same result for the same payload.
+     */
+    public static PostTelemetryMsg convertToTelemetryProto(Reader reader, long ts) throws JsonSyntaxException {
+        PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
+        JsonReader jsonReader = new JsonReader(reader);
+        try {
+            // same as JsonParser.parseReader
+            jsonReader.setLenient(true);
+            JsonToken token;
+            try {
+                token = jsonReader.peek();
+            } catch (EOFException e) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonNull.INSTANCE);
+            }
+            if (token == JsonToken.BEGIN_OBJECT) {
+                readTelemetryObject(jsonReader, ts, builder);
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                jsonReader.beginArray();
+                while (jsonReader.hasNext()) {
+                    if (jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+                        readTelemetryObject(jsonReader, ts, builder);
+                    } else {
+                        throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(jsonReader));
+                    }
+                }
+                jsonReader.endArray();
+            } else {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + JsonParser.parseReader(jsonReader));
+            }
+            jsonReader.setLenient(false);
+            if (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Did not consume the entire document.");
+            }
+        } catch (MalformedJsonException | EOFException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return builder.build();
+    }
+
+    public static PostTelemetryMsg convertToTelemetryProto(Reader reader) throws JsonSyntaxException {
+        return convertToTelemetryProto(reader, System.currentTimeMillis());
+    }
+
     public static TbPair<TransportProtos.PostTelemetryMsg, List<GatewayMetadata>> convertToGatewayTelemetry(JsonElement jsonElement, long systemTs) {
         List<GatewayMetadata> metadataResult = null;
         PostTelemetryMsg.Builder builder = PostTelemetryMsg.newBuilder();
@@ -233,44 +290,155 @@ public class JsonConverter {
     private static List<KeyValueProto> parseProtoValues(JsonObject valuesObject) {
         List<KeyValueProto> result = new ArrayList<>();
         for (Entry<String, JsonElement> valueEntry : valuesObject.entrySet()) {
-            JsonElement element = valueEntry.getValue();
-            if (element.isJsonPrimitive()) {
-                JsonPrimitive value = element.getAsJsonPrimitive();
-                if (value.isString()) {
-                    if (maxStringValueLength > 0 && value.getAsString().length() > maxStringValueLength) {
-                        String message = String.format("String value length [%d] for key [%s] is greater than maximum allowed [%d]", value.getAsString().length(), valueEntry.getKey(), maxStringValueLength);
-                        throw new JsonSyntaxException(message);
-                    }
-                    if (isTypeCastEnabled && NumberUtils.isParsable(value.getAsString())) {
-                        try {
-                            result.add(buildNumericKeyValueProto(value, valueEntry.getKey()));
-                        } catch (RuntimeException th) {
-                            result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.STRING_V)
-                                    .setStringV(value.getAsString()).build());
-                        }
-                    } else {
-                        result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.STRING_V)
-                                .setStringV(value.getAsString()).build());
+            KeyValueProto keyValueProto = toKeyValueProto(valueEntry.getKey(), valueEntry.getValue());
+            if (keyValueProto != null) {
+                result.add(keyValueProto);
+            }
+        }
+        return result;
+    }
+
+    private static KeyValueProto toKeyValueProto(String key, JsonElement element) {
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive value = element.getAsJsonPrimitive();
+            if (value.isString()) {
+                return toStringKeyValueProto(key, value.getAsString());
+            } else if (value.isBoolean()) {
+                return toBooleanKeyValueProto(key, value.getAsBoolean());
+            } else if (value.isNumber()) {
+                return buildNumericKeyValueProto(value.getAsString(), key);
+            } else if (!value.isJsonNull()) {
+                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + value);
+            }
+        } else if (element.isJsonObject() || element.isJsonArray()) {
+            return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.JSON_V).setJsonV(element.toString()).build();
+        } else if (!element.isJsonNull()) {
+            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + element);
+        }
+        return null;
+    }
+
+    private static KeyValueProto toStringKeyValueProto(String key, String value) {
+        if (maxStringValueLength > 0 && value.length() > maxStringValueLength) {
+            String message = String.format("String value length [%d] for key [%s] is greater than maximum allowed [%d]", value.length(), key, maxStringValueLength);
+            throw new JsonSyntaxException(message);
+        }
+        if (isTypeCastEnabled && NumberUtils.isParsable(value)) {
+            try {
+                return buildNumericKeyValueProto(value, key);
+            } catch (RuntimeException th) {
+                return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.STRING_V).setStringV(value).build();
+            }
+        }
+        return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.STRING_V).setStringV(value).build();
+    }
+
+    private static KeyValueProto toBooleanKeyValueProto(String key, boolean value) {
+        return KeyValueProto.newBuilder().setKey(key).setType(KeyValueType.BOOLEAN_V).setBoolV(value).build();
+    }
+
+    /*
+     * Whether the object is a "ts" + "values" pair or a plain set of values is known only at the end of the object,
+     * so the values are converted as they are read and conversion errors are kept in place of the values.
+     * They are thrown only if the values are used, exactly like with parseProtoValues over the parsed object.
+     */
+    @SuppressWarnings("unchecked")
+    private static void readTelemetryObject(JsonReader reader, long systemTs, PostTelemetryMsg.Builder request) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        JsonElement tsElement = null;
+        Object tsValues = null;
+        boolean hasValues = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if ("ts".equals(key)) {
+                tsElement = JsonParser.parseReader(reader);
+                values.put(key, toKeyValueProtoOrError(key, tsElement));
+            } else if ("values".equals(key)) {
+                hasValues = true;
+                if (tsElement != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    // the common case: values are used as ts values and never as a plain value
+                    Map<String, Object> streamedValues = new LinkedHashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String valueKey = reader.nextName();
+                        streamedValues.put(valueKey, readKeyValueProto(reader, valueKey));
                     }
-                } else if (value.isBoolean()) {
-                    result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.BOOLEAN_V)
-                            .setBoolV(value.getAsBoolean()).build());
-                } else if (value.isNumber()) {
-                    result.add(buildNumericKeyValueProto(value, valueEntry.getKey()));
-                } else if (!value.isJsonNull()) {
-                    throw new JsonSyntaxException(CAN_T_PARSE_VALUE + value);
+                    reader.endObject();
+                    tsValues = streamedValues;
+                } else {
+                    JsonElement element = JsonParser.parseReader(reader);
+                    tsValues = element;
+                    values.put(key, toKeyValueProtoOrError(key, element));
                 }
-            } else if (element.isJsonObject() || element.isJsonArray()) {
-                result.add(KeyValueProto.newBuilder().setKey(valueEntry.getKey()).setType(KeyValueType.JSON_V).setJsonV(element.toString()).build());
-            } else if (!element.isJsonNull()) {
-                throw new JsonSyntaxException(CAN_T_PARSE_VALUE + element);
+            } else {
+                values.put(key, readKeyValueProto(reader, key));
             }
         }
-        return result;
+        reader.endObject();
+
+        TsKvListProto.Builder builder = TsKvListProto.newBuilder();
+        if (tsElement != null && hasValues) {
+            builder.setTs(tsElement.getAsLong());
+            if (tsValues instanceof JsonElement element) {
+                builder.addAllKv(parseProtoValues(element.getAsJsonObject()));
+            } else {
+                addKeyValueProtos(builder, (Map<String, Object>) tsValues);
+            }
+        } else {
+            builder.setTs(systemTs);
+            addKeyValueProtos(builder, values);
+        }
+        request.addTsKvList(builder.build());
     }
 
-    private static KeyValueProto buildNumericKeyValueProto(JsonPrimitive value, String key) {
-        String valueAsString = value.getAsString();
+    private static Object readKeyValueProto(JsonReader reader, String key) throws IOException {
+        switch (reader.peek()) {
+            case STRING -> {
+                String value = reader.nextString();
+                return toKeyValueProtoOrError(() -> toStringKeyValueProto(key, value));
+            }
+            case NUMBER -> {
+                String value = reader.nextString();
+                return toKeyValueProtoOrError(() -> buildNumericKeyValueProto(value, key));
+            }
+            case BOOLEAN -> {
+                return toBooleanKeyValueProto(key, reader.nextBoolean());
+            }
+            case NULL -> {
+                reader.nextNull();
+                return null;
+            }
+            default -> {
+                JsonElement element = JsonParser.parseReader(reader);
+                return toKeyValueProtoOrError(() -> toKeyValueProto(key, element));
+            }
+        }
+    }
+
+    private static Object toKeyValueProtoOrError(String key, JsonElement element) {
+        return toKeyValueProtoOrError(() -> toKeyValueProto(key, element));
+    }
+
+    private static Object toKeyValueProtoOrError(Supplier<KeyValueProto> converter) {
+        try {
+            return converter.get();
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private static void addKeyValueProtos(TsKvListProto.Builder builder, Map<String, Object> values) {
+        for (Object value : values.values()) {
+            if (value instanceof RuntimeException e) {
+                throw e;
+            } else if (value != null) {
+                builder.addKv((KeyValueProto) value);
+            }
+        }
+    }
+
+    private static KeyValueProto buildNumericKeyValueProto(String valueAsString, String key) {
         KeyValueProto.Builder builder = KeyValueProto.newBuilder().setKey(key);
         var bd = new BigDecimal(valueAsString);
         if (bd.stripTrailingZeros().scale() <= 0 && !isSimpleDouble(valueAsString)) {
@@ -23,7 +23,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.parallel.Isolated;
 
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.List;
 
 @Isolated("JsonConverter static settings being modified")
 public class JsonConverterTest {
@@ -37,6 +39,7 @@ public class JsonConverterTest {
     public void after() {
         //restore default state for a static class
         JsonConverter.setTypeCastEnabled(true);
+        JsonConverter.setMaxStringValueLength(0);
     }
 
     @Test
@@ -108,4 +111,67 @@ public class JsonConverterTest {
             JsonConverter.convertToTelemetry(JsonParser.parseString("{\"meterReadingDelta\": 9.9701010061400066E19}"), 0L);
         });
     }
+
+    @Test
+    public void testStreamingTelemetryParsingMatchesTreeParsing() {
+        List<String> payloads = List.of(
+                "{\"temperature\": 42, \"humidity\": 73.5, \"active\": true, \"name\": \"dev\", \"none\": null}",
+                "{\"ts\": 1451649600512, \"values\": {\"key1\": \"value1\", \"key2\": 1E+1, \"key3\": \"101E-1\"}}",
+                "{\"values\": {\"key1\": 1}, \"ts\": \"1451649600512\", \"other\": {\"a\": [1, 2]}}",
+                "{\"ts\": 1451649600512, \"key1\": 1}",
+                "{\"values\": {\"key1\": 1}}",
+                "[{\"ts\": 1, \"values\": {\"a\": 1}}, {\"ts\": 2, \"values\": {\"a\": 2}}, {\"b\": 42.0}]",
+                "{\"big\": 99701010061400066001, \"bigDouble\": 9.9701010061400066E19, \"scale\": 0.12345678901234567890}",
+                "{\"json\": {\"nested\": {\"value\": \"<tag>\"}}, \"array\": [1, \"2\", null, false]}",
+                "{\"dup\": 1, \"other\": 2, \"dup\": null, \"last\": 3, \"dup\": 4}",
+                "{\"ts\": 1, \"values\": {\"a\": 1}, \"values\": {\"b\": 2}}",
+                "{unquoted: value, 'single': 'quoted'}",
+                "{}",
+                "[]",
+                "{\"ts\": 1.5E3, \"values\": {}}",
+                "{\"ts\": true, \"values\": {}}",
+                "{\"ts\": null, \"values\": {}}",
+                "{\"ts\": 1, \"values\": 5}",
+                "{\"ts\": 1, \"values\": {\"a\": 1}, \"huge\": 99701010061400066001}",
+                "[{\"a\": 1}, 5]",
+                "42",
+                "\"text\"",
+                "null",
+                "",
+                "{\"a\": 1} {\"b\": 2}",
+                "{\"a\": 1",
+                "{\"a\": }"
+        );
+        for (boolean typeCastEnabled : new boolean[]{true, false}) {
+            JsonConverter.setTypeCastEnabled(typeCastEnabled);
+            for (String payload : payloads) {
+                assertStreamingParsingMatchesTreeParsing(payload);
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingTelemetryParsingRespectsMaxStringValueLength() {
+        JsonConverter.setMaxStringValueLength(3);
+        assertStreamingParsingMatchesTreeParsing("{\"a\": \"1234\"}");
+        assertStreamingParsingMatchesTreeParsing("{\"ts\": 1, \"values\": {\"a\": \"123\"}, \"b\": \"1234\"}");
+        assertStreamingParsingMatchesTreeParsing("{\"ts\": 1, \"values\": {\"a\": \"1234\"}}");
+    }
+
+    private static void assertStreamingParsingMatchesTreeParsing(String payload) {
+        Object expected;
+        try {
+            expected = JsonConverter.convertToTelemetryProto(JsonParser.parseString(payload), 0L);
+        } catch (RuntimeException e) {
+            expected = e.getClass();
+        }
+        Object actual;
+        try {
+            actual = JsonConverter.convertToTelemetryProto(new StringReader(payload), 0L);
+        } catch (RuntimeException e) {
+            actual = e.getClass();
+        }
+        Assertions.assertEquals(expected, actual, payload);
+    }
+
 }
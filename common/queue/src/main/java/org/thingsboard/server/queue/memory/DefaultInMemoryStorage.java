@@ -16,67 +16,189 @@
 package org.thingsboard.server.queue.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.queue.TbQueueMsg;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
+@ConditionalOnProperty(prefix = "queue.in_memory.storage", value = "type", havingValue = "memory", matchIfMissing = true)
 @Slf4j
 public final class DefaultInMemoryStorage implements InMemoryStorage {
-    private final ConcurrentHashMap<String, BlockingQueue<TbQueueMsg>> storage = new ConcurrentHashMap<>();
+
+    private static final String STATS_KEY = "inMemoryQueue.";
+
+    private final ConcurrentHashMap<String, TopicQueue> storage = new ConcurrentHashMap<>();
+
+    @Value("${queue.in_memory.poll_size:1000}")
+    private int pollSize = 1000;
+    @Value("${queue.in_memory.overflow.capacity:0}")
+    private int capacity;
+    @Value("${queue.in_memory.overflow.policy:REJECT}")
+    private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+    @Value("${queue.in_memory.overflow.block_timeout_ms:1000}")
+    private long blockTimeoutMs = 1000;
+    @Value("${queue.in_memory.overflow.drop_oldest_topics:}")
+    private String dropOldestTopics = "";
+
+    @Autowired(required = false)
+    private StatsFactory statsFactory;
+
+    public DefaultInMemoryStorage() {
+    }
+
+    DefaultInMemoryStorage(int pollSize, int capacity, OverflowPolicy overflowPolicy, String dropOldestTopics) {
+        this.pollSize = pollSize;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.dropOldestTopics = dropOldestTopics;
+    }
 
     @Override
     public void printStats() {
-        if (log.isDebugEnabled()) {
-            storage.forEach((topic, queue) -> {
-                if (queue.size() > 0) {
-                    log.debug("[{}] Queue Size [{}]", topic, queue.size());
-                }
-            });
-        }
+        storage.forEach((topic, queue) -> {
+            queue.updateGauges();
+            long dropped = queue.dropped.getAndSet(0);
+            if (dropped > 0) {
+                log.warn("[{}] Dropped [{}] oldest messages due to the queue capacity {}", topic, dropped, capacity);
+            }
+            if (log.isDebugEnabled() && queue.size() > 0) {
+                log.debug("[{}] Queue Size [{}], oldest message age [{}] ms", topic, queue.size(), queue.getAge());
+            }
+        });
     }
 
     @Override
     public int getLagTotal() {
-        return storage.values().stream().map(BlockingQueue::size).reduce(0, Integer::sum);
+        return storage.values().stream().map(TopicQueue::size).reduce(0, Integer::sum);
     }
 
     @Override
     public int getLag(String topic) {
-        return Optional.ofNullable(storage.get(topic)).map(Collection::size).orElse(0);
+        TopicQueue queue = storage.get(topic);
+        return queue != null ? queue.size() : 0;
     }
 
     @Override
     public boolean put(String topic, TbQueueMsg msg) {
-        return storage.computeIfAbsent(topic, (t) -> new LinkedBlockingQueue<>()).add(msg);
+        return storage.computeIfAbsent(topic, TopicQueue::new).put(msg);
     }
 
     @SuppressWarnings("unchecked")
     @Override
     public <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException {
-        final BlockingQueue<TbQueueMsg> queue = storage.get(topic);
+        final TopicQueue queue = storage.get(topic);
         if (queue != null) {
-            final TbQueueMsg firstMsg = queue.poll();
-            if (firstMsg != null) {
-                final int queueSize = queue.size();
-                if (queueSize > 0) {
-                    final List<TbQueueMsg> entities = new ArrayList<>(Math.min(queueSize, 999) + 1);
-                    entities.add(firstMsg);
-                    queue.drainTo(entities, 999);
-                    return (List<T>) entities;
-                }
-                return Collections.singletonList((T) firstMsg);
-            }
+            final List<T> entities = (List<T>) queue.drain(pollSize);
+            queue.updateGauges();
+            return entities;
         }
         return Collections.emptyList();
     }
 
+    public enum OverflowPolicy {
+        /**
+         * Waits up to the block timeout for free space, then rejects the message.
+         */
+        BLOCK,
+        /**
+         * Rejects the message, so the producer callback fails with {@link org.thingsboard.server.queue.TbQueueOverflowException}.
+         */
+        REJECT,
+        /**
+         * Accepts the message and discards the oldest one.
+         */
+        DROP_OLDEST
+    }
+
+    private record QueuedMsg(TbQueueMsg msg, long ts) {
+    }
+
+    private class TopicQueue {
+
+        private final BlockingQueue<QueuedMsg> queue;
+        private final OverflowPolicy policy;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong lagGauge;
+        private final AtomicLong ageGauge;
+
+        private TopicQueue(String topic) {
+            this.queue = capacity > 0 ? new LinkedBlockingQueue<>(capacity) : new LinkedBlockingQueue<>();
+            this.policy = Arrays.stream(dropOldestTopics.split(","))
+                    .map(String::trim)
+                    .anyMatch(prefix -> !prefix.isEmpty() && topic.startsWith(prefix)) ? OverflowPolicy.DROP_OLDEST : overflowPolicy;
+            this.lagGauge = statsFactory != null ? statsFactory.createGauge(STATS_KEY + "lag", new AtomicLong(), "topic", topic) : new AtomicLong();
+            this.ageGauge = statsFactory != null ? statsFactory.createGauge(STATS_KEY + "ageMs", new AtomicLong(), "topic", topic) : new AtomicLong();
+        }
+
+        private boolean put(TbQueueMsg msg) {
+            QueuedMsg queuedMsg = new QueuedMsg(msg, System.currentTimeMillis());
+            if (queue.offer(queuedMsg)) {
+                return true;
+            }
+            switch (policy) {
+                case BLOCK:
+                    try {
+                        return queue.offer(queuedMsg, blockTimeoutMs, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                case DROP_OLDEST:
+                    while (!queue.offer(queuedMsg)) {
+                        if (queue.poll() != null) {
+                            dropped.incrementAndGet();
+                        }
+                    }
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private List<TbQueueMsg> drain(int maxElements) {
+            final QueuedMsg first = queue.poll();
+            if (first == null) {
+                return Collections.emptyList();
+            }
+            final int queueSize = queue.size();
+            if (queueSize == 0 || maxElements <= 1) {
+                return Collections.singletonList(first.msg());
+            }
+            final List<QueuedMsg> drained = new ArrayList<>(Math.min(queueSize, maxElements - 1));
+            queue.drainTo(drained, maxElements - 1);
+            final List<TbQueueMsg> entities = new ArrayList<>(drained.size() + 1);
+            entities.add(first.msg());
+            drained.forEach(queuedMsg -> entities.add(queuedMsg.msg()));
+            return entities;
+        }
+
+        private int size() {
+            return queue.size();
+        }
+
+        private long getAge() {
+            QueuedMsg head = queue.peek();
+            return head != null ? System.currentTimeMillis() - head.ts() : 0;
+        }
+
+        private void updateGauges() {
+            lagGauge.set(queue.size());
+            ageGauge.set(getAge());
+        }
+
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.thingsboard.server.queue.memory;
 
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
 
 import java.util.List;
 
@@ -31,4 +32,17 @@ public interface InMemoryStorage {
 
     <T extends TbQueueMsg> List<T> get(String topic) throws InterruptedException;
 
+    /**
+     * Returns the next batch of messages of the topic, using the decoder for storages that keep messages serialized.
+     */
+    default <T extends TbQueueMsg> List<T> get(String topic, TbQueueMsgDecoder<T> decoder) throws InterruptedException {
+        return get(topic);
+    }
+
+    /**
+     * Marks all messages returned for the topic so far as processed.
+     */
+    default void commit(String topic) {
+    }
+
 }
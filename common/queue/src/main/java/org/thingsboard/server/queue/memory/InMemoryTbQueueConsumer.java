@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueConsumer;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
 
 import java.util.Collections;
 import java.util.List;
@@ -28,12 +29,18 @@ import java.util.stream.Collectors;
 @Slf4j
 public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueConsumer<T> {
     private final InMemoryStorage storage;
+    private final TbQueueMsgDecoder<T> decoder;
     private volatile Set<TopicPartitionInfo> partitions;
     private volatile boolean stopped;
     private volatile boolean subscribed;
 
     public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic) {
+        this(storage, topic, null);
+    }
+
+    public InMemoryTbQueueConsumer(InMemoryStorage storage, String topic, TbQueueMsgDecoder<T> decoder) {
         this.storage = storage;
+        this.decoder = decoder;
         this.topic = topic;
         stopped = false;
     }
@@ -76,7 +83,7 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
                     .stream()
                     .map(tpi -> {
                         try {
-                            return storage.get(tpi.getFullTopicName());
+                            return decoder != null ? storage.get(tpi.getFullTopicName(), decoder) : storage.get(tpi.getFullTopicName());
                         } catch (InterruptedException e) {
                             if (!stopped) {
                                 log.error("Queue was interrupted.", e);
@@ -102,6 +109,9 @@ public class InMemoryTbQueueConsumer<T extends TbQueueMsg> implements TbQueueCon
 
     @Override
     public void commit() {
+        if (subscribed) {
+            partitions.forEach(tpi -> storage.commit(tpi.getFullTopicName()));
+        }
     }
 
     @Override
@@ -19,6 +19,7 @@ import lombok.Data;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.queue.TbQueueCallback;
 import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueOverflowException;
 import org.thingsboard.server.queue.TbQueueProducer;
 
 @Data
@@ -47,7 +48,7 @@ public class InMemoryTbQueueProducer<T extends TbQueueMsg> implements TbQueuePro
             }
         } else {
             if (callback != null) {
-                callback.onFailure(new RuntimeException("Failure add msg to InMemoryQueue"));
+                callback.onFailure(new TbQueueOverflowException(tpi.getFullTopicName()));
             }
         }
     }
@@ -0,0 +1,36 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+/**
+ * When the memory-mapped queue files are forced to the disk, in addition to segment roll and shutdown.
+ */
+public enum MappedFileFsyncPolicy {
+
+    /**
+     * On every consumer commit, so neither committed offsets nor the records appended before the commit are lost on power failure.
+     */
+    COMMIT,
+    /**
+     * Periodically, so at most one interval of records and offsets is lost or redelivered on power failure.
+     */
+    INTERVAL,
+    /**
+     * Only when the OS flushes the page cache, a power failure may lose or redeliver any unflushed messages.
+     */
+    NONE
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.StringUtils;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Durable alternative to {@link DefaultInMemoryStorage} for edge deployments: messages are appended to
+ * memory-mapped segment files, so the queue is bounded by disk instead of heap and survives restarts.
+ * Each topic keeps its own consumer offset, which advances when the consumer commits.
+ * The files are forced to the disk according to the {@link MappedFileFsyncPolicy}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "queue.in_memory.storage", value = "type", havingValue = "mmap")
+public class MappedFileQueueStorage implements InMemoryStorage {
+
+    @Value("${queue.in_memory.poll_size:1000}")
+    private int pollSize = 1000;
+    @Value("${queue.in_memory.storage.mmap.directory:}")
+    private String directory;
+    @Value("${queue.in_memory.storage.mmap.segment_size_bytes:16777216}")
+    private int segmentSize;
+    @Value("${queue.in_memory.storage.mmap.max_size_bytes:1073741824}")
+    private long maxSizeBytes;
+    @Value("${queue.in_memory.storage.mmap.fsync_policy:INTERVAL}")
+    private MappedFileFsyncPolicy fsyncPolicy = MappedFileFsyncPolicy.INTERVAL;
+    @Value("${queue.in_memory.storage.mmap.fsync_interval_ms:1000}")
+    private long fsyncIntervalMs = 1000;
+
+    private final ConcurrentMap<String, MappedFileTopicLog> logs = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private Path root;
+    private ScheduledExecutorService fsyncExecutor;
+
+    public MappedFileQueueStorage() {
+    }
+
+    MappedFileQueueStorage(String directory, int segmentSize, long maxSizeBytes, MappedFileFsyncPolicy fsyncPolicy) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSizeBytes = maxSizeBytes;
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (StringUtils.isBlank(directory)) {
+            // a temporary directory may be cleared on reboot, which silently drops the undelivered messages
+            throw new IllegalArgumentException("Directory of the mmap queue storage is not set. " +
+                    "Please set TB_QUEUE_IN_MEMORY_MMAP_DIRECTORY to a directory on a persistent volume");
+        }
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.filter(Files::isDirectory).toList()) {
+                String name = dir.getFileName().toString();
+                logs.put(name, new MappedFileTopicLog(name, dir, segmentSize, usedBytes, maxSizeBytes, fsyncPolicy));
+            }
+        }
+        if (fsyncPolicy == MappedFileFsyncPolicy.INTERVAL && fsyncIntervalMs > 0) {
+            fsyncExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("mmap-queue-fsync"));
+            fsyncExecutor.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        log.info("Initialized mmap queue storage in [{}] with {} topic(s), {} bytes used, fsync policy {}", root, logs.size(), usedBytes.get(), fsyncPolicy);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (fsyncExecutor != null) {
+            fsyncExecutor.shutdownNow();
+        }
+        logs.values().forEach(MappedFileTopicLog::close);
+        logs.clear();
+    }
+
+    @Override
+    public void printStats() {
+        if (log.isDebugEnabled()) {
+            logs.forEach((topic, topicLog) -> {
+                long lag = topicLog.getLag();
+                if (lag > 0) {
+                    log.debug("[{}] Queue Size [{}]", topic, lag);
+                }
+            });
+            log.debug("Queue storage size [{}] bytes", usedBytes.get());
+        }
+    }
+
+    @Override
+    public int getLagTotal() {
+        return (int) logs.values().stream().mapToLong(MappedFileTopicLog::getLag).sum();
+    }
+
+    @Override
+    public int getLag(String topic) {
+        MappedFileTopicLog topicLog = logs.get(toDirName(topic));
+        return topicLog != null ? (int) topicLog.getLag() : 0;
+    }
+
+    @Override
+    public boolean put(String topic, TbQueueMsg msg) {
+        try {
+            return getOrCreateLog(topic).append(msg);
+        } catch (IOException e) {
+            log.error("[{}] Failed to append message", topic, e);
+            return false;
+        }
+    }
+
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic) {
+        return get(topic, msg -> {
+            @SuppressWarnings("unchecked")
+            T result = (T) msg;
+            return result;
+        });
+    }
+
+    @Override
+    public <T extends TbQueueMsg> List<T> get(String topic, TbQueueMsgDecoder<T> decoder) {
+        return getOrCreateLog(topic).read(pollSize, decoder);
+    }
+
+    @Override
+    public void commit(String topic) {
+        MappedFileTopicLog topicLog = logs.get(toDirName(topic));
+        if (topicLog != null) {
+            topicLog.commit();
+        }
+    }
+
+    void sync() {
+        for (MappedFileTopicLog topicLog : logs.values()) {
+            try {
+                topicLog.sync();
+            } catch (Exception e) {
+                log.warn("Failed to sync queue storage files", e);
+            }
+        }
+    }
+
+    private MappedFileTopicLog getOrCreateLog(String topic) {
+        return logs.computeIfAbsent(toDirName(topic), name -> {
+            try {
+                return new MappedFileTopicLog(topic, root.resolve(name), segmentSize, usedBytes, maxSizeBytes, fsyncPolicy);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static String toDirName(String topic) {
+        return topic.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+}
@@ -0,0 +1,369 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Append-only log of a single topic, split into fixed-size memory-mapped segment files.
+ * <p>
+ * Every record is stored as {@code [int length][payload]}. The length is written after the payload, so a record
+ * that was not completely written before a crash is never read back. The offset of the next record to deliver
+ * after a restart is kept in a separate file and only advances on {@link #commit()}, which gives at-least-once
+ * delivery. Segments that were fully committed are deleted.
+ * <p>
+ * Written records and offsets reach the disk when the page cache is flushed by the OS, unless they are forced by
+ * {@link #sync()}: on every commit with the {@link MappedFileFsyncPolicy#COMMIT} policy, or periodically by the storage.
+ */
+@Slf4j
+class MappedFileTopicLog {
+
+    static final String SEGMENT_SUFFIX = ".log";
+    static final String OFFSET_FILE = "consumer.offset";
+
+    private static final int LENGTH_SIZE = Integer.BYTES;
+    private static final int KEY_SIZE = 1 + 2 * Long.BYTES;
+
+    private final String topic;
+    private final Path dir;
+    private final int segmentSize;
+    private final AtomicLong usedBytes;
+    private final long maxSizeBytes;
+    private final MappedFileFsyncPolicy fsyncPolicy;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final FileChannel offsetChannel;
+    private final MappedByteBuffer offsetBuffer;
+
+    private long writeOffset;
+    private long committedOffset;
+    private long readOffset;
+    private Segment readSegment;
+    private int readPosition;
+    private boolean offsetUnsynced;
+
+    MappedFileTopicLog(String topic, Path dir, int segmentSize, AtomicLong usedBytes, long maxSizeBytes,
+                       MappedFileFsyncPolicy fsyncPolicy) throws IOException {
+        this.topic = topic;
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.usedBytes = usedBytes;
+        this.maxSizeBytes = maxSizeBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(dir);
+        offsetChannel = FileChannel.open(dir.resolve(OFFSET_FILE), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        offsetBuffer = offsetChannel.map(FileChannel.MapMode.READ_WRITE, 0, Long.BYTES);
+        recover();
+    }
+
+    synchronized boolean append(TbQueueMsg msg) throws IOException {
+        byte[] data = msg.getData();
+        List<byte[]> headers = new ArrayList<>();
+        int size = KEY_SIZE + Integer.BYTES;
+        if (msg.getHeaders() != null) {
+            for (Map.Entry<String, byte[]> header : msg.getHeaders().getData().entrySet()) {
+                byte[] key = header.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] value = header.getValue() != null ? header.getValue() : new byte[0];
+                headers.add(key);
+                headers.add(value);
+                size += 2 * Integer.BYTES + key.length + value.length;
+            }
+        }
+        size += Integer.BYTES + (data != null ? data.length : 0);
+        if (LENGTH_SIZE + size > segmentSize) {
+            log.warn("[{}] Message of {} bytes exceeds the segment size {}", topic, size, segmentSize);
+            return false;
+        }
+        Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (segment == null || segment.writePosition + LENGTH_SIZE + size > segment.buffer.capacity()) {
+            segment = roll(segment);
+            if (segment == null) {
+                return false;
+            }
+        }
+        ByteBuffer out = segment.buffer.duplicate();
+        out.position(segment.writePosition + LENGTH_SIZE);
+        UUID key = msg.getKey();
+        out.put((byte) (key != null ? 1 : 0));
+        out.putLong(key != null ? key.getMostSignificantBits() : 0L);
+        out.putLong(key != null ? key.getLeastSignificantBits() : 0L);
+        out.putInt(headers.size() / 2);
+        for (byte[] bytes : headers) {
+            out.putInt(bytes.length);
+            out.put(bytes);
+        }
+        if (data != null) {
+            out.putInt(data.length);
+            out.put(data);
+        } else {
+            out.putInt(0);
+        }
+        segment.buffer.putInt(segment.writePosition, size);
+        segment.writePosition += LENGTH_SIZE + size;
+        segment.count++;
+        segment.unsynced = true;
+        writeOffset++;
+        if (readSegment == null) {
+            readSegment = segment;
+            readPosition = 0;
+        }
+        return true;
+    }
+
+    synchronized <T extends TbQueueMsg> List<T> read(int maxRecords, TbQueueMsgDecoder<T> decoder) {
+        if (readOffset >= writeOffset) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>((int) Math.min(maxRecords, writeOffset - readOffset));
+        while (result.size() < maxRecords && readOffset < writeOffset) {
+            if (readPosition >= readSegment.writePosition) {
+                int idx = segments.indexOf(readSegment);
+                if (idx < 0 || idx + 1 >= segments.size()) {
+                    break;
+                }
+                readSegment = segments.get(idx + 1);
+                readPosition = 0;
+                readOffset = readSegment.baseOffset;
+                continue;
+            }
+            long offset = readOffset;
+            MappedTbQueueMsg msg = readRecord(readSegment.buffer, readPosition);
+            readPosition += LENGTH_SIZE + readSegment.buffer.getInt(readPosition);
+            readOffset++;
+            try {
+                result.add(decoder.decode(msg));
+            } catch (InvalidProtocolBufferException | RuntimeException e) {
+                log.warn("[{}] Failed to decode message at offset {}, skipping it", topic, offset, e);
+            }
+        }
+        return result;
+    }
+
+    synchronized void commit() {
+        if (committedOffset == readOffset) {
+            return;
+        }
+        committedOffset = readOffset;
+        offsetBuffer.putLong(0, committedOffset);
+        offsetUnsynced = true;
+        while (segments.size() > 1) {
+            Segment first = segments.get(0);
+            if (first == readSegment || first.baseOffset + first.count > committedOffset) {
+                break;
+            }
+            segments.remove(0);
+            delete(first);
+        }
+        if (fsyncPolicy == MappedFileFsyncPolicy.COMMIT) {
+            sync();
+        }
+    }
+
+    /**
+     * Forces the records appended and the offset committed since the previous sync to the disk.
+     * The records are forced first, so a synced offset never points past records that may be lost.
+     */
+    synchronized void sync() {
+        for (Segment segment : segments) {
+            if (segment.unsynced) {
+                segment.buffer.force();
+                segment.unsynced = false;
+            }
+        }
+        if (offsetUnsynced) {
+            offsetBuffer.force();
+            offsetUnsynced = false;
+        }
+    }
+
+    synchronized boolean isSynced() {
+        return !offsetUnsynced && segments.stream().noneMatch(segment -> segment.unsynced);
+    }
+
+    synchronized long getLag() {
+        return writeOffset - readOffset;
+    }
+
+    synchronized void close() {
+        offsetBuffer.force();
+        closeQuietly(offsetChannel);
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            closeQuietly(segment.channel);
+        }
+        segments.clear();
+        readSegment = null;
+    }
+
+    private Segment roll(Segment current) throws IOException {
+        if (usedBytes.addAndGet(segmentSize) > maxSizeBytes && maxSizeBytes > 0) {
+            usedBytes.addAndGet(-segmentSize);
+            log.warn("[{}] Queue storage size limit of {} bytes is reached", topic, maxSizeBytes);
+            return null;
+        }
+        if (current != null) {
+            current.buffer.force();
+            current.unsynced = false;
+        }
+        Segment segment;
+        try {
+            segment = open(writeOffset, dir.resolve(String.format("%020d%s", writeOffset, SEGMENT_SUFFIX)), segmentSize);
+        } catch (IOException e) {
+            usedBytes.addAndGet(-segmentSize);
+            throw e;
+        }
+        segments.add(segment);
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparing(path -> path.getFileName().toString()))
+                    .toList();
+        }
+        for (Path path : files) {
+            String name = path.getFileName().toString();
+            long baseOffset = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            long fileSize = Files.size(path);
+            Segment segment = open(baseOffset, path, (int) fileSize);
+            ByteBuffer buffer = segment.buffer;
+            int position = 0;
+            while (position + LENGTH_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + LENGTH_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                position += LENGTH_SIZE + length;
+                segment.count++;
+            }
+            segment.writePosition = position;
+            segments.add(segment);
+            usedBytes.addAndGet(fileSize);
+        }
+        committedOffset = offsetBuffer.getLong(0);
+        if (segments.isEmpty()) {
+            writeOffset = committedOffset;
+        } else {
+            Segment last = segments.get(segments.size() - 1);
+            writeOffset = last.baseOffset + last.count;
+            committedOffset = Math.max(committedOffset, segments.get(0).baseOffset);
+            committedOffset = Math.min(committedOffset, writeOffset);
+        }
+        readOffset = committedOffset;
+        for (Segment segment : segments) {
+            if (committedOffset < segment.baseOffset + segment.count || segment == segments.get(segments.size() - 1)) {
+                readSegment = segment;
+                readPosition = 0;
+                for (long offset = segment.baseOffset; offset < committedOffset; offset++) {
+                    readPosition += LENGTH_SIZE + segment.buffer.getInt(readPosition);
+                }
+                break;
+            }
+        }
+        if (writeOffset > readOffset) {
+            log.info("[{}] Recovered {} undelivered messages from {} segment(s)", topic, writeOffset - readOffset, segments.size());
+        }
+    }
+
+    private MappedTbQueueMsg readRecord(ByteBuffer buffer, int position) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(position + LENGTH_SIZE);
+        boolean hasKey = in.get() == 1;
+        long msb = in.getLong();
+        long lsb = in.getLong();
+        DefaultTbQueueMsgHeaders headers = new DefaultTbQueueMsgHeaders();
+        int headersCount = in.getInt();
+        for (int i = 0; i < headersCount; i++) {
+            byte[] key = new byte[in.getInt()];
+            in.get(key);
+            byte[] value = new byte[in.getInt()];
+            in.get(value);
+            headers.put(new String(key, StandardCharsets.UTF_8), value);
+        }
+        int dataLength = in.getInt();
+        ByteBuffer data = in.slice(in.position(), dataLength).asReadOnlyBuffer();
+        return new MappedTbQueueMsg(hasKey ? new UUID(msb, lsb) : null, headers, data);
+    }
+
+    private void delete(Segment segment) {
+        closeQuietly(segment.channel);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            log.warn("[{}] Failed to delete segment {}", topic, segment.path, e);
+        }
+        usedBytes.addAndGet(-segment.buffer.capacity());
+    }
+
+    private static Segment open(long baseOffset, Path path, int size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new Segment(baseOffset, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close file channel", e);
+        }
+    }
+
+    private static class Segment {
+        private final long baseOffset;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int count;
+        private boolean unsynced;
+
+        private Segment(long baseOffset, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.baseOffset = baseOffset;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import com.google.protobuf.GeneratedMessageV3;
+import com.google.protobuf.Parser;
+import lombok.Getter;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.TbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+/**
+ * Queue message read from a memory-mapped segment. The payload is exposed as a read-only view of the mapped file,
+ * so decoders may parse it without copying it to the heap first.
+ */
+public class MappedTbQueueMsg implements TbQueueMsg {
+
+    @Getter
+    private final UUID key;
+    @Getter
+    private final TbQueueMsgHeaders headers;
+    private final ByteBuffer data;
+
+    MappedTbQueueMsg(UUID key, TbQueueMsgHeaders headers, ByteBuffer data) {
+        this.key = key;
+        this.headers = headers;
+        this.data = data;
+    }
+
+    public ByteBuffer getDataBuffer() {
+        return data.duplicate();
+    }
+
+    @Override
+    public byte[] getData() {
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Decoder for in-memory queue consumers: parses mapped payloads straight from the file and falls back to
+     * the byte array for any other message.
+     */
+    public static <T extends GeneratedMessageV3> TbQueueMsgDecoder<TbProtoQueueMsg<T>> protoDecoder(Parser<T> parser) {
+        return msg -> new TbProtoQueueMsg<>(msg.getKey(), msg instanceof MappedTbQueueMsg mapped ?
+                parser.parseFrom(mapped.getDataBuffer()) : parser.parseFrom(msg.getData()), msg.getHeaders());
+    }
+
+}
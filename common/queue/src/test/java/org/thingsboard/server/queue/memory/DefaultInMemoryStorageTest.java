@@ -112,4 +112,39 @@ public class DefaultInMemoryStorageTest {
         testPollOnce(10);
     }
 
+    @Test
+    public void givenFullTopicWithRejectPolicy_whenPut_thenRejectMessage() throws InterruptedException {
+        storage = new DefaultInMemoryStorage(MAX_POLL_SIZE, 2, DefaultInMemoryStorage.OverflowPolicy.REJECT, "");
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isFalse();
+        assertThat(storage.getLag(topic)).isEqualTo(2);
+
+        storage.get(topic);
+        assertThat(storage.put(topic, mock(TbQueueMsg.class))).isTrue();
+    }
+
+    @Test
+    public void givenFullTopicWithDropOldestPolicy_whenPut_thenDiscardOldestMessage() throws InterruptedException {
+        storage = new DefaultInMemoryStorage(MAX_POLL_SIZE, 2, DefaultInMemoryStorage.OverflowPolicy.REJECT, "tb_core_notification");
+        TbQueueMsg first = mock(TbQueueMsg.class);
+        TbQueueMsg second = mock(TbQueueMsg.class);
+        TbQueueMsg third = mock(TbQueueMsg.class);
+        storage.put(topic, first);
+        storage.put(topic, second);
+        assertThat(storage.put(topic, third)).isTrue();
+
+        assertThat(storage.get(topic)).containsExactly(second, third);
+    }
+
+    @Test
+    public void givenPollSize_whenGet_thenDrainAtMostPollSize() throws InterruptedException {
+        storage = new DefaultInMemoryStorage(3, 0, DefaultInMemoryStorage.OverflowPolicy.REJECT, "");
+        for (int i = 0; i < 5; i++) {
+            storage.put(topic, mock(TbQueueMsg.class));
+        }
+        assertThat(storage.get(topic)).hasSize(3);
+        assertThat(storage.get(topic)).hasSize(2);
+    }
+
 }
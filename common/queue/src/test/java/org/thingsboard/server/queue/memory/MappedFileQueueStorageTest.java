@@ -0,0 +1,189 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.queue.memory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.thingsboard.server.gen.transport.TransportProtos.ToCoreMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.DeviceStateServiceMsgProto;
+import org.thingsboard.server.queue.TbQueueMsgDecoder;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.thingsboard.server.queue.memory.MappedTbQueueMsg.protoDecoder;
+
+public class MappedFileQueueStorageTest {
+
+    static final int SEGMENT_SIZE = 4096;
+    final String topic = "tb_core.0";
+    final TbQueueMsgDecoder<TbProtoQueueMsg<ToCoreMsg>> decoder = protoDecoder(ToCoreMsg.parser());
+
+    @TempDir
+    Path dir;
+
+    MappedFileQueueStorage storage;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        storage = newStorage(0);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        storage.destroy();
+    }
+
+    @Test
+    public void givenMessages_whenGet_thenReturnDecodedMessagesInOrder() throws IOException {
+        List<TbProtoQueueMsg<ToCoreMsg>> msgs = Stream.generate(this::newMsg).limit(1001).toList();
+        msgs.get(0).getHeaders().put("header", new byte[]{1, 2});
+        msgs.forEach(msg -> assertThat(storage.put(topic, msg)).isTrue());
+
+        assertThat(storage.getLag(topic)).isEqualTo(1001);
+        List<TbProtoQueueMsg<ToCoreMsg>> polled = storage.get(topic, decoder);
+        assertThat(polled).hasSize(1000);
+        assertThat(polled.get(0).getHeaders().get("header")).containsExactly(1, 2);
+        for (int i = 0; i < polled.size(); i++) {
+            assertThat(polled.get(i).getKey()).isEqualTo(msgs.get(i).getKey());
+            assertThat(polled.get(i).getValue()).isEqualTo(msgs.get(i).getValue());
+        }
+        assertThat(storage.get(topic, decoder)).hasSize(1);
+        assertThat(storage.getLagTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void givenUncommittedMessages_whenRestart_thenRedeliverThem() throws IOException {
+        List<TbProtoQueueMsg<ToCoreMsg>> msgs = Stream.generate(this::newMsg).limit(10).toList();
+        msgs.forEach(msg -> storage.put(topic, msg));
+        assertThat(storage.get(topic, decoder)).hasSize(10);
+
+        storage.destroy();
+        storage = newStorage(0);
+
+        List<TbProtoQueueMsg<ToCoreMsg>> polled = storage.get(topic, decoder);
+        assertThat(polled).extracting(TbProtoQueueMsg::getKey).containsExactlyElementsOf(msgs.stream().map(TbProtoQueueMsg::getKey).toList());
+        storage.commit(topic);
+
+        storage.destroy();
+        storage = newStorage(0);
+
+        assertThat(storage.getLagTotal()).isEqualTo(0);
+        assertThat(storage.get(topic, decoder)).isEmpty();
+    }
+
+    @Test
+    public void givenCommittedSegments_whenCommit_thenDeleteThem() throws IOException {
+        for (int i = 0; i < 500; i++) {
+            storage.put(topic, newMsg());
+        }
+        assertThat(countSegments()).isGreaterThan(1);
+
+        assertThat(storage.get(topic, decoder)).hasSize(500);
+        storage.commit(topic);
+
+        assertThat(countSegments()).isEqualTo(1);
+        storage.put(topic, newMsg());
+        assertThat(storage.get(topic, decoder)).hasSize(1);
+    }
+
+    @Test
+    public void givenSizeLimit_whenExceeded_thenRejectMessages() throws IOException {
+        storage.destroy();
+        storage = newStorage(SEGMENT_SIZE);
+
+        int accepted = 0;
+        while (storage.put(topic, newMsg())) {
+            accepted++;
+        }
+        assertThat(accepted).isPositive();
+        assertThat(storage.getLag(topic)).isEqualTo(accepted);
+
+        storage.get(topic, decoder);
+        storage.commit(topic);
+        assertThat(storage.put(topic, newMsg())).isFalse();
+    }
+
+    @Test
+    public void givenNoDirectory_whenInit_thenFail() {
+        MappedFileQueueStorage storage = new MappedFileQueueStorage("", SEGMENT_SIZE, 0, MappedFileFsyncPolicy.NONE);
+        assertThatThrownBy(storage::init).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void givenCommitFsyncPolicy_whenCommit_thenSyncRecordsAndOffset() throws IOException {
+        MappedFileTopicLog topicLog = new MappedFileTopicLog(topic, dir.resolve("commit"), SEGMENT_SIZE, new AtomicLong(), 0, MappedFileFsyncPolicy.COMMIT);
+        try {
+            topicLog.append(newMsg());
+            topicLog.append(newMsg());
+            assertThat(topicLog.isSynced()).isFalse();
+
+            topicLog.read(1, decoder);
+            topicLog.commit();
+            assertThat(topicLog.isSynced()).isTrue();
+        } finally {
+            topicLog.close();
+        }
+    }
+
+    @Test
+    public void givenNoneFsyncPolicy_whenCommit_thenSyncOnlyOnDemand() throws IOException {
+        MappedFileTopicLog topicLog = new MappedFileTopicLog(topic, dir.resolve("none"), SEGMENT_SIZE, new AtomicLong(), 0, MappedFileFsyncPolicy.NONE);
+        try {
+            topicLog.append(newMsg());
+            topicLog.read(1, decoder);
+            topicLog.commit();
+            assertThat(topicLog.isSynced()).isFalse();
+
+            topicLog.sync();
+            assertThat(topicLog.isSynced()).isTrue();
+        } finally {
+            topicLog.close();
+        }
+    }
+
+    private MappedFileQueueStorage newStorage(long maxSizeBytes) throws IOException {
+        MappedFileQueueStorage storage = new MappedFileQueueStorage(dir.toString(), SEGMENT_SIZE, maxSizeBytes, MappedFileFsyncPolicy.NONE);
+        storage.init();
+        return storage;
+    }
+
+    private long countSegments() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(path -> path.toString().endsWith(MappedFileTopicLog.SEGMENT_SUFFIX)).count();
+        }
+    }
+
+    private TbProtoQueueMsg<ToCoreMsg> newMsg() {
+        UUID id = UUID.randomUUID();
+        return new TbProtoQueueMsg<>(id, ToCoreMsg.newBuilder()
+                .setDeviceStateServiceMsg(DeviceStateServiceMsgProto.newBuilder()
+                        .setTenantIdMSB(id.getMostSignificantBits())
+                        .setTenantIdLSB(id.getLeastSignificantBits()))
+                .build());
+    }
+
+}
@@ -16,6 +16,7 @@
 package org.thingsboard.server.common.stats;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
@@ -105,6 +106,14 @@ public class DefaultStatsFactory implements StatsFactory {
         return timerBuilder.register(meterRegistry);
     }
 
+    @Override
+    public Timer createTimer(String key, double[] percentiles, String... tags) {
+        return Timer.builder(key)
+                .tags(tags)
+                .publishPercentiles(percentiles)
+                .register(meterRegistry);
+    }
+
     @Override
     public StatsTimer createTimer(StatsType type, String name, String... tags) {
         return new StatsTimer(name, Timer.builder(type.getName())
@@ -112,6 +121,17 @@ public class DefaultStatsFactory implements StatsFactory {
                 .register(meterRegistry));
     }
 
+    @Override
+    public DistributionSummary createDistributionSummary(String key, String... tags) {
+        DistributionSummary.Builder summaryBuilder = DistributionSummary.builder(key)
+                .tags(tags)
+                .publishPercentiles();
+        if (timerPercentiles != null && timerPercentiles.length > 0) {
+            summaryBuilder.publishPercentiles(timerPercentiles);
+        }
+        return summaryBuilder.register(meterRegistry);
+    }
+
     private static String[] getTags(String statsName, String[] otherTags) {
         String[] tags = new String[]{STATS_NAME_TAG, statsName};
         if (otherTags.length > 0) {
@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.common.stats;
 
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Timer;
 
 public interface StatsFactory {
@@ -29,6 +30,10 @@ public interface StatsFactory {
 
     Timer createTimer(String key, String... tags);
 
+    Timer createTimer(String key, double[] percentiles, String... tags);
+
     StatsTimer createTimer(StatsType type, String name, String... tags);
 
+    DistributionSummary createDistributionSummary(String key, String... tags);
+
 }
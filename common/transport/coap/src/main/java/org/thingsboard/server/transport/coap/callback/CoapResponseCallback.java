@@ -15,9 +15,11 @@
  */
 package org.thingsboard.server.transport.coap.callback;
 
+import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.queue.TbQueueOverflowException;
 
 public class CoapResponseCallback implements TransportServiceCallback<Void> {
 
@@ -45,7 +47,7 @@ public class CoapResponseCallback implements TransportServiceCallback<Void> {
      */
     @Override
     public void onError(Throwable e) {
-        exchange.respond(onFailureResponse);
+        exchange.respond(e instanceof TbQueueOverflowException ? new Response(CoAP.ResponseCode.SERVICE_UNAVAILABLE) : onFailureResponse);
     }
 
     protected boolean isConRequest() {
@@ -19,6 +19,7 @@ import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.server.resources.CoapExchange;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.queue.TbQueueOverflowException;
 
 public class CoapResponseCodeCallback implements TransportServiceCallback<Void> {
 
@@ -41,7 +42,7 @@ public class CoapResponseCodeCallback implements TransportServiceCallback<Void>
 
     @Override
     public void onError(Throwable e) {
-        exchange.respond(onFailureResponse);
+        exchange.respond(e instanceof TbQueueOverflowException ? CoAP.ResponseCode.SERVICE_UNAVAILABLE : onFailureResponse);
     }
 
     protected boolean isConRequest() {
@@ -76,6 +76,7 @@ import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.ProvisionDeviceResponseMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceX509CertRequestMsg;
 import org.thingsboard.server.gen.transport.mqtt.SparkplugBProto;
+import org.thingsboard.server.queue.TbQueueOverflowException;
 import org.thingsboard.server.queue.scheduler.SchedulerComponent;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.adaptors.ProtoMqttAdaptor;
@@ -83,8 +84,8 @@ import org.thingsboard.server.transport.mqtt.limits.GatewaySessionLimits;
 import org.thingsboard.server.transport.mqtt.limits.SessionLimits;
 import org.thingsboard.server.transport.mqtt.session.DeviceSessionCtx;
 import org.thingsboard.server.transport.mqtt.session.GatewaySessionHandler;
-import org.thingsboard.server.transport.mqtt.session.MqttTopicMatcher;
 import org.thingsboard.server.transport.mqtt.session.SparkplugNodeSessionHandler;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterTrie;
 import org.thingsboard.server.transport.mqtt.util.ReturnCodeResolver;
 import org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugMessageType;
 import org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugRpcRequestHeader;
@@ -145,7 +146,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
     private final TransportService transportService;
     private final SchedulerComponent scheduler;
     private final SslHandler sslHandler;
-    private final ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap;
+    private final MqttTopicFilterTrie<Integer> mqttQoSMap;
 
     final DeviceSessionCtx deviceSessionCtx;
     volatile InetSocketAddress address;
@@ -167,7 +168,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         this.transportService = context.getTransportService();
         this.scheduler = context.getScheduler();
         this.sslHandler = sslHandler;
-        this.mqttQoSMap = new ConcurrentHashMap<>();
+        this.mqttQoSMap = new MqttTopicFilterTrie<>();
         this.deviceSessionCtx = new DeviceSessionCtx(sessionId, mqttQoSMap, context);
         this.otaPackSessions = new ConcurrentHashMap<>();
         this.chunkSizes = new ConcurrentHashMap<>();
@@ -653,7 +654,11 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
             @Override
             public void onError(Throwable e) {
                 log.trace("[{}] Failed to publish msg: {}", sessionId, msg, e);
-                closeCtx(ctx, MqttReasonCodes.Disconnect.IMPLEMENTATION_SPECIFIC_ERROR);
+                if (e instanceof TbQueueOverflowException && MqttVersion.MQTT_5.equals(deviceSessionCtx.getMqttVersion())) {
+                    ack(ctx, msgId, MqttReasonCodes.PubAck.QUOTA_EXCEEDED);
+                } else {
+                    closeCtx(ctx, MqttReasonCodes.Disconnect.IMPLEMENTATION_SPECIFIC_ERROR);
+                }
             }
         };
     }
@@ -869,7 +874,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
 
     public void registerSubQoS(String topic, List<Integer> grantedQoSList, MqttQoS reqQoS) {
         grantedQoSList.add(getMinSupportedQos(reqQoS));
-        mqttQoSMap.put(new MqttTopicMatcher(topic), getMinSupportedQos(reqQoS));
+        mqttQoSMap.put(topic, getMinSupportedQos(reqQoS));
     }
 
     private void processUnsubscribe(ChannelHandlerContext ctx, MqttUnsubscribeMessage mqttMsg) {
@@ -882,9 +887,7 @@ public class MqttTransportHandler extends ChannelInboundHandlerAdapter implement
         List<Short> unSubResults = new ArrayList<>();
         log.trace("[{}] Processing subscription [{}]!", sessionId, mqttMsg.variableHeader().messageId());
         for (String topicName : mqttMsg.payload().topics()) {
-            MqttTopicMatcher matcher = new MqttTopicMatcher(topicName);
-            if (mqttQoSMap.containsKey(matcher)) {
-                mqttQoSMap.remove(matcher);
+            if (mqttQoSMap.remove(topicName) != null) {
                 try {
                     short resultValue = MqttReasonCodes.UnsubAck.SUCCESS.byteValue();
                     switch (topicName) {
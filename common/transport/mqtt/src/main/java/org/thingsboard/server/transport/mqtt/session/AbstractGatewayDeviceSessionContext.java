@@ -27,9 +27,9 @@ import org.thingsboard.server.common.transport.TransportServiceCallback;
 import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterTrie;
 
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by ashvayka on 19.01.17.
@@ -41,7 +41,7 @@ public abstract class AbstractGatewayDeviceSessionContext<T extends AbstractGate
     private final TransportService transportService;
 
     public AbstractGatewayDeviceSessionContext(T parent, TransportDeviceInfo deviceInfo,
-                                               DeviceProfile deviceProfile, ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap,
+                                               DeviceProfile deviceProfile, MqttTopicFilterTrie<Integer> mqttQoSMap,
                                                TransportService transportService) {
         super(UUID.randomUUID(), mqttQoSMap);
         this.parent = parent;
@@ -18,8 +18,8 @@ package org.thingsboard.server.transport.mqtt.session;
 import org.thingsboard.server.common.data.DeviceProfile;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterTrie;
 
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by nickAS21 on 26.12.22
@@ -29,7 +29,7 @@ public class GatewayDeviceSessionContext extends AbstractGatewayDeviceSessionCon
     public GatewayDeviceSessionContext(GatewaySessionHandler parent,
                                        TransportDeviceInfo deviceInfo,
                                        DeviceProfile deviceProfile,
-                                       ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap,
+                                       MqttTopicFilterTrie<Integer> mqttQoSMap,
                                        TransportService transportService) {
         super(parent, deviceInfo, deviceProfile, mqttQoSMap, transportService);
     }
@@ -24,6 +24,7 @@ import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
 import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.gen.transport.mqtt.SparkplugBProto;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterTrie;
 import org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugMessageType;
 import org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugRpcRequestHeader;
 import org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugTopic;
@@ -32,7 +33,6 @@ import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
 
 import static org.thingsboard.server.transport.mqtt.util.sparkplug.SparkplugMetricUtil.getTsKvProto;
@@ -45,8 +45,7 @@ public class SparkplugDeviceSessionContext extends AbstractGatewayDeviceSessionC
     public SparkplugDeviceSessionContext(SparkplugNodeSessionHandler parent,
                                          TransportDeviceInfo deviceInfo,
                                          DeviceProfile deviceProfile,
-                                         ConcurrentMap<MqttTopicMatcher,
-                                                 Integer> mqttQoSMap,
+                                         MqttTopicFilterTrie<Integer> mqttQoSMap,
                                          TransportService transportService) {
         super(parent, deviceInfo, deviceProfile, mqttQoSMap, transportService);
     }
@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Trie of MQTT topic filters with the values attached to them. Matching a topic visits only the branches of its levels
+ * and of the '+' and '#' wildcards, so it doesn't depend on the number of filters.
+ * <p>
+ * Wildcards follow the MQTT specification: '+' matches exactly one, possibly empty, topic level and '#' matches
+ * the parent level and any number of child levels. Wildcard characters inside a level are matched literally.
+ * <p>
+ * Lookups are lock-free; updates are serialized.
+ */
+public class MqttTopicFilterTrie<V> {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node<V> root = new Node<>();
+    private volatile int size;
+
+    public synchronized V put(String topicFilter, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value can't be null!");
+        }
+        Node<V> node = root;
+        for (String level : splitLevels(topicFilter)) {
+            node = node.children.computeIfAbsent(level, l -> new Node<>());
+        }
+        V previous = node.value;
+        node.value = value;
+        if (previous == null) {
+            size++;
+        }
+        return previous;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(String topicFilter) {
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            return null;
+        }
+        String[] levels = splitLevels(topicFilter);
+        Node<?>[] path = new Node<?>[levels.length + 1];
+        path[0] = root;
+        for (int i = 0; i < levels.length; i++) {
+            path[i + 1] = path[i].children.get(levels[i]);
+            if (path[i + 1] == null) {
+                return null;
+            }
+        }
+        Node<V> node = (Node<V>) path[levels.length];
+        V previous = node.value;
+        if (previous == null) {
+            return null;
+        }
+        node.value = null;
+        size--;
+        for (int i = levels.length; i > 0 && path[i].value == null && path[i].children.isEmpty(); i--) {
+            path[i - 1].children.remove(levels[i - 1]);
+        }
+        return previous;
+    }
+
+    public V get(String topicFilter) {
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            return null;
+        }
+        Node<V> node = root;
+        for (String level : splitLevels(topicFilter)) {
+            node = node.children.get(level);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.value;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether any of the topic filters matches the topic.
+     */
+    public boolean matches(String topic) {
+        return match(topic, (a, b) -> a) != null;
+    }
+
+    /**
+     * Returns the values of all the topic filters that match the topic combined with the merge function,
+     * e.g. {@code Math::max} for the maximum QoS, or null if no filter matches.
+     */
+    public V match(String topic, BinaryOperator<V> mergeFunction) {
+        return match(root, topic, 0, mergeFunction, null);
+    }
+
+    private static <V> V match(Node<V> node, String topic, int levelStart, BinaryOperator<V> mergeFunction, V result) {
+        Node<V> multiLevel = node.children.get(MULTI_LEVEL_WILDCARD);
+        if (multiLevel != null) {
+            result = merge(result, multiLevel.value, mergeFunction);
+        }
+        if (levelStart > topic.length()) {
+            return merge(result, node.value, mergeFunction);
+        }
+        int levelEnd = topic.indexOf('/', levelStart);
+        if (levelEnd < 0) {
+            levelEnd = topic.length();
+        }
+        Node<V> exact = node.children.get(topic.substring(levelStart, levelEnd));
+        if (exact != null) {
+            result = match(exact, topic, levelEnd + 1, mergeFunction, result);
+        }
+        Node<V> singleLevel = node.children.get(SINGLE_LEVEL_WILDCARD);
+        if (singleLevel != null) {
+            result = match(singleLevel, topic, levelEnd + 1, mergeFunction, result);
+        }
+        return result;
+    }
+
+    private static <V> V merge(V result, V value, BinaryOperator<V> mergeFunction) {
+        if (value == null) {
+            return result;
+        }
+        return result != null ? mergeFunction.apply(result, value) : value;
+    }
+
+    private static String[] splitLevels(String topicFilter) {
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            throw new IllegalArgumentException("Topic filter can't be empty!");
+        }
+        return topicFilter.split("/", -1);
+    }
+
+    private static class Node<V> {
+
+        private final ConcurrentMap<String, Node<V>> children = new ConcurrentHashMap<>();
+        private volatile V value;
+
+    }
+
+}
@@ -15,21 +15,21 @@
  */
 package org.thingsboard.server.transport.mqtt.util;
 
-import lombok.Data;
+import lombok.ToString;
 
-import java.util.regex.Pattern;
+@ToString(of = "topicFilter")
+public class WildcardTopicFilter implements MqttTopicFilter {
 
-@Data
-public class RegexTopicFilter implements MqttTopicFilter {
+    private final String topicFilter;
+    private final MqttTopicFilterTrie<Boolean> trie = new MqttTopicFilterTrie<>();
 
-    private final Pattern regex;
-
-    public RegexTopicFilter(String regex) {
-        this.regex = Pattern.compile(regex);
+    public WildcardTopicFilter(String topicFilter) {
+        this.topicFilter = topicFilter;
+        this.trie.put(topicFilter, Boolean.TRUE);
     }
 
     @Override
     public boolean filter(String topic) {
-        return regex.matcher(topic).matches();
+        return trie.matches(topic);
     }
 }
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MqttTopicFilterTrieTest {
+
+    private static final String[] LEVELS = {"v1", "devices", "me", "attributes", "telemetry", "", "sensor"};
+
+    @Test
+    public void testWildcards() {
+        MqttTopicFilterTrie<Integer> trie = new MqttTopicFilterTrie<>();
+        trie.put("v1/devices/me/attributes", 0);
+        trie.put("v1/devices/+/attributes", 1);
+        trie.put("v1/devices/me/#", 2);
+
+        assertThat(trie.match("v1/devices/me/attributes", Math::max)).isEqualTo(2);
+        assertThat(trie.match("v1/devices/other/attributes", Math::max)).isEqualTo(1);
+        assertThat(trie.match("v1/devices//attributes", Math::max)).isEqualTo(1);
+        assertThat(trie.match("v1/devices/me", Math::max)).isEqualTo(2);
+        assertThat(trie.match("v1/devices/me/rpc/request/1", Math::max)).isEqualTo(2);
+        assertThat(trie.match("v1/devices/other/telemetry", Math::max)).isNull();
+        assertThat(trie.matches("v1/devices")).isFalse();
+
+        trie.put("#", 0);
+        assertThat(trie.match("v1/devices", Math::max)).isEqualTo(0);
+        assertThat(trie.matches("/")).isTrue();
+    }
+
+    @Test
+    public void testWildcardCharactersInsideLevelAreLiteral() {
+        MqttTopicFilterTrie<Integer> trie = new MqttTopicFilterTrie<>();
+        trie.put("sensor/temperature#", 1);
+        trie.put("sensor/a+b", 1);
+        assertThat(trie.matches("sensor/temperature")).isFalse();
+        assertThat(trie.matches("sensor/temperature#")).isTrue();
+        assertThat(trie.matches("sensor/ab")).isFalse();
+        assertThat(trie.matches("sensor/a+b")).isTrue();
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        MqttTopicFilterTrie<Integer> trie = new MqttTopicFilterTrie<>();
+        assertThat(trie.put("a/b/c", 1)).isNull();
+        assertThat(trie.put("a/b", 2)).isNull();
+        assertThat(trie.put("a/b", 0)).isEqualTo(2);
+        assertThat(trie.size()).isEqualTo(2);
+        assertThat(trie.get("a/b")).isEqualTo(0);
+        assertThat(trie.get("a")).isNull();
+
+        assertThat(trie.remove("a")).isNull();
+        assertThat(trie.remove("a/b/c/d")).isNull();
+        assertThat(trie.remove("")).isNull();
+        assertThat(trie.remove("a/b/c")).isEqualTo(1);
+        assertThat(trie.remove("a/b/c")).isNull();
+        assertThat(trie.matches("a/b/c")).isFalse();
+        assertThat(trie.matches("a/b")).isTrue();
+        assertThat(trie.remove("a/b")).isEqualTo(0);
+        assertThat(trie.isEmpty()).isTrue();
+        assertThat(trie.matches("a/b")).isFalse();
+    }
+
+    @Test
+    public void testMaxQoSOfThousandsOfFiltersMatchesLinearScan() {
+        Random random = new Random(42);
+        MqttTopicFilterTrie<Integer> trie = new MqttTopicFilterTrie<>();
+        Map<String, Integer> filters = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String filter = randomTopic(random, true);
+            int qos = random.nextInt(3);
+            filters.put(filter, qos);
+            trie.put(filter, qos);
+        }
+        assertThat(trie.size()).isEqualTo(filters.size());
+
+        for (int i = 0; i < 5000; i++) {
+            String topic = randomTopic(random, false);
+            Integer expected = null;
+            for (Map.Entry<String, Integer> entry : filters.entrySet()) {
+                if (matches(entry.getKey(), topic)) {
+                    expected = expected == null ? entry.getValue() : Math.max(expected, entry.getValue());
+                }
+            }
+            assertThat(trie.match(topic, Math::max)).as(topic).isEqualTo(expected);
+        }
+    }
+
+    private static String randomTopic(Random random, boolean wildcards) {
+        int depth = 1 + random.nextInt(5);
+        StringBuilder topic = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            if (i > 0) {
+                topic.append('/');
+            }
+            int choice = random.nextInt(wildcards ? LEVELS.length + 2 : LEVELS.length);
+            if (choice < LEVELS.length) {
+                topic.append(LEVELS[choice]);
+            } else if (choice == LEVELS.length) {
+                topic.append('+');
+            } else {
+                return topic.append('#').toString();
+            }
+        }
+        // empty topic names and filters are not allowed
+        return topic.isEmpty() ? LEVELS[0] : topic.toString();
+    }
+
+    private static boolean matches(String filter, String topic) {
+        String[] filterLevels = filter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for (int i = 0; i < filterLevels.length; i++) {
+            if (filterLevels[i].equals("#")) {
+                return true;
+            }
+            if (i >= topicLevels.length || !(filterLevels[i].equals("+") || filterLevels[i].equals(topicLevels[i]))) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+
+}
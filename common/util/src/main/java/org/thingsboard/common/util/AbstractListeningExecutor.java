@@ -20,19 +20,29 @@ import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.Callable;
 
 /**
  * Created by igor on 4/13/18.
  */
+@Slf4j
 public abstract class AbstractListeningExecutor implements ListeningExecutor {
 
     private ListeningExecutorService service;
 
     @PostConstruct
     public void init() {
-        this.service = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newWorkStealingPool(getThreadPollSize(), getClass()));
+        if (isVirtualThreadsEnabled() && ThingsBoardExecutors.isVirtualThreadSupported()) {
+            log.info("[{}] Using virtual thread per task executor", getClass().getSimpleName());
+            this.service = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newVirtualThreadPerTaskExecutor(getClass().getSimpleName()));
+        } else {
+            if (isVirtualThreadsEnabled()) {
+                log.warn("[{}] Virtual threads are not supported by Java {}, using a pool of {} threads", getClass().getSimpleName(), Runtime.version(), getThreadPollSize());
+            }
+            this.service = MoreExecutors.listeningDecorator(ThingsBoardExecutors.newWorkStealingPool(getThreadPollSize(), getClass()));
+        }
     }
 
     @PreDestroy
@@ -62,4 +72,12 @@ public abstract class AbstractListeningExecutor implements ListeningExecutor {
 
     protected abstract int getThreadPollSize();
 
+    /**
+     * Run every task on its own virtual thread instead of the pool, so blocking calls do not hold scarce platform threads.
+     * Falls back to the pool on JVMs without virtual threads.
+     */
+    protected boolean isVirtualThreadsEnabled() {
+        return false;
+    }
+
 }
@@ -15,8 +15,13 @@
  */
 package org.thingsboard.common.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadFactory;
 
 public class ThingsBoardExecutors {
 
@@ -48,4 +53,63 @@ public class ThingsBoardExecutors {
         return newWorkStealingPool(parallelism, clazz.getSimpleName());
     }
 
+    /**
+     * Whether the running JVM supports virtual threads (Java 21+). The code is compiled for Java 17,
+     * so the virtual thread API is only reachable through method handles.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreads.NEW_BUILDER != null;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     *
+     * @param namePrefix used to define thread name
+     * @throws UnsupportedOperationException if the running JVM does not support virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        if (!isVirtualThreadSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21+, current version is " + Runtime.version());
+        }
+        try {
+            Object builder = VirtualThreads.NEW_BUILDER.invoke();
+            builder = VirtualThreads.NAME.invoke(builder, namePrefix + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) VirtualThreads.FACTORY.invoke(builder);
+            return (ExecutorService) VirtualThreads.NEW_THREAD_PER_TASK_EXECUTOR.invoke(factory);
+        } catch (Throwable t) {
+            throw new IllegalStateException("Failed to create virtual thread executor", t);
+        }
+    }
+
+    private static class VirtualThreads {
+
+        private static final MethodHandle NEW_BUILDER;
+        private static final MethodHandle NAME;
+        private static final MethodHandle FACTORY;
+        private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+        static {
+            MethodHandle newBuilder = null;
+            MethodHandle name = null;
+            MethodHandle factory = null;
+            MethodHandle newExecutor = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+                newBuilder = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualClass));
+                name = lookup.findVirtual(ofVirtualClass, "name", MethodType.methodType(ofVirtualClass, String.class, long.class));
+                factory = lookup.findVirtual(builderClass, "factory", MethodType.methodType(ThreadFactory.class));
+                newExecutor = lookup.findStatic(Executors.class, "newThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+            } catch (ReflectiveOperationException e) {
+                newBuilder = null;
+            }
+            NEW_BUILDER = newBuilder;
+            NAME = name;
+            FACTORY = factory;
+            NEW_THREAD_PER_TASK_EXECUTOR = newExecutor;
+        }
+
+    }
+
 }
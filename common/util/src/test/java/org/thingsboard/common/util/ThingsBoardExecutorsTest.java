@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.common.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Slf4j
+public class ThingsBoardExecutorsTest {
+
+    static final int BLOCKING_TASKS = 2000;
+    static final int BLOCKING_MS = 10;
+    static final int POOL_SIZE = 50;
+
+    @Test
+    public void givenJavaWithoutVirtualThreads_whenCreateVirtualExecutor_thenThrowUnsupported() {
+        assumeTrue(!ThingsBoardExecutors.isVirtualThreadSupported());
+        assertThatThrownBy(() -> ThingsBoardExecutors.newVirtualThreadPerTaskExecutor("test"))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void givenBlockingTasks_whenRunOnVirtualThreads_thenCompareWithPool() throws InterruptedException {
+        assumeTrue(ThingsBoardExecutors.isVirtualThreadSupported());
+        long poolNanos = runBlockingTasks(ThingsBoardExecutors.newWorkStealingPool(POOL_SIZE, "blocking-pool"), "pool");
+        long virtualNanos = runBlockingTasks(ThingsBoardExecutors.newVirtualThreadPerTaskExecutor("blocking-virtual"), "virtual");
+        assertThat(virtualNanos).isLessThan(poolNanos);
+    }
+
+    private long runBlockingTasks(ExecutorService executor, String name) throws InterruptedException {
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+            CountDownLatch latch = new CountDownLatch(BLOCKING_TASKS);
+            long start = System.nanoTime();
+            for (int i = 0; i < BLOCKING_TASKS; i++) {
+                executor.execute(() -> {
+                    try {
+                        Thread.sleep(BLOCKING_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latch.countDown();
+                });
+            }
+            assertThat(latch.await(30, TimeUnit.SECONDS)).isTrue();
+            long duration = System.nanoTime() - start;
+            long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+            log.info("[{}] {} blocking tasks in {} ms, {} tasks/sec, heap delta {} KB", name, BLOCKING_TASKS, TimeUnit.NANOSECONDS.toMillis(duration),
+                    BLOCKING_TASKS * TimeUnit.SECONDS.toNanos(1) / duration, (usedAfter - usedBefore) / 1024);
+            return duration;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
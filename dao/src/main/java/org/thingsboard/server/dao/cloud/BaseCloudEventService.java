@@ -25,6 +25,7 @@ import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.server.common.data.AttributeScope;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.cloud.CloudEventType;
 import org.thingsboard.server.common.data.edge.EdgeEventActionType;
 import org.thingsboard.server.common.data.edge.EdgeSettings;
@@ -135,6 +136,36 @@ public class BaseCloudEventService implements CloudEventService {
         return tsKvCloudEventDao.findCloudEvents(tenantId.getId(), seqIdStart, seqIdEnd, pageLink);
     }
 
+    @Override
+    public List<CloudEvent> findCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit) {
+        return cloudEventDao.findCloudEventsAfter(tenantId.getId(), offset, limit);
+    }
+
+    @Override
+    public List<CloudEvent> findTsKvCloudEventsAfter(TenantId tenantId, CloudEventOffset offset, int limit) {
+        return tsKvCloudEventDao.findCloudEventsAfter(tenantId.getId(), offset, limit);
+    }
+
+    @Override
+    public CloudEventOffset findCloudEventOffset(TenantId tenantId) {
+        return cloudEventDao.findOffset(tenantId.getId());
+    }
+
+    @Override
+    public CloudEventOffset findTsKvCloudEventOffset(TenantId tenantId) {
+        return tsKvCloudEventDao.findOffset(tenantId.getId());
+    }
+
+    @Override
+    public void saveCloudEventOffset(TenantId tenantId, CloudEventOffset offset) {
+        cloudEventDao.saveOffset(tenantId.getId(), offset);
+    }
+
+    @Override
+    public void saveTsKvCloudEventOffset(TenantId tenantId, CloudEventOffset offset) {
+        tsKvCloudEventDao.saveOffset(tenantId.getId(), offset);
+    }
+
     @Override
     public EdgeSettings findEdgeSettings(TenantId tenantId) {
         try {
@@ -17,10 +17,12 @@ package org.thingsboard.server.dao.cloud;
 
 import com.google.common.util.concurrent.ListenableFuture;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.dao.Dao;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface TsKvCloudEventDao extends Dao<CloudEvent> {
@@ -29,6 +31,12 @@ public interface TsKvCloudEventDao extends Dao<CloudEvent> {
 
     PageData<CloudEvent> findCloudEvents(UUID tenantId, Long seqIdStart, Long seqIdEnd, TimePageLink pageLink);
 
+    List<CloudEvent> findCloudEventsAfter(UUID tenantId, CloudEventOffset offset, int limit);
+
+    CloudEventOffset findOffset(UUID tenantId);
+
+    void saveOffset(UUID tenantId, CloudEventOffset offset);
+
     void cleanupEvents(long eventsTtl);
 
 }
@@ -15,11 +15,15 @@
  */
 package org.thingsboard.server.dao.dictionary;
 
+import java.util.Collection;
+import java.util.Map;
 
 public interface KeyDictionaryDao {
 
     Integer getOrSaveKeyId(String strKey);
 
+    Map<String, Integer> getOrSaveKeyIds(Collection<String> strKeys);
+
     String getKey(Integer keyId);
 
 }
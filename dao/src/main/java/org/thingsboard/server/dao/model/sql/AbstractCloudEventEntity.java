@@ -36,6 +36,7 @@ import java.util.UUID;
 
 import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_ACTION_PROPERTY;
 import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_ENTITY_BODY_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_ENTITY_BODY_PROTO_PROPERTY;
 import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_ENTITY_ID_PROPERTY;
 import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_SEQUENTIAL_ID_PROPERTY;
 import static org.thingsboard.server.dao.model.ModelConstants.CLOUD_EVENT_TENANT_ID_PROPERTY;
@@ -70,6 +71,9 @@ public class AbstractCloudEventEntity extends BaseSqlEntity<CloudEvent> implemen
     @Column(name = CLOUD_EVENT_ENTITY_BODY_PROPERTY)
     private JsonNode entityBody;
 
+    @Column(name = CLOUD_EVENT_ENTITY_BODY_PROTO_PROPERTY)
+    private byte[] entityBodyProto;
+
     @Column(name = TS_COLUMN)
     private long ts;
 
@@ -95,6 +99,7 @@ public class AbstractCloudEventEntity extends BaseSqlEntity<CloudEvent> implemen
         this.cloudEventType = cloudEvent.getType();
         this.cloudEventAction = cloudEvent.getAction();
         this.entityBody = cloudEvent.getEntityBody();
+        this.entityBodyProto = cloudEvent.getEntityBodyProto();
     }
 
     @Override
@@ -108,6 +113,7 @@ public class AbstractCloudEventEntity extends BaseSqlEntity<CloudEvent> implemen
         cloudEvent.setType(cloudEventType);
         cloudEvent.setAction(cloudEventAction);
         cloudEvent.setEntityBody(entityBody);
+        cloudEvent.setEntityBodyProto(entityBodyProto);
         cloudEvent.setSeqId(seqId);
         return cloudEvent;
     }
@@ -25,9 +25,17 @@ public class JpaExecutorService extends AbstractListeningExecutor {
     @Value("${spring.datasource.hikari.maximumPoolSize}")
     private int poolSize;
 
+    @Value("${sql.executor_virtual_threads_enabled:false}")
+    private boolean virtualThreadsEnabled;
+
     @Override
     protected int getThreadPollSize() {
         return poolSize;
     }
 
+    @Override
+    protected boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
 }
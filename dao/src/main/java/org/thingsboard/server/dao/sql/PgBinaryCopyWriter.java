@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import org.postgresql.PGConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Encodes rows in the PostgreSQL binary COPY format, so a batch can be sent with a single
+ * {@code COPY ... FROM STDIN (FORMAT binary)} instead of binding every value through a prepared statement.
+ */
+public class PgBinaryCopyWriter {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private byte[] buffer;
+    private int size;
+    private boolean finished;
+
+    public PgBinaryCopyWriter(int initialCapacity) {
+        buffer = new byte[Math.max(initialCapacity, 64)];
+        writeRaw(SIGNATURE);
+        writeRawInt(0); // flags
+        writeRawInt(0); // header extension length
+    }
+
+    public void startRow(int fieldCount) {
+        writeRawShort(fieldCount);
+    }
+
+    public void writeNull() {
+        writeRawInt(-1);
+    }
+
+    public void writeUuid(UUID value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(16);
+        writeRawLong(value.getMostSignificantBits());
+        writeRawLong(value.getLeastSignificantBits());
+    }
+
+    public void writeInt(Integer value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(4);
+        writeRawInt(value);
+    }
+
+    public void writeLong(Long value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(8);
+        writeRawLong(value);
+    }
+
+    public void writeBoolean(Boolean value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(1);
+        ensureCapacity(1);
+        buffer[size++] = (byte) (value ? 1 : 0);
+    }
+
+    public void writeDouble(Double value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(8);
+        writeRawLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes text, varchar and json values, which share the UTF-8 text representation in the binary format.
+     */
+    public void writeText(String value) {
+        writeBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    public void writeBytes(byte[] value) {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        writeRawInt(value.length);
+        writeRaw(value);
+    }
+
+    public byte[] toByteArray() {
+        if (!finished) {
+            writeRawShort(-1);
+            finished = true;
+        }
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public long copyIn(Connection connection, String copySql) throws SQLException {
+        byte[] data = toByteArray();
+        try {
+            return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql, new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            throw new SQLException("Failed to copy data: " + copySql, e);
+        }
+    }
+
+    private void writeRawShort(int value) {
+        ensureCapacity(2);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeRawInt(int value) {
+        ensureCapacity(4);
+        buffer[size++] = (byte) (value >>> 24);
+        buffer[size++] = (byte) (value >>> 16);
+        buffer[size++] = (byte) (value >>> 8);
+        buffer[size++] = (byte) value;
+    }
+
+    private void writeRawLong(long value) {
+        writeRawInt((int) (value >>> 32));
+        writeRawInt((int) value);
+    }
+
+    private void writeRaw(byte[] value) {
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, size, value.length);
+        size += value.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (size + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+        }
+    }
+
+}
@@ -31,4 +31,8 @@ public class TbSqlBlockingQueueParams {
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
     private final boolean withResponse;
+    /**
+     * Capacity of the bounded ring buffer of each queue, {@code 0} to use the unbounded blocking queue
+     */
+    private final int queueCapacity;
 }
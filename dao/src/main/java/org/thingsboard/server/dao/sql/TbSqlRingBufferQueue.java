@@ -0,0 +1,279 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.util.CollectionsUtil;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded multi-producer single-consumer queue backed by a preallocated ring of slots.
+ * Producers claim a sequence with a single atomic increment and publish the slot, a producer that finds the ring full
+ * waits until the consumer frees space, so a stalled database slows the callers down instead of growing the heap.
+ * The consumer saves a batch as soon as {@code batchSize} elements are published or the oldest pending element
+ * is {@code maxDelay} old, whichever comes first.
+ * Unless responses are required, elements do not get futures of their own. Producers share the batch future that is open
+ * when they publish their element; the consumer opens a new one before every batch and completes the previous one once
+ * every sequence claimed before the switch is saved.
+ */
+@Slf4j
+public class TbSqlRingBufferQueue<E, R> implements TbSqlQueue<E, R> {
+
+    private static final long FULL_RING_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final TbSqlBlockingQueueParams params;
+    private final MessagesStats stats;
+
+    private final int capacity;
+    private final int mask;
+    private final Slot<E, R>[] slots;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+    private volatile SettableFuture<R> batchFuture = SettableFuture.create();
+    private final Deque<ClosedBatchFuture<R>> closedBatchFutures = new ArrayDeque<>();
+
+    private ExecutorService executor;
+    private volatile Thread consumer;
+
+    @SuppressWarnings("unchecked")
+    public TbSqlRingBufferQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
+        this.params = params;
+        this.stats = stats;
+        this.capacity = ceilingPowerOfTwo(Math.max(params.getQueueCapacity(), 2 * Math.max(1, params.getBatchSize())));
+        this.mask = capacity - 1;
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot<>();
+        }
+    }
+
+    @Override
+    public void init(ScheduledLogExecutorComponent logExecutor, Function<List<E>, List<R>> saveFunction, Comparator<E> batchUpdateComparator, Function<List<TbSqlQueueElement<E, R>>, List<TbSqlQueueElement<E, R>>> filter, int index) {
+        executor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("sql-queue-" + index + "-" + params.getLogName().toLowerCase()));
+        executor.submit(() -> {
+            consumer = Thread.currentThread();
+            String logName = params.getLogName();
+            int batchSize = params.getBatchSize();
+            long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(params.getMaxDelay());
+            final List<TbSqlQueueElement<E, R>> entities = new ArrayList<>(batchSize);
+            long firstPendingNanos = 0;
+            while (!Thread.interrupted()) {
+                long from = head.get();
+                int published = countPublished(from, batchSize);
+                if (published == 0) {
+                    firstPendingNanos = 0;
+                    LockSupport.parkNanos(this, maxDelayNanos);
+                    continue;
+                }
+                long now = System.nanoTime();
+                if (firstPendingNanos == 0) {
+                    firstPendingNanos = now;
+                }
+                long remainingNanos = firstPendingNanos + maxDelayNanos - now;
+                if (published < batchSize && remainingNanos > 0) {
+                    LockSupport.parkNanos(this, remainingNanos);
+                    continue;
+                }
+                if (!params.isWithResponse()) {
+                    closeBatchFuture();
+                }
+                long to = from + published;
+                try {
+                    for (long seq = from; seq < to; seq++) {
+                        Slot<E, R> slot = slots[(int) seq & mask];
+                        entities.add(new TbSqlQueueElement<>(slot.future, slot.element));
+                    }
+                    if (log.isDebugEnabled()) {
+                        log.debug("[{}] Going to save {} entities", logName, entities.size());
+                        log.trace("[{}] Going to save entities: {}", logName, entities);
+                    }
+
+                    List<TbSqlQueueElement<E, R>> entitiesToSave = filter.apply(entities);
+
+                    if (params.isBatchSortEnabled()) {
+                        entitiesToSave = entitiesToSave.stream().sorted((o1, o2) -> batchUpdateComparator.compare(o1.getEntity(), o2.getEntity())).toList();
+                    }
+
+                    List<R> result = saveFunction.apply(entitiesToSave.stream().map(TbSqlQueueElement::getEntity).collect(Collectors.toList()));
+
+                    if (params.isWithResponse()) {
+                        for (int i = 0; i < entitiesToSave.size(); i++) {
+                            entitiesToSave.get(i).getFuture().set(result.get(i));
+                        }
+
+                        if (entities.size() > entitiesToSave.size()) {
+                            CollectionsUtil.diffLists(entitiesToSave, entities).forEach(v -> v.getFuture().set(null));
+                        }
+                    }
+                    stats.incrementSuccessful(entities.size());
+                } catch (Throwable t) {
+                    if (t instanceof InterruptedException) {
+                        log.info("[{}] Queue polling was interrupted", logName);
+                        break;
+                    }
+                    log.error("[{}] Failed to save {} entities", logName, entities.size(), t);
+                    try {
+                        stats.incrementFailed(entities.size());
+                        if (params.isWithResponse()) {
+                            entities.forEach(entityFutureWrapper -> entityFutureWrapper.getFuture().setException(t));
+                        } else {
+                            failBatchFutures(to, t);
+                        }
+                    } catch (Throwable th) {
+                        log.error("[{}] Failed to set future exception", logName, th);
+                    }
+                } finally {
+                    entities.clear();
+                    release(from, to);
+                    firstPendingNanos = 0;
+                }
+            }
+            log.info("[{}] Queue polling completed", logName);
+        });
+
+        logExecutor.scheduleAtFixedRate(() -> {
+            long size = tail.get() - head.get();
+            if (size > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] queueCapacity [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
+                        params.getLogName(), size, capacity, stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+                stats.reset();
+            }
+        }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public ListenableFuture<R> add(E element) {
+        long seq = tail.getAndIncrement();
+        long currentHead;
+        while (seq - (currentHead = head.get()) >= capacity) {
+            LockSupport.parkNanos(this, FULL_RING_PARK_NANOS);
+        }
+        Slot<E, R> slot = slots[(int) seq & mask];
+        SettableFuture<R> future = params.isWithResponse() ? SettableFuture.create() : null;
+        slot.element = element;
+        slot.future = future;
+        slot.publish(seq);
+        if (future == null) {
+            // read after the slot is published: if the consumer has already switched the batch future,
+            // the element is saved no later than the batch the new future belongs to
+            future = batchFuture;
+        }
+        stats.incrementTotal();
+        long pending = seq - currentHead;
+        if (pending == 0 || pending + 1 == params.getBatchSize()) {
+            // the consumer is woken up only when the first element arrives and when a full batch is ready
+            Thread consumerThread = consumer;
+            if (consumerThread != null) {
+                LockSupport.unpark(consumerThread);
+            }
+        }
+        return future;
+    }
+
+    private int countPublished(long from, int limit) {
+        int count = 0;
+        while (count < limit && slots[(int) (from + count) & mask].isPublished(from + count)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Opens a new batch future. The closed one was handed out only to producers that claimed their sequence before the switch,
+     * so it is completed once the consumer releases the tail observed after the switch.
+     */
+    private void closeBatchFuture() {
+        SettableFuture<R> closed = batchFuture;
+        batchFuture = SettableFuture.create();
+        closedBatchFutures.add(new ClosedBatchFuture<>(closed, tail.get()));
+    }
+
+    private void release(long from, long to) {
+        for (long seq = from; seq < to; seq++) {
+            Slot<E, R> slot = slots[(int) seq & mask];
+            slot.element = null;
+            slot.future = null;
+        }
+        head.set(to);
+        while (!closedBatchFutures.isEmpty() && closedBatchFutures.peekFirst().tail <= to) {
+            closedBatchFutures.pollFirst().future.set(null);
+        }
+    }
+
+    /**
+     * Fails the batch futures that may be shared by the elements of a failed batch ending at {@code to}: the closed futures
+     * completed by releasing it, the first closed future that ends after it and the open one, since a producer that publishes
+     * its element right before the switch reads the new future. Later closed futures belong to elements of later batches only.
+     */
+    private void failBatchFutures(long to, Throwable t) {
+        for (ClosedBatchFuture<R> closed : closedBatchFutures) {
+            closed.future.setException(t);
+            if (closed.tail > to) {
+                break;
+            }
+        }
+        SettableFuture<R> open = batchFuture;
+        batchFuture = SettableFuture.create();
+        open.setException(t);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    private record ClosedBatchFuture<R>(SettableFuture<R> future, long tail) {
+    }
+
+    private static final class Slot<E, R> {
+
+        private E element;
+        private SettableFuture<R> future;
+        private volatile long sequence = -1;
+
+        private void publish(long seq) {
+            sequence = seq;
+        }
+
+        private boolean isPublished(long seq) {
+            return sequence == seq;
+        }
+    }
+
+}
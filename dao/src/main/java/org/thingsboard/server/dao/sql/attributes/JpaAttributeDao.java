@@ -133,10 +133,9 @@ public class JpaAttributeDao extends JpaAbstractDaoListeningExecutorService impl
     @Override
     public List<AttributeKvEntry> find(TenantId tenantId, EntityId entityId, AttributeScope attributeScope, Collection<String> attributeKeys) {
         List<AttributeKvCompositeKey> compositeKeys =
-                attributeKeys
+                keyDictionaryDao.getOrSaveKeyIds(attributeKeys).values()
                         .stream()
-                        .map(attributeKey ->
-                                getAttributeKvCompositeKey(entityId, attributeScope.getId(), keyDictionaryDao.getOrSaveKeyId(attributeKey)))
+                        .map(keyId -> getAttributeKvCompositeKey(entityId, attributeScope.getId(), keyId))
                         .collect(Collectors.toList());
         List<AttributeKvEntity> attributes = attributeKvRepository.findAllById(compositeKeys);
         attributes.forEach(attributeKvEntity -> attributeKvEntity.setStrKey(keyDictionaryDao.getKey(attributeKvEntity.getId().getAttributeKey())));
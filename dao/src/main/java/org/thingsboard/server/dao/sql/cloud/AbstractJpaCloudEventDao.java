@@ -21,7 +21,11 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
 import org.thingsboard.server.common.data.id.CloudEventId;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.SortOrder;
@@ -37,6 +41,7 @@ import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.sqlts.insert.sql.SqlPartitioningRepository;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
@@ -48,10 +53,14 @@ import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
 @Slf4j
 public abstract class AbstractJpaCloudEventDao<E extends AbstractCloudEventEntity> extends JpaAbstractDao<E, CloudEvent> implements TsKvCloudEventDao {
 
+    // events are persisted in batches, so an event may get a higher seq_id than an event created slightly later
+    static final long OFFSET_CREATED_TIME_LOOKBACK_MS = TimeUnit.MINUTES.toMillis(1);
+
     protected final UUID systemTenantId = NULL_UUID;
     protected final ScheduledLogExecutorComponent logExecutor;
     protected final StatsFactory statsFactory;
     protected final SqlPartitioningRepository partitioningRepository;
+    protected final CloudEventOffsetRepository offsetRepository;
 
     @Value("${sql.cloud_events.batch_size:10000}")
     private int batchSize;
@@ -69,10 +78,12 @@ public abstract class AbstractJpaCloudEventDao<E extends AbstractCloudEventEntit
 
     protected AbstractJpaCloudEventDao(ScheduledLogExecutorComponent logExecutor,
                                        StatsFactory statsFactory,
-                                       SqlPartitioningRepository partitioningRepository) {
+                                       SqlPartitioningRepository partitioningRepository,
+                                       CloudEventOffsetRepository offsetRepository) {
         this.logExecutor = logExecutor;
         this.statsFactory = statsFactory;
         this.partitioningRepository = partitioningRepository;
+        this.offsetRepository = offsetRepository;
     }
 
     protected abstract BaseCloudEventRepository<E, UUID> getRepository();
@@ -169,6 +180,34 @@ public abstract class AbstractJpaCloudEventDao<E extends AbstractCloudEventEntit
                                 DaoUtil.toPageable(pageLink, sortOrders)));
     }
 
+    @Override
+    public List<CloudEvent> findCloudEventsAfter(UUID tenantId, CloudEventOffset offset, int limit) {
+        log.trace("Executing findCloudEventsAfter [{}], [{}], [{}]", tenantId, offset, limit);
+        Pageable pageable = PageRequest.of(0, limit, Sort.by("seqId"));
+        long startTime = Math.max(0L, offset.getCreatedTime() - OFFSET_CREATED_TIME_LOOKBACK_MS);
+        List<E> entities = getRepository().findEventsByTenantIdAndSeqIdRange(tenantId, startTime, offset.getSeqId(), Long.MAX_VALUE, pageable);
+        if (entities.isEmpty() && offset.getSeqId() > 0) {
+            // seq_id column is cycled - events created after the offset with lower seq_id belong to the new cycle
+            entities = getRepository().findEventsByTenantIdAndSeqIdRange(tenantId, offset.getCreatedTime() + 1, 0L, offset.getSeqId(), pageable);
+            if (!entities.isEmpty() && entities.get(0).getSeqId() != 1) {
+                entities = Collections.emptyList();
+            } else if (!entities.isEmpty()) {
+                log.info("seqId column of {} table started new cycle", getTableName());
+            }
+        }
+        return DaoUtil.convertDataList(entities);
+    }
+
+    @Override
+    public CloudEventOffset findOffset(UUID tenantId) {
+        return offsetRepository.find(tenantId, getTableName());
+    }
+
+    @Override
+    public void saveOffset(UUID tenantId, CloudEventOffset offset) {
+        offsetRepository.save(tenantId, getTableName(), offset);
+    }
+
     @Override
     public void cleanupEvents(long ttl) {
         log.info("Going to cleanup old cloud events using debug events ttl: {}s", ttl);
@@ -18,13 +18,16 @@ package org.thingsboard.server.dao.sql.cloud;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.thingsboard.server.dao.model.sql.AbstractCloudEventEntity;
+import org.thingsboard.server.dao.sql.PgBinaryCopyWriter;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -35,6 +38,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BaseCloudEventInsertRepository<T extends AbstractCloudEventEntity> {
 
+    private static final String COLUMNS = "(id, created_time, entity_body, entity_body_proto, entity_id, cloud_event_type, cloud_event_action, tenant_id, ts)";
+    private static final int ROW_SIZE_ESTIMATE = 512;
+
+    @Value("${sql.cloud_events.copy_enabled:false}")
+    private boolean copyEnabled;
+
     @Autowired
     protected JdbcTemplate jdbcTemplate;
 
@@ -42,9 +51,12 @@ public class BaseCloudEventInsertRepository<T extends AbstractCloudEventEntity>
     private TransactionTemplate transactionTemplate;
 
     protected void save(List<T> entities, String tableName) {
-        String insertQuery = "INSERT INTO " + tableName +
-                " (id, created_time, entity_body, entity_id, cloud_event_type, cloud_event_action, tenant_id, ts) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING;";
+        if (copyEnabled) {
+            copy(entities, tableName);
+            return;
+        }
+        String insertQuery = "INSERT INTO " + tableName + " " + COLUMNS + " " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING;";
         transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -55,11 +67,12 @@ public class BaseCloudEventInsertRepository<T extends AbstractCloudEventEntity>
                         ps.setObject(1, event.getId());
                         ps.setLong(2, event.getCreatedTime());
                         ps.setString(3, event.getEntityBody() != null ? event.getEntityBody().toString() : null);
-                        ps.setObject(4, event.getEntityId());
-                        ps.setString(5, event.getCloudEventType().name());
-                        ps.setString(6, event.getCloudEventAction().name());
-                        ps.setObject(7, event.getTenantId());
-                        ps.setLong(8, event.getTs());
+                        ps.setBytes(4, event.getEntityBodyProto());
+                        ps.setObject(5, event.getEntityId());
+                        ps.setString(6, event.getCloudEventType().name());
+                        ps.setString(7, event.getCloudEventAction().name());
+                        ps.setObject(8, event.getTenantId());
+                        ps.setLong(9, event.getTs());
                     }
 
                     @Override
@@ -71,4 +84,26 @@ public class BaseCloudEventInsertRepository<T extends AbstractCloudEventEntity>
         });
     }
 
+    /*
+     * Cloud event tables are append-only and have no unique constraints,
+     * so the batch is copied straight into the (partitioned) table.
+     * */
+    private void copy(List<T> entities, String tableName) {
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(entities.size() * ROW_SIZE_ESTIMATE);
+        for (T event : entities) {
+            writer.startRow(9);
+            writer.writeUuid(event.getId());
+            writer.writeLong(event.getCreatedTime());
+            writer.writeText(event.getEntityBody() != null ? event.getEntityBody().toString() : null);
+            writer.writeBytes(event.getEntityBodyProto());
+            writer.writeUuid(event.getEntityId());
+            writer.writeText(event.getCloudEventType().name());
+            writer.writeText(event.getCloudEventAction().name());
+            writer.writeUuid(event.getTenantId());
+            writer.writeLong(event.getTs());
+        }
+        String copyQuery = "COPY " + tableName + " " + COLUMNS + " FROM STDIN (FORMAT binary)";
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> writer.copyIn(connection, copyQuery));
+    }
+
 }
@@ -25,6 +25,7 @@ import org.springframework.data.repository.query.Param;
 import org.thingsboard.server.common.data.cloud.CloudEventType;
 import org.thingsboard.server.common.data.edge.EdgeEventActionType;
 
+import java.util.List;
 import java.util.UUID;
 
 @NoRepositoryBean
@@ -44,6 +45,18 @@ public interface BaseCloudEventRepository<T, ID> extends JpaRepository<T, ID>, J
                                  @Param("seqIdEnd") Long seqIdEnd,
                                  Pageable pageable);
 
+    @Query("SELECT e FROM #{#entityName} e WHERE " +
+            "e.tenantId = :tenantId " +
+            "AND e.createdTime >= :startTime " +
+            "AND e.seqId > :seqIdStart " +
+            "AND e.seqId < :seqIdEnd"
+    )
+    List<T> findEventsByTenantIdAndSeqIdRange(@Param("tenantId") UUID tenantId,
+                                              @Param("startTime") long startTime,
+                                              @Param("seqIdStart") long seqIdStart,
+                                              @Param("seqIdEnd") long seqIdEnd,
+                                              Pageable pageable);
+
     @Query("SELECT COUNT(e) FROM #{#entityName} e WHERE " +
             "e.tenantId = :tenantId " +
             "AND e.entityId  = :entityId " +
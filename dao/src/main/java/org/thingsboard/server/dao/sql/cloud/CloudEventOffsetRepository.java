@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.cloud;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.cloud.CloudEventOffset;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public class CloudEventOffsetRepository {
+
+    private static final String SELECT_OFFSET = "SELECT created_time, seq_id FROM cloud_event_offset WHERE tenant_id = ? AND table_name = ?";
+    private static final String UPSERT_OFFSET = "INSERT INTO cloud_event_offset (tenant_id, table_name, created_time, seq_id) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (tenant_id, table_name) DO UPDATE SET created_time = EXCLUDED.created_time, seq_id = EXCLUDED.seq_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public CloudEventOffset find(UUID tenantId, String tableName) {
+        List<CloudEventOffset> offsets = jdbcTemplate.query(SELECT_OFFSET,
+                (rs, rowNum) -> new CloudEventOffset(rs.getLong(1), rs.getLong(2)), tenantId, tableName);
+        return offsets.isEmpty() ? null : offsets.get(0);
+    }
+
+    public void save(UUID tenantId, String tableName, CloudEventOffset offset) {
+        jdbcTemplate.update(UPSERT_OFFSET, tenantId, tableName, offset.getCreatedTime(), offset.getSeqId());
+    }
+
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.cloud;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+
+import java.sql.PreparedStatement;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Queries used to keep the cloud event tables within the storage quota.
+ * Partition sizes are estimated from the relation size and the live tuples statistics of PostgreSQL,
+ * so the rows are never scanned to calculate them. The share of every action is measured on a sample of the partition pages.
+ */
+@Slf4j
+@Repository
+public class CloudEventQuotaRepository {
+
+    private static final String SELECT_DELIVERED_BEFORE = "SELECT min(created_time) FROM cloud_event_offset WHERE table_name = ?";
+    private static final String SELECT_OLDEST_UNDELIVERED = "SELECT min(e.created_time) FROM cloud_event_offset o " +
+            "JOIN LATERAL (SELECT created_time FROM %s e WHERE e.tenant_id = o.tenant_id AND e.created_time >= o.created_time - ? " +
+            "AND e.seq_id > o.seq_id ORDER BY e.seq_id LIMIT 1) e ON true WHERE o.table_name = ?";
+    private static final String SELECT_PARTITION_SIZE = "SELECT pg_total_relation_size(c.oid), COALESCE(s.n_live_tup, 0), COALESCE(s.n_dead_tup, 0) " +
+            "FROM pg_class c LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid WHERE c.oid = to_regclass(?)";
+    private static final String SELECT_SIZE_BY_ACTION = "SELECT cloud_event_action, sum(pg_column_size(e.*)) FROM %s e%s GROUP BY cloud_event_action";
+    private static final String SAMPLE_CLAUSE = " TABLESAMPLE SYSTEM (?)";
+    private static final long SIZE_BY_ACTION_SAMPLE_ROWS = 10_000;
+    private static final String SELECT_DOWNSAMPLING_CANDIDATES = "SELECT id, tenant_id, entity_id, cloud_event_action, created_time, entity_body, entity_body_proto " +
+            "FROM %s WHERE cloud_event_action IN (%s) ORDER BY tenant_id, entity_id, cloud_event_action, created_time DESC, seq_id DESC";
+    private static final String DELETE_BY_IDS = "DELETE FROM %s WHERE id = ANY(?)";
+    private static final int DOWNSAMPLE_BATCH_SIZE = 1000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * @return created time before which all the events of the table are delivered to the cloud, or {@code null} if not known
+     */
+    public Long findDeliveredBefore(String table) {
+        Long offsetCreatedTime = jdbcTemplate.queryForObject(SELECT_DELIVERED_BEFORE, Long.class, table);
+        return offsetCreatedTime != null ? offsetCreatedTime - AbstractJpaCloudEventDao.OFFSET_CREATED_TIME_LOOKBACK_MS : null;
+    }
+
+    /**
+     * @return created time of the oldest event of the table that is not delivered to the cloud yet, or {@code null} if there is none
+     */
+    public Long findOldestUndeliveredCreatedTime(String table) {
+        return jdbcTemplate.queryForObject(String.format(SELECT_OLDEST_UNDELIVERED, table), Long.class,
+                AbstractJpaCloudEventDao.OFFSET_CREATED_TIME_LOOKBACK_MS, table);
+    }
+
+    /**
+     * @return size of the partition, or an empty size if the partition does not exist
+     */
+    public PartitionSize getPartitionSize(String table, long partitionStartTs) {
+        List<PartitionSize> sizes = jdbcTemplate.query(SELECT_PARTITION_SIZE, (rs, rowNum) ->
+                new PartitionSize(rs.getLong(1), rs.getLong(2), rs.getLong(3)), getPartitionName(table, partitionStartTs));
+        return sizes.isEmpty() ? new PartitionSize(0, 0, 0) : sizes.get(0);
+    }
+
+    /**
+     * Measures the size of the rows of every action on a sample of about {@value #SIZE_BY_ACTION_SAMPLE_ROWS} rows,
+     * the whole partition is scanned only when it has fewer live rows.
+     *
+     * @return sampled size of the rows by action, to be used as the share of every action in the partition size
+     */
+    public Map<EdgeEventActionType, Long> getSampledSizeByAction(String table, long partitionStartTs, long liveRows) {
+        String partition = getPartitionName(table, partitionStartTs);
+        Map<EdgeEventActionType, Long> sizeByAction = new EnumMap<>(EdgeEventActionType.class);
+        RowCallbackHandler handler = rs -> {
+            try {
+                sizeByAction.merge(EdgeEventActionType.valueOf(rs.getString(1)), rs.getLong(2), Long::sum);
+            } catch (IllegalArgumentException e) {
+                log.debug("[{}] Skipping size of unknown action [{}]", partition, rs.getString(1));
+            }
+        };
+        if (liveRows > SIZE_BY_ACTION_SAMPLE_ROWS) {
+            double samplePercent = SIZE_BY_ACTION_SAMPLE_ROWS * 100.0 / liveRows;
+            jdbcTemplate.query(String.format(SELECT_SIZE_BY_ACTION, partition, SAMPLE_CLAUSE), handler, samplePercent);
+        } else {
+            jdbcTemplate.query(String.format(SELECT_SIZE_BY_ACTION, partition, ""), handler);
+        }
+        return sizeByAction;
+    }
+
+    /**
+     * Deletes the events of the given actions whose every key is overwritten by a newer event
+     * of the same entity and scope within the same interval of the partition.
+     * Events are streamed from the partition, so the memory use does not depend on its size.
+     *
+     * @return number of deleted events
+     */
+    public int downsamplePartition(String table, long partitionStartTs, List<EdgeEventActionType> actions, long intervalMs) {
+        String partition = getPartitionName(table, partitionStartTs);
+        String actionsList = actions.stream().map(action -> "'" + action.name() + "'").collect(Collectors.joining(","));
+        Integer deleted = transactionTemplate.execute(status -> {
+            SupersededCloudEventsCollector collector = new SupersededCloudEventsCollector(intervalMs, DOWNSAMPLE_BATCH_SIZE,
+                    ids -> deleteEvents(partition, ids));
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(String.format(SELECT_DOWNSAMPLING_CANDIDATES, partition, actionsList));
+                ps.setFetchSize(DOWNSAMPLE_BATCH_SIZE);
+                return ps;
+            }, collector);
+            return collector.finish();
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    private int deleteEvents(String partition, List<UUID> ids) {
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(String.format(DELETE_BY_IDS, partition));
+            ps.setArray(1, con.createArrayOf("uuid", ids.toArray()));
+            return ps;
+        });
+    }
+
+    private static String getPartitionName(String table, long partitionStartTs) {
+        return table + "_" + partitionStartTs;
+    }
+
+    /**
+     * Size of a partition including its indexes and the dead rows that are not vacuumed yet.
+     */
+    public record PartitionSize(long totalBytes, long liveRows, long deadRows) {
+
+        /**
+         * @return share of the partition size taken by the live rows
+         */
+        public long getLiveBytes() {
+            long rows = liveRows + deadRows;
+            return rows > 0 ? (long) ((double) totalBytes * liveRows / rows) : totalBytes;
+        }
+
+        /**
+         * @return estimated size of the live rows after the given number of rows is deleted
+         */
+        public PartitionSize afterDelete(long deletedRows) {
+            long deleted = Math.min(deletedRows, liveRows);
+            return new PartitionSize(totalBytes, liveRows - deleted, deadRows + deleted);
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.cloud;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.asset.Asset;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.id.UUIDBased;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Batched writes of the entities received from the cloud during the full sync.
+ * The statements bypass the service layer, the caller is responsible for validation, cache eviction and notifications.
+ */
+@Repository
+public class CloudSyncBulkRepository {
+
+    private static final String SELECT_EXISTING_IDS = "SELECT id FROM %s WHERE id IN (%s)";
+    private static final String SELECT_EXISTING_NAMES = "SELECT name FROM %s WHERE tenant_id = ? AND name IN (%s)";
+
+    private static final String UPSERT_DEVICE = "INSERT INTO device (id, created_time, additional_info, customer_id, device_profile_id, " +
+            "device_data, type, name, label, tenant_id, firmware_id, software_id, external_id, version) " +
+            "VALUES (?, ?, ?, ?, ?, cast(? AS jsonb), ?, ?, ?, ?, ?, ?, ?, 1) " +
+            "ON CONFLICT (id) DO UPDATE SET additional_info = EXCLUDED.additional_info, customer_id = EXCLUDED.customer_id, " +
+            "device_profile_id = EXCLUDED.device_profile_id, device_data = EXCLUDED.device_data, type = EXCLUDED.type, " +
+            "name = EXCLUDED.name, label = EXCLUDED.label, firmware_id = EXCLUDED.firmware_id, software_id = EXCLUDED.software_id, " +
+            "external_id = EXCLUDED.external_id, version = device.version + 1";
+
+    private static final String UPSERT_ASSET = "INSERT INTO asset (id, created_time, additional_info, customer_id, asset_profile_id, " +
+            "name, label, tenant_id, type, external_id, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1) " +
+            "ON CONFLICT (id) DO UPDATE SET additional_info = EXCLUDED.additional_info, customer_id = EXCLUDED.customer_id, " +
+            "asset_profile_id = EXCLUDED.asset_profile_id, name = EXCLUDED.name, label = EXCLUDED.label, type = EXCLUDED.type, " +
+            "external_id = EXCLUDED.external_id, version = asset.version + 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public Set<UUID> findExistingIds(String table, Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(String.format(SELECT_EXISTING_IDS, table, placeholders(ids.size())),
+                UUID.class, ids.toArray()));
+    }
+
+    public Set<String> findExistingNames(String table, TenantId tenantId, Collection<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Object[] args = new Object[names.size() + 1];
+        args[0] = tenantId.getId();
+        int i = 1;
+        for (String name : names) {
+            args[i++] = name;
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(String.format(SELECT_EXISTING_NAMES, table, placeholders(names.size())),
+                String.class, args));
+    }
+
+    @Transactional
+    public void upsertDevices(List<Device> devices) {
+        jdbcTemplate.batchUpdate(UPSERT_DEVICE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Device device = devices.get(i);
+                ps.setObject(1, device.getUuidId());
+                ps.setLong(2, getCreatedTime(device.getCreatedTime()));
+                ps.setString(3, toJson(device.getAdditionalInfo()));
+                ps.setObject(4, toUuid(device.getCustomerId()));
+                ps.setObject(5, toUuid(device.getDeviceProfileId()));
+                ps.setString(6, toJson(device.getDeviceData()));
+                ps.setString(7, device.getType());
+                ps.setString(8, device.getName());
+                ps.setString(9, device.getLabel());
+                ps.setObject(10, toUuid(device.getTenantId()));
+                ps.setObject(11, toUuid(device.getFirmwareId()));
+                ps.setObject(12, toUuid(device.getSoftwareId()));
+                ps.setObject(13, toUuid(device.getExternalId()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return devices.size();
+            }
+        });
+    }
+
+    @Transactional
+    public void upsertAssets(List<Asset> assets) {
+        jdbcTemplate.batchUpdate(UPSERT_ASSET, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Asset asset = assets.get(i);
+                ps.setObject(1, asset.getUuidId());
+                ps.setLong(2, getCreatedTime(asset.getCreatedTime()));
+                ps.setString(3, toJson(asset.getAdditionalInfo()));
+                ps.setObject(4, toUuid(asset.getCustomerId()));
+                ps.setObject(5, toUuid(asset.getAssetProfileId()));
+                ps.setString(6, asset.getName());
+                ps.setString(7, asset.getLabel());
+                ps.setObject(8, toUuid(asset.getTenantId()));
+                ps.setString(9, asset.getType());
+                ps.setObject(10, toUuid(asset.getExternalId()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return assets.size();
+            }
+        });
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static long getCreatedTime(long createdTime) {
+        return createdTime > 0 ? createdTime : System.currentTimeMillis();
+    }
+
+    private static UUID toUuid(UUIDBased id) {
+        return id != null ? id.getId() : null;
+    }
+
+    private static String toJson(Object value) {
+        return value != null ? JacksonUtil.toString(value) : null;
+    }
+
+}
@@ -40,9 +40,10 @@ public class JpaBaseCloudEventDao extends AbstractJpaCloudEventDao<CloudEventEnt
     public JpaBaseCloudEventDao(ScheduledLogExecutorComponent logExecutor,
                                 StatsFactory statsFactory,
                                 SqlPartitioningRepository partitioningRepository,
+                                CloudEventOffsetRepository offsetRepository,
                                 CloudEventRepository cloudEventRepository,
                                 BaseCloudEventInsertRepository<CloudEventEntity> cloudEventInsertRepository) {
-        super(logExecutor, statsFactory, partitioningRepository);
+        super(logExecutor, statsFactory, partitioningRepository, offsetRepository);
         this.cloudEventRepository = cloudEventRepository;
         this.cloudEventInsertRepository = cloudEventInsertRepository;
     }
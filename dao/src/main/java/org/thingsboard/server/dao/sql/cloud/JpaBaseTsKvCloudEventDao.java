@@ -39,9 +39,10 @@ public class JpaBaseTsKvCloudEventDao extends AbstractJpaCloudEventDao<TsKvCloud
     public JpaBaseTsKvCloudEventDao(ScheduledLogExecutorComponent logExecutor,
                                     StatsFactory statsFactory,
                                     SqlPartitioningRepository partitioningRepository,
+                                    CloudEventOffsetRepository offsetRepository,
                                     TsKvCloudEventRepository tsKvCloudEventRepository,
                                     BaseCloudEventInsertRepository<TsKvCloudEventEntity> tsKvCloudEventInsertRepository) {
-        super(logExecutor, statsFactory, partitioningRepository);
+        super(logExecutor, statsFactory, partitioningRepository, offsetRepository);
         this.tsKvCloudEventRepository = tsKvCloudEventRepository;
         this.tsKvCloudEventInsertRepository = tsKvCloudEventInsertRepository;
     }
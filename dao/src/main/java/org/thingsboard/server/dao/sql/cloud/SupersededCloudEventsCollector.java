@@ -0,0 +1,166 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.cloud;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+/**
+ * Collects the time-series and attribute events whose every key is overwritten by a newer event of the same entity,
+ * action and scope within the same downsampling interval.
+ * <p>
+ * Expects the events ordered by tenant, entity and action, from the newest to the oldest.
+ * Events with a body that can't be parsed are kept.
+ */
+@Slf4j
+class SupersededCloudEventsCollector implements RowCallbackHandler {
+
+    private final long intervalMs;
+    private final int batchSize;
+    private final ToIntFunction<List<UUID>> deleteFunction;
+
+    private final List<UUID> superseded = new ArrayList<>();
+    private final Map<String, Set<String>> newerKeysByScope = new HashMap<>();
+    private UUID currentTenantId;
+    private UUID currentEntityId;
+    private EdgeEventActionType currentAction;
+    private long currentInterval;
+    private int deleted;
+
+    SupersededCloudEventsCollector(long intervalMs, int batchSize, ToIntFunction<List<UUID>> deleteFunction) {
+        this.intervalMs = intervalMs;
+        this.batchSize = batchSize;
+        this.deleteFunction = deleteFunction;
+    }
+
+    @Override
+    public void processRow(ResultSet rs) throws SQLException {
+        onEvent(rs.getObject("id", UUID.class), rs.getObject("tenant_id", UUID.class), rs.getObject("entity_id", UUID.class),
+                EdgeEventActionType.valueOf(rs.getString("cloud_event_action")), rs.getLong("created_time"),
+                rs.getString("entity_body"), rs.getBytes("entity_body_proto"));
+    }
+
+    void onEvent(UUID id, UUID tenantId, UUID entityId, EdgeEventActionType action, long createdTime, String entityBody, byte[] entityBodyProto) {
+        long interval = createdTime / intervalMs;
+        if (!Objects.equals(tenantId, currentTenantId) || !Objects.equals(entityId, currentEntityId)
+                || action != currentAction || interval != currentInterval) {
+            newerKeysByScope.clear();
+            currentTenantId = tenantId;
+            currentEntityId = entityId;
+            currentAction = action;
+            currentInterval = interval;
+        }
+        EventKeys eventKeys;
+        try {
+            eventKeys = getEventKeys(action, entityBody, entityBodyProto);
+        } catch (Exception e) {
+            log.debug("[{}] Failed to parse the body of cloud event, keeping it", id, e);
+            return;
+        }
+        if (eventKeys == null) {
+            return;
+        }
+        Set<String> newerKeys = newerKeysByScope.computeIfAbsent(eventKeys.scope(), scope -> new HashSet<>());
+        if (!eventKeys.keys().isEmpty() && newerKeys.containsAll(eventKeys.keys())) {
+            superseded.add(id);
+            if (superseded.size() >= batchSize) {
+                flush();
+            }
+        } else {
+            newerKeys.addAll(eventKeys.keys());
+        }
+    }
+
+    /**
+     * Deletes the remaining superseded events.
+     *
+     * @return total number of deleted events
+     */
+    int finish() {
+        flush();
+        return deleted;
+    }
+
+    private void flush() {
+        if (!superseded.isEmpty()) {
+            deleted += deleteFunction.applyAsInt(new ArrayList<>(superseded));
+            superseded.clear();
+        }
+    }
+
+    private static EventKeys getEventKeys(EdgeEventActionType action, String entityBody, byte[] entityBodyProto) throws InvalidProtocolBufferException {
+        JsonNode body = JacksonUtil.toJsonNode(entityBody);
+        Set<String> keys = new HashSet<>();
+        if (EdgeEventActionType.TIMESERIES_UPDATED.equals(action)) {
+            if (entityBodyProto != null) {
+                TransportProtos.PostTelemetryMsg telemetryMsg = TransportProtos.PostTelemetryMsg.parseFrom(entityBodyProto);
+                telemetryMsg.getTsKvListList().forEach(tsKv -> tsKv.getKvList().forEach(kv -> keys.add(kv.getKey())));
+            } else if (body != null && body.has("data")) {
+                addTelemetryKeys(body.get("data"), keys);
+            } else {
+                return null;
+            }
+            return new EventKeys("", keys);
+        }
+        if (body == null || !body.has(DataConstants.SCOPE)) {
+            return null;
+        }
+        String scope = body.get(DataConstants.SCOPE).asText() + (body.path("isPostAttributes").asBoolean() ? ":post" : "");
+        if (entityBodyProto != null) {
+            TransportProtos.PostAttributeMsg attributeMsg = TransportProtos.PostAttributeMsg.parseFrom(entityBodyProto);
+            attributeMsg.getKvList().forEach(kv -> keys.add(kv.getKey()));
+        } else if (body.has("kv") && body.get("kv").isObject()) {
+            body.get("kv").fieldNames().forEachRemaining(keys::add);
+        } else {
+            return null;
+        }
+        return new EventKeys(scope, keys);
+    }
+
+    private static void addTelemetryKeys(JsonNode data, Set<String> keys) {
+        if (data.isArray()) {
+            data.forEach(element -> addTelemetryKeys(element, keys));
+        } else if (data.isObject()) {
+            if (data.has("ts") && data.has("values") && data.get("values").isObject()) {
+                data.get("values").fieldNames().forEachRemaining(keys::add);
+            } else {
+                data.fieldNames().forEachRemaining(keys::add);
+            }
+        }
+    }
+
+    private record EventKeys(String scope, Set<String> keys) {
+    }
+
+}
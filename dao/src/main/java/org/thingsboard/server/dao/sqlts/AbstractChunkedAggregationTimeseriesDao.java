@@ -27,7 +27,6 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
-import org.thingsboard.server.common.data.kv.IntervalType;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQueryResult;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
@@ -38,10 +37,10 @@ import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
+import org.thingsboard.server.dao.sqlts.BucketAggregationRepository.AggregatedBucket;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
 import org.thingsboard.server.dao.sqlts.ts.TsKvRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
-import org.thingsboard.server.dao.util.TimeUtils;
 
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -67,6 +66,9 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
     @Autowired
     private KeyDictionaryDao keyDictionaryDao;
 
+    @Autowired
+    private BucketAggregationRepository bucketAggregationRepository;
+
     @PostConstruct
     protected void init() {
         TbSqlBlockingQueueParams tsParams = TbSqlBlockingQueueParams.builder()
@@ -76,6 +78,7 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts")
                 .batchSortEnabled(batchSortEnabled)
+                .queueCapacity(tsQueueCapacity)
                 .build();
 
         Function<TsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -122,25 +125,8 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         if (Aggregation.NONE.equals(aggParams.getAggregation())) {
             return Futures.immediateFuture(findAllAsyncWithLimit(entityId, query));
         } else {
-            List<ListenableFuture<Optional<TsKvEntity>>> futures = new ArrayList<>();
-            var intervalType = aggParams.getIntervalType();
-            long startPeriod = query.getStartTs();
-            long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
-            while (startPeriod < endPeriod) {
-                long startTs = startPeriod;
-                long endTs;
-                if (IntervalType.MILLISECONDS.equals(intervalType)) {
-                    endTs = startPeriod + aggParams.getInterval();
-                } else {
-                    endTs = TimeUtils.calculateIntervalEnd(startTs, intervalType, aggParams.getTzId());
-                }
-                endTs = Math.min(endTs, endPeriod);
-                long ts = startTs + (endTs - startTs) / 2;
-                ListenableFuture<Optional<TsKvEntity>> aggregateTsKvEntry = findAndAggregateAsync(entityId, query.getKey(), startTs, endTs, ts, query.getAggregation());
-                futures.add(aggregateTsKvEntry);
-                startPeriod = endTs;
-            }
-            return getReadTsKvQueryResultFuture(query, Futures.allAsList(futures));
+            TsAggregationBuckets buckets = TsAggregationBuckets.of(query);
+            return getReadTsKvQueryResultFuture(query, findAllAndAggregateAsync(entityId, query.getKey(), buckets, query.getAggregation()));
         }
     }
 
@@ -158,43 +144,43 @@ public abstract class AbstractChunkedAggregationTimeseriesDao extends AbstractSq
         return new ReadTsKvQueryResult(query.getId(), tsKvEntries, lastTs);
     }
 
-    ListenableFuture<Optional<TsKvEntity>> findAndAggregateAsync(EntityId entityId, String key, long startTs, long endTs, long ts, Aggregation aggregation) {
+    ListenableFuture<List<Optional<? extends AbstractTsKvEntity>>> findAllAndAggregateAsync(EntityId entityId, String key, TsAggregationBuckets buckets, Aggregation aggregation) {
         return service.submit(() -> {
-            TsKvEntity entity = switchAggregation(entityId, key, startTs, endTs, aggregation);
-            if (entity != null && entity.isNotEmpty()) {
-                entity.setEntityId(entityId.getId());
-                entity.setStrKey(key);
-                entity.setTs(ts);
-                return Optional.of(entity);
-            } else {
-                return Optional.empty();
+            var keyId = keyDictionaryDao.getOrSaveKeyId(key);
+            List<AggregatedBucket> aggregatedBuckets = bucketAggregationRepository.findAggregatedBuckets(entityId.getId(), keyId, buckets, aggregation);
+            List<Optional<? extends AbstractTsKvEntity>> result = new ArrayList<>(aggregatedBuckets.size() + 1);
+            for (AggregatedBucket bucket : aggregatedBuckets) {
+                TsKvEntity entity = toEntity(bucket, aggregation);
+                if (entity.isNotEmpty()) {
+                    entity.setEntityId(entityId.getId());
+                    entity.setStrKey(key);
+                    entity.setTs(buckets.getBucketTs(bucket.index()));
+                    result.add(Optional.of(entity));
+                }
+            }
+            if (result.isEmpty()) {
+                // keep the list non-empty to return an empty result for the query instead of null
+                result.add(Optional.empty());
             }
+            return result;
         });
     }
 
-    protected TsKvEntity switchAggregation(EntityId entityId, String key, long startTs, long endTs, Aggregation aggregation) {
-        var keyId = keyDictionaryDao.getOrSaveKeyId(key);
+    private static TsKvEntity toEntity(AggregatedBucket bucket, Aggregation aggregation) {
         switch (aggregation) {
             case AVG:
-                return tsKvRepository.findAvg(entityId.getId(), keyId, startTs, endTs);
-            case MAX:
-                var max = tsKvRepository.findNumericMax(entityId.getId(), keyId, startTs, endTs);
-                if (max.isNotEmpty()) {
-                    return max;
-                } else {
-                    return tsKvRepository.findStringMax(entityId.getId(), keyId, startTs, endTs);
-                }
+            case SUM:
+                return new TsKvEntity(bucket.longValue(), bucket.doubleValue(), bucket.longCount(), bucket.doubleCount(), aggregation.name(), bucket.lastTs());
             case MIN:
-                var min = tsKvRepository.findNumericMin(entityId.getId(), keyId, startTs, endTs);
-                if (min.isNotEmpty()) {
-                    return min;
+            case MAX:
+                var numeric = new TsKvEntity(bucket.longValue(), bucket.doubleValue(), bucket.longCount(), bucket.doubleCount(), aggregation.name(), bucket.lastTs());
+                if (numeric.isNotEmpty() || bucket.strValue() == null) {
+                    return numeric;
                 } else {
-                    return tsKvRepository.findStringMin(entityId.getId(), keyId, startTs, endTs);
+                    return new TsKvEntity(bucket.strValue(), bucket.lastTs());
                 }
-            case SUM:
-                return tsKvRepository.findSum(entityId.getId(), keyId, startTs, endTs);
             case COUNT:
-                return tsKvRepository.findCount(entityId.getId(), keyId, startTs, endTs);
+                return new TsKvEntity(bucket.booleanCount(), bucket.strCount(), bucket.longCount(), bucket.doubleCount(), bucket.jsonCount(), bucket.lastTs());
             default:
                 throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
         }
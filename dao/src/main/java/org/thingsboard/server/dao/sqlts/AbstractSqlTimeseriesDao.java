@@ -60,6 +60,9 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     @Value("${sql.ts.batch_threads:4}")
     protected int tsBatchThreads;
 
+    @Value("${sql.ts.queue_capacity:0}")
+    protected int tsQueueCapacity;
+
     @Value("${sql.timescale.batch_threads:4}")
     protected int timescaleBatchThreads;
 
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.dao.util.SqlTsOrTsLatestAnyDao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Aggregates the values of a single key into all buckets of a query with one scan of the ts_kv table,
+ * grouping rows by the computed bucket index instead of querying each interval separately.
+ */
+@Repository
+@SqlTsOrTsLatestAnyDao
+public class BucketAggregationRepository {
+
+    private static final String FIXED_BUCKET = "(tskv.ts - ?) / ?";
+    private static final String CALENDAR_BUCKET = "width_bucket(tskv.ts, ?::bigint[]) - 1";
+
+    private static final String AVG_OR_SUM_COLUMNS = "SUM(COALESCE(tskv.long_v, 0)), SUM(COALESCE(tskv.dbl_v, 0.0)), " +
+            "COUNT(tskv.long_v), COUNT(tskv.dbl_v), null, null, null, null";
+    private static final String MIN_COLUMNS = "MIN(tskv.long_v), MIN(tskv.dbl_v), " +
+            "COUNT(tskv.long_v), COUNT(tskv.dbl_v), MIN(tskv.str_v), null, null, null";
+    private static final String MAX_COLUMNS = "MAX(tskv.long_v), MAX(tskv.dbl_v), " +
+            "COUNT(tskv.long_v), COUNT(tskv.dbl_v), MAX(tskv.str_v), null, null, null";
+    private static final String COUNT_COLUMNS = "null, null, " +
+            "COUNT(tskv.long_v), COUNT(tskv.dbl_v), null, COUNT(tskv.bool_v), COUNT(tskv.str_v), COUNT(tskv.json_v)";
+
+    private static final String FROM_WHERE_CLAUSE = ", MAX(tskv.ts) FROM ts_kv tskv " +
+            "WHERE tskv.entity_id = ? AND tskv.key = ? AND tskv.ts >= ? AND tskv.ts < ? " +
+            "GROUP BY bucket ORDER BY bucket";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    public List<AggregatedBucket> findAggregatedBuckets(UUID entityId, int keyId, TsAggregationBuckets buckets, Aggregation aggregation) {
+        boolean fixedInterval = buckets.isFixedInterval();
+        String query = "SELECT " + (fixedInterval ? FIXED_BUCKET : CALENDAR_BUCKET) + " AS bucket, " +
+                getAggregationColumns(aggregation) + FROM_WHERE_CLAUSE;
+        return jdbcTemplate.query(query, ps -> {
+            int idx = 1;
+            if (fixedInterval) {
+                ps.setLong(idx++, buckets.getStartTs());
+                ps.setLong(idx++, buckets.getInterval());
+            } else {
+                Long[] bucketStarts = Arrays.stream(buckets.getBucketStarts()).boxed().toArray(Long[]::new);
+                ps.setArray(idx++, ps.getConnection().createArrayOf("bigint", bucketStarts));
+            }
+            ps.setObject(idx++, entityId);
+            ps.setInt(idx++, keyId);
+            ps.setLong(idx++, buckets.getStartTs());
+            ps.setLong(idx, buckets.getEndTs());
+        }, (rs, rowNum) -> new AggregatedBucket(
+                rs.getInt(1),
+                getLong(rs, 2),
+                getDouble(rs, 3),
+                getLong(rs, 4),
+                getLong(rs, 5),
+                rs.getString(6),
+                getLong(rs, 7),
+                getLong(rs, 8),
+                getLong(rs, 9),
+                getLong(rs, 10)));
+    }
+
+    private static String getAggregationColumns(Aggregation aggregation) {
+        switch (aggregation) {
+            case AVG:
+            case SUM:
+                return AVG_OR_SUM_COLUMNS;
+            case MIN:
+                return MIN_COLUMNS;
+            case MAX:
+                return MAX_COLUMNS;
+            case COUNT:
+                return COUNT_COLUMNS;
+            default:
+                throw new IllegalArgumentException("Not supported aggregation type: " + aggregation);
+        }
+    }
+
+    private static Long getLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Double getDouble(ResultSet rs, int column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    public record AggregatedBucket(int index, Long longValue, Double doubleValue, Long longCount, Long doubleCount,
+                                   String strValue, Long booleanCount, Long strCount, Long jsonCount, Long lastTs) {
+    }
+
+}
@@ -25,6 +25,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.DeviceProfileId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
@@ -60,6 +61,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -84,6 +88,10 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
 
     private TbSqlBlockingQueueWrapper<TsKvLatestEntity, Long> tsLatestQueue;
 
+    private TsKvLatestWriteBehindBuffer writeBehindBuffer;
+
+    private ScheduledExecutorService writeBehindExecutor;
+
     @Value("${sql.ts_latest.batch_size:1000}")
     private int tsLatestBatchSize;
 
@@ -96,6 +104,21 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
     @Value("${sql.ts_latest.batch_threads:4}")
     private int tsLatestBatchThreads;
 
+    @Value("${sql.ts_latest.update_by_latest_ts:true}")
+    private boolean updateByLatestTs;
+
+    @Value("${sql.ts_latest.write_behind.enabled:false}")
+    private boolean writeBehindEnabled;
+
+    @Value("${sql.ts_latest.write_behind.flush_interval_ms:1000}")
+    private long writeBehindFlushIntervalMs;
+
+    @Value("${sql.ts_latest.write_behind.max_pending_keys:100000}")
+    private int writeBehindMaxPendingKeys;
+
+    @Value("${sql.ts_latest.write_behind.ack_on_flush:true}")
+    private boolean writeBehindAckOnFlush;
+
     @Value("${sql.batch_sort:true}")
     protected boolean batchSortEnabled;
 
@@ -136,10 +159,26 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
                     });
                     return new ArrayList<>(trueLatest.values());
                 });
+
+        if (writeBehindEnabled) {
+            writeBehindBuffer = new TsKvLatestWriteBehindBuffer(tsLatestQueue::add, updateByLatestTs, writeBehindAckOnFlush, writeBehindMaxPendingKeys);
+            writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("sql-ts-latest-write-behind"));
+            writeBehindExecutor.scheduleWithFixedDelay(this::flushWriteBehindBuffer, writeBehindFlushIntervalMs, writeBehindFlushIntervalMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     @PreDestroy
     protected void destroy() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdownNow();
+        }
+        if (writeBehindBuffer != null) {
+            try {
+                writeBehindBuffer.flushSync(insertLatestTsRepository::saveOrUpdate);
+            } catch (Exception e) {
+                log.warn("Failed to persist pending latest telemetry values on shutdown", e);
+            }
+        }
         if (tsLatestQueue != null) {
             tsLatestQueue.destroy();
         }
@@ -185,6 +224,14 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         return tsKvLatestRepository.findAllKeysByEntityIds(entityIds.stream().map(EntityId::getId).collect(Collectors.toList()));
     }
 
+    private void flushWriteBehindBuffer() {
+        try {
+            writeBehindBuffer.flush();
+        } catch (Exception e) {
+            log.warn("Failed to flush pending latest telemetry values", e);
+        }
+    }
+
     private ListenableFuture<TsKvLatestRemovingResult> getNewLatestEntryFuture(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         ListenableFuture<List<TsKvEntry>> future = findNewLatestEntryFuture(tenantId, entityId, query);
         return Futures.transformAsync(future, entryList -> {
@@ -213,6 +260,9 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
                         entityId.getId(),
                         keyDictionaryDao.getOrSaveKeyId(key));
         Optional<TsKvLatestEntity> entry = tsKvLatestRepository.findById(compositeKey);
+        if (writeBehindBuffer != null) {
+            entry = mergeWithPending(entry.orElse(null), writeBehindBuffer.get(compositeKey.getEntityId(), compositeKey.getKey()));
+        }
         if (entry.isPresent()) {
             TsKvLatestEntity tsKvLatestEntity = entry.get();
             tsKvLatestEntity.setStrKey(key);
@@ -232,6 +282,10 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
             Long version = null;
             long ts = latest.getTs();
             if (ts >= query.getStartTs() && ts < query.getEndTs()) {
+                if (writeBehindBuffer != null) {
+                    // the pending value must reach the DB before the delete, otherwise the next flush brings it back
+                    writeBehindBuffer.flush(entityId.getId(), keyDictionaryDao.getOrSaveKeyId(query.getKey())).get();
+                }
                 version = transactionTemplate.execute(status -> jdbcTemplate.query("DELETE FROM ts_kv_latest WHERE entity_id = ? " +
                                 "AND key = ? RETURNING nextval('ts_kv_latest_version_seq')",
                         rs -> rs.next() ? rs.getLong(1) : null, entityId.getId(), keyDictionaryDao.getOrSaveKeyId(query.getKey())));
@@ -245,9 +299,36 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
     }
 
     protected ListenableFuture<List<TsKvEntry>> getFindAllLatestFuture(EntityId entityId) {
-        return service.submit(() ->
-                DaoUtil.convertDataList(Lists.newArrayList(
-                        searchTsKvLatestRepository.findAllByEntityId(entityId.getId()))));
+        return service.submit(() -> {
+            List<TsKvLatestEntity> entities = searchTsKvLatestRepository.findAllByEntityId(entityId.getId());
+            if (writeBehindBuffer != null) {
+                List<TsKvLatestEntity> pending = writeBehindBuffer.getAll(entityId.getId());
+                if (!pending.isEmpty()) {
+                    Map<Integer, TsKvLatestEntity> merged = new HashMap<>();
+                    entities.forEach(entity -> merged.put(entity.getKey(), entity));
+                    for (TsKvLatestEntity pendingEntity : pending) {
+                        mergeWithPending(merged.get(pendingEntity.getKey()), pendingEntity).ifPresent(entity -> {
+                            if (entity == pendingEntity) {
+                                entity.setStrKey(keyDictionaryDao.getKey(entity.getKey()));
+                            }
+                            merged.put(entity.getKey(), entity);
+                        });
+                    }
+                    entities = new ArrayList<>(merged.values());
+                }
+            }
+            return DaoUtil.convertDataList(Lists.newArrayList(entities));
+        });
+    }
+
+    private Optional<TsKvLatestEntity> mergeWithPending(TsKvLatestEntity persisted, TsKvLatestEntity pending) {
+        if (pending == null) {
+            return Optional.ofNullable(persisted);
+        }
+        if (persisted == null || !updateByLatestTs || pending.getTs() >= persisted.getTs()) {
+            return Optional.of(pending);
+        }
+        return Optional.of(persisted);
     }
 
     protected ListenableFuture<Long> getSaveLatestFuture(EntityId entityId, TsKvEntry tsKvEntry) {
@@ -261,7 +342,7 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         latestEntity.setBooleanValue(tsKvEntry.getBooleanValue().orElse(null));
         latestEntity.setJsonValue(tsKvEntry.getJsonValue().orElse(null));
 
-        return tsLatestQueue.add(latestEntity);
+        return writeBehindBuffer != null ? writeBehindBuffer.add(latestEntity) : tsLatestQueue.add(latestEntity);
     }
 
     protected TsKvEntry wrapNullTsKvEntry(final String key, final TsKvEntry latest) {
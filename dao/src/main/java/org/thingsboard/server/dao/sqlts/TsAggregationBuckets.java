@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import lombok.Getter;
+import org.thingsboard.server.common.data.kv.AggregationParams;
+import org.thingsboard.server.common.data.kv.IntervalType;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.dao.util.TimeUtils;
+
+import java.util.Arrays;
+
+/**
+ * Splits the [startTs, endTs) range of an aggregation query into buckets.
+ * Fixed (millisecond) buckets are described by the interval only, while calendar buckets
+ * (week, month, quarter) have explicit start timestamps calculated in the query time zone.
+ * The last bucket is truncated to the end of the range.
+ */
+@Getter
+public class TsAggregationBuckets {
+
+    private final long startTs;
+    private final long endTs;
+    private final long interval;
+    private final long[] bucketStarts;
+    private final int size;
+
+    private TsAggregationBuckets(long startTs, long endTs, long interval, long[] bucketStarts, int size) {
+        this.startTs = startTs;
+        this.endTs = endTs;
+        this.interval = interval;
+        this.bucketStarts = bucketStarts;
+        this.size = size;
+    }
+
+    public static TsAggregationBuckets of(ReadTsKvQuery query) {
+        AggregationParams aggParams = query.getAggParameters();
+        long startTs = query.getStartTs();
+        long endTs = Math.max(query.getStartTs() + 1, query.getEndTs());
+        if (IntervalType.MILLISECONDS.equals(aggParams.getIntervalType())) {
+            long interval = aggParams.getInterval();
+            long range = endTs - startTs;
+            long size = range / interval + (range % interval == 0 ? 0 : 1);
+            return new TsAggregationBuckets(startTs, endTs, interval, null, Math.toIntExact(size));
+        } else {
+            long[] starts = new long[16];
+            int size = 0;
+            long bucketStart = startTs;
+            while (bucketStart < endTs) {
+                if (size == starts.length) {
+                    starts = Arrays.copyOf(starts, size * 2);
+                }
+                starts[size++] = bucketStart;
+                bucketStart = TimeUtils.calculateIntervalEnd(bucketStart, aggParams.getIntervalType(), aggParams.getTzId());
+            }
+            return new TsAggregationBuckets(startTs, endTs, 0L, Arrays.copyOf(starts, size), size);
+        }
+    }
+
+    public boolean isFixedInterval() {
+        return bucketStarts == null;
+    }
+
+    public long getBucketStartTs(int index) {
+        return isFixedInterval() ? startTs + index * interval : bucketStarts[index];
+    }
+
+    public long getBucketEndTs(int index) {
+        if (index + 1 >= size) {
+            return endTs;
+        }
+        return isFixedInterval() ? startTs + (index + 1) * interval : bucketStarts[index + 1];
+    }
+
+    /**
+     * Timestamp of the aggregated value, which is the middle of the bucket.
+     */
+    public long getBucketTs(int index) {
+        long bucketStartTs = getBucketStartTs(index);
+        return bucketStartTs + (getBucketEndTs(index) - bucketStartTs) / 2;
+    }
+
+}
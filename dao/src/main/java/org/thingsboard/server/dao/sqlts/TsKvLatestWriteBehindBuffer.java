@@ -0,0 +1,197 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Merges the latest telemetry updates per (entity_id, key) in memory, indexed by entity, and writes only the newest value
+ * of every key once per flush. Until the flush, the pending values are visible via {@link #get} and {@link #getAll}.
+ */
+@Slf4j
+public class TsKvLatestWriteBehindBuffer {
+
+    private final ConcurrentMap<UUID, ConcurrentMap<Integer, PendingLatest>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingKeys = new AtomicInteger();
+    private final Function<TsKvLatestEntity, ListenableFuture<Long>> writer;
+    private final boolean updateByLatestTs;
+    private final boolean ackOnFlush;
+    private final int maxPendingKeys;
+
+    public TsKvLatestWriteBehindBuffer(Function<TsKvLatestEntity, ListenableFuture<Long>> writer,
+                                       boolean updateByLatestTs, boolean ackOnFlush, int maxPendingKeys) {
+        this.writer = writer;
+        this.updateByLatestTs = updateByLatestTs;
+        this.ackOnFlush = ackOnFlush;
+        this.maxPendingKeys = maxPendingKeys;
+    }
+
+    /**
+     * Returns the future of the write that persists the value. If ack on flush is disabled,
+     * the future is completed immediately with null version, like for the non-versioned storages.
+     */
+    public ListenableFuture<Long> add(TsKvLatestEntity entity) {
+        PendingLatest[] latest = new PendingLatest[1];
+        // the entity map is updated under the lock of its bin, so a concurrent flush cannot drop it with the new value
+        pending.compute(entity.getEntityId(), (entityId, keys) -> {
+            if (keys == null) {
+                keys = new ConcurrentHashMap<>();
+            }
+            latest[0] = keys.compute(entity.getKey(), (k, current) -> {
+                if (current == null) {
+                    pendingKeys.incrementAndGet();
+                    return new PendingLatest(entity);
+                }
+                if (!updateByLatestTs || current.entity.getTs() <= entity.getTs()) {
+                    current.entity = entity;
+                }
+                return current;
+            });
+            return keys;
+        });
+        if (maxPendingKeys > 0 && pendingKeys.get() > maxPendingKeys) {
+            flushKey(entity.getEntityId(), entity.getKey());
+        }
+        return ackOnFlush ? latest[0].future : Futures.immediateFuture(null);
+    }
+
+    public TsKvLatestEntity get(UUID entityId, int key) {
+        Map<Integer, PendingLatest> keys = pending.get(entityId);
+        PendingLatest latest = keys != null ? keys.get(key) : null;
+        return latest != null ? copy(latest.entity) : null;
+    }
+
+    public List<TsKvLatestEntity> getAll(UUID entityId) {
+        Map<Integer, PendingLatest> keys = pending.get(entityId);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        List<TsKvLatestEntity> result = new ArrayList<>(keys.size());
+        keys.values().forEach(latest -> result.add(copy(latest.entity)));
+        return result;
+    }
+
+    /**
+     * Writes the pending value of the key, if any, and returns the future of the write.
+     */
+    public ListenableFuture<Long> flush(UUID entityId, int key) {
+        PendingLatest latest = flushKey(entityId, key);
+        return latest != null ? latest.future : Futures.immediateFuture(null);
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        int count = 0;
+        for (UUID entityId : pending.keySet()) {
+            for (PendingLatest latest : removeAll(entityId)) {
+                write(latest);
+                count++;
+            }
+        }
+        log.trace("Flushed {} latest telemetry values", count);
+    }
+
+    /**
+     * Removes all pending values and persists them synchronously with the given function, e.g. on shutdown,
+     * when the batch queue is no longer available.
+     */
+    public void flushSync(Function<List<TsKvLatestEntity>, List<Long>> saver) {
+        List<PendingLatest> flushed = new ArrayList<>();
+        for (UUID entityId : pending.keySet()) {
+            flushed.addAll(removeAll(entityId));
+        }
+        if (flushed.isEmpty()) {
+            return;
+        }
+        try {
+            List<Long> versions = saver.apply(flushed.stream().map(latest -> latest.entity).toList());
+            for (int i = 0; i < flushed.size(); i++) {
+                flushed.get(i).future.set(versions != null && i < versions.size() ? versions.get(i) : null);
+            }
+        } catch (Throwable t) {
+            flushed.forEach(latest -> latest.future.setException(t));
+            throw t;
+        }
+    }
+
+    public int size() {
+        return pendingKeys.get();
+    }
+
+    private PendingLatest flushKey(UUID entityId, int key) {
+        PendingLatest[] latest = new PendingLatest[1];
+        pending.computeIfPresent(entityId, (id, keys) -> {
+            latest[0] = keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+        if (latest[0] != null) {
+            pendingKeys.decrementAndGet();
+            write(latest[0]);
+        }
+        return latest[0];
+    }
+
+    private Collection<PendingLatest> removeAll(UUID entityId) {
+        Map<Integer, PendingLatest> keys = pending.remove(entityId);
+        if (keys == null) {
+            return Collections.emptyList();
+        }
+        pendingKeys.addAndGet(-keys.size());
+        return keys.values();
+    }
+
+    private void write(PendingLatest latest) {
+        try {
+            latest.future.setFuture(writer.apply(latest.entity));
+        } catch (Throwable t) {
+            latest.future.setException(t);
+        }
+    }
+
+    private static TsKvLatestEntity copy(TsKvLatestEntity entity) {
+        return new TsKvLatestEntity(entity.getEntityId(), entity.getKey(), entity.getStrKey(), entity.getStrValue(), entity.getBooleanValue(),
+                entity.getLongValue(), entity.getDoubleValue(), entity.getJsonValue(), entity.getTs(), entity.getVersion());
+    }
+
+    private static class PendingLatest {
+
+        private final SettableFuture<Long> future = SettableFuture.create();
+        private volatile TsKvLatestEntity entity;
+
+        private PendingLatest(TsKvLatestEntity entity) {
+            this.entity = entity;
+        }
+
+    }
+
+}
@@ -18,6 +18,9 @@ package org.thingsboard.server.dao.sqlts.dictionary;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
@@ -28,6 +31,13 @@ import org.thingsboard.server.dao.model.sqlts.dictionary.KeyDictionaryEntry;
 import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import org.thingsboard.server.dao.util.SqlDao;
 
+import java.sql.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -39,10 +49,40 @@ import java.util.concurrent.locks.ReentrantLock;
 @RequiredArgsConstructor
 public class JpaKeyDictionaryDao extends JpaAbstractDaoListeningExecutorService implements KeyDictionaryDao {
 
+    private static final int CREATION_LOCK_STRIPES = 64;
+    // key ids come from a serial column, so they are dense and are stored in an array indexed by id
+    private static final int MAX_INDEXED_KEY_ID = 1 << 22;
+
+    // inserts the keys that do not exist yet and returns ids of all of them in a single round trip.
+    // The select part does not see rows inserted by the same statement, so every key is returned at most once
+    private static final String GET_OR_SAVE_KEYS = "WITH input AS (SELECT DISTINCT unnest(?::varchar[]) AS key), " +
+            "inserted AS (INSERT INTO key_dictionary (key) SELECT key FROM input ON CONFLICT (key) DO NOTHING RETURNING key, key_id) " +
+            "SELECT key, key_id FROM inserted UNION ALL SELECT kd.key, kd.key_id FROM key_dictionary kd JOIN input i ON kd.key = i.key";
+
     private final KeyDictionaryRepository keyDictionaryRepository;
 
     private final ConcurrentMap<String, Integer> keyDictionaryMap = new ConcurrentHashMap<>();
-    private static final ReentrantLock creationLock = new ReentrantLock();
+    private final ConcurrentMap<Integer, String> sparseKeysById = new ConcurrentHashMap<>();
+    private final Object keysByIdLock = new Object();
+    private volatile String[] keysById = new String[1024];
+    private final ReentrantLock[] creationLocks = createCreationLocks();
+
+    @Value("${sql.key_dictionary.preload_enabled:true}")
+    private boolean preloadEnabled;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!preloadEnabled) {
+            return;
+        }
+        try {
+            List<KeyDictionaryEntry> entries = keyDictionaryRepository.findAll();
+            entries.forEach(entry -> putToCache(entry.getKey(), entry.getKeyId()));
+            log.info("Loaded {} keys to the key dictionary cache", entries.size());
+        } catch (Exception e) {
+            log.warn("Failed to preload key dictionary", e);
+        }
+    }
 
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     @Override
@@ -52,6 +92,7 @@ public class JpaKeyDictionaryDao extends JpaAbstractDaoListeningExecutorService
             Optional<KeyDictionaryEntry> tsKvDictionaryOptional;
             tsKvDictionaryOptional = keyDictionaryRepository.findById(new KeyDictionaryCompositeKey(strKey));
             if (tsKvDictionaryOptional.isEmpty()) {
+                ReentrantLock creationLock = getCreationLock(strKey);
                 creationLock.lock();
                 try {
                     keyId = keyDictionaryMap.get(strKey);
@@ -64,32 +105,118 @@ public class JpaKeyDictionaryDao extends JpaAbstractDaoListeningExecutorService
                         keyDictionaryEntry.setKey(strKey);
                         try {
                             KeyDictionaryEntry saved = keyDictionaryRepository.save(keyDictionaryEntry);
-                            keyDictionaryMap.put(saved.getKey(), saved.getKeyId());
+                            putToCache(saved.getKey(), saved.getKeyId());
                             keyId = saved.getKeyId();
                         } catch (DataIntegrityViolationException | ConstraintViolationException e) {
                             tsKvDictionaryOptional = keyDictionaryRepository.findById(new KeyDictionaryCompositeKey(strKey));
                             KeyDictionaryEntry dictionary = tsKvDictionaryOptional.orElseThrow(() -> new RuntimeException("Failed to get KeyDictionaryEntry entity from DB!"));
-                            keyDictionaryMap.put(dictionary.getKey(), dictionary.getKeyId());
+                            putToCache(dictionary.getKey(), dictionary.getKeyId());
                             keyId = dictionary.getKeyId();
                         }
                     } else {
                         keyId = tsKvDictionaryOptional.get().getKeyId();
+                        putToCache(strKey, keyId);
                     }
                 } finally {
                     creationLock.unlock();
                 }
             } else {
                 keyId = tsKvDictionaryOptional.get().getKeyId();
-                keyDictionaryMap.put(strKey, keyId);
+                putToCache(strKey, keyId);
             }
         }
         return keyId;
     }
 
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    @Override
+    public Map<String, Integer> getOrSaveKeyIds(Collection<String> strKeys) {
+        Map<String, Integer> result = new HashMap<>(strKeys.size() * 2);
+        List<String> missing = null;
+        for (String strKey : strKeys) {
+            Integer keyId = keyDictionaryMap.get(strKey);
+            if (keyId != null) {
+                result.put(strKey, keyId);
+            } else {
+                if (missing == null) {
+                    missing = new ArrayList<>();
+                }
+                missing.add(strKey);
+            }
+        }
+        if (missing != null) {
+            String[] keys = missing.toArray(new String[0]);
+            jdbcTemplate.query(GET_OR_SAVE_KEYS, ps -> {
+                Array array = ps.getConnection().createArrayOf("varchar", keys);
+                ps.setArray(1, array);
+            }, rs -> {
+                String key = rs.getString(1);
+                int keyId = rs.getInt(2);
+                putToCache(key, keyId);
+                result.put(key, keyId);
+            });
+            for (String strKey : missing) {
+                if (!result.containsKey(strKey)) {
+                    // inserted by a concurrent transaction that was not yet visible to our statement
+                    result.put(strKey, getOrSaveKeyId(strKey));
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public String getKey(Integer keyId) {
-        Optional<KeyDictionaryEntry> byKeyId = keyDictionaryRepository.findByKeyId(keyId);
-        return byKeyId.map(KeyDictionaryEntry::getKey).orElse(null);
+        String key = getFromCache(keyId);
+        if (key == null) {
+            Optional<KeyDictionaryEntry> byKeyId = keyDictionaryRepository.findByKeyId(keyId);
+            if (byKeyId.isPresent()) {
+                key = byKeyId.get().getKey();
+                putToCache(key, keyId);
+            }
+        }
+        return key;
+    }
+
+    private void putToCache(String key, int keyId) {
+        keyDictionaryMap.put(key, keyId);
+        if (keyId < 0 || keyId > MAX_INDEXED_KEY_ID) {
+            sparseKeysById.put(keyId, key);
+            return;
+        }
+        synchronized (keysByIdLock) {
+            String[] keys = keysById;
+            if (keyId >= keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keyId + 1));
+            }
+            keys[keyId] = key;
+            // volatile write publishes the element to the lock-free readers
+            keysById = keys;
+        }
+    }
+
+    private String getFromCache(Integer keyId) {
+        if (keyId == null) {
+            return null;
+        }
+        String[] keys = keysById;
+        if (keyId >= 0 && keyId < keys.length) {
+            return keys[keyId];
+        }
+        return sparseKeysById.get(keyId);
+    }
+
+    private ReentrantLock getCreationLock(String strKey) {
+        int h = strKey.hashCode();
+        return creationLocks[Math.floorMod(h ^ (h >>> 16), CREATION_LOCK_STRIPES)];
+    }
+
+    private static ReentrantLock[] createCreationLocks() {
+        ReentrantLock[] locks = new ReentrantLock[CREATION_LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
     }
 
 }
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.sql;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvCompositeKey;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sql.PgBinaryCopyWriter;
+import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
+import org.thingsboard.server.dao.util.SqlTsDao;
+
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the batch into a session-local staging table with binary COPY and merges it into ts_kv with a single statement.
+ * The staging rows are removed on commit, so the whole batch has to run in one transaction.
+ */
+@SqlTsDao
+@Repository
+@Transactional
+@ConditionalOnProperty(prefix = "sql.ts", value = "copy_enabled", havingValue = "true")
+public class SqlCopyInsertTsRepository extends AbstractInsertRepository implements InsertTsRepository<TsKvEntity> {
+
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE IF NOT EXISTS ts_kv_copy_staging (LIKE ts_kv INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+    private static final String COPY_TO_STAGING_TABLE = "COPY ts_kv_copy_staging (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) FROM STDIN (FORMAT binary)";
+    private static final String MERGE_FROM_STAGING_TABLE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv_copy_staging " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = excluded.bool_v, str_v = excluded.str_v, " +
+            "long_v = excluded.long_v, dbl_v = excluded.dbl_v, json_v = excluded.json_v";
+
+    private static final int ROW_SIZE_ESTIMATE = 96;
+
+    @Override
+    public void saveOrUpdate(List<TsKvEntity> entities) {
+        Collection<TsKvEntity> rows = deduplicate(entities);
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(rows.size() * ROW_SIZE_ESTIMATE);
+        for (TsKvEntity tsKvEntity : rows) {
+            writer.startRow(8);
+            writer.writeUuid(tsKvEntity.getEntityId());
+            writer.writeInt(tsKvEntity.getKey());
+            writer.writeLong(tsKvEntity.getTs());
+            writer.writeBoolean(tsKvEntity.getBooleanValue());
+            writer.writeText(replaceNullChars(tsKvEntity.getStrValue()));
+            writer.writeLong(tsKvEntity.getLongValue());
+            writer.writeDouble(tsKvEntity.getDoubleValue());
+            writer.writeText(replaceNullChars(tsKvEntity.getJsonValue()));
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_STAGING_TABLE);
+                writer.copyIn(connection, COPY_TO_STAGING_TABLE);
+                statement.executeUpdate(MERGE_FROM_STAGING_TABLE);
+            }
+            return null;
+        });
+    }
+
+    /*
+     * A single INSERT ... ON CONFLICT DO UPDATE can't update the same row twice,
+     * so only the last value for each (entity_id, key, ts) is kept, as the batched upserts would do.
+     * */
+    private static Collection<TsKvEntity> deduplicate(List<TsKvEntity> entities) {
+        Map<TsKvCompositeKey, TsKvEntity> rows = new LinkedHashMap<>(entities.size() * 2);
+        for (TsKvEntity entity : entities) {
+            rows.put(new TsKvCompositeKey(entity.getEntityId(), entity.getKey(), entity.getTs()), entity);
+        }
+        return rows.values();
+    }
+
+}
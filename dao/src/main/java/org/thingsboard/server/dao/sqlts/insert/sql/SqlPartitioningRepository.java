@@ -15,23 +15,32 @@
  */
 package org.thingsboard.server.dao.sqlts.insert.sql;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.dao.timeseries.SqlPartition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongPredicate;
 
 @Primary
 @Repository
@@ -46,41 +55,100 @@ public class SqlPartitioningRepository {
     private static final int PSQL_VERSION_14 = 140000;
     private volatile Integer currentServerVersion;
 
-    private final Map<String, Map<Long, SqlPartition>> tablesPartitions = new ConcurrentHashMap<>();
-    private final ReentrantLock partitionCreationLock = new ReentrantLock();
+    @Value("${sql.partitions.provisioning_enabled:true}")
+    private boolean provisioningEnabled;
+
+    @Value("${sql.partitions.provisioning_interval_ms:60000}")
+    private long provisioningIntervalMs;
+
+    @Value("${sql.partitions.provisioned_partitions:2}")
+    private int provisionedPartitions;
+
+    private final ConcurrentMap<String, TablePartitions> tablesPartitions = new ConcurrentHashMap<>();
+    private ScheduledExecutorService provisioningExecutor;
+
+    @PostConstruct
+    public void init() {
+        if (provisioningEnabled) {
+            provisioningExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("sql-partitions-provisioning"));
+            provisioningExecutor.scheduleWithFixedDelay(this::provisionPartitions, provisioningIntervalMs, provisioningIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (provisioningExecutor != null) {
+            provisioningExecutor.shutdownNow();
+        }
+    }
 
     @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void save(SqlPartition partition) {
         getJdbcTemplate().execute(partition.getQuery());
     }
 
+    /*
+     * Called on every write of a partitioned entity: the known partitions are checked without locking or allocation,
+     * and the partition is created inline only when the background provisioning did not create it in advance
+     * */
     @Transactional(propagation = Propagation.NOT_SUPPORTED) // executing non-transactionally, so that parent transaction is not aborted on partition save error
     public void createPartitionIfNotExists(String table, long entityTs, long partitionDurationMs) {
         long partitionStartTs = calculatePartitionStartTime(entityTs, partitionDurationMs);
-        Map<Long, SqlPartition> partitions = tablesPartitions.computeIfAbsent(table, t -> new ConcurrentHashMap<>());
-        if (!partitions.containsKey(partitionStartTs)) {
-            SqlPartition partition = new SqlPartition(table, partitionStartTs, getPartitionEndTime(partitionStartTs, partitionDurationMs), Long.toString(partitionStartTs));
-            partitionCreationLock.lock();
-            try {
-                if (partitions.containsKey(partitionStartTs)) return;
-                log.info("Saving partition {}-{} for table {}", partition.getStart(), partition.getEnd(), table);
-                save(partition);
-                log.trace("Adding partition to map: {}", partition);
-                partitions.put(partition.getStart(), partition);
-            } catch (Exception e) {
-                String error = ExceptionUtils.getRootCauseMessage(e);
-                if (StringUtils.containsAny(error, "would overlap partition", "already exists")) {
-                    partitions.put(partition.getStart(), partition);
-                    log.debug("Couldn't save partition {}-{} for table {}: {}", partition.getStart(), partition.getEnd(), table, error);
-                } else {
-                    log.warn("Couldn't save partition {}-{} for table {}: {}", partition.getStart(), partition.getEnd(), table, error);
+        TablePartitions partitions = tablesPartitions.get(table);
+        if (partitions == null) {
+            partitions = tablesPartitions.computeIfAbsent(table, t -> new TablePartitions(t, partitionDurationMs));
+        }
+        if (!partitions.contains(partitionStartTs)) {
+            createPartition(partitions, partitionStartTs);
+        }
+    }
+
+    /*
+     * Creates the current and the next 'provisioned_partitions' partitions of every table that was written to,
+     * so that writers don't have to create them at the partition boundaries
+     * */
+    void provisionPartitions() {
+        long now = System.currentTimeMillis();
+        for (TablePartitions partitions : tablesPartitions.values()) {
+            long partitionDurationMs = partitions.getPartitionDurationMs();
+            long partitionStartTs = calculatePartitionStartTime(now, partitionDurationMs);
+            for (int i = 0; i <= provisionedPartitions; i++) {
+                long startTs = partitionStartTs + i * partitionDurationMs;
+                if (!partitions.contains(startTs)) {
+                    try {
+                        createPartition(partitions, startTs);
+                    } catch (Exception e) {
+                        log.warn("[{}] Failed to provision partition {}", partitions.getTable(), startTs, e);
+                    }
                 }
-            } finally {
-                partitionCreationLock.unlock();
             }
         }
     }
 
+    private void createPartition(TablePartitions partitions, long partitionStartTs) {
+        String table = partitions.getTable();
+        SqlPartition partition = new SqlPartition(table, partitionStartTs, getPartitionEndTime(partitionStartTs, partitions.getPartitionDurationMs()), Long.toString(partitionStartTs));
+        ReentrantLock creationLock = partitions.getCreationLock();
+        creationLock.lock();
+        try {
+            if (partitions.contains(partitionStartTs)) return;
+            log.info("Saving partition {}-{} for table {}", partition.getStart(), partition.getEnd(), table);
+            save(partition);
+            log.trace("Adding partition to cache: {}", partition);
+            partitions.add(partitionStartTs);
+        } catch (Exception e) {
+            String error = ExceptionUtils.getRootCauseMessage(e);
+            if (StringUtils.containsAny(error, "would overlap partition", "already exists")) {
+                partitions.add(partitionStartTs);
+                log.debug("Couldn't save partition {}-{} for table {}: {}", partition.getStart(), partition.getEnd(), table, error);
+            } else {
+                log.warn("Couldn't save partition {}-{} for table {}: {}", partition.getStart(), partition.getEnd(), table, error);
+            }
+        } finally {
+            creationLock.unlock();
+        }
+    }
+
     public long dropPartitionsBefore(String table, long ts, long partitionDurationMs) {
         List<Long> partitions = fetchPartitions(table);
         long lastDroppedPartitionEndTime = -1;
@@ -101,14 +169,14 @@ public class SqlPartitioningRepository {
     }
 
     public void cleanupPartitionsCache(String table, long expTime, long partitionDurationMs) {
-        Map<Long, SqlPartition> partitions = tablesPartitions.get(table);
+        TablePartitions partitions = tablesPartitions.get(table);
         if (partitions == null) return;
-        partitions.keySet().removeIf(startTime -> getPartitionEndTime(startTime, partitionDurationMs) < expTime);
+        partitions.removeIf(startTime -> getPartitionEndTime(startTime, partitionDurationMs) < expTime);
     }
 
     private boolean detachAndDropPartition(String table, long partitionTs) {
-        Map<Long, SqlPartition> cachedPartitions = tablesPartitions.get(table);
-        if (cachedPartitions != null) cachedPartitions.remove(partitionTs);
+        TablePartitions cachedPartitions = tablesPartitions.get(table);
+        if (cachedPartitions != null) cachedPartitions.removeIf(startTime -> startTime == partitionTs);
 
         String tablePartition = table + "_" + partitionTs;
         String detachPsqlStmtStr = "ALTER TABLE " + table + " DETACH PARTITION " + tablePartition;
@@ -170,4 +238,70 @@ public class SqlPartitioningRepository {
         return jdbcTemplate;
     }
 
+    /*
+     * Start timestamps of the known partitions of a table, kept in a sorted array that is replaced on every change,
+     * so the lookups on the write path don't need locking
+     * */
+    private static class TablePartitions {
+
+        private final String table;
+        private final long partitionDurationMs;
+        private final ReentrantLock creationLock = new ReentrantLock();
+        private volatile long[] partitionStarts = new long[0];
+
+        TablePartitions(String table, long partitionDurationMs) {
+            this.table = table;
+            this.partitionDurationMs = partitionDurationMs;
+        }
+
+        String getTable() {
+            return table;
+        }
+
+        long getPartitionDurationMs() {
+            return partitionDurationMs;
+        }
+
+        ReentrantLock getCreationLock() {
+            return creationLock;
+        }
+
+        boolean contains(long partitionStartTs) {
+            return Arrays.binarySearch(partitionStarts, partitionStartTs) >= 0;
+        }
+
+        void add(long partitionStartTs) {
+            creationLock.lock();
+            try {
+                long[] current = partitionStarts;
+                int idx = Arrays.binarySearch(current, partitionStartTs);
+                if (idx >= 0) {
+                    return;
+                }
+                int insertionIdx = -idx - 1;
+                long[] updated = new long[current.length + 1];
+                System.arraycopy(current, 0, updated, 0, insertionIdx);
+                updated[insertionIdx] = partitionStartTs;
+                System.arraycopy(current, insertionIdx, updated, insertionIdx + 1, current.length - insertionIdx);
+                partitionStarts = updated;
+            } finally {
+                creationLock.unlock();
+            }
+        }
+
+        void removeIf(LongPredicate filter) {
+            creationLock.lock();
+            try {
+                long[] current = partitionStarts;
+                long[] updated = Arrays.stream(current).filter(filter.negate()).toArray();
+                if (updated.length != current.length) {
+                    partitionStarts = updated;
+                }
+            } finally {
+                creationLock.unlock();
+            }
+        }
+
+    }
+
 }
@@ -42,9 +42,11 @@ import org.thingsboard.server.dao.model.sqlts.timescale.ts.TimescaleTsKvEntity;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
 import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 import org.thingsboard.server.dao.sqlts.AbstractSqlTimeseriesDao;
+import org.thingsboard.server.dao.sqlts.BucketAggregationRepository;
+import org.thingsboard.server.dao.sqlts.BucketAggregationRepository.AggregatedBucket;
+import org.thingsboard.server.dao.sqlts.TsAggregationBuckets;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
 import org.thingsboard.server.dao.timeseries.TimeseriesDao;
-import org.thingsboard.server.dao.util.TimeUtils;
 import org.thingsboard.server.dao.util.TimescaleDBTsDao;
 
 import java.util.ArrayList;
@@ -66,6 +68,9 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
     @Autowired
     private AggregationRepository aggregationRepository;
 
+    @Autowired
+    private BucketAggregationRepository bucketAggregationRepository;
+
     @Autowired
     private StatsFactory statsFactory;
 
@@ -86,6 +91,7 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
                 .statsPrintIntervalMs(tsStatsPrintIntervalMs)
                 .statsNamePrefix("ts.timescale")
                 .batchSortEnabled(batchSortEnabled)
+                .queueCapacity(tsQueueCapacity)
                 .build();
 
         Function<TimescaleTsKvEntity, Integer> hashcodeFunction = entity -> entity.getEntityId().hashCode();
@@ -160,16 +166,8 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
             List<Optional<? extends AbstractTsKvEntity>> data = findAllAndAggregateAsync(entityId, query.getKey(), startTs, endTs, timeBucket, query.getAggregation());
             return getReadTsKvQueryResultFuture(query, Futures.immediateFuture(data));
         } else {
-            //TODO: @dshvaika improve according to native capabilities of Timescale.
-            long startPeriod = query.getStartTs();
-            long endPeriod = Math.max(query.getStartTs() + 1, query.getEndTs());
-            List<TimescaleTsKvEntity> timescaleTsKvEntities = new ArrayList<>();
-            while (startPeriod < endPeriod) {
-                long startTs = startPeriod;
-                long endTs = Math.min(TimeUtils.calculateIntervalEnd(startTs, intervalType, aggParams.getTzId()), endPeriod);
-                timescaleTsKvEntities.addAll(switchAggregation(query.getKey(), startTs, endTs, endTs - startTs, query.getAggregation(), entityId.getId()));
-                startPeriod = endTs;
-            }
+            TsAggregationBuckets buckets = TsAggregationBuckets.of(query);
+            List<TimescaleTsKvEntity> timescaleTsKvEntities = findAllAndAggregateByCalendar(entityId.getId(), query.getKey(), buckets, query.getAggregation());
             return getReadTsKvQueryResultFuture(query, Futures.immediateFuture(toResultList(entityId, query.getKey(), timescaleTsKvEntities)));
         }
     }
@@ -228,6 +226,24 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         }
     }
 
+    private List<TimescaleTsKvEntity> findAllAndAggregateByCalendar(UUID entityId, String key, TsAggregationBuckets buckets, Aggregation aggregation) {
+        Integer keyId = keyDictionaryDao.getOrSaveKeyId(key);
+        List<AggregatedBucket> aggregatedBuckets = bucketAggregationRepository.findAggregatedBuckets(entityId, keyId, buckets, aggregation);
+        List<TimescaleTsKvEntity> result = new ArrayList<>(aggregatedBuckets.size());
+        for (AggregatedBucket bucket : aggregatedBuckets) {
+            long bucketStartTs = buckets.getBucketStartTs(bucket.index());
+            long interval = buckets.getBucketEndTs(bucket.index()) - bucketStartTs;
+            if (Aggregation.COUNT.equals(aggregation)) {
+                result.add(new TimescaleTsKvEntity(bucketStartTs, interval, bucket.booleanCount(), bucket.strCount(),
+                        bucket.longCount(), bucket.doubleCount(), bucket.jsonCount(), bucket.lastTs()));
+            } else {
+                result.add(new TimescaleTsKvEntity(bucketStartTs, interval, bucket.longValue(), bucket.doubleValue(),
+                        bucket.longCount(), bucket.doubleCount(), bucket.strValue(), aggregation.name(), bucket.lastTs()));
+            }
+        }
+        return result;
+    }
+
     private List<TimescaleTsKvEntity> switchAggregation(String key, long startTs, long endTs, long timeBucket, Aggregation aggregation, UUID entityId) {
         Integer keyId = keyDictionaryDao.getOrSaveKeyId(key);
         switch (aggregation) {
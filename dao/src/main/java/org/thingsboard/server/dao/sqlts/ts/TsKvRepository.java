@@ -53,77 +53,4 @@ public interface TsKvRepository extends JpaRepository<TsKvEntity, TsKvCompositeK
                 @Param("startTs") long startTs,
                 @Param("endTs") long endTs);
 
-    @Query("SELECT new TsKvEntity(MAX(tskv.strValue), MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.strValue IS NOT NULL " +
-            "AND tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findStringMax(@Param("entityId") UUID entityId,
-                             @Param("entityKey") int entityKey,
-                             @Param("startTs") long startTs,
-                             @Param("endTs") long endTs);
-
-    @Query("SELECT new TsKvEntity(MAX(COALESCE(tskv.longValue, -9223372036854775807)), " +
-            "MAX(COALESCE(tskv.doubleValue, java.lang.Double.MIN_VALUE)), " +
-            "SUM(CASE WHEN tskv.longValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.doubleValue IS NULL THEN 0 ELSE 1 END), " +
-            "'MAX', MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findNumericMax(@Param("entityId") UUID entityId,
-                              @Param("entityKey") int entityKey,
-                              @Param("startTs") long startTs,
-                              @Param("endTs") long endTs);
-
-
-    @Query("SELECT new TsKvEntity(MIN(tskv.strValue), MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.strValue IS NOT NULL " +
-            "AND tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findStringMin(@Param("entityId") UUID entityId,
-                             @Param("entityKey") int entityKey,
-                             @Param("startTs") long startTs,
-                             @Param("endTs") long endTs);
-
-    @Query("SELECT new TsKvEntity(MIN(COALESCE(tskv.longValue, 9223372036854775807)), " +
-            "MIN(COALESCE(tskv.doubleValue, java.lang.Double.MAX_VALUE)), " +
-            "SUM(CASE WHEN tskv.longValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.doubleValue IS NULL THEN 0 ELSE 1 END), " +
-            "'MIN', MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findNumericMin(
-            @Param("entityId") UUID entityId,
-            @Param("entityKey") int entityKey,
-            @Param("startTs") long startTs,
-            @Param("endTs") long endTs);
-
-    @Query("SELECT new TsKvEntity(SUM(CASE WHEN tskv.booleanValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.strValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.longValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.doubleValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.jsonValue IS NULL THEN 0 ELSE 1 END), MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findCount(@Param("entityId") UUID entityId,
-                         @Param("entityKey") int entityKey,
-                         @Param("startTs") long startTs,
-                         @Param("endTs") long endTs);
-
-    @Query("SELECT new TsKvEntity(SUM(COALESCE(tskv.longValue, 0)), " +
-            "SUM(COALESCE(tskv.doubleValue, 0.0)), " +
-            "SUM(CASE WHEN tskv.longValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.doubleValue IS NULL THEN 0 ELSE 1 END), " +
-            "'AVG', MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findAvg(@Param("entityId") UUID entityId,
-                       @Param("entityKey") int entityKey,
-                       @Param("startTs") long startTs,
-                       @Param("endTs") long endTs);
-
-    @Query("SELECT new TsKvEntity(SUM(COALESCE(tskv.longValue, 0)), " +
-            "SUM(COALESCE(tskv.doubleValue, 0.0)), " +
-            "SUM(CASE WHEN tskv.longValue IS NULL THEN 0 ELSE 1 END), " +
-            "SUM(CASE WHEN tskv.doubleValue IS NULL THEN 0 ELSE 1 END), " +
-            "'SUM', MAX(tskv.ts)) FROM TsKvEntity tskv " +
-            "WHERE tskv.entityId = :entityId AND tskv.key = :entityKey AND tskv.ts >= :startTs AND tskv.ts < :endTs")
-    TsKvEntity findSum(@Param("entityId") UUID entityId,
-                       @Param("entityKey") int entityKey,
-                       @Param("startTs") long startTs,
-                       @Param("endTs") long endTs);
-
 }
@@ -768,6 +768,7 @@ CREATE TABLE IF NOT EXISTS cloud_event (
     entity_id uuid,
     cloud_event_action varchar(255),
     entity_body varchar(10000000),
+    entity_body_proto bytea,
     tenant_id uuid,
     ts bigint NOT NULL
 ) PARTITION BY RANGE(created_time);
@@ -782,12 +783,21 @@ CREATE TABLE IF NOT EXISTS ts_kv_cloud_event (
     entity_id uuid,
     cloud_event_action varchar(255),
     entity_body varchar(10000000),
+    entity_body_proto bytea,
     tenant_id uuid,
     ts bigint NOT NULL
 ) PARTITION BY RANGE(created_time);
 
 ALTER TABLE IF EXISTS ts_kv_cloud_event ALTER COLUMN seq_id SET CYCLE;
 
+CREATE TABLE IF NOT EXISTS cloud_event_offset (
+    tenant_id uuid NOT NULL,
+    table_name varchar(255) NOT NULL,
+    created_time bigint NOT NULL,
+    seq_id bigint NOT NULL,
+    CONSTRAINT cloud_event_offset_pkey PRIMARY KEY (tenant_id, table_name)
+);
+
 CREATE OR REPLACE FUNCTION to_uuid(IN entity_id varchar, OUT uuid_id uuid) AS
 $$
 BEGIN
@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PgBinaryCopyWriterTest {
+
+    @Test
+    public void testRowEncoding() {
+        UUID entityId = UUID.randomUUID();
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(0);
+        writer.startRow(6);
+        writer.writeUuid(entityId);
+        writer.writeInt(7);
+        writer.writeLong(1704899727000L);
+        writer.writeBoolean(null);
+        writer.writeText("žž");
+        writer.writeDouble(2.5);
+
+        ByteBuffer data = ByteBuffer.wrap(writer.toByteArray());
+        byte[] signature = new byte[11];
+        data.get(signature);
+        assertThat(signature).containsExactly('P', 'G', 'C', 'O', 'P', 'Y', '\n', 0xFF, '\r', '\n', 0);
+        assertThat(data.getInt()).isZero();
+        assertThat(data.getInt()).isZero();
+
+        assertThat(data.getShort()).isEqualTo((short) 6);
+        assertThat(data.getInt()).isEqualTo(16);
+        assertThat(new UUID(data.getLong(), data.getLong())).isEqualTo(entityId);
+        assertThat(data.getInt()).isEqualTo(4);
+        assertThat(data.getInt()).isEqualTo(7);
+        assertThat(data.getInt()).isEqualTo(8);
+        assertThat(data.getLong()).isEqualTo(1704899727000L);
+        assertThat(data.getInt()).isEqualTo(-1);
+        assertThat(data.getInt()).isEqualTo(4);
+        byte[] text = new byte[4];
+        data.get(text);
+        assertThat(new String(text, StandardCharsets.UTF_8)).isEqualTo("žž");
+        assertThat(data.getInt()).isEqualTo(8);
+        assertThat(data.getDouble()).isEqualTo(2.5);
+
+        assertThat(data.getShort()).isEqualTo((short) -1);
+        assertThat(data.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void testTrailerIsWrittenOnce() {
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(16);
+        writer.startRow(1);
+        writer.writeBytes(new byte[1000]);
+        byte[] first = writer.toByteArray();
+        assertThat(writer.toByteArray()).isEqualTo(first);
+        assertThat(first).hasSize(11 + 8 + 2 + 4 + 1000 + 2);
+    }
+
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class TbSqlRingBufferQueueTest {
+
+    private final ScheduledLogExecutorComponent logExecutor = mock(ScheduledLogExecutorComponent.class);
+    private TbSqlRingBufferQueue<Integer, Integer> queue;
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
+    @Test
+    void testAllElementsOfConcurrentProducersAreSavedInBatches() throws Exception {
+        List<Integer> saved = new CopyOnWriteArrayList<>();
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        queue = createQueue(10, 16, false, batch -> {
+            batchSizes.add(batch.size());
+            saved.addAll(batch);
+            return null;
+        });
+
+        int producers = 4;
+        int elementsPerProducer = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        List<ListenableFuture<Integer>> futures = Collections.synchronizedList(new ArrayList<>());
+        for (int p = 0; p < producers; p++) {
+            int offset = p * elementsPerProducer;
+            executor.submit(() -> {
+                for (int i = 0; i < elementsPerProducer; i++) {
+                    futures.add(queue.add(offset + i));
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        Futures.allAsList(futures).get(30, TimeUnit.SECONDS);
+
+        assertThat(saved).hasSize(producers * elementsPerProducer).doesNotHaveDuplicates();
+        assertThat(batchSizes).allMatch(size -> size <= 10);
+    }
+
+    @Test
+    void testPartialBatchIsSavedAfterMaxDelay() throws Exception {
+        List<Integer> saved = new CopyOnWriteArrayList<>();
+        queue = createQueue(100, 256, false, batch -> {
+            saved.addAll(batch);
+            return null;
+        });
+
+        ListenableFuture<Integer> first = queue.add(1);
+        ListenableFuture<Integer> second = queue.add(2);
+        Futures.allAsList(first, second).get(5, TimeUnit.SECONDS);
+
+        assertThat(saved).containsExactly(1, 2);
+    }
+
+    @Test
+    void testResponsesAreMappedToElements() throws Exception {
+        queue = createQueue(10, 16, true, batch -> batch.stream().map(element -> element * 10).toList());
+
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(queue.add(i));
+        }
+        List<Integer> results = Futures.allAsList(futures).get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 25; i++) {
+            assertThat(results.get(i)).isEqualTo(i * 10);
+        }
+    }
+
+    @Test
+    void testFailedBatchFailsFutures() {
+        queue = createQueue(10, 16, false, batch -> {
+            throw new IllegalStateException("DB is down");
+        });
+
+        ListenableFuture<Integer> future = queue.add(1);
+
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void testFailedBatchDoesNotFailFuturesOfLaterBatches() throws Exception {
+        CountDownLatch firstSaveStarted = new CountDownLatch(1);
+        CountDownLatch firstSaveReleased = new CountDownLatch(1);
+        AtomicInteger saves = new AtomicInteger();
+        List<Integer> saved = new CopyOnWriteArrayList<>();
+        queue = new TbSqlRingBufferQueue<>(createParams(2, 16, false), mock(MessagesStats.class));
+        // elements added before the consumer starts share the first batch future, which spans the first three batches
+        List<ListenableFuture<Integer>> firstFutures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            firstFutures.add(queue.add(i));
+        }
+        queue.init(logExecutor, batch -> {
+            int save = saves.incrementAndGet();
+            if (save == 1) {
+                firstSaveStarted.countDown();
+                awaitLatch(firstSaveReleased);
+            } else if (save == 2) {
+                throw new IllegalStateException("DB is down");
+            }
+            saved.addAll(batch);
+            return null;
+        }, Comparator.naturalOrder(), Function.identity(), 0);
+
+        assertThat(firstSaveStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        ListenableFuture<Integer> laterFuture = queue.add(5);
+        queue.add(6);
+        firstSaveReleased.countDown();
+
+        assertThatThrownBy(() -> firstFutures.get(0).get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(laterFuture.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(saved).containsExactly(0, 1, 4, 5, 6);
+    }
+
+    private TbSqlRingBufferQueue<Integer, Integer> createQueue(int batchSize, int capacity, boolean withResponse,
+                                                               Function<List<Integer>, List<Integer>> saveFunction) {
+        TbSqlRingBufferQueue<Integer, Integer> queue = new TbSqlRingBufferQueue<>(createParams(batchSize, capacity, withResponse), mock(MessagesStats.class));
+        queue.init(logExecutor, saveFunction, Comparator.naturalOrder(), Function.identity(), 0);
+        return queue;
+    }
+
+    private static TbSqlBlockingQueueParams createParams(int batchSize, int capacity, boolean withResponse) {
+        return TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(batchSize)
+                .maxDelay(20)
+                .statsPrintIntervalMs(10000)
+                .statsNamePrefix("test")
+                .batchSortEnabled(false)
+                .withResponse(withResponse)
+                .queueCapacity(capacity)
+                .build();
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.cloud;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CloudEventQuotaRepositoryTest {
+
+    private static final String TABLE = "cloud_event";
+    private static final long PARTITION_START_TS = 1000L;
+    private static final long INTERVAL_MS = 60000L;
+    private static final List<EdgeEventActionType> ATTRIBUTES_ACTIONS = List.of(EdgeEventActionType.ATTRIBUTES_UPDATED, EdgeEventActionType.POST_ATTRIBUTES);
+
+    private final UUID tenantId = UUID.randomUUID();
+    private final UUID entityId = UUID.randomUUID();
+
+    private JdbcTemplate jdbcTemplate;
+    private CloudEventQuotaRepository repository;
+    private final List<UUID> deletedIds = new ArrayList<>();
+    private final List<String> executedSql = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            executedSql.add(invocation.getArgument(0));
+            return mock(PreparedStatement.class);
+        });
+        when(connection.createArrayOf(eq("uuid"), any())).thenAnswer(invocation -> {
+            Arrays.stream((Object[]) invocation.getArgument(1)).forEach(id -> deletedIds.add((UUID) id));
+            return mock(Array.class);
+        });
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class))).thenAnswer(invocation -> {
+            int before = deletedIds.size();
+            ((PreparedStatementCreator) invocation.getArgument(0)).createPreparedStatement(connection);
+            return deletedIds.size() - before;
+        });
+
+        repository = new CloudEventQuotaRepository();
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(repository, "transactionTemplate", transactionTemplate);
+    }
+
+    @Test
+    void testAttributeUpdatesWithNonOverlappingKeysSurvive() {
+        List<Event> events = List.of(
+                attributesEvent(5000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}"),
+                attributesEvent(4000, "{\"kv\":{\"b\":2},\"scope\":\"SERVER_SCOPE\"}"),
+                attributesEvent(3000, "{\"kv\":{\"c\":3},\"scope\":\"SERVER_SCOPE\"}"));
+
+        int deleted = downsample(events, ATTRIBUTES_ACTIONS);
+
+        assertThat(deleted).isZero();
+        assertThat(deletedIds).isEmpty();
+    }
+
+    @Test
+    void testAttributeUpdateIsDeletedOnlyWhenAllKeysAreOverwritten() {
+        Event newest = attributesEvent(5000, "{\"kv\":{\"a\":1,\"b\":2},\"scope\":\"SERVER_SCOPE\"}");
+        Event overwritten = attributesEvent(4000, "{\"kv\":{\"a\":0},\"scope\":\"SERVER_SCOPE\"}");
+        Event partiallyOverwritten = attributesEvent(3000, "{\"kv\":{\"b\":0,\"c\":0},\"scope\":\"SERVER_SCOPE\"}");
+        Event overwrittenByMerge = attributesEvent(2000, "{\"kv\":{\"a\":0,\"c\":0},\"scope\":\"SERVER_SCOPE\"}");
+
+        int deleted = downsample(List.of(newest, overwritten, partiallyOverwritten, overwrittenByMerge), ATTRIBUTES_ACTIONS);
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(deletedIds).containsExactlyInAnyOrder(overwritten.id(), overwrittenByMerge.id());
+        assertThat(executedSql).anyMatch(sql -> sql.startsWith("DELETE FROM cloud_event_1000 "));
+    }
+
+    @Test
+    void testAttributeUpdatesOfDifferentScopesSurvive() {
+        List<Event> events = List.of(
+                attributesEvent(5000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}"),
+                attributesEvent(4000, "{\"kv\":{\"a\":1},\"scope\":\"SHARED_SCOPE\"}"),
+                attributesEvent(3000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\",\"isPostAttributes\":true}"),
+                protoAttributesEvent(2000, "{\"scope\":\"CLIENT_SCOPE\"}", "a"));
+
+        assertThat(downsample(events, ATTRIBUTES_ACTIONS)).isZero();
+    }
+
+    @Test
+    void testEventsOfDifferentIntervalsAndEntitiesSurvive() {
+        Event newest = attributesEvent(INTERVAL_MS + 1000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}");
+        Event previousInterval = attributesEvent(INTERVAL_MS - 1000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}");
+        Event otherEntity = new Event(UUID.randomUUID(), tenantId, UUID.randomUUID(), EdgeEventActionType.ATTRIBUTES_UPDATED,
+                INTERVAL_MS - 2000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}", null);
+
+        assertThat(downsample(List.of(newest, previousInterval, otherEntity), ATTRIBUTES_ACTIONS)).isZero();
+    }
+
+    @Test
+    void testTimeseriesKeysAreCollectedFromJsonAndProtoBodies() {
+        Event newestProto = telemetryProtoEvent(5000, "temperature", "humidity");
+        Event overwrittenJson = telemetryEvent(4000, "{\"data\":[{\"ts\":1,\"values\":{\"temperature\":1}},{\"humidity\":2}],\"ts\":4000}");
+        Event withNewKey = telemetryEvent(3000, "{\"data\":{\"ts\":1,\"values\":{\"temperature\":1,\"pressure\":3}},\"ts\":3000}");
+        Event overwrittenProto = telemetryProtoEvent(2000, "pressure");
+
+        int deleted = downsample(List.of(newestProto, overwrittenJson, withNewKey, overwrittenProto), List.of(EdgeEventActionType.TIMESERIES_UPDATED));
+
+        assertThat(deleted).isEqualTo(2);
+        assertThat(deletedIds).containsExactlyInAnyOrder(overwrittenJson.id(), overwrittenProto.id());
+    }
+
+    @Test
+    void testEventsWithUnknownBodyAreKept() {
+        List<Event> events = List.of(
+                attributesEvent(5000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}"),
+                attributesEvent(4000, "not a json"),
+                attributesEvent(3000, "{\"kv\":{},\"scope\":\"SERVER_SCOPE\"}"),
+                new Event(UUID.randomUUID(), tenantId, entityId, EdgeEventActionType.ATTRIBUTES_UPDATED, 2000,
+                        "{\"scope\":\"SERVER_SCOPE\"}", new byte[]{1, 2, 3}));
+
+        assertThat(downsample(events, ATTRIBUTES_ACTIONS)).isZero();
+    }
+
+    @Test
+    void testRowsAreReadFromResultSet() throws Exception {
+        Event newest = attributesEvent(5000, "{\"kv\":{\"a\":1},\"scope\":\"SERVER_SCOPE\"}");
+        Event overwritten = attributesEvent(4000, "{\"kv\":{\"a\":0},\"scope\":\"SERVER_SCOPE\"}");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Event event : List.of(newest, overwritten)) {
+                handler.processRow(toResultSet(event));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        assertThat(repository.downsamplePartition(TABLE, PARTITION_START_TS, ATTRIBUTES_ACTIONS, INTERVAL_MS)).isEqualTo(1);
+        assertThat(deletedIds).containsExactly(overwritten.id());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPartitionSizeExcludesDeadRows() {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq("cloud_event_1000")))
+                .thenReturn(List.of(new CloudEventQuotaRepository.PartitionSize(1000, 300, 100)));
+
+        CloudEventQuotaRepository.PartitionSize size = repository.getPartitionSize(TABLE, PARTITION_START_TS);
+
+        assertThat(size.getLiveBytes()).isEqualTo(750);
+        assertThat(size.afterDelete(150).getLiveBytes()).isEqualTo(375);
+        assertThat(size.afterDelete(1000).getLiveBytes()).isZero();
+        assertThat(repository.getPartitionSize(TABLE, 2000L).getLiveBytes()).isZero();
+        assertThat(new CloudEventQuotaRepository.PartitionSize(1000, 0, 0).getLiveBytes()).isEqualTo(1000);
+    }
+
+    @Test
+    void testSizeByActionIsSampledOnlyForLargePartitions() throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(sizeRow("TIMESERIES_UPDATED", 700));
+            handler.processRow(sizeRow("UNKNOWN_ACTION", 100));
+            handler.processRow(sizeRow("RPC_CALL", 300));
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        Map<EdgeEventActionType, Long> sizeByAction = repository.getSampledSizeByAction(TABLE, PARTITION_START_TS, 1_000_000);
+
+        assertThat(sizeByAction).containsOnly(Map.entry(EdgeEventActionType.TIMESERIES_UPDATED, 700L), Map.entry(EdgeEventActionType.RPC_CALL, 300L));
+        verify(jdbcTemplate).query(eq("SELECT cloud_event_action, sum(pg_column_size(e.*)) FROM cloud_event_1000 e TABLESAMPLE SYSTEM (?) " +
+                "GROUP BY cloud_event_action"), any(RowCallbackHandler.class), eq(1.0));
+
+        repository.getSampledSizeByAction(TABLE, PARTITION_START_TS, 10_000);
+
+        verify(jdbcTemplate).query(eq("SELECT cloud_event_action, sum(pg_column_size(e.*)) FROM cloud_event_1000 e GROUP BY cloud_event_action"),
+                any(RowCallbackHandler.class));
+    }
+
+    private static ResultSet sizeRow(String action, long size) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(action);
+        when(rs.getLong(2)).thenReturn(size);
+        return rs;
+    }
+
+    private int downsample(List<Event> events, List<EdgeEventActionType> actions) {
+        doAnswer(invocation -> {
+            SupersededCloudEventsCollector collector = invocation.getArgument(1);
+            events.forEach(event -> collector.onEvent(event.id(), event.tenantId(), event.entityId(), event.action(),
+                    event.createdTime(), event.entityBody(), event.entityBodyProto()));
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        return repository.downsamplePartition(TABLE, PARTITION_START_TS, actions, INTERVAL_MS);
+    }
+
+    private Event attributesEvent(long createdTime, String entityBody) {
+        return new Event(UUID.randomUUID(), tenantId, entityId, EdgeEventActionType.ATTRIBUTES_UPDATED, createdTime, entityBody, null);
+    }
+
+    private Event protoAttributesEvent(long createdTime, String entityBody, String... keys) {
+        TransportProtos.PostAttributeMsg.Builder msg = TransportProtos.PostAttributeMsg.newBuilder();
+        Arrays.stream(keys).forEach(key -> msg.addKv(keyValue(key)));
+        return new Event(UUID.randomUUID(), tenantId, entityId, EdgeEventActionType.ATTRIBUTES_UPDATED, createdTime, entityBody, msg.build().toByteArray());
+    }
+
+    private Event telemetryEvent(long createdTime, String entityBody) {
+        return new Event(UUID.randomUUID(), tenantId, entityId, EdgeEventActionType.TIMESERIES_UPDATED, createdTime, entityBody, null);
+    }
+
+    private Event telemetryProtoEvent(long createdTime, String... keys) {
+        TransportProtos.TsKvListProto.Builder tsKv = TransportProtos.TsKvListProto.newBuilder().setTs(createdTime);
+        Arrays.stream(keys).forEach(key -> tsKv.addKv(keyValue(key)));
+        byte[] proto = TransportProtos.PostTelemetryMsg.newBuilder().addTsKvList(tsKv).build().toByteArray();
+        return new Event(UUID.randomUUID(), tenantId, entityId, EdgeEventActionType.TIMESERIES_UPDATED, createdTime, null, proto);
+    }
+
+    private static TransportProtos.KeyValueProto keyValue(String key) {
+        return TransportProtos.KeyValueProto.newBuilder().setKey(key).setType(TransportProtos.KeyValueType.LONG_V).setLongV(1).build();
+    }
+
+    private static ResultSet toResultSet(Event event) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject("id", UUID.class)).thenReturn(event.id());
+        when(rs.getObject("tenant_id", UUID.class)).thenReturn(event.tenantId());
+        when(rs.getObject("entity_id", UUID.class)).thenReturn(event.entityId());
+        when(rs.getString("cloud_event_action")).thenReturn(event.action().name());
+        when(rs.getLong("created_time")).thenReturn(event.createdTime());
+        when(rs.getString("entity_body")).thenReturn(event.entityBody());
+        when(rs.getBytes("entity_body_proto")).thenReturn(event.entityBodyProto());
+        return rs;
+    }
+
+    private record Event(UUID id, UUID tenantId, UUID entityId, EdgeEventActionType action, long createdTime,
+                         String entityBody, byte[] entityBodyProto) {
+    }
+
+}
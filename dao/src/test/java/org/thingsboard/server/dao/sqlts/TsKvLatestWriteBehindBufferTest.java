@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.Test;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TsKvLatestWriteBehindBufferTest {
+
+    private static final UUID ENTITY_ID = UUID.randomUUID();
+
+    private final List<TsKvLatestEntity> written = new ArrayList<>();
+
+    @Test
+    public void testUpdatesOfSameKeyAreMergedIntoSingleWrite() throws Exception {
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, true, 0);
+        ListenableFuture<Long> first = buffer.add(latest(ENTITY_ID, 1, 100L, 1L));
+        ListenableFuture<Long> second = buffer.add(latest(ENTITY_ID, 1, 200L, 2L));
+        buffer.add(latest(ENTITY_ID, 2, 100L, 3L));
+
+        assertThat(first.isDone()).isFalse();
+        assertThat(buffer.get(ENTITY_ID, 1).getLongValue()).isEqualTo(2L);
+        assertThat(buffer.getAll(ENTITY_ID)).hasSize(2);
+
+        buffer.flush();
+
+        assertThat(written).hasSize(2);
+        assertThat(written).filteredOn(entity -> entity.getKey() == 1).singleElement().extracting(TsKvLatestEntity::getLongValue).isEqualTo(2L);
+        assertThat(first.get()).isEqualTo(200L);
+        assertThat(second.get()).isEqualTo(200L);
+        assertThat(buffer.size()).isZero();
+        assertThat(buffer.get(ENTITY_ID, 1)).isNull();
+    }
+
+    @Test
+    public void testOlderValueIsIgnoredWhenUpdateByLatestTs() {
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, true, 0);
+        buffer.add(latest(ENTITY_ID, 1, 200L, 1L));
+        buffer.add(latest(ENTITY_ID, 1, 100L, 2L));
+        assertThat(buffer.get(ENTITY_ID, 1).getLongValue()).isEqualTo(1L);
+
+        buffer = createBuffer(false, true, 0);
+        buffer.add(latest(ENTITY_ID, 1, 200L, 1L));
+        buffer.add(latest(ENTITY_ID, 1, 100L, 2L));
+        assertThat(buffer.get(ENTITY_ID, 1).getLongValue()).isEqualTo(2L);
+    }
+
+    @Test
+    public void testSaveIsAcknowledgedImmediatelyWithoutAckOnFlush() throws Exception {
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, false, 0);
+        ListenableFuture<Long> future = buffer.add(latest(ENTITY_ID, 1, 100L, 1L));
+        assertThat(future.isDone()).isTrue();
+        assertThat(future.get()).isNull();
+        assertThat(written).isEmpty();
+    }
+
+    @Test
+    public void testKeyAboveLimitIsWrittenWithoutWaitingForFlush() {
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, true, 1);
+        buffer.add(latest(ENTITY_ID, 1, 100L, 1L));
+        buffer.add(latest(ENTITY_ID, 2, 100L, 2L));
+        assertThat(written).extracting(TsKvLatestEntity::getKey).containsExactly(2);
+        assertThat(buffer.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSingleKeyFlushAndSyncFlush() throws Exception {
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, true, 0);
+        buffer.add(latest(ENTITY_ID, 1, 100L, 1L));
+        ListenableFuture<Long> future = buffer.add(latest(ENTITY_ID, 2, 100L, 2L));
+
+        assertThat(buffer.flush(ENTITY_ID, 1).get()).isEqualTo(100L);
+        assertThat(buffer.flush(ENTITY_ID, 3).get()).isNull();
+        assertThat(written).extracting(TsKvLatestEntity::getKey).containsExactly(1);
+
+        buffer.flushSync(entities -> entities.stream().map(entity -> 42L).toList());
+        assertThat(future.get()).isEqualTo(42L);
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    public void testPendingValuesAreIndexedPerEntity() {
+        UUID otherEntityId = UUID.randomUUID();
+        TsKvLatestWriteBehindBuffer buffer = createBuffer(true, true, 0);
+        buffer.add(latest(ENTITY_ID, 1, 100L, 1L));
+        buffer.add(latest(ENTITY_ID, 2, 100L, 2L));
+        buffer.add(latest(otherEntityId, 1, 100L, 3L));
+
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(buffer.getAll(ENTITY_ID)).extracting(TsKvLatestEntity::getLongValue).containsExactlyInAnyOrder(1L, 2L);
+        assertThat(buffer.getAll(otherEntityId)).extracting(TsKvLatestEntity::getLongValue).containsExactly(3L);
+        assertThat(buffer.getAll(UUID.randomUUID())).isEmpty();
+
+        buffer.flush(otherEntityId, 1);
+        assertThat(buffer.getAll(otherEntityId)).isEmpty();
+        assertThat(buffer.getAll(ENTITY_ID)).hasSize(2);
+        assertThat(buffer.size()).isEqualTo(2);
+    }
+
+    private TsKvLatestWriteBehindBuffer createBuffer(boolean updateByLatestTs, boolean ackOnFlush, int maxPendingKeys) {
+        return new TsKvLatestWriteBehindBuffer(entity -> {
+            written.add(entity);
+            return Futures.immediateFuture(entity.getTs());
+        }, updateByLatestTs, ackOnFlush, maxPendingKeys);
+    }
+
+    private static TsKvLatestEntity latest(UUID entityId, int key, long ts, long value) {
+        return new TsKvLatestEntity(entityId, key, null, null, null, value, null, null, ts, null);
+    }
+
+}
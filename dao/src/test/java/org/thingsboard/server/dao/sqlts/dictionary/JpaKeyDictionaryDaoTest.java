@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.dictionary;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.dao.model.sqlts.dictionary.KeyDictionaryEntry;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+public class JpaKeyDictionaryDaoTest {
+
+    private KeyDictionaryRepository repository;
+    private JdbcTemplate jdbcTemplate;
+    private JpaKeyDictionaryDao keyDictionaryDao;
+
+    @Before
+    public void setUp() {
+        repository = mock(KeyDictionaryRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        keyDictionaryDao = new JpaKeyDictionaryDao(repository);
+        ReflectionTestUtils.setField(keyDictionaryDao, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(keyDictionaryDao, "preloadEnabled", true);
+    }
+
+    @Test
+    public void givenPreloadedDictionary_whenResolveKeys_thenNoDbLookups() {
+        willReturn(List.of(entry("temperature", 1), entry("humidity", 5000), entry("sparse", Integer.MAX_VALUE))).given(repository).findAll();
+        keyDictionaryDao.preload();
+
+        assertThat(keyDictionaryDao.getKey(1)).isEqualTo("temperature");
+        assertThat(keyDictionaryDao.getKey(5000)).isEqualTo("humidity");
+        assertThat(keyDictionaryDao.getKey(Integer.MAX_VALUE)).isEqualTo("sparse");
+        assertThat(keyDictionaryDao.getOrSaveKeyId("humidity")).isEqualTo(5000);
+        assertThat(keyDictionaryDao.getOrSaveKeyIds(List.of("temperature", "humidity")))
+                .isEqualTo(Map.of("temperature", 1, "humidity", 5000));
+
+        verify(repository, never()).findByKeyId(anyInt());
+        verify(repository, never()).findById(any());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void givenUnknownKeyId_whenGetKey_thenResultIsCached() {
+        willReturn(Optional.of(entry("pressure", 42))).given(repository).findByKeyId(42);
+
+        assertThat(keyDictionaryDao.getKey(42)).isEqualTo("pressure");
+        assertThat(keyDictionaryDao.getKey(42)).isEqualTo("pressure");
+        assertThat(keyDictionaryDao.getOrSaveKeyId("pressure")).isEqualTo(42);
+
+        verify(repository, times(1)).findByKeyId(42);
+        verify(repository, never()).findById(any());
+    }
+
+    @Test
+    public void givenPreloadFails_whenPreload_thenDictionaryStaysEmpty() {
+        willReturn(null).given(repository).findAll();
+        keyDictionaryDao.preload();
+        assertThat(keyDictionaryDao.getKey(1)).isNull();
+    }
+
+    private static KeyDictionaryEntry entry(String key, int keyId) {
+        KeyDictionaryEntry entry = new KeyDictionaryEntry();
+        entry.setKey(key);
+        entry.setKeyId(keyId);
+        return entry;
+    }
+
+}
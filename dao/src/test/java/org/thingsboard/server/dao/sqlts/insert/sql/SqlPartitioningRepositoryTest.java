@@ -0,0 +1,96 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sqlts.insert.sql;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SqlPartitioningRepositoryTest {
+
+    private static final String TABLE = "cloud_event";
+    private static final long PARTITION_DURATION_MS = TimeUnit.HOURS.toMillis(1);
+
+    private JdbcTemplate jdbcTemplate;
+    private SqlPartitioningRepository partitioningRepository;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        partitioningRepository = new SqlPartitioningRepository();
+        ReflectionTestUtils.setField(partitioningRepository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(partitioningRepository, "provisionedPartitions", 2);
+    }
+
+    @Test
+    public void testPartitionIsCreatedOnce() {
+        long ts = 1704899727000L;
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts, PARTITION_DURATION_MS);
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts + 1, PARTITION_DURATION_MS);
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts - 1, PARTITION_DURATION_MS);
+
+        verify(jdbcTemplate, times(1)).execute(anyString());
+        verify(jdbcTemplate).execute(contains(TABLE + "_1704898800000 PARTITION OF " + TABLE + " FOR VALUES FROM (1704898800000) TO (1704902400000)"));
+    }
+
+    @Test
+    public void testUpcomingPartitionsAreProvisioned() {
+        long now = System.currentTimeMillis();
+        long currentPartitionStartTs = now - now % PARTITION_DURATION_MS;
+        partitioningRepository.createPartitionIfNotExists(TABLE, now, PARTITION_DURATION_MS);
+
+        partitioningRepository.provisionPartitions();
+
+        verify(jdbcTemplate, times(3)).execute(anyString());
+        for (int i = 0; i <= 2; i++) {
+            verify(jdbcTemplate).execute(contains(TABLE + "_" + (currentPartitionStartTs + i * PARTITION_DURATION_MS) + " "));
+        }
+
+        partitioningRepository.createPartitionIfNotExists(TABLE, currentPartitionStartTs + 2 * PARTITION_DURATION_MS, PARTITION_DURATION_MS);
+        verify(jdbcTemplate, times(3)).execute(anyString());
+    }
+
+    @Test
+    public void testPartitionIsCreatedAgainAfterCacheCleanup() {
+        long ts = 1704899727000L;
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts, PARTITION_DURATION_MS);
+        partitioningRepository.cleanupPartitionsCache(TABLE, ts + PARTITION_DURATION_MS, PARTITION_DURATION_MS);
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts, PARTITION_DURATION_MS);
+
+        verify(jdbcTemplate, times(2)).execute(anyString());
+    }
+
+    @Test
+    public void testExistingPartitionIsCached() {
+        long ts = 1704899727000L;
+        willThrow(new RuntimeException("relation \"cloud_event_1704898800000\" already exists")).given(jdbcTemplate).execute(anyString());
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts, PARTITION_DURATION_MS);
+        partitioningRepository.createPartitionIfNotExists(TABLE, ts, PARTITION_DURATION_MS);
+
+        verify(jdbcTemplate, times(1)).execute(anyString());
+    }
+
+}
@@ -86,7 +86,7 @@ public abstract class AbstractTbMsgPushNode<T extends BaseTbMsgPushNodeConfigura
             Map<String, String> metadata = msg.getMetaData().getData();
             EdgeEventActionType actionType = getEdgeEventActionTypeByMsgType(msg);
             Map<String, Object> entityBody = new HashMap<>();
-            JsonNode dataJson = JacksonUtil.toJsonNode(msg.getData());
+            JsonNode dataJson = msg.getDataAsJson();
             switch (actionType) {
                 case ATTRIBUTES_UPDATED, POST_ATTRIBUTES -> {
                     entityBody.put("kv", dataJson);
@@ -133,7 +133,7 @@ public abstract class AbstractTbMsgPushNode<T extends BaseTbMsgPushNodeConfigura
         entityBody.put("requestId", metadata.get("requestId"));
         entityBody.put("serviceId", metadata.get("serviceId"));
         entityBody.put("sessionId", metadata.get("sessionId"));
-        JsonNode data = JacksonUtil.toJsonNode(msg.getData());
+        JsonNode data = msg.getDataAsJson();
         entityBody.put("method", data.get("method").asText());
         entityBody.put("params", JacksonUtil.toString(data.get("params")));
     }
@@ -15,14 +15,20 @@
  */
 package org.thingsboard.rule.engine.edge;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.rule.engine.api.RuleNode;
 import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.server.common.adaptor.JsonConverter;
 import org.thingsboard.server.common.data.CloudUtils;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.EntityType;
@@ -35,6 +41,7 @@ import org.thingsboard.server.common.msg.TbMsg;
 
 import java.util.UUID;
 
+import static org.thingsboard.server.common.data.msg.TbMsgType.ALARM;
 import static org.thingsboard.server.common.data.msg.TbMsgType.POST_TELEMETRY_REQUEST;
 import static org.thingsboard.server.common.data.msg.TbMsgType.TIMESERIES_DELETED;
 import static org.thingsboard.server.common.data.msg.TbMsgType.TIMESERIES_UPDATED;
@@ -74,6 +81,37 @@ public class TbMsgPushToCloudNode extends AbstractTbMsgPushNode<TbMsgPushToCloud
         return cloudEvent;
     }
 
+    @Override
+    protected CloudEvent buildEvent(TbMsg msg, TbContext ctx) throws JsonProcessingException {
+        if (config.isUseProtobufBody() && !msg.isTypeOf(ALARM)) {
+            EdgeEventActionType actionType = getEdgeEventActionTypeByMsgType(msg);
+            switch (actionType) {
+                case TIMESERIES_UPDATED, ATTRIBUTES_UPDATED, POST_ATTRIBUTES -> {
+                    return buildProtobufEvent(msg, ctx, actionType);
+                }
+            }
+        }
+        return super.buildEvent(msg, ctx);
+    }
+
+    private CloudEvent buildProtobufEvent(TbMsg msg, TbContext ctx, EdgeEventActionType actionType) {
+        JsonElement data = JsonParser.parseString(msg.getData());
+        CloudEvent cloudEvent = buildEvent(ctx.getTenantId(), actionType, msg.getOriginator().getId(),
+                getEventTypeByEntityType(msg.getOriginator().getEntityType()), null);
+        if (EdgeEventActionType.TIMESERIES_UPDATED.equals(actionType)) {
+            cloudEvent.setEntityBodyProto(JsonConverter.convertToTelemetryProto(data, msg.getMetaDataTs()).toByteArray());
+        } else {
+            ObjectNode entityBody = JacksonUtil.newObjectNode();
+            entityBody.put(DataConstants.SCOPE, getScope(msg.getMetaData().getData()));
+            if (EdgeEventActionType.POST_ATTRIBUTES.equals(actionType)) {
+                entityBody.put("isPostAttributes", true);
+            }
+            cloudEvent.setEntityBody(entityBody);
+            cloudEvent.setEntityBodyProto(JsonConverter.convertToAttributesProto(data).toByteArray());
+        }
+        return cloudEvent;
+    }
+
     @Override
     CloudEventType getEventTypeByEntityType(EntityType entityType) {
         return CloudUtils.getCloudEventTypeByEntityType(entityType);
@@ -23,6 +23,8 @@ import org.thingsboard.server.common.data.AttributeScope;
 @Data
 public class TbMsgPushToCloudNodeConfiguration extends BaseTbMsgPushNodeConfiguration {
 
+    private boolean useProtobufBody;
+
     @Override
     public TbMsgPushToCloudNodeConfiguration defaultConfiguration() {
         TbMsgPushToCloudNodeConfiguration configuration = new TbMsgPushToCloudNodeConfiguration();
@@ -86,7 +86,7 @@ public class CalculateDeltaNode implements TbNode {
             ctx.tellNext(msg, TbNodeConnectionType.OTHER);
             return;
         }
-        JsonNode msgData = JacksonUtil.toJsonNode(msg.getData());
+        JsonNode msgData = msg.getDataAsJson();
         if (msgData == null || !msgData.has(config.getInputValueKey())) {
             ctx.tellNext(msg, TbNodeConnectionType.OTHER);
             return;
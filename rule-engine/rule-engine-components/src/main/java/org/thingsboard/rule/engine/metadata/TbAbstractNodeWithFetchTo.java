@@ -64,11 +64,11 @@ public abstract class TbAbstractNodeWithFetchTo<C extends TbAbstractFetchToNodeC
     }
 
     protected ObjectNode getMsgDataAsObjectNode(TbMsg msg) {
-        var msgDataNode = JacksonUtil.toJsonNode(msg.getData());
+        var msgDataNode = msg.getDataAsJson();
         if (msgDataNode == null || !msgDataNode.isObject()) {
             throw new IllegalArgumentException("Message body is not an object!");
         }
-        return (ObjectNode) msgDataNode;
+        return (ObjectNode) msgDataNode.deepCopy();
     }
 
     protected void enrichMessage(ObjectNode msgData, TbMsgMetaData metaData, KvEntry kvEntry, String targetKey) {
@@ -82,7 +82,7 @@ public abstract class TbAbstractNodeWithFetchTo<C extends TbAbstractFetchToNodeC
     protected TbMsg transformMessage(TbMsg msg, ObjectNode msgDataNode, TbMsgMetaData msgMetaData) {
         switch (fetchTo) {
             case DATA:
-                return TbMsg.transformMsgData(msg, JacksonUtil.toString(msgDataNode));
+                return TbMsg.transformMsgData(msg, msgDataNode);
             case METADATA:
                 return TbMsg.transformMsgMetadata(msg, msgMetaData);
             default:
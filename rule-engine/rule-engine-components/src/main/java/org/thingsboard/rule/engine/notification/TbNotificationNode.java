@@ -62,7 +62,7 @@ public class TbNotificationNode extends TbAbstractExternalNode {
                 .msgCustomerId(msg.getOriginator().getEntityType() == EntityType.CUSTOMER
                         && msg.getOriginator().equals(msg.getCustomerId()) ? null : msg.getCustomerId())
                 .msgMetadata(msg.getMetaData().getData())
-                .msgData(JacksonUtil.toFlatMap(JacksonUtil.toJsonNode(msg.getData())))
+                .msgData(JacksonUtil.toFlatMap(msg.getDataAsJson()))
                 .msgType(msg.getType())
                 .build();
 
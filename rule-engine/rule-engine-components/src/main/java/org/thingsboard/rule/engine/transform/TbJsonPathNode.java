@@ -67,7 +67,7 @@ public class TbJsonPathNode implements TbNode {
     public void onMsg(TbContext ctx, TbMsg msg) throws ExecutionException, InterruptedException, TbNodeException {
         if (!TbJsonPathNodeConfiguration.DEFAULT_JSON_PATH.equals(this.jsonPathValue)) {
             try {
-                Object jsonPathData = jsonPath.read(msg.getData(), this.configurationJsonPath);
+                Object jsonPathData = jsonPath.read(msg.getDataAsJson(), this.configurationJsonPath);
                 ctx.tellSuccess(TbMsg.transformMsgData(msg, JacksonUtil.toString(jsonPathData)));
             } catch (PathNotFoundException e) {
                 ctx.tellFailure(msg, e);
@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.edge;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.thingsboard.common.util.JacksonUtil;
+import org.thingsboard.common.util.ListeningExecutor;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.rule.engine.api.TbNodeException;
+import org.thingsboard.server.common.data.DataConstants;
+import org.thingsboard.server.common.data.cloud.CloudEvent;
+import org.thingsboard.server.common.data.edge.EdgeEventActionType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.msg.TbMsgType;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgDataType;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.dao.cloud.CloudEventService;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class TbMsgPushToCloudNodeTest {
+
+    TbMsgPushToCloudNode node;
+
+    private final TenantId tenantId = TenantId.fromUUID(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Mock
+    private TbContext ctx;
+
+    @Mock
+    private CloudEventService cloudEventService;
+    @Mock
+    private ListeningExecutor dbCallbackExecutor;
+
+    private void init(boolean useProtobufBody) throws TbNodeException {
+        node = new TbMsgPushToCloudNode();
+        TbMsgPushToCloudNodeConfiguration config = new TbMsgPushToCloudNodeConfiguration().defaultConfiguration();
+        config.setUseProtobufBody(useProtobufBody);
+        node.init(ctx, new TbNodeConfiguration(JacksonUtil.valueToTree(config)));
+
+        Mockito.when(ctx.getTenantId()).thenReturn(tenantId);
+        Mockito.when(ctx.getCloudEventService()).thenReturn(cloudEventService);
+        Mockito.when(ctx.getDbCallbackExecutor()).thenReturn(dbCallbackExecutor);
+    }
+
+    @Test
+    public void testTimeseriesMsgStoredAsJsonByDefault() throws TbNodeException {
+        init(false);
+        Mockito.when(cloudEventService.saveTsKvAsync(any())).thenReturn(SettableFuture.create());
+
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, "{\"temperature\":42}", null, null);
+
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<CloudEvent> captor = ArgumentCaptor.forClass(CloudEvent.class);
+        verify(cloudEventService).saveTsKvAsync(captor.capture());
+        CloudEvent cloudEvent = captor.getValue();
+        assertThat(cloudEvent.getEntityBodyProto()).isNull();
+        assertThat(cloudEvent.getEntityBody().get("data").get("temperature").asInt()).isEqualTo(42);
+    }
+
+    @Test
+    public void testTimeseriesMsgStoredAsProtobuf() throws TbNodeException, InvalidProtocolBufferException {
+        init(true);
+        Mockito.when(cloudEventService.saveTsKvAsync(any())).thenReturn(SettableFuture.create());
+
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_TELEMETRY_REQUEST, deviceId, TbMsgMetaData.EMPTY,
+                TbMsgDataType.JSON, "[{\"ts\":1000,\"values\":{\"temperature\":42}},{\"ts\":2000,\"values\":{\"temperature\":43}}]", null, null);
+
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<CloudEvent> captor = ArgumentCaptor.forClass(CloudEvent.class);
+        verify(cloudEventService).saveTsKvAsync(captor.capture());
+        CloudEvent cloudEvent = captor.getValue();
+        assertThat(cloudEvent.getAction()).isEqualTo(EdgeEventActionType.TIMESERIES_UPDATED);
+        assertThat(cloudEvent.getEntityBody()).isNull();
+        TransportProtos.PostTelemetryMsg telemetryMsg = TransportProtos.PostTelemetryMsg.parseFrom(cloudEvent.getEntityBodyProto());
+        assertThat(telemetryMsg.getTsKvListCount()).isEqualTo(2);
+        assertThat(telemetryMsg.getTsKvList(1).getTs()).isEqualTo(2000L);
+        assertThat(telemetryMsg.getTsKvList(1).getKv(0).getLongV()).isEqualTo(43L);
+    }
+
+    @Test
+    public void testPostAttributesMsgStoredAsProtobuf() throws TbNodeException, InvalidProtocolBufferException {
+        init(true);
+        Mockito.when(cloudEventService.saveAsync(any())).thenReturn(SettableFuture.create());
+
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue(DataConstants.SCOPE, DataConstants.SHARED_SCOPE);
+        TbMsg msg = TbMsg.newMsg(TbMsgType.POST_ATTRIBUTES_REQUEST, deviceId, metaData,
+                TbMsgDataType.JSON, "{\"firmware\":\"v1.0-beta\"}", null, null);
+
+        node.onMsg(ctx, msg);
+
+        ArgumentCaptor<CloudEvent> captor = ArgumentCaptor.forClass(CloudEvent.class);
+        verify(cloudEventService).saveAsync(captor.capture());
+        CloudEvent cloudEvent = captor.getValue();
+        assertThat(cloudEvent.getAction()).isEqualTo(EdgeEventActionType.POST_ATTRIBUTES);
+        assertThat(cloudEvent.getEntityBody().get(DataConstants.SCOPE).asText()).isEqualTo(DataConstants.SHARED_SCOPE);
+        assertThat(cloudEvent.getEntityBody().get("isPostAttributes").asBoolean()).isTrue();
+        TransportProtos.PostAttributeMsg attributeMsg = TransportProtos.PostAttributeMsg.parseFrom(cloudEvent.getEntityBodyProto());
+        assertThat(attributeMsg.getKv(0).getKey()).isEqualTo("firmware");
+        assertThat(attributeMsg.getKv(0).getStringV()).isEqualTo("v1.0-beta");
+    }
+
+}